@@ -52,3 +52,7 @@ mainDependencies {
     api("org.bytedeco:opencv:$opencvVersion:linux-x86_64")
     api("org.bytedeco:opencv:$opencvVersion:windows-x86_64")
 }
+
+testDependencies {
+    api("us.ihmc:ihmc-commons-testing:0.32.0")
+}
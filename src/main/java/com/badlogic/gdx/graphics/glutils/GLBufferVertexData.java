@@ -0,0 +1,164 @@
+package com.badlogic.gdx.graphics.glutils;
+
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.utils.BufferUtils;
+import org.lwjgl.opengl.GL41;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Vertex data in a GL buffer whose handle is exposed, so GPU passes like transform feedback
+ * can write the vertices of a {@link com.badlogic.gdx.graphics.Mesh} directly, without going
+ * through the CPU. The CPU side buffer is only allocated if something asks for it.
+ */
+public class GLBufferVertexData implements VertexData
+{
+   private final VertexAttributes attributes;
+   private final int maxVertices;
+   private final int bufferHandle;
+   private final int vertexArrayHandle;
+   private FloatBuffer buffer;
+   private boolean isDirty = false;
+   private int numberOfVertices = 0;
+
+   /**
+    * Needs to be on the libGDX thread.
+    */
+   public GLBufferVertexData(int maxVertices, VertexAttributes attributes)
+   {
+      this.maxVertices = maxVertices;
+      this.attributes = attributes;
+
+      bufferHandle = GL41.glGenBuffers();
+      GL41.glBindBuffer(GL41.GL_ARRAY_BUFFER, bufferHandle);
+      GL41.glBufferData(GL41.GL_ARRAY_BUFFER, (long) maxVertices * attributes.vertexSize, GL41.GL_DYNAMIC_COPY);
+      GL41.glBindBuffer(GL41.GL_ARRAY_BUFFER, 0);
+      vertexArrayHandle = GL41.glGenVertexArrays();
+   }
+
+   public int getBufferHandle()
+   {
+      return bufferHandle;
+   }
+
+   /** For when the vertices were written on the GPU. */
+   public void setNumberOfVertices(int numberOfVertices)
+   {
+      this.numberOfVertices = numberOfVertices;
+   }
+
+   @Override
+   public int getNumVertices()
+   {
+      return numberOfVertices;
+   }
+
+   @Override
+   public int getNumMaxVertices()
+   {
+      return maxVertices;
+   }
+
+   @Override
+   public VertexAttributes getAttributes()
+   {
+      return attributes;
+   }
+
+   @Override
+   public void setVertices(float[] vertices, int offset, int count)
+   {
+      FloatBuffer buffer = getBuffer(true);
+      buffer.clear();
+      buffer.put(vertices, offset, count);
+      buffer.flip();
+      numberOfVertices = count * Float.BYTES / attributes.vertexSize;
+   }
+
+   @Override
+   public void updateVertices(int targetOffset, float[] vertices, int sourceOffset, int count)
+   {
+      FloatBuffer buffer = getBuffer(true);
+      buffer.limit(Math.max(buffer.limit(), targetOffset + count));
+      int position = buffer.position();
+      buffer.position(targetOffset);
+      buffer.put(vertices, sourceOffset, count);
+      buffer.position(position);
+   }
+
+   public FloatBuffer getBuffer()
+   {
+      return getBuffer(true);
+   }
+
+   public FloatBuffer getBuffer(boolean forWriting)
+   {
+      if (buffer == null)
+      {
+         buffer = BufferUtils.newFloatBuffer(maxVertices * attributes.vertexSize / Float.BYTES);
+         buffer.flip();
+      }
+      isDirty |= forWriting;
+      return buffer;
+   }
+
+   @Override
+   public void bind(ShaderProgram shader)
+   {
+      bind(shader, null);
+   }
+
+   @Override
+   public void bind(ShaderProgram shader, int[] locations)
+   {
+      GL41.glBindVertexArray(vertexArrayHandle);
+      GL41.glBindBuffer(GL41.GL_ARRAY_BUFFER, bufferHandle);
+      if (isDirty)
+      {
+         GL41.glBufferSubData(GL41.GL_ARRAY_BUFFER, 0L, buffer);
+         isDirty = false;
+      }
+
+      for (int i = 0; i < attributes.size(); i++)
+      {
+         VertexAttribute attribute = attributes.get(i);
+         int location = locations == null ? shader.getAttributeLocation(attribute.alias) : locations[i];
+         if (location < 0)
+            continue;
+         shader.enableVertexAttribute(location);
+         shader.setVertexAttribute(location,
+                                   attribute.numComponents,
+                                   attribute.type,
+                                   attribute.normalized,
+                                   attributes.vertexSize,
+                                   attribute.offset);
+      }
+   }
+
+   @Override
+   public void unbind(ShaderProgram shader)
+   {
+      unbind(shader, null);
+   }
+
+   @Override
+   public void unbind(ShaderProgram shader, int[] locations)
+   {
+      GL41.glBindVertexArray(0);
+      GL41.glBindBuffer(GL41.GL_ARRAY_BUFFER, 0);
+   }
+
+   @Override
+   public void invalidate()
+   {
+      // The buffer isn't managed, so it isn't recreated on context loss
+   }
+
+   @Override
+   public void dispose()
+   {
+      GL41.glDeleteVertexArrays(vertexArrayHandle);
+      GL41.glDeleteBuffers(bufferHandle);
+   }
+}
@@ -2,8 +2,12 @@ package com.badlogic.gdx.graphics.glutils;
 
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.GL30;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
+import us.ihmc.euclid.transform.interfaces.RigidBodyTransformReadOnly;
+
+import java.util.function.Consumer;
 
 public class SensorFrameBuffer extends GLFrameBuffer<Texture>
 {
@@ -11,6 +15,8 @@ public class SensorFrameBuffer extends GLFrameBuffer<Texture>
    private FloatTextureData depthTextureData;
    private Texture colorTexture;
    private Texture depthTexture;
+   private Texture objectIDTexture;
+   private SensorFrameBufferAsyncReadback asyncReadback;
 
    protected SensorFrameBuffer(GLFrameBufferBuilder<? extends GLFrameBuffer<Texture>> bufferBuilder)
    {
@@ -29,6 +35,21 @@ public class SensorFrameBuffer extends GLFrameBuffer<Texture>
          texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
          texture.setWrap(Texture.TextureWrap.ClampToEdge, Texture.TextureWrap.ClampToEdge);
       }
+      else if (attachmentSpec.format == GL30.GL_RED_INTEGER)
+      {
+         // Integer textures can't be linearly filtered and are never read back as a whole, so we keep them GPU only
+         attachmentSpec.isGpuOnly = true;
+         int mipLevel = 0;
+         GLOnlyTextureData objectIDTextureData = new GLOnlyTextureData(bufferBuilder.width,
+                                                                      bufferBuilder.height,
+                                                                      mipLevel,
+                                                                      attachmentSpec.internalFormat,
+                                                                      attachmentSpec.format,
+                                                                      attachmentSpec.type);
+         texture = objectIDTexture = new Texture(objectIDTextureData);
+         texture.setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+         texture.setWrap(Texture.TextureWrap.ClampToEdge, Texture.TextureWrap.ClampToEdge);
+      }
       else
       {
          attachmentSpec.isGpuOnly = true;
@@ -57,6 +78,53 @@ public class SensorFrameBuffer extends GLFrameBuffer<Texture>
       Gdx.gl20.glFramebufferTexture2D(GL20.GL_FRAMEBUFFER, GL20.GL_COLOR_ATTACHMENT0, GL20.GL_TEXTURE_2D, texture.getTextureObjectHandle(), 0);
    }
 
+   /**
+    * Sets up reading back the color and depth through a ring of pixel buffer objects, instead
+    * of reading them synchronously into {@link #getColorPixmap()}. Completed frames go to the
+    * consumer on a worker thread. See {@link SensorFrameBufferAsyncReadback}.
+    *
+    * @param ringSize how many readbacks can be in flight, 2 or 3 is usually enough
+    */
+   public void enableAsyncReadback(int ringSize, Consumer<SensorFrameBufferAsyncReadback.Frame> consumer)
+   {
+      if (asyncReadback != null)
+         asyncReadback.dispose();
+      asyncReadback = new SensorFrameBufferAsyncReadback(getWidth(), getHeight(), ringSize, consumer);
+   }
+
+   /**
+    * Call with this frame buffer bound, after rendering the sensor's image.
+    *
+    * @param cameraPose the pose the image was rendered from, delivered with the frame
+    */
+   public void requestAsyncReadback(int width, int height, RigidBodyTransformReadOnly cameraPose, long timestampNanos)
+   {
+      asyncReadback.request(0, 0, width, height, cameraPose, timestampNanos);
+   }
+
+   /**
+    * Call once per frame, so completed readbacks are delivered even on frames without a request.
+    */
+   public void pollAsyncReadback()
+   {
+      if (asyncReadback != null)
+         asyncReadback.poll();
+   }
+
+   /** @return null unless {@link #enableAsyncReadback} was called */
+   public SensorFrameBufferAsyncReadback getAsyncReadback()
+   {
+      return asyncReadback;
+   }
+
+   @Override
+   public void dispose()
+   {
+      if (asyncReadback != null)
+         asyncReadback.dispose();
+      super.dispose();
+   }
+
    public static void unbind()
    {
       GLFrameBuffer.unbind();
@@ -81,4 +149,10 @@ public class SensorFrameBuffer extends GLFrameBuffer<Texture>
    {
       return depthTexture;
    }
+
+   /** @return null unless a GL_R32UI / GL_RED_INTEGER color attachment was added */
+   public Texture getObjectIDTexture()
+   {
+      return objectIDTexture;
+   }
 }
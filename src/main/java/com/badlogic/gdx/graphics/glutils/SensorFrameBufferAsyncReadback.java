@@ -0,0 +1,269 @@
+package com.badlogic.gdx.graphics.glutils;
+
+import org.lwjgl.opengl.GL41;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.transform.interfaces.RigidBodyTransformReadOnly;
+import us.ihmc.tools.thread.MissingThreadTools;
+import us.ihmc.tools.thread.ResettableExceptionHandlingExecutorService;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Reads back a {@link SensorFrameBuffer}'s color and depth without stalling the render thread.
+ * Each request copies the pixels into the next pixel buffer object of a ring and puts a fence
+ * after it. Requests whose fences have signaled are copied out and handed to the consumer on
+ * a worker thread, tagged with the camera pose and timestamp they were requested with.
+ *
+ * A request is delivered a frame or more later, so the ring size trades latency for throughput.
+ * When the ring is full, or the consumer is still busy with that ring slot, frames are dropped
+ * rather than waited on.
+ *
+ * Frames go to a consumer rather than through a {@link us.ihmc.tools.thread.SwapReference}, which
+ * only has two sides, so every completed slot of the ring is delivered, in order.
+ */
+public class SensorFrameBufferAsyncReadback
+{
+   /**
+    * A completed readback. Only valid during the consumer's callback, as the buffers get reused.
+    */
+   public static class Frame
+   {
+      private final ByteBuffer color;
+      private final ByteBuffer depthBytes;
+      private final FloatBuffer depth;
+      private final RigidBodyTransform cameraPose = new RigidBodyTransform();
+      private final AtomicBoolean beingConsumed = new AtomicBoolean(false);
+      private long timestampNanos;
+      private long sequenceNumber;
+      private int width;
+      private int height;
+
+      private Frame(int maxPixels)
+      {
+         color = ByteBuffer.allocateDirect(maxPixels * 4).order(ByteOrder.nativeOrder());
+         depthBytes = ByteBuffer.allocateDirect(maxPixels * Float.BYTES).order(ByteOrder.nativeOrder());
+         depth = depthBytes.asFloatBuffer();
+      }
+
+      /** RGBA8, row by row from the bottom. */
+      public ByteBuffer getColor()
+      {
+         return color;
+      }
+
+      /**
+       * The depth buffer's values from 0 to 1, or the float color attachment's values
+       * if one was set with {@link #setDepthColorAttachment}, row by row from the bottom.
+       */
+      public FloatBuffer getDepth()
+      {
+         return depth;
+      }
+
+      public RigidBodyTransformReadOnly getCameraPose()
+      {
+         return cameraPose;
+      }
+
+      public long getTimestampNanos()
+      {
+         return timestampNanos;
+      }
+
+      public long getSequenceNumber()
+      {
+         return sequenceNumber;
+      }
+
+      public int getWidth()
+      {
+         return width;
+      }
+
+      public int getHeight()
+      {
+         return height;
+      }
+   }
+
+   /** What a ring slot was requested with. Kept apart from the frame, which the worker may still be reading. */
+   private static class Request
+   {
+      private final RigidBodyTransform cameraPose = new RigidBodyTransform();
+      private long timestampNanos;
+      private long sequenceNumber;
+      private int width;
+      private int height;
+   }
+
+   private final int ringSize;
+   private final int maxPixels;
+   private final Consumer<Frame> consumer;
+   private final int[] pixelBufferObjects;
+   private final long[] fences;
+   private final Request[] requests;
+   private final Frame[] frames;
+   private final ResettableExceptionHandlingExecutorService executor;
+   private int writeIndex = 0;
+   private long nextSequenceNumber = 0;
+   private long numberOfDroppedFrames = 0;
+   private int depthColorAttachment = GL41.GL_NONE;
+
+   /**
+    * Needs to be on the libGDX thread.
+    *
+    * @param consumer called on a worker thread, one frame at a time
+    */
+   public SensorFrameBufferAsyncReadback(int maxWidth, int maxHeight, int ringSize, Consumer<Frame> consumer)
+   {
+      this.ringSize = ringSize;
+      this.consumer = consumer;
+      maxPixels = maxWidth * maxHeight;
+      pixelBufferObjects = new int[ringSize];
+      fences = new long[ringSize];
+      requests = new Request[ringSize];
+      frames = new Frame[ringSize];
+
+      // Color then depth in the same buffer
+      long bufferBytes = (long) maxPixels * (4 + Float.BYTES);
+      for (int i = 0; i < ringSize; i++)
+      {
+         pixelBufferObjects[i] = GL41.glGenBuffers();
+         GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, pixelBufferObjects[i]);
+         GL41.glBufferData(GL41.GL_PIXEL_PACK_BUFFER, bufferBytes, GL41.GL_STREAM_READ);
+         requests[i] = new Request();
+         frames[i] = new Frame(maxPixels);
+      }
+      GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, 0);
+
+      executor = MissingThreadTools.newSingleThreadExecutor(getClass().getSimpleName(), true, ringSize);
+   }
+
+   /**
+    * Read the depth from a GL_R32F color attachment instead of the depth buffer, like
+    * for a range image or the depth along the view axis in meters.
+    *
+    * @param colorAttachment like GL_COLOR_ATTACHMENT1
+    */
+   public void setDepthColorAttachment(int colorAttachment)
+   {
+      depthColorAttachment = colorAttachment;
+   }
+
+   /**
+    * Call with the frame buffer bound, after rendering. Only queues GPU commands.
+    *
+    * @param x GL pixel coordinates of the region to read, y up from the bottom
+    */
+   public void request(int x, int y, int width, int height, RigidBodyTransformReadOnly cameraPose, long timestampNanos)
+   {
+      poll();
+
+      if (fences[writeIndex] != 0 || width * height > maxPixels)
+      {
+         ++numberOfDroppedFrames;
+         return;
+      }
+
+      Request request = requests[writeIndex];
+      request.cameraPose.set(cameraPose);
+      request.timestampNanos = timestampNanos;
+      request.sequenceNumber = nextSequenceNumber++;
+      request.width = width;
+      request.height = height;
+
+      GL41.glPixelStorei(GL41.GL_PACK_ALIGNMENT, 4);
+      GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, pixelBufferObjects[writeIndex]);
+      GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT0);
+      GL41.glReadPixels(x, y, width, height, GL41.GL_RGBA, GL41.GL_UNSIGNED_BYTE, 0L);
+      if (depthColorAttachment == GL41.GL_NONE)
+      {
+         GL41.glReadPixels(x, y, width, height, GL41.GL_DEPTH_COMPONENT, GL41.GL_FLOAT, (long) maxPixels * 4);
+      }
+      else
+      {
+         GL41.glReadBuffer(depthColorAttachment);
+         GL41.glReadPixels(x, y, width, height, GL41.GL_RED, GL41.GL_FLOAT, (long) maxPixels * 4);
+      }
+      GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, 0);
+      fences[writeIndex] = GL41.glFenceSync(GL41.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+      writeIndex = (writeIndex + 1) % ringSize;
+   }
+
+   /**
+    * Hands completed readbacks to the consumer, without blocking. Call once per frame on the libGDX
+    * thread, so readbacks get delivered when there are no new requests.
+    */
+   public void poll()
+   {
+      for (int i = 0; i < ringSize; i++)
+      {
+         int index = (writeIndex + i) % ringSize; // Oldest first
+         if (fences[index] == 0)
+            continue;
+
+         int waitResult = GL41.glClientWaitSync(fences[index], 0, 0L);
+         if (waitResult != GL41.GL_ALREADY_SIGNALED && waitResult != GL41.GL_CONDITION_SATISFIED)
+            continue;
+
+         GL41.glDeleteSync(fences[index]);
+         fences[index] = 0;
+
+         Frame frame = frames[index];
+         if (!frame.beingConsumed.compareAndSet(false, true))
+         {
+            ++numberOfDroppedFrames;
+            continue;
+         }
+
+         Request request = requests[index];
+         frame.cameraPose.set(request.cameraPose);
+         frame.timestampNanos = request.timestampNanos;
+         frame.sequenceNumber = request.sequenceNumber;
+         frame.width = request.width;
+         frame.height = request.height;
+
+         int pixels = frame.width * frame.height;
+         frame.color.clear().limit(pixels * 4);
+         frame.depthBytes.clear().limit(pixels * Float.BYTES);
+         GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, pixelBufferObjects[index]);
+         GL41.glGetBufferSubData(GL41.GL_PIXEL_PACK_BUFFER, 0L, frame.color);
+         GL41.glGetBufferSubData(GL41.GL_PIXEL_PACK_BUFFER, (long) maxPixels * 4, frame.depthBytes);
+         GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, 0);
+         frame.depth.clear().limit(pixels);
+
+         executor.execute(() ->
+         {
+            try
+            {
+               consumer.accept(frame);
+            }
+            finally
+            {
+               frame.beingConsumed.set(false);
+            }
+         });
+      }
+   }
+
+   /** Requests that weren't delivered, because the ring was full or the consumer was behind. */
+   public long getNumberOfDroppedFrames()
+   {
+      return numberOfDroppedFrames;
+   }
+
+   public void dispose()
+   {
+      executor.destroy();
+      for (int i = 0; i < ringSize; i++)
+      {
+         if (fences[i] != 0)
+            GL41.glDeleteSync(fences[i]);
+      }
+      GL41.glDeleteBuffers(pixelBufferObjects);
+   }
+}
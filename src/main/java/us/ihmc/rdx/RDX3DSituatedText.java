@@ -7,8 +7,10 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import com.badlogic.gdx.graphics.Mesh;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
 import com.badlogic.gdx.math.Matrix4;
@@ -16,6 +18,7 @@ import net.mgsx.gltf.scene3d.attributes.PBRColorAttribute;
 import net.mgsx.gltf.scene3d.attributes.PBRTextureAttribute;
 import org.bytedeco.javacpp.BytePointer;
 import org.lwjgl.opengl.GL41;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
 
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.VertexAttributes;
@@ -26,7 +29,6 @@ import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.RenderableProvider;
 import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
-import com.badlogic.gdx.graphics.g3d.attributes.TextureAttribute;
 import com.badlogic.gdx.graphics.g3d.utils.ModelBuilder;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Pool;
@@ -35,24 +37,40 @@ import com.badlogic.gdx.utils.Pool;
  * Provides the ability to put text in the 3D scene.
  * This text is only readable from the front and invisible from the back.
  *
- * TODO: This class uses AWT to draw text.
- *   Instead we should try using ImGui to draw the text, which would allow us
- *   to use a consistent font with the rest of the UI, do FreeType rendering,
- *   and potentially free up resource usage of this class.
+ * The text is drawn as one quad per character from the font's shared {@link RDXSDFGlyphAtlas},
+ * so changing the text only rewrites a few vertices. Strings with characters that aren't in the
+ * atlas are drawn with AWT into a texture per string instead, which are kept in a small LRU cache.
  */
 public class RDX3DSituatedText implements RenderableProvider
 {
    public static final Font DEFAULT_FONT = new Font("Dialog", Font.PLAIN, 72);
    public static final Color DEFAULT_COLOR = Color.BLACK;
    public static final float DEFAULT_HEIGHT = 0.1f;
+   private static final int FLOATS_PER_GLYPH = 4 * 5;
+   private static final int MAX_CACHED_AWT_TEXTS = 8;
 
    private final ModelBuilder modelBuilder = new ModelBuilder();
-   private final HashMap<String, RDX3DSituatedTextData> textDataMap = new HashMap<>();
-   private RDX3DSituatedTextData textData;
+   private final LinkedHashMap<String, RDX3DSituatedTextData> awtTextDataCache = new LinkedHashMap<>(16, 0.75f, true)
+   {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, RDX3DSituatedTextData> eldest)
+      {
+         boolean remove = size() > MAX_CACHED_AWT_TEXTS;
+         if (remove)
+            eldest.getValue().dispose();
+         return remove;
+      }
+   };
+   /** Only used when the text has characters not in the glyph atlas */
+   private RDX3DSituatedTextData awtTextData;
    private String currentText;
    private final Font awtFont;
    private final Color awtColor;
    private final float textHeightMeters;
+   private final Matrix4 transform = new Matrix4();
+   private final RDXSDFGlyphAtlas glyphAtlas;
+   private final Renderable glyphRenderable = new Renderable();
+   private float[] glyphVertices = new float[0];
 
    public RDX3DSituatedText(String text)
    {
@@ -72,33 +90,127 @@ public class RDX3DSituatedText implements RenderableProvider
 
    public RDX3DSituatedText(String text, Font awtFont, Color awtColor, float textHeightMeters)
    {
-      this.awtFont = awtFont;
+      this.awtFont = awtFont != null ? awtFont : DEFAULT_FONT;
       this.awtColor = awtColor;
       this.textHeightMeters = textHeightMeters;
+
+      glyphAtlas = RDXSDFGlyphAtlas.get(this.awtFont);
+      glyphRenderable.material = new Material(ColorAttribute.createDiffuse(awtColor.getRed() / 255.0f,
+                                                                           awtColor.getGreen() / 255.0f,
+                                                                           awtColor.getBlue() / 255.0f,
+                                                                           awtColor.getAlpha() / 255.0f));
+      glyphRenderable.meshPart.primitiveType = GL41.GL_TRIANGLES;
+      ensureGlyphCapacity(16);
+      glyphRenderable.shader = glyphAtlas.getShader(glyphRenderable);
+
       setText(text);
    }
 
    public void setText(String text)
    {
+      if (text.equals(currentText))
+         return;
+
       this.currentText = text;
-      textData = textDataMap.get(text);
+      awtTextData = null;
+      for (int i = 0; i < text.length(); i++)
+      {
+         if (!glyphAtlas.hasGlyph(text.charAt(i)))
+         {
+            awtTextData = awtTextDataCache.get(text);
+            if (awtTextData == null)
+            {
+               awtTextData = createAWTTextData(text);
+               awtTextDataCache.put(text, awtTextData);
+            }
+            return;
+         }
+      }
 
-      if (textData == null)
+      layOutGlyphs(text);
+   }
+
+   private void layOutGlyphs(String text)
+   {
+      ensureGlyphCapacity(text.length());
+
+      float metersPerFontPixel = textHeightMeters / glyphAtlas.getLineHeight();
+      float penX = 0.0f;
+      int numberOfGlyphs = 0;
+      for (int i = 0; i < text.length(); i++)
       {
-         setTextWithoutCache(text);
-         textDataMap.put(text, textData);
+         RDXSDFGlyphAtlas.Glyph glyph = glyphAtlas.getGlyph(text.charAt(i));
+         if (text.charAt(i) != ' ')
+         {
+            float x0 = (penX + glyph.x0) * metersPerFontPixel;
+            float x1 = (penX + glyph.x1) * metersPerFontPixel;
+            float y0 = glyph.y0 * metersPerFontPixel;
+            float y1 = glyph.y1 * metersPerFontPixel;
+            int offset = numberOfGlyphs * FLOATS_PER_GLYPH;
+            // Counter clockwise from the front, which is +Z
+            putVertex(offset, x0, y0, glyph.u0, glyph.v0);
+            putVertex(offset + 5, x1, y0, glyph.u1, glyph.v0);
+            putVertex(offset + 10, x1, y1, glyph.u1, glyph.v1);
+            putVertex(offset + 15, x0, y1, glyph.u0, glyph.v1);
+            ++numberOfGlyphs;
+         }
+         penX += glyph.advance;
       }
+
+      glyphRenderable.meshPart.mesh.setVertices(glyphVertices, 0, numberOfGlyphs * FLOATS_PER_GLYPH);
+      glyphRenderable.meshPart.offset = 0;
+      glyphRenderable.meshPart.size = numberOfGlyphs * 6;
+      // New text of the same length is in the same mesh, so render on demand can't tell it changed
+      RDX3DScene.requestRedrawOfAllScenes();
    }
 
-   public RDX3DSituatedTextData setTextWithoutCache(String text)
+   private void putVertex(int offset, float x, float y, float u, float v)
    {
-      this.currentText = text;
+      glyphVertices[offset] = x;
+      glyphVertices[offset + 1] = y;
+      glyphVertices[offset + 2] = 0.0f;
+      glyphVertices[offset + 3] = u;
+      glyphVertices[offset + 4] = v;
+   }
 
+   /**
+    * The mesh is only reallocated when a longer text than ever before is set.
+    */
+   private void ensureGlyphCapacity(int numberOfGlyphs)
+   {
+      int capacity = glyphVertices.length / FLOATS_PER_GLYPH;
+      if (numberOfGlyphs <= capacity)
+         return;
+
+      capacity = Math.max(numberOfGlyphs, 2 * capacity);
+      glyphVertices = new float[capacity * FLOATS_PER_GLYPH];
+      short[] indices = new short[capacity * 6];
+      for (int i = 0; i < capacity; i++)
+      {
+         short vertex = (short) (4 * i);
+         indices[6 * i] = vertex;
+         indices[6 * i + 1] = (short) (vertex + 1);
+         indices[6 * i + 2] = (short) (vertex + 2);
+         indices[6 * i + 3] = (short) (vertex + 2);
+         indices[6 * i + 4] = (short) (vertex + 3);
+         indices[6 * i + 5] = vertex;
+      }
+
+      if (glyphRenderable.meshPart.mesh != null)
+         glyphRenderable.meshPart.mesh.dispose();
+      boolean isStatic = false;
+      glyphRenderable.meshPart.mesh = new Mesh(isStatic, capacity * 4, capacity * 6, RDXSDFGlyphAtlas.VERTEX_ATTRIBUTES);
+      glyphRenderable.meshPart.mesh.setIndices(indices);
+      glyphRenderable.meshPart.size = 0;
+   }
+
+   private RDX3DSituatedTextData createAWTTextData(String text)
+   {
       // Mostly following this method: https://stackoverflow.com/a/18800845/3503725
       // Create temporary image here in order to get Graphics2D instance
       BufferedImage onePixelImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
       Graphics2D awtGraphics2D = onePixelImage.createGraphics();
-      awtGraphics2D.setFont(awtFont != null ? awtFont : DEFAULT_FONT);
+      awtGraphics2D.setFont(awtFont);
       FontMetrics awtFontMetrics = awtGraphics2D.getFontMetrics();
       int textWidthPixels = text.isEmpty() ? 1 : awtFontMetrics.stringWidth(text);
       int textHeightPixels = awtFontMetrics.getHeight();
@@ -115,7 +227,7 @@ public class RDX3DSituatedText implements RenderableProvider
       awtGraphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
       awtGraphics2D.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
       awtGraphics2D.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
-      awtGraphics2D.setFont(awtFont != null ? awtFont : DEFAULT_FONT);
+      awtGraphics2D.setFont(awtFont);
       awtFontMetrics = awtGraphics2D.getFontMetrics();
       awtGraphics2D.setColor(awtColor);
       int x = 0;
@@ -157,24 +269,43 @@ public class RDX3DSituatedText implements RenderableProvider
       float normalZ = 1.0f;
       Model model = modelBuilder.createRect(x00, y00, z00, x10, y10, z10, x11, y11, z11, x01, y01, z01, normalX, normalY, normalZ, material, attributes);
       ModelInstance modelInstance = new ModelInstance(model);
-      textData = new RDX3DSituatedTextData(pixmap, rgba8888BytePointer, libGDXTexture, model, modelInstance);
-
-      return textData;
+      return new RDX3DSituatedTextData(pixmap, rgba8888BytePointer, libGDXTexture, model, modelInstance);
    }
 
+   /**
+    * Applied when the renderables are gathered.
+    */
    public Matrix4 getModelTransform()
    {
-      return textData.getModelInstance().transform;
+      return transform;
    }
 
    @Override
    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool)
    {
-      textData.getModelInstance().getRenderables(renderables, pool);
+      if (awtTextData != null)
+      {
+         awtTextData.getModelInstance().transform.set(transform);
+         awtTextData.getModelInstance().getRenderables(renderables, pool);
+      }
+      else if (glyphRenderable.meshPart.size > 0)
+      {
+         Renderable renderable = pool.obtain().set(glyphRenderable);
+         renderable.worldTransform.set(transform);
+         renderables.add(renderable);
+      }
    }
 
    public String getCurrentText()
    {
       return currentText;
    }
+
+   public void dispose()
+   {
+      glyphRenderable.meshPart.mesh.dispose();
+      for (RDX3DSituatedTextData textData : awtTextDataCache.values())
+         textData.dispose();
+      awtTextDataCache.clear();
+   }
 }
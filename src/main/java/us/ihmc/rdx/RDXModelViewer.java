@@ -19,7 +19,7 @@ public class RDXModelViewer
             baseUI.getPrimaryScene().addCoordinateFrame(1.0);
 
             Model model = RDXModelLoader.load(modelFileName);
-            baseUI.getPrimaryScene().addModelInstance(new RDXModelInstance(model));
+            baseUI.getPrimaryScene().addStaticModelInstance(new RDXModelInstance(model));
          }
 
          @Override
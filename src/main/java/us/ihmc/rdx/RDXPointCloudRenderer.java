@@ -3,6 +3,8 @@ package us.ihmc.rdx;
 import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.graphics.g3d.*;
 import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.glutils.GLBufferVertexData;
+import com.badlogic.gdx.graphics.glutils.IndexArray;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Pool;
@@ -12,6 +14,7 @@ import us.ihmc.commons.lists.RecyclingArrayList;
 import us.ihmc.euclid.tuple3D.Point3D32;
 import us.ihmc.euclid.tuple3D.interfaces.Tuple3DBasics;
 import us.ihmc.euclid.tuple3D.interfaces.Tuple3DReadOnly;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
 import us.ihmc.rdx.shader.RDXShader;
 import us.ihmc.rdx.shader.RDXUniform;
 
@@ -61,6 +64,7 @@ public class RDXPointCloudRenderer implements RenderableProvider
    private boolean hasTurnedOver = false;
    private int currentSegmentIndex = 0;
    private int maxPoints;
+   private GLBufferVertexData gpuVertexData;
 
    public interface ColorProvider
    {
@@ -99,6 +103,38 @@ public class RDXPointCloudRenderer implements RenderableProvider
       int maxIndices = 0;
       renderable.meshPart.mesh = new Mesh(isStatic, maxPoints, maxIndices, vertexAttributes);
 
+      createShader();
+   }
+
+   /**
+    * For point clouds computed on the GPU, like by {@link us.ihmc.rdx.simulation.DepthSensorPointCloudPass}.
+    * The points are written straight into the GL buffer of {@link #getGPUVertexData()} and
+    * the number of points set with {@link #setNumberOfPointsFromGPU}. The CPU side update methods aren't used.
+    */
+   public void createForGPUBuffer(int maxPoints)
+   {
+      currentSegmentIndex = 0;
+      hasTurnedOver = false;
+      pointsPerSegment = maxPoints;
+      numberOfSegments = 1;
+      this.maxPoints = maxPoints;
+      GL41.glEnable(GL41.GL_VERTEX_PROGRAM_POINT_SIZE);
+
+      renderable = new Renderable();
+      renderable.meshPart.primitiveType = GL41.GL_POINTS;
+      renderable.meshPart.offset = 0;
+      renderable.meshPart.size = 0;
+      renderable.material = new Material(PBRColorAttribute.createBaseColorFactor(Color.WHITE));
+
+      gpuVertexData = new GLBufferVertexData(maxPoints, vertexAttributes);
+      boolean isVertexArray = false;
+      renderable.meshPart.mesh = new Mesh(gpuVertexData, new IndexArray(0), isVertexArray) { };
+
+      createShader();
+   }
+
+   private void createShader()
+   {
       RDXShader shader = new RDXShader(getClass());
       shader.create();
       shader.getBaseShader().register(DefaultShader.Inputs.viewTrans, DefaultShader.Setters.viewTrans);
@@ -146,6 +182,8 @@ public class RDXPointCloudRenderer implements RenderableProvider
 
          renderable.meshPart.size = pointsToRender.size();
          renderable.meshPart.mesh.setVertices(vertices, 0, pointsToRender.size() * floatsPerVertex);
+         // The mesh is the same one, so render on demand can't tell it changed
+         RDX3DScene.requestRedrawOfAllScenes();
 //         renderable.meshPart.update();
       }
    }
@@ -177,6 +215,7 @@ public class RDXPointCloudRenderer implements RenderableProvider
 
          renderable.meshPart.size = pointsToRender.size();
          renderable.meshPart.mesh.setVertices(vertices, 0, pointsToRender.size() * floatsPerVertex);
+         RDX3DScene.requestRedrawOfAllScenes();
          //         renderable.meshPart.update();
       }
    }
@@ -206,12 +245,28 @@ public class RDXPointCloudRenderer implements RenderableProvider
 
       renderable.meshPart.size = pointsToRender.size();
       renderable.meshPart.mesh.setVertices(vertices, 0, pointsToRender.size() * floatsPerVertex);
+      RDX3DScene.requestRedrawOfAllScenes();
       if (!pointsToRender.isEmpty())
       {
 //         renderable.meshPart.update();
       }
    }
 
+   /**
+    * @return null unless created with {@link #createForGPUBuffer}
+    */
+   public GLBufferVertexData getGPUVertexData()
+   {
+      return gpuVertexData;
+   }
+
+   public void setNumberOfPointsFromGPU(int numberOfPoints)
+   {
+      gpuVertexData.setNumberOfVertices(numberOfPoints);
+      renderable.meshPart.size = numberOfPoints;
+      RDX3DScene.requestRedrawOfAllScenes();
+   }
+
    public void updateMeshFastest(Function<FloatBuffer, Integer> bufferConsumer)
    {
       updateMeshFastest(bufferConsumer, currentSegmentIndex);
@@ -240,6 +295,7 @@ public class RDXPointCloudRenderer implements RenderableProvider
       floatBuffer.position(0);
       floatBuffer.limit(numberOfPoints * FLOATS_PER_VERTEX);
       renderable.meshPart.size = numberOfPoints;
+      RDX3DScene.requestRedrawOfAllScenes();
    }
 
    public void updateMeshFastest(int numberOfPoints, int segmentToUpdate)
@@ -280,6 +336,7 @@ public class RDXPointCloudRenderer implements RenderableProvider
          hasTurnedOver = true;
          currentSegmentIndex = 0;
       }
+      RDX3DScene.requestRedrawOfAllScenes();
    }
 
    /**
@@ -312,6 +369,7 @@ public class RDXPointCloudRenderer implements RenderableProvider
          hasTurnedOver = true;
          currentSegmentIndex = 0;
       }
+      RDX3DScene.requestRedrawOfAllScenes();
    }
 
    public void setVertex(int vertexIndex, Tuple3DReadOnly point)
@@ -377,6 +435,7 @@ public class RDXPointCloudRenderer implements RenderableProvider
    {
       renderable.meshPart.size = numberOfPoints;
       renderable.meshPart.mesh.setVertices(vertices, 0, numberOfPoints * floatsPerVertex);
+      RDX3DScene.requestRedrawOfAllScenes();
 //      renderable.meshPart.update();
    }
 
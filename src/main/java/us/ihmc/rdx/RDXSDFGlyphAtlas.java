@@ -0,0 +1,264 @@
+package us.ihmc.rdx;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.IntMap;
+import us.ihmc.log.LogTools;
+import us.ihmc.rdx.shader.RDXShader;
+import us.ihmc.rdx.shader.RDXUniform;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.HashMap;
+
+/**
+ * A signed distance field atlas of a font's glyphs, generated once per font and shared by all
+ * the {@link RDX3DSituatedText} using that font. Each texel stores the distance to the nearest
+ * glyph edge, so the text stays sharp at any size and distance with a single small texture.
+ *
+ * The atlas has the printable ASCII and Latin-1 characters, which covers things like °, ± and µ.
+ */
+public class RDXSDFGlyphAtlas
+{
+   private static final HashMap<Font, RDXSDFGlyphAtlas> FONT_TO_ATLAS = new HashMap<>();
+
+   /** Glyphs are rendered at the font's size, then the distance field is stored at this fraction of that. */
+   private static final int DOWNSAMPLE = 2;
+   /** How far from the edge distances are stored, in atlas texels. */
+   private static final int SPREAD = 4;
+   private static final int ATLAS_WIDTH = 1024;
+
+   public static final VertexAttributes VERTEX_ATTRIBUTES = new VertexAttributes(new VertexAttribute(VertexAttributes.Usage.Position,
+                                                                                                     3,
+                                                                                                     ShaderProgram.POSITION_ATTRIBUTE),
+                                                                                 new VertexAttribute(VertexAttributes.Usage.TextureCoordinates,
+                                                                                                     2,
+                                                                                                     ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+
+   private final IntMap<Glyph> glyphs = new IntMap<>();
+   private final Glyph fallbackGlyph;
+   private final float lineHeight;
+   private final Texture texture;
+   private RDXShader shader;
+
+   /**
+    * Where a glyph is in the atlas and where its quad goes, in font pixels relative to the pen
+    * position at the bottom of the line.
+    */
+   public static class Glyph
+   {
+      float advance;
+      float x0, y0, x1, y1;
+      float u0, v0, u1, v1;
+   }
+
+   /**
+    * Needs to be on the libGDX thread.
+    */
+   public static RDXSDFGlyphAtlas get(Font font)
+   {
+      return FONT_TO_ATLAS.computeIfAbsent(font, RDXSDFGlyphAtlas::new);
+   }
+
+   private RDXSDFGlyphAtlas(Font font)
+   {
+      long startNanos = System.nanoTime();
+
+      BufferedImage onePixelImage = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+      Graphics2D graphics = onePixelImage.createGraphics();
+      graphics.setFont(font);
+      FontMetrics fontMetrics = graphics.getFontMetrics();
+      graphics.dispose();
+      lineHeight = fontMetrics.getHeight();
+      int spreadInFontPixels = SPREAD * DOWNSAMPLE;
+
+      // Compute the distance fields and lay them out in rows
+      HashMap<Integer, byte[]> glyphDistances = new HashMap<>();
+      HashMap<Integer, int[]> glyphCells = new HashMap<>(); // x, y, width, height in the atlas
+      int cellX = 0;
+      int cellY = 0;
+      int rowHeight = 0;
+      for (int character = 32; character < 256; character++)
+      {
+         if ((character > 126 && character < 160) || !font.canDisplay(character))
+            continue;
+
+         int advance = Math.max(1, fontMetrics.charWidth(character));
+         int maskWidth = advance + 2 * spreadInFontPixels;
+         int maskHeight = (int) lineHeight + 2 * spreadInFontPixels;
+         BufferedImage mask = new BufferedImage(maskWidth, maskHeight, BufferedImage.TYPE_BYTE_GRAY);
+         graphics = mask.createGraphics();
+         graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+         graphics.setFont(font);
+         graphics.setColor(Color.WHITE);
+         graphics.drawString(String.valueOf((char) character), spreadInFontPixels, spreadInFontPixels + fontMetrics.getAscent());
+         graphics.dispose();
+
+         int width = (maskWidth + DOWNSAMPLE - 1) / DOWNSAMPLE;
+         int height = (maskHeight + DOWNSAMPLE - 1) / DOWNSAMPLE;
+         glyphDistances.put(character, computeDistanceField(((DataBufferByte) mask.getRaster().getDataBuffer()).getData(),
+                                                            maskWidth,
+                                                            maskHeight,
+                                                            width,
+                                                            height));
+
+         if (cellX + width > ATLAS_WIDTH)
+         {
+            cellX = 0;
+            cellY += rowHeight;
+            rowHeight = 0;
+         }
+         glyphCells.put(character, new int[] {cellX, cellY, width, height});
+         cellX += width;
+         rowHeight = Math.max(rowHeight, height);
+
+         Glyph glyph = new Glyph();
+         glyph.advance = advance;
+         glyph.x0 = -spreadInFontPixels;
+         glyph.x1 = glyph.x0 + width * DOWNSAMPLE;
+         glyph.y1 = lineHeight + spreadInFontPixels;
+         glyph.y0 = glyph.y1 - height * DOWNSAMPLE;
+         glyphs.put(character, glyph);
+      }
+      int atlasHeight = Integer.highestOneBit(Math.max(1, cellY + rowHeight - 1)) << 1;
+
+      Pixmap pixmap = new Pixmap(ATLAS_WIDTH, atlasHeight, Pixmap.Format.RGBA8888);
+      pixmap.setBlending(Pixmap.Blending.None);
+      for (IntMap.Entry<Glyph> entry : glyphs)
+      {
+         int[] cell = glyphCells.get(entry.key);
+         byte[] distances = glyphDistances.get(entry.key);
+         for (int y = 0; y < cell[3]; y++)
+         {
+            for (int x = 0; x < cell[2]; x++)
+            {
+               int distance = distances[y * cell[2] + x] & 0xFF;
+               pixmap.drawPixel(cell[0] + x, cell[1] + y, 0xFFFFFF00 | distance);
+            }
+         }
+
+         // Row 0 of the pixmap is v = 0
+         Glyph glyph = entry.value;
+         glyph.u0 = cell[0] / (float) ATLAS_WIDTH;
+         glyph.u1 = (cell[0] + cell[2]) / (float) ATLAS_WIDTH;
+         glyph.v0 = (cell[1] + cell[3]) / (float) atlasHeight;
+         glyph.v1 = cell[1] / (float) atlasHeight;
+      }
+
+      texture = new Texture(pixmap);
+      texture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+      pixmap.dispose();
+
+      Glyph questionMark = glyphs.get('?');
+      fallbackGlyph = questionMark != null ? questionMark : glyphs.values().next();
+
+      LogTools.info("Generated {} glyph SDF atlas of {} {}pt ({}x{}) in {} ms",
+                    glyphs.size,
+                    font.getName(),
+                    font.getSize(),
+                    ATLAS_WIDTH,
+                    atlasHeight,
+                    (System.nanoTime() - startNanos) / 1000000);
+   }
+
+   /**
+    * For each output texel, finds the nearest mask pixel on the other side of the edge, searching up to
+    * the spread. 0.5 is on the edge, higher is inside.
+    */
+   private static byte[] computeDistanceField(byte[] mask, int maskWidth, int maskHeight, int width, int height)
+   {
+      byte[] distances = new byte[width * height];
+      int searchRadius = SPREAD * DOWNSAMPLE;
+      for (int y = 0; y < height; y++)
+      {
+         for (int x = 0; x < width; x++)
+         {
+            int centerX = x * DOWNSAMPLE + DOWNSAMPLE / 2;
+            int centerY = y * DOWNSAMPLE + DOWNSAMPLE / 2;
+            boolean inside = isInside(mask, maskWidth, maskHeight, centerX, centerY);
+            int closestSquared = searchRadius * searchRadius;
+            for (int searchY = -searchRadius; searchY <= searchRadius; searchY++)
+            {
+               for (int searchX = -searchRadius; searchX <= searchRadius; searchX++)
+               {
+                  int distanceSquared = searchX * searchX + searchY * searchY;
+                  if (distanceSquared < closestSquared && isInside(mask, maskWidth, maskHeight, centerX + searchX, centerY + searchY) != inside)
+                     closestSquared = distanceSquared;
+               }
+            }
+            float signedDistance = (float) Math.sqrt(closestSquared) / searchRadius * (inside ? 1.0f : -1.0f);
+            distances[y * width + x] = (byte) Math.round(255.0f * Math.max(0.0f, Math.min(1.0f, 0.5f + 0.5f * signedDistance)));
+         }
+      }
+      return distances;
+   }
+
+   private static boolean isInside(byte[] mask, int maskWidth, int maskHeight, int x, int y)
+   {
+      return x >= 0 && y >= 0 && x < maskWidth && y < maskHeight && (mask[y * maskWidth + x] & 0xFF) >= 128;
+   }
+
+   /**
+    * @return the '?' glyph for characters not in the atlas
+    */
+   public Glyph getGlyph(char character)
+   {
+      Glyph glyph = glyphs.get(character);
+      return glyph != null ? glyph : fallbackGlyph;
+   }
+
+   public boolean hasGlyph(char character)
+   {
+      return glyphs.containsKey(character);
+   }
+
+   /** In font pixels. */
+   public float getLineHeight()
+   {
+      return lineHeight;
+   }
+
+   /**
+    * Shared by all text using this atlas. The text color comes from the
+    * renderable's {@link ColorAttribute#Diffuse}.
+    */
+   public Shader getShader(Renderable renderable)
+   {
+      if (shader == null)
+      {
+         shader = new RDXShader(getClass());
+         shader.create();
+         shader.setBlendingEnabled(true);
+         shader.getBaseShader().register(DefaultShader.Inputs.projViewTrans, DefaultShader.Setters.projViewTrans);
+         shader.getBaseShader().register(DefaultShader.Inputs.worldTrans, DefaultShader.Setters.worldTrans);
+         shader.registerUniform(RDXUniform.createGlobalUniform("u_atlas", (baseShader, inputID, textRenderable, combinedAttributes) ->
+         {
+            baseShader.set(inputID, baseShader.context.textureBinder.bind(texture));
+         }));
+         shader.registerUniform(RDXUniform.createLocalUniform("u_color", (baseShader, inputID, textRenderable, combinedAttributes) ->
+         {
+            baseShader.set(inputID, ((ColorAttribute) textRenderable.material.get(ColorAttribute.Diffuse)).color);
+         }));
+         shader.init(renderable);
+      }
+      return shader.getBaseShader();
+   }
+
+   public Texture getTexture()
+   {
+      return texture;
+   }
+}
@@ -28,6 +28,7 @@ public class RDXSettings
    private boolean plotFrameRate = false;
    private boolean vsync = false;
    private boolean lockPanelsWithinWindows = true;
+   private boolean renderOnDemand = false;
    private int foregroundFPSLimit = 240;
    private int libGDXLogLevel = 2;
    private int fontSize = ImGuiTools.DEFAULT_FONT_SIZE;
@@ -67,6 +68,17 @@ public class RDXSettings
       saveAsync();
    }
 
+   public boolean renderOnDemandEnabled()
+   {
+      return renderOnDemand;
+   }
+
+   public void setRenderOnDemand(boolean renderOnDemand)
+   {
+      this.renderOnDemand = renderOnDemand;
+      saveAsync();
+   }
+
    public int getForegroundFPSLimit()
    {
       return foregroundFPSLimit;
@@ -137,6 +149,7 @@ public class RDXSettings
       properties.setProperty("plotFrameRate", String.valueOf(plotFrameRate));
       properties.setProperty("vsync", String.valueOf(vsync));
       properties.setProperty("lockPanelsWithinWindows", String.valueOf(lockPanelsWithinWindows));
+      properties.setProperty("renderOnDemand", String.valueOf(renderOnDemand));
       properties.setProperty("foregroundFPSLimit", String.valueOf(foregroundFPSLimit));
       properties.setProperty("libgdxLogLevel", String.valueOf(libGDXLogLevel));
       properties.setProperty("fontSize", String.valueOf(fontSize));
@@ -185,6 +198,7 @@ public class RDXSettings
          plotFrameRate = Boolean.parseBoolean(properties.getProperty("plotFrameRate"));
          vsync = Boolean.parseBoolean(properties.getProperty("vsync"));
          lockPanelsWithinWindows = Boolean.parseBoolean(properties.getProperty("lockPanelsWithinWindows", "true"));
+         renderOnDemand = Boolean.parseBoolean(properties.getProperty("renderOnDemand", "false"));
          foregroundFPSLimit = Integer.parseInt(properties.getProperty("foregroundFPSLimit"));
          libGDXLogLevel = Integer.parseInt(properties.getProperty("libgdxLogLevel"));
          fontSize = Integer.parseInt(properties.getProperty("fontSize"));
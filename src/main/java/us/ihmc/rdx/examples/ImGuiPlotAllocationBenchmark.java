@@ -0,0 +1,109 @@
+package us.ihmc.rdx.examples;
+
+import imgui.internal.ImGui;
+import us.ihmc.commons.thread.ThreadTools;
+import us.ihmc.log.LogTools;
+import us.ihmc.rdx.imgui.ImGuiGlfwWindow;
+import us.ihmc.rdx.imgui.ImGuiNumberText;
+import us.ihmc.rdx.imgui.ImGuiPlot;
+import us.ihmc.rdx.imgui.ImGuiUniqueLabelMap;
+import us.ihmc.rdx.imgui.ImPlotDoublePlot;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Drives a panel of 100 plots and reports how many bytes the render thread allocates per frame,
+ * for catching allocation regressions in the ImGui widgets. Half of the ImPlot plots are fed
+ * from a producer thread through their sample queues.
+ */
+public class ImGuiPlotAllocationBenchmark
+{
+   private static final int NUMBER_OF_PLOTS = 100;
+   private static final double LOG_PERIOD = 5.0;
+
+   private final ImGuiUniqueLabelMap labels = new ImGuiUniqueLabelMap(getClass());
+   private final ImPlotDoublePlot[] imPlotPlots = new ImPlotDoublePlot[NUMBER_OF_PLOTS / 2];
+   private final ImGuiPlot[] imGuiPlots = new ImGuiPlot[NUMBER_OF_PLOTS / 2];
+   private final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+   private final ImGuiNumberText bytesPerFrameText = new ImGuiNumberText("Allocated per frame: ", " bytes");
+   private long lastAllocatedBytes = -1;
+   private long frameCount = 0;
+   private long allocatedBytesSinceLog = 0;
+   private long framesSinceLog = 0;
+   private long lastLogNanos = System.nanoTime();
+
+   public ImGuiPlotAllocationBenchmark()
+   {
+      for (int i = 0; i < imPlotPlots.length; i++)
+         imPlotPlots[i] = new ImPlotDoublePlot("ImPlot " + i, 40);
+      for (int i = 0; i < imGuiPlots.length; i++)
+         imGuiPlots[i] = new ImGuiPlot("ImGui " + i, 1000, 230, 40);
+
+      ThreadTools.startAsDaemon(this::produce, getClass().getSimpleName() + "Producer");
+
+      ImGuiGlfwWindow imGuiGlfwWindow = new ImGuiGlfwWindow(getClass());
+      imGuiGlfwWindow.setEnableVsync(false);
+      imGuiGlfwWindow.runWithSinglePanel(this::renderImGuiWidgets);
+   }
+
+   private void produce()
+   {
+      while (true)
+      {
+         double time = System.nanoTime() * 1.0e-9;
+         for (int i = 0; i < imPlotPlots.length; i += 2)
+            imPlotPlots[i].queueValue(Math.sin(time + i));
+         ThreadTools.sleep(1);
+      }
+   }
+
+   private void renderImGuiWidgets()
+   {
+      long threadID = Thread.currentThread().getId();
+      long allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadID);
+      long bytesThisFrame = lastAllocatedBytes < 0 ? 0 : allocatedBytes - lastAllocatedBytes;
+      ++frameCount;
+
+      ImGui.text(bytesPerFrameText.format(bytesThisFrame));
+
+      double time = System.nanoTime() * 1.0e-9;
+      for (int i = 0; i < imPlotPlots.length; i++)
+      {
+         if (i % 2 == 1)
+            imPlotPlots[i].addValue(Math.sin(time + i));
+         imPlotPlots[i].renderImGuiWidgets();
+      }
+      for (int i = 0; i < imGuiPlots.length; i++)
+      {
+         ImGui.text(labels.get("Plot", i));
+         ImGui.sameLine();
+         imGuiPlots[i].render(Math.cos(time + i));
+      }
+
+      // Measured after the widgets, so this frame's allocations are attributed to it
+      long allocatedBytesAfter = threadMXBean.getThreadAllocatedBytes(threadID);
+      if (lastAllocatedBytes >= 0 && frameCount > 100) // skip warm up, where labels and caches get created
+      {
+         allocatedBytesSinceLog += allocatedBytesAfter - allocatedBytes;
+         ++framesSinceLog;
+      }
+      lastAllocatedBytes = allocatedBytesAfter;
+
+      long now = System.nanoTime();
+      if ((now - lastLogNanos) * 1.0e-9 > LOG_PERIOD && framesSinceLog > 0)
+      {
+         LogTools.info("{} plots: {} bytes allocated per frame on average over {} frames",
+                       NUMBER_OF_PLOTS,
+                       allocatedBytesSinceLog / framesSinceLog,
+                       framesSinceLog);
+         allocatedBytesSinceLog = 0;
+         framesSinceLog = 0;
+         lastLogNanos = now;
+      }
+   }
+
+   public static void main(String[] args)
+   {
+      new ImGuiPlotAllocationBenchmark();
+   }
+}
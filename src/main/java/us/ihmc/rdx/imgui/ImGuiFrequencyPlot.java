@@ -10,6 +10,7 @@ public class ImGuiFrequencyPlot
    private final ImGuiPlot receivedPlot = new ImGuiPlot("Hz", 1000, 230, 20);
    private final Stopwatch stopwatch = new Stopwatch().start();
    private volatile double elapsedSinceReceived = Double.NaN;
+   private final ImGuiNumberText receivedCountText = new ImGuiNumberText("# ", "");
 
    public void recordEvent()
    {
@@ -19,7 +20,7 @@ public class ImGuiFrequencyPlot
 
    public void renderImGuiWidgets()
    {
-      ImGui.text("# " + receivedCount);
+      ImGui.text(receivedCountText.format(receivedCount));
       ImGui.sameLine();
       receivedPlot.render((float) UnitConversions.secondsToHertz(elapsedSinceReceived));
    }
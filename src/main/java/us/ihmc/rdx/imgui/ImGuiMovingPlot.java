@@ -11,9 +11,9 @@ public class ImGuiMovingPlot
 
    private final String name;
    private final int bufferSize;
-   private final float[] valuesA;
-   private final float[] valuesB;
-   private boolean isA = true;
+   /** Ring buffer, the newest value is right before nextIndex */
+   private final float[] values;
+   private int nextIndex = 0;
    private final int width;
    private final int height;
    private float nextValue = Float.NaN;
@@ -33,12 +33,10 @@ public class ImGuiMovingPlot
    {
       this.name = ImGuiTools.uniqueLabel(getClass().getSimpleName() + ID.getAndIncrement(), name);
       this.bufferSize = bufferSize;
-      valuesA = new float[bufferSize];
-      valuesB = new float[bufferSize];
+      values = new float[bufferSize];
       this.width = width;
       this.height = height;
-      Arrays.fill(valuesA, Float.NaN);
-      Arrays.fill(valuesB, Float.NaN);
+      Arrays.fill(values, Float.NaN);
    }
 
    public void setRenderValueText(boolean renderValueText)
@@ -72,12 +70,10 @@ public class ImGuiMovingPlot
 
    public void calculate(String valueText, boolean render)
    {
-      System.arraycopy(isA ? valuesB : valuesA, 1, isA ? valuesA : valuesB, 0, bufferSize - 1);
-      float[] values = isA ? valuesA : valuesB;
-      isA = !isA;
-      values[bufferSize - 1] = nextValue;
-      if (render)
-         ImGui.plotLines(name, values, bufferSize, 0, valueText, Float.MAX_VALUE, Float.MAX_VALUE, width, height);
+      values[nextIndex] = nextValue;
+      nextIndex = (nextIndex + 1) % bufferSize;
+      if (render) // ImGui starts reading at the offset, the oldest value, and wraps around
+         ImGui.plotLines(name, values, bufferSize, nextIndex, valueText, Float.MAX_VALUE, Float.MAX_VALUE, width, height);
 
       setNextValue(Float.NaN);
    }
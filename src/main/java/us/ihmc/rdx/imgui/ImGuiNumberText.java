@@ -0,0 +1,88 @@
+package us.ihmc.rdx.imgui;
+
+/**
+ * Formats numbers, with an optional prefix and suffix, into a reused buffer and only creates
+ * a new String when the text changes. Widgets that show a value every frame then don't allocate
+ * on the frames where the value doesn't visibly change, like counters and rounded values.
+ */
+public class ImGuiNumberText
+{
+   private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L};
+   /** Past this, fall back to StringBuilder's formatting, because the scaled value could overflow. */
+   private static final double MAXIMUM_FIXED_POINT_MAGNITUDE = 1.0e9;
+
+   private final String prefix;
+   private final String suffix;
+   private final StringBuilder builder = new StringBuilder();
+   private String text = "";
+
+   public ImGuiNumberText()
+   {
+      this("", "");
+   }
+
+   public ImGuiNumberText(String prefix, String suffix)
+   {
+      this.prefix = prefix;
+      this.suffix = suffix;
+   }
+
+   public String format(long value)
+   {
+      builder.setLength(0);
+      builder.append(prefix);
+      builder.append(value);
+      builder.append(suffix);
+      return updateText();
+   }
+
+   /**
+    * @param decimals digits after the decimal point, 0 to 9
+    */
+   public String format(double value, int decimals)
+   {
+      builder.setLength(0);
+      builder.append(prefix);
+      appendFixedPoint(builder, value, decimals);
+      builder.append(suffix);
+      return updateText();
+   }
+
+   private String updateText()
+   {
+      if (!text.contentEquals(builder))
+         text = builder.toString();
+      return text;
+   }
+
+   /**
+    * Like {@link java.text.DecimalFormat} with a pattern like "0.000", but without allocating.
+    */
+   public static void appendFixedPoint(StringBuilder builder, double value, int decimals)
+   {
+      if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= MAXIMUM_FIXED_POINT_MAGNITUDE)
+      {
+         builder.append(value);
+         return;
+      }
+
+      long scale = POWERS_OF_TEN[decimals];
+      long scaledMagnitude = Math.round(Math.abs(value) * scale);
+      if (value < 0.0 && scaledMagnitude != 0)
+         builder.append('-');
+      builder.append(scaledMagnitude / scale);
+      if (decimals > 0)
+      {
+         builder.append('.');
+         long fraction = scaledMagnitude % scale;
+         for (int digit = decimals - 1; digit > 0 && fraction < POWERS_OF_TEN[digit]; digit--)
+            builder.append('0');
+         builder.append(fraction);
+      }
+   }
+
+   public String getText()
+   {
+      return text;
+   }
+}
@@ -17,6 +17,7 @@ public class ImGuiPlot
    private float yScaleMinValue = Float.MAX_VALUE;
    private float yScaleMaxValue = Float.MAX_VALUE;
    private int index = 0;
+   private final ImGuiNumberText overlayText = new ImGuiNumberText();
 
    public ImGuiPlot(String name)
    {
@@ -61,7 +62,7 @@ public class ImGuiPlot
 
    public void render()
    {
-      ImGui.plotLines(name, values, bufferSize, 0, "" + values[index], yScaleMinValue, yScaleMaxValue, width, height);
+      ImGui.plotLines(name, values, bufferSize, 0, overlayText.format(values[index], 3), yScaleMinValue, yScaleMaxValue, width, height);
 
       ++index;
       if (index >= bufferSize - 1)
@@ -1,32 +1,36 @@
 package us.ihmc.rdx.imgui;
 
+import com.badlogic.gdx.utils.IntMap;
+
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Use this class to create ImGui labels without reallocating the Strings every tick.
  * This is necessary for some widgets to have unique IDs so they display the same text
  * but are still addressable under the hood uniquely.
+ *
+ * The labels are cached per visible label, then per qualifier, so looking them up
+ * doesn't concatenate anything. Instances are used from the render thread, but can be
+ * created from any thread.
  */
 public class ImGuiUniqueLabelMap
 {
-   private static final HashMap<String, AtomicInteger> CLASS_TO_INDEX = new HashMap<>();
+   private static final ConcurrentHashMap<String, AtomicInteger> CLASS_TO_INDEX = new ConcurrentHashMap<>();
 
    private final HashMap<String, String> namesToLabels = new HashMap<>();
    private final HashMap<String, String> hiddenNamesToLabels = new HashMap<>();
+   private final HashMap<String, HashMap<String, String>> qualifiedNamesToLabels = new HashMap<>();
+   private final HashMap<String, IntMap<String>> indexedNamesToLabels = new HashMap<>();
+   private final HashMap<String, HashMap<String, IntMap<String>>> qualifiedIndexedNamesToLabels = new HashMap<>();
    private final int index;
    private final String classSimpleName;
 
    public ImGuiUniqueLabelMap(Class<?> clazz)
    {
       classSimpleName = clazz.getSimpleName();
-      AtomicInteger classIndex = CLASS_TO_INDEX.get(classSimpleName);
-      if (classIndex == null)
-      {
-         classIndex = new AtomicInteger();
-         CLASS_TO_INDEX.put(classSimpleName, classIndex);
-      }
-      index = classIndex.getAndIncrement();
+      index = CLASS_TO_INDEX.computeIfAbsent(classSimpleName, name -> new AtomicInteger()).getAndIncrement();
    }
 
    public String get(String visibleLabel)
@@ -53,33 +57,37 @@ public class ImGuiUniqueLabelMap
 
    public String get(String visibleLabel, String hiddenQualifier)
    {
-      String label = namesToLabels.get(visibleLabel + hiddenQualifier);
+      HashMap<String, String> qualifiersToLabels = qualifiedNamesToLabels.computeIfAbsent(visibleLabel, name -> new HashMap<>());
+      String label = qualifiersToLabels.get(hiddenQualifier);
       if (label == null)
       {
          label = ImGuiTools.uniqueLabel(classSimpleName + index + "_" + hiddenQualifier, visibleLabel);
-         namesToLabels.put(visibleLabel, label);
+         qualifiersToLabels.put(hiddenQualifier, label);
       }
       return label;
    }
 
    public String get(String visibleLabel, int moreSpecificIndex)
    {
-      String label = namesToLabels.get(visibleLabel + moreSpecificIndex);
+      IntMap<String> indexesToLabels = indexedNamesToLabels.computeIfAbsent(visibleLabel, name -> new IntMap<>());
+      String label = indexesToLabels.get(moreSpecificIndex);
       if (label == null)
       {
          label = ImGuiTools.uniqueLabel(classSimpleName + index + "_" + moreSpecificIndex, visibleLabel);
-         namesToLabels.put(visibleLabel + moreSpecificIndex, label);
+         indexesToLabels.put(moreSpecificIndex, label);
       }
       return label;
    }
 
    public String get(String visibleLabel, String hiddenQualifier, int moreSpecificIndex)
    {
-      String label = namesToLabels.get(visibleLabel + hiddenQualifier + moreSpecificIndex);
+      IntMap<String> indexesToLabels = qualifiedIndexedNamesToLabels.computeIfAbsent(visibleLabel, name -> new HashMap<>())
+                                                                               .computeIfAbsent(hiddenQualifier, qualifier -> new IntMap<>());
+      String label = indexesToLabels.get(moreSpecificIndex);
       if (label == null)
       {
          label = ImGuiTools.uniqueLabel(classSimpleName + index + "_" + moreSpecificIndex + "_" + hiddenQualifier, visibleLabel);
-         namesToLabels.put(visibleLabel + moreSpecificIndex, label);
+         indexesToLabels.put(moreSpecificIndex, label);
       }
       return label;
    }
@@ -1,5 +1,7 @@
 package us.ihmc.rdx.imgui;
 
+import java.text.DecimalFormat;
+
 public class ImPlotDoublePlot
 {
    private final ImPlotPlot plot;
@@ -17,11 +19,31 @@ public class ImPlotDoublePlot
       plot.getPlotLines().add(plotLine);
    }
 
+   /**
+    * Long histories are fine, as only about two points per pixel get drawn.
+    *
+    * @param history in seconds
+    */
+   public ImPlotDoublePlot(String name, int heightInPixels, int bufferSize, double history)
+   {
+      plot = new ImPlotPlot(heightInPixels);
+      plotLine = new ImPlotDoublePlotLine(name, bufferSize, history, new DecimalFormat("0.00000"));
+      plot.getPlotLines().add(plotLine);
+   }
+
    public void addValue(double value)
    {
       plotLine.addValue(value);
    }
 
+   /**
+    * For adding values from a thread other than the render thread.
+    */
+   public void queueValue(double value)
+   {
+      plotLine.queueValue(value);
+   }
+
    public void renderImGuiWidgets()
    {
       plot.render();
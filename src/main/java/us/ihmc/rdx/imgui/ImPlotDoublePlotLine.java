@@ -12,7 +12,6 @@ import java.text.DecimalFormat;
 public class ImPlotDoublePlotLine extends ImPlotWallTimeScrollingPlotLine
 {
    private final DecimalFormat decimalFormatter;
-   private final ImPlotPlotLineDoubleSwapBuffer doubleSwapBuffer;
 
    public ImPlotDoublePlotLine(String variableName)
    {
@@ -21,23 +20,19 @@ public class ImPlotDoublePlotLine extends ImPlotWallTimeScrollingPlotLine
 
    public ImPlotDoublePlotLine(String variableName, int bufferSize, double history, DecimalFormat decimalFormatter)
    {
-      super(variableName, "NaN", bufferSize, history);
+      super(variableName, Double.NaN, Math.min(9, decimalFormatter.getMaximumFractionDigits()), bufferSize, history);
       this.decimalFormatter = decimalFormatter;
-
-      doubleSwapBuffer = new ImPlotPlotLineDoubleSwapBuffer();
-      setSwapBuffer(doubleSwapBuffer);
    }
 
    public void addValue(double value)
    {
-      doubleSwapBuffer.addValue(value);
-      super.addValue(decimalFormatter.format(value));
+      addValueFromRenderThread(value);
    }
 
    @Override
-   public String getValueString(int bufferIndex)
+   protected String formatValue(double value)
    {
-      return decimalFormatter.format(doubleSwapBuffer.getValue(bufferIndex));
+      return decimalFormatter.format(value);
    }
 
    public void setLimitYMin(double minLimitY)
@@ -45,9 +40,9 @@ public class ImPlotDoublePlotLine extends ImPlotWallTimeScrollingPlotLine
       double limitY = minLimitY;
       for (int i = 0; i < getBufferSize(); i++)
       {
-         if (!Double.isNaN(doubleSwapBuffer.getValue(i)))
+         if (!Double.isNaN(getValue(i)))
          {
-            limitY = Math.max(doubleSwapBuffer.getValue(i), limitY);
+            limitY = Math.max(getValue(i), limitY);
          }
       }
       ImPlot.setNextPlotLimitsY(0.0, limitY, ImGuiCond.Always);
@@ -2,8 +2,6 @@ package us.ihmc.rdx.imgui;
 
 public class ImPlotIntegerPlotLine extends ImPlotWallTimeScrollingPlotLine
 {
-   private final ImPlotPlotLineIntegerSwapBuffer integerSwapBuffer;
-
    public ImPlotIntegerPlotLine(String variableName)
    {
       this(variableName, 100, 3.0);
@@ -11,21 +9,17 @@ public class ImPlotIntegerPlotLine extends ImPlotWallTimeScrollingPlotLine
 
    public ImPlotIntegerPlotLine(String variableName, int bufferSize, double history)
    {
-      super(variableName, "0", bufferSize, history);
-
-      integerSwapBuffer = new ImPlotPlotLineIntegerSwapBuffer();
-      setSwapBuffer(integerSwapBuffer);
+      super(variableName, 0.0, 0, bufferSize, history);
    }
 
    public void addValue(int value)
    {
-      integerSwapBuffer.addValue(value);
-      super.addValue(String.valueOf(value));
+      addValueFromRenderThread(value);
    }
 
    @Override
-   public String getValueString(int bufferIndex)
+   protected String formatValue(double value)
    {
-      return String.valueOf(integerSwapBuffer.getValue(bufferIndex));
+      return String.valueOf((int) value);
    }
 }
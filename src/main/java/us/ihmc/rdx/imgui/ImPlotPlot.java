@@ -89,6 +89,7 @@ public class ImPlotPlot
          boolean showingLegendPopup = false;
          for (ImPlotPlotLine plotLine : plotLines)
          {
+            plotLine.setPlotWidthInPixels(plotWidth);
             showingLegendPopup |= plotLine.render();
          }
 
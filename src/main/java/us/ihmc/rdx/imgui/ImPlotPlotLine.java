@@ -7,4 +7,11 @@ public interface ImPlotPlotLine
    public String getVariableName();
 
    public String getValueString(int bufferIndex);
+
+   /**
+    * Called before {@link #render()} so lines can draw fewer points when they have more values than pixels.
+    */
+   public default void setPlotWidthInPixels(float plotWidthInPixels)
+   {
+   }
 }
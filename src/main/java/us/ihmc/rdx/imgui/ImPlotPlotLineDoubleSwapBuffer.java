@@ -1,19 +1,19 @@
 package us.ihmc.rdx.imgui;
 
-import imgui.extension.implot.ImPlot;
-import us.ihmc.tools.thread.SwapReference;
-
+/**
+ * @deprecated Use {@link ImPlotDoublePlotLine}, or extend {@link ImPlotWallTimeScrollingPlotLine}
+ *             without a swap buffer. This one keeps its values in an {@link ImPlotPlotLineRingBuffer}.
+ */
+@Deprecated
 public class ImPlotPlotLineDoubleSwapBuffer implements ImPlotPlotLineSwapBuffer
 {
-   private SwapReference<double[]> yValues;
-   private int bufferSize;
+   private ImPlotPlotLineRingBuffer ringBuffer;
    private double value = Double.NaN;
 
    @Override
    public void initialize(int bufferSize)
    {
-      this.bufferSize = bufferSize;
-      yValues = new SwapReference<>(() -> ImPlotTools.newNaNFilledBuffer(bufferSize));
+      ringBuffer = new ImPlotPlotLineRingBuffer(bufferSize, Double.NaN);
    }
 
    public void addValue(double value)
@@ -24,44 +24,41 @@ public class ImPlotPlotLineDoubleSwapBuffer implements ImPlotPlotLineSwapBuffer
    @Override
    public void setAValue(int index)
    {
-      yValues.getA()[index] = value;
+      ringBuffer.set(index, value);
    }
 
    @Override
    public void setPreviousValue(int index)
    {
-      yValues.getForThreadOne()[index] = value;
+      ringBuffer.set(index, value);
    }
 
    @Override
    public void setUpdatedValue(int index)
    {
-      yValues.getForThreadTwo()[index] = value;
+      ringBuffer.set(index, value);
    }
 
    @Override
    public void copyAToB()
    {
-      System.arraycopy(yValues.getA(), 0, yValues.getB(), 0, bufferSize);
+      // There's only the one ring
    }
 
    @Override
    public void copyPreviousToUpdated(int srcPos, int destPos, int length)
    {
-      double[] previousValues = yValues.getForThreadOne();
-      double[] updatedValues = yValues.getForThreadTwo();
-      System.arraycopy(previousValues, srcPos, updatedValues, 0, length);
-      yValues.swap();
+      ringBuffer.scroll(srcPos);
    }
 
    @Override
    public void plot(String labelID, double[] xValues, int offset)
    {
-      ImPlot.plotLine(labelID, xValues, yValues.getForThreadOne(), xValues.length, offset);
+      ringBuffer.plot(labelID, Float.NaN);
    }
 
    public double getValue(int bufferIndex)
    {
-      return yValues.getForThreadOne()[bufferIndex];
+      return ringBuffer.get(bufferIndex);
    }
 }
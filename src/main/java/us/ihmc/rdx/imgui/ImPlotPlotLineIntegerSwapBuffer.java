@@ -1,21 +1,19 @@
 package us.ihmc.rdx.imgui;
 
-import imgui.extension.implot.ImPlot;
-
+/**
+ * @deprecated Use {@link ImPlotIntegerPlotLine}, or extend {@link ImPlotWallTimeScrollingPlotLine}
+ *             without a swap buffer. This one keeps its values in an {@link ImPlotPlotLineRingBuffer}.
+ */
+@Deprecated
 public class ImPlotPlotLineIntegerSwapBuffer implements ImPlotPlotLineSwapBuffer
 {
-   private double[] yValuesA;
-   private double[] yValuesB;
-   private int bufferSize;
+   private ImPlotPlotLineRingBuffer ringBuffer;
    private int value = 0;
-   private boolean isA = true;
 
    @Override
    public void initialize(int bufferSize)
    {
-      this.bufferSize = bufferSize;
-      yValuesA = ImPlotTools.newZeroFilledBuffer(bufferSize);
-      yValuesB = ImPlotTools.newZeroFilledBuffer(bufferSize);
+      ringBuffer = new ImPlotPlotLineRingBuffer(bufferSize, 0.0);
    }
 
    public void addValue(int value)
@@ -26,58 +24,41 @@ public class ImPlotPlotLineIntegerSwapBuffer implements ImPlotPlotLineSwapBuffer
    @Override
    public void setAValue(int index)
    {
-      yValuesA[index] = value;
+      ringBuffer.set(index, value);
    }
 
    @Override
    public void setPreviousValue(int index)
    {
-      if (isA)
-      {
-         yValuesA[index] = value;
-      }
-      else
-      {
-         yValuesB[index] = value;
-      }
+      ringBuffer.set(index, value);
    }
 
    @Override
    public void setUpdatedValue(int index)
    {
-      if (isA)
-      {
-         yValuesB[index] = value;
-      }
-      else
-      {
-         yValuesA[index] = value;
-      }
+      ringBuffer.set(index, value);
    }
 
    @Override
    public void copyAToB()
    {
-      System.arraycopy(yValuesA, 0, yValuesB, 0, bufferSize);
+      // There's only the one ring
    }
 
    @Override
    public void copyPreviousToUpdated(int srcPos, int destPos, int length)
    {
-      double[] previousValues = isA ? yValuesA : yValuesB;
-      double[] updatedValues = isA ? yValuesB : yValuesA;
-      System.arraycopy(previousValues, srcPos, updatedValues, 0, length);
-      isA = !isA;
+      ringBuffer.scroll(srcPos);
    }
 
    @Override
    public void plot(String labelID, double[] xValues, int offset)
    {
-      ImPlot.plotLine(labelID, xValues, isA ? yValuesA : yValuesB, xValues.length, offset);
+      ringBuffer.plot(labelID, Float.NaN);
    }
 
    public int getValue(int bufferIndex)
    {
-      return (int) (isA ? yValuesA[bufferIndex] : yValuesB[bufferIndex]);
+      return (int) ringBuffer.get(bufferIndex);
    }
 }
@@ -0,0 +1,180 @@
+package us.ihmc.rdx.imgui;
+
+import imgui.extension.implot.ImPlot;
+
+import java.util.Arrays;
+
+/**
+ * The history of a plot line's values. When scrolling, the oldest values get overwritten
+ * and the start of the ring moves, so the values never have to be shifted. ImPlot reads
+ * the ring in order using the offset argument of plotLine.
+ * <p>
+ * For long histories, there is also a min/max pyramid. Level n has a bucket for every 2^n
+ * values with their min and max, and gets updated along with each value that's set.
+ * When there are more values than pixels, the level that has about one bucket per pixel
+ * is drawn instead, two points per bucket, which keeps the spikes visible.
+ */
+public class ImPlotPlotLineRingBuffer
+{
+   /** There's no point decimating to fewer buckets than this. */
+   private static final int MINIMUM_BUCKETS = 32;
+
+   private final int bufferSize;
+   private final double[] values;
+   private int start = 0;
+   /** Number of values that have scrolled off, so start + index is the value's absolute index */
+   private long numberOfScrolledValues = 0;
+   // [level - 1][bucket ring index]
+   private final double[][] levelMins;
+   private final double[][] levelMaxes;
+   private final double[] decimatedXValues;
+   private final double[] decimatedYValues;
+
+   public ImPlotPlotLineRingBuffer(int bufferSize, double initialValue)
+   {
+      this.bufferSize = bufferSize;
+      values = new double[bufferSize];
+      Arrays.fill(values, initialValue);
+
+      int numberOfLevels = 0;
+      while ((bufferSize >> (numberOfLevels + 1)) >= MINIMUM_BUCKETS)
+         ++numberOfLevels;
+      levelMins = new double[numberOfLevels][];
+      levelMaxes = new double[numberOfLevels][];
+      for (int level = 1; level <= numberOfLevels; level++)
+      {
+         // +2 for the partial buckets at either end
+         levelMins[level - 1] = new double[(bufferSize >> level) + 2];
+         levelMaxes[level - 1] = new double[(bufferSize >> level) + 2];
+         Arrays.fill(levelMins[level - 1], initialValue);
+         Arrays.fill(levelMaxes[level - 1], initialValue);
+      }
+      int maximumDecimatedPoints = numberOfLevels == 0 ? 0 : 2 * levelMins[0].length;
+      decimatedXValues = new double[maximumDecimatedPoints];
+      decimatedYValues = new double[maximumDecimatedPoints];
+   }
+
+   /**
+    * @param index 0 is the oldest value and bufferSize - 1 the newest
+    */
+   public void set(int index, double value)
+   {
+      values[toRingIndex(index)] = value;
+
+      long absoluteIndex = numberOfScrolledValues + index;
+      for (int level = 1; level <= levelMins.length; level++)
+      {
+         long bucket = absoluteIndex >> level;
+         int bucketRingIndex = toBucketRingIndex(level, bucket);
+         levelMins[level - 1][bucketRingIndex] = minOfNonNaN(getMin(level - 1, 2 * bucket), getMin(level - 1, 2 * bucket + 1));
+         levelMaxes[level - 1][bucketRingIndex] = maxOfNonNaN(getMax(level - 1, 2 * bucket), getMax(level - 1, 2 * bucket + 1));
+      }
+   }
+
+   public double get(int index)
+   {
+      return values[toRingIndex(index)];
+   }
+
+   /**
+    * Drops the oldest values. The values that scroll in at the end need to be set after.
+    */
+   public void scroll(int numberOfValues)
+   {
+      start = (start + numberOfValues) % bufferSize;
+      numberOfScrolledValues += numberOfValues;
+   }
+
+   private int toRingIndex(int index)
+   {
+      return Math.floorMod(start + index, bufferSize);
+   }
+
+   private int toBucketRingIndex(int level, long bucket)
+   {
+      return (int) Math.floorMod(bucket, (long) levelMins[level - 1].length);
+   }
+
+   private boolean isBucketInWindow(int level, long bucket)
+   {
+      long firstAbsoluteIndex = bucket << level;
+      long lastAbsoluteIndex = firstAbsoluteIndex + (1L << level) - 1;
+      return lastAbsoluteIndex >= numberOfScrolledValues && firstAbsoluteIndex < numberOfScrolledValues + bufferSize;
+   }
+
+   private double getMin(int level, long bucket)
+   {
+      if (!isBucketInWindow(level, bucket))
+         return Double.NaN;
+      else if (level == 0)
+         return values[toRingIndex((int) (bucket - numberOfScrolledValues))];
+      else
+         return levelMins[level - 1][toBucketRingIndex(level, bucket)];
+   }
+
+   private double getMax(int level, long bucket)
+   {
+      if (!isBucketInWindow(level, bucket))
+         return Double.NaN;
+      else if (level == 0)
+         return values[toRingIndex((int) (bucket - numberOfScrolledValues))];
+      else
+         return levelMaxes[level - 1][toBucketRingIndex(level, bucket)];
+   }
+
+   private static double minOfNonNaN(double a, double b)
+   {
+      return Double.isNaN(a) ? b : Double.isNaN(b) ? a : Math.min(a, b);
+   }
+
+   private static double maxOfNonNaN(double a, double b)
+   {
+      return Double.isNaN(a) ? b : Double.isNaN(b) ? a : Math.max(a, b);
+   }
+
+   /**
+    * The x values are the indexes, 0 to bufferSize - 1.
+    *
+    * @param plotWidthInPixels used to pick how much to decimate, NaN to draw every value
+    */
+   public void plot(String labelID, float plotWidthInPixels)
+   {
+      int level = 0;
+      if (!Float.isNaN(plotWidthInPixels))
+      {
+         while (level < levelMins.length && (bufferSize >> level) > plotWidthInPixels)
+            ++level;
+      }
+
+      if (level == 0)
+      {
+         double xScale = 1.0;
+         double x0 = 0.0;
+         ImPlot.plotLine(labelID, values, bufferSize, xScale, x0, start);
+      }
+      else
+      {
+         long firstBucket = numberOfScrolledValues >> level;
+         long lastBucket = (numberOfScrolledValues + bufferSize - 1) >> level;
+         double bucketHalfWidth = 0.5 * ((1L << level) - 1);
+         int numberOfPoints = 0;
+         for (long bucket = firstBucket; bucket <= lastBucket; bucket++)
+         {
+            double x = (bucket << level) - numberOfScrolledValues + bucketHalfWidth;
+            x = Math.max(0.0, Math.min(bufferSize - 1, x));
+            int bucketRingIndex = toBucketRingIndex(level, bucket);
+            decimatedXValues[numberOfPoints] = x;
+            decimatedYValues[numberOfPoints++] = levelMins[level - 1][bucketRingIndex];
+            decimatedXValues[numberOfPoints] = x;
+            decimatedYValues[numberOfPoints++] = levelMaxes[level - 1][bucketRingIndex];
+         }
+         int offset = 0;
+         ImPlot.plotLine(labelID, decimatedXValues, decimatedYValues, numberOfPoints, offset);
+      }
+   }
+
+   public int getBufferSize()
+   {
+      return bufferSize;
+   }
+}
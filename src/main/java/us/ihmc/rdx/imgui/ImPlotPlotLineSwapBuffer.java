@@ -1,5 +1,11 @@
 package us.ihmc.rdx.imgui;
 
+/**
+ * @deprecated {@link ImPlotWallTimeScrollingPlotLine} keeps its values in an {@link ImPlotPlotLineRingBuffer},
+ *             so subclasses don't need to set one of these anymore. Still supported through
+ *             {@link ImPlotWallTimeScrollingPlotLine#setSwapBuffer}.
+ */
+@Deprecated
 public interface ImPlotPlotLineSwapBuffer
 {
    public void initialize(int bufferSize);
@@ -0,0 +1,78 @@
+package us.ihmc.rdx.imgui;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free, allocation free queue of timestamped values for handing plot samples
+ * from one producer thread to the render thread. If the render thread falls behind
+ * and the queue fills up, new samples are dropped.
+ */
+public class ImPlotSampleQueue
+{
+   private final int capacity;
+   private final int mask;
+   private final long[] timesNanos;
+   private final double[] values;
+   private final AtomicLong writeIndex = new AtomicLong();
+   private final AtomicLong readIndex = new AtomicLong();
+   private long polledTimeNanos;
+   private double polledValue;
+
+   /**
+    * @param minimumCapacity rounded up to a power of two
+    */
+   public ImPlotSampleQueue(int minimumCapacity)
+   {
+      capacity = Integer.highestOneBit(Math.max(1, minimumCapacity - 1)) << 1;
+      mask = capacity - 1;
+      timesNanos = new long[capacity];
+      values = new double[capacity];
+   }
+
+   /**
+    * Only call from the producer thread.
+    *
+    * @return false if the queue is full and the sample was dropped
+    */
+   public boolean offer(long timeNanos, double value)
+   {
+      long write = writeIndex.get();
+      if (write - readIndex.get() == capacity)
+         return false;
+
+      int index = (int) write & mask;
+      timesNanos[index] = timeNanos;
+      values[index] = value;
+      writeIndex.lazySet(write + 1); // publishes the sample
+      return true;
+   }
+
+   /**
+    * Only call from the consumer thread. The sample is available with
+    * {@link #getPolledTimeNanos()} and {@link #getPolledValue()}.
+    *
+    * @return false if the queue is empty
+    */
+   public boolean poll()
+   {
+      long read = readIndex.get();
+      if (read == writeIndex.get())
+         return false;
+
+      int index = (int) read & mask;
+      polledTimeNanos = timesNanos[index];
+      polledValue = values[index];
+      readIndex.lazySet(read + 1); // frees the slot for the producer
+      return true;
+   }
+
+   public long getPolledTimeNanos()
+   {
+      return polledTimeNanos;
+   }
+
+   public double getPolledValue()
+   {
+      return polledValue;
+   }
+}
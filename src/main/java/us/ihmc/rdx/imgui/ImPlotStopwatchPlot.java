@@ -2,6 +2,8 @@ package us.ihmc.rdx.imgui;
 
 import us.ihmc.commons.time.Stopwatch;
 
+import java.text.DecimalFormat;
+
 public class ImPlotStopwatchPlot
 {
    private final ImPlotPlot plot = new ImPlotPlot(70);
@@ -14,6 +16,15 @@ public class ImPlotStopwatchPlot
       plot.getPlotLines().add(plotLine);
    }
 
+   /**
+    * @param history in seconds
+    */
+   public ImPlotStopwatchPlot(String name, int bufferSize, double history)
+   {
+      plotLine = new ImPlotDoublePlotLine(name, bufferSize, history, new DecimalFormat("0.00000"));
+      plot.getPlotLines().add(plotLine);
+   }
+
    public void start()
    {
       stopwatch.reset();
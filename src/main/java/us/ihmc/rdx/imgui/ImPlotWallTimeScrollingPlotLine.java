@@ -2,7 +2,6 @@ package us.ihmc.rdx.imgui;
 
 import imgui.extension.implot.ImPlot;
 import imgui.extension.implot.flag.ImPlotCol;
-import us.ihmc.commons.time.Stopwatch;
 
 /**
  * This implmentation scrolls automatically based on wall time.
@@ -13,65 +12,185 @@ import us.ihmc.commons.time.Stopwatch;
 public abstract class ImPlotWallTimeScrollingPlotLine implements ImPlotPlotLine
 {
    private Runnable legendPopupImGuiRenderer;
-   private final String variableNameBase;
-   private final String variableNamePostfix;
    private final String variableName;
+   /** Formats the value into the label, which is only done when rendering and the value changed */
+   private final ImGuiNumberText labelText;
+   private final int labelDecimals;
+   private double latestValue;
+   private boolean labelNeedsUpdate = true;
    private String labelID;
-   private ImPlotPlotLineSwapBuffer swapBuffer;
+   private final ImPlotPlotLineRingBuffer ringBuffer;
+   private final ImPlotSampleQueue sampleQueue;
    private final double history;
-   private final Stopwatch stopwatch = new Stopwatch();
    private final int bufferSize;
    private final double timeForOneBufferEntry;
+   private long startTimeNanos = -1;
    private long lastTickIndex = 0;
-   private long tickIndex = 0;
    private final double[] xValues;
-   private boolean isA = true;
    private int filledIndex = 0;
    private int color = -1;
+   private float plotWidthInPixels = Float.NaN;
+   /** Only set by subclasses still using the deprecated swap buffer API */
+   private ImPlotPlotLineSwapBuffer legacySwapBuffer;
 
-   public ImPlotWallTimeScrollingPlotLine(String variableName, String initialValueString, int bufferSize, double history)
+   /**
+    * @param labelDecimals digits after the decimal point of the latest value shown in the legend
+    */
+   public ImPlotWallTimeScrollingPlotLine(String variableName, double initialValue, int labelDecimals, int bufferSize, double history)
    {
       this.variableName = variableName;
       this.bufferSize = bufferSize;
       this.history = history;
+      this.labelDecimals = labelDecimals;
       timeForOneBufferEntry = history / bufferSize;
-      variableNameBase = variableName + " ";
-      variableNamePostfix = "###" + variableName;
-      labelID = variableNameBase + initialValueString + variableNamePostfix;
+      labelText = new ImGuiNumberText(variableName + " ", "###" + variableName);
+      latestValue = initialValue;
+      labelID = labelText.format(initialValue, labelDecimals);
       xValues = ImPlotTools.createIndex(bufferSize);
+      ringBuffer = new ImPlotPlotLineRingBuffer(bufferSize, initialValue);
+      sampleQueue = new ImPlotSampleQueue(bufferSize);
+   }
+
+   /**
+    * @deprecated Use {@link #ImPlotWallTimeScrollingPlotLine(String, double, int, int, double)}
+    *             and {@link #addValueFromRenderThread} or {@link #queueValue}.
+    */
+   @Deprecated
+   public ImPlotWallTimeScrollingPlotLine(String variableName, String initialValueString, int bufferSize, double history)
+   {
+      this(variableName, Double.NaN, 0, bufferSize, history);
+      labelID = getLegacyLabelID(initialValueString);
+      labelNeedsUpdate = false;
    }
 
+   /**
+    * @deprecated The values are kept in a ring buffer in this class now, so there's
+    *             no need to set one. Use {@link #addValueFromRenderThread} or {@link #queueValue}.
+    */
+   @Deprecated
    public void setSwapBuffer(ImPlotPlotLineSwapBuffer swapBuffer)
    {
-      this.swapBuffer = swapBuffer;
+      legacySwapBuffer = swapBuffer;
       swapBuffer.initialize(bufferSize);
    }
 
+   /**
+    * The value has to have been given to the swap buffer first.
+    *
+    * @deprecated Use {@link #addValueFromRenderThread} or {@link #queueValue},
+    *             and override {@link #formatValue} for the label.
+    */
+   @Deprecated
    public void addValue(String valueString)
    {
-      labelID = variableNameBase + valueString + variableNamePostfix;
+      labelID = getLegacyLabelID(valueString);
+      labelNeedsUpdate = false;
+
+      if (legacySwapBuffer == null)
+         return;
+
+      int numberOfTicksToAdvance = advanceTicks(System.nanoTime());
+      int numberOfTicksToAdvanceBeforeFilling = Math.min(bufferSize, filledIndex + numberOfTicksToAdvance) - filledIndex;
+      int numberOfTicksToAdvanceAfterFilling = Math.min(bufferSize, numberOfTicksToAdvance - numberOfTicksToAdvanceBeforeFilling);
+      if (filledIndex < bufferSize)
+      {
+         if (numberOfTicksToAdvanceBeforeFilling == 0)
+         {
+            legacySwapBuffer.setAValue(filledIndex);
+         }
+         else
+         {
+            for (int i = 0; i < numberOfTicksToAdvanceBeforeFilling && filledIndex < bufferSize; i++)
+            {
+               ++filledIndex;
+               if (filledIndex < bufferSize)
+                  legacySwapBuffer.setAValue(filledIndex);
+            }
+
+            if (filledIndex == bufferSize)
+               legacySwapBuffer.copyAToB();
+         }
+      }
+
+      if (filledIndex == bufferSize)
+      {
+         if (numberOfTicksToAdvanceAfterFilling > 0)
+         {
+            legacySwapBuffer.copyPreviousToUpdated(numberOfTicksToAdvanceAfterFilling, 0, bufferSize - numberOfTicksToAdvanceAfterFilling);
+
+            for (int i = 0; i < numberOfTicksToAdvanceAfterFilling; i++)
+            {
+               legacySwapBuffer.setUpdatedValue(bufferSize - 1 - i);
+            }
+         }
+         else
+         {
+            legacySwapBuffer.setPreviousValue(bufferSize - 1);
+         }
+      }
+   }
+
+   private String getLegacyLabelID(String valueString)
+   {
+      return variableName + " " + valueString + "###" + variableName;
+   }
+
+   /**
+    * Used for the values in the legend popup. Override to format like the label.
+    */
+   protected String formatValue(double value)
+   {
+      return String.valueOf(value);
+   }
+
+   /**
+    * Only call from the render thread. Use {@link #queueValue} from other threads.
+    */
+   protected void addValueFromRenderThread(double value)
+   {
+      addValue(value, System.nanoTime());
+      latestValue = value;
+      labelNeedsUpdate = true;
+   }
+
+   /**
+    * Can be called from one other thread, like the thread producing the data, without
+    * any locking. The values are added to the plot when it's next rendered.
+    */
+   public void queueValue(double value)
+   {
+      sampleQueue.offer(System.nanoTime(), value);
+   }
 
+   private int advanceTicks(long timeNanos)
+   {
       int numberOfTicksToAdvance = 0;
 
-      double totalElapsed = stopwatch.totalElapsed();
-      if (Double.isNaN(totalElapsed))
+      if (startTimeNanos < 0)
       {
-         stopwatch.start();
+         startTimeNanos = timeNanos;
       }
       else
       {
-         tickIndex = (long) (totalElapsed / timeForOneBufferEntry);
-         numberOfTicksToAdvance = (int) (tickIndex - lastTickIndex);
-         lastTickIndex = tickIndex;
+         long tickIndex = (long) ((timeNanos - startTimeNanos) * 1.0e-9 / timeForOneBufferEntry);
+         // Clamped, because nothing older than the buffer is kept anyway
+         numberOfTicksToAdvance = (int) Math.min(2L * bufferSize, Math.max(0L, tickIndex - lastTickIndex));
+         lastTickIndex = Math.max(lastTickIndex, tickIndex);
       }
 
+      return numberOfTicksToAdvance;
+   }
+
+   private void addValue(double value, long timeNanos)
+   {
+      int numberOfTicksToAdvance = advanceTicks(timeNanos);
       int numberOfTicksToAdvanceBeforeFilling = Math.min(bufferSize, filledIndex + numberOfTicksToAdvance) - filledIndex;
       int numberOfTicksToAdvanceAfterFilling = Math.min(bufferSize, numberOfTicksToAdvance - numberOfTicksToAdvanceBeforeFilling);
       if (filledIndex < bufferSize)
       {
          if (numberOfTicksToAdvanceBeforeFilling == 0)
          {
-            swapBuffer.setAValue(filledIndex);
+            ringBuffer.set(filledIndex, value);
          }
          else
          {
@@ -79,12 +198,7 @@ public abstract class ImPlotWallTimeScrollingPlotLine implements ImPlotPlotLine
             {
                ++filledIndex;
                if (filledIndex < bufferSize)
-                  swapBuffer.setAValue(filledIndex);
-            }
-
-            if (filledIndex == bufferSize)
-            {
-               swapBuffer.copyAToB(); // copy A to B when we fill up the first time
+                  ringBuffer.set(filledIndex, value);
             }
          }
       }
@@ -93,29 +207,61 @@ public abstract class ImPlotWallTimeScrollingPlotLine implements ImPlotPlotLine
       {
          if (numberOfTicksToAdvanceAfterFilling > 0)
          {
-            swapBuffer.copyPreviousToUpdated(numberOfTicksToAdvanceAfterFilling, 0, bufferSize - numberOfTicksToAdvanceAfterFilling);
-            isA = !isA;
+            ringBuffer.scroll(numberOfTicksToAdvanceAfterFilling);
 
             for (int i = 0; i < numberOfTicksToAdvanceAfterFilling; i++)
             {
-               swapBuffer.setUpdatedValue(bufferSize - 1 - i);
+               ringBuffer.set(bufferSize - 1 - i, value);
             }
          }
          else
          {
-            swapBuffer.setPreviousValue(bufferSize - 1);
+            ringBuffer.set(bufferSize - 1, value);
          }
       }
    }
 
+   private void drainSampleQueue()
+   {
+      while (sampleQueue.poll())
+      {
+         addValue(sampleQueue.getPolledValue(), sampleQueue.getPolledTimeNanos());
+         latestValue = sampleQueue.getPolledValue();
+         labelNeedsUpdate = true;
+      }
+   }
+
+   @Override
+   public String getValueString(int bufferIndex)
+   {
+      return formatValue(getValue(bufferIndex));
+   }
+
+   /**
+    * @param bufferIndex 0 is the oldest value
+    */
+   public double getValue(int bufferIndex)
+   {
+      return ringBuffer.get(bufferIndex);
+   }
+
    @Override
    public boolean render()
    {
+      drainSampleQueue();
+      if (labelNeedsUpdate)
+      {
+         labelID = labelText.format(latestValue, labelDecimals);
+         labelNeedsUpdate = false;
+      }
+
       if (color != -1)
          ImPlot.pushStyleColor(ImPlotCol.Line, color);
 
-      int offset = 0; // This is believed to be the index in the array we are passing in which implot will start reading
-      swapBuffer.plot(labelID, xValues, offset);
+      if (legacySwapBuffer != null)
+         legacySwapBuffer.plot(labelID, xValues, 0);
+      else
+         ringBuffer.plot(labelID, plotWidthInPixels);
 
       if (color != -1)
          ImPlot.popStyleColor();
@@ -130,6 +276,12 @@ public abstract class ImPlotWallTimeScrollingPlotLine implements ImPlotPlotLine
       return showingLegendPopup;
    }
 
+   @Override
+   public void setPlotWidthInPixels(float plotWidthInPixels)
+   {
+      this.plotWidthInPixels = plotWidthInPixels;
+   }
+
    public void setLegendPopupImGuiRenderer(Runnable legendPopupImGuiRenderer)
    {
       this.legendPopupImGuiRenderer = legendPopupImGuiRenderer;
@@ -37,6 +37,7 @@ import us.ihmc.euclid.referenceFrame.FramePoint3D;
 import us.ihmc.euclid.referenceFrame.ReferenceFrame;
 import us.ihmc.euclid.referenceFrame.tools.ReferenceFrameTools;
 import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.log.LogTools;
 import us.ihmc.rdx.tools.LibGDXTools;
 import us.ihmc.rdx.tools.RDXModelInstance;
 import us.ihmc.rdx.vr.RDXVRContext;
@@ -52,6 +53,8 @@ import static com.badlogic.gdx.graphics.VertexAttributes.Usage.*;
 public class RDX3DSituatedImGuiPanel
 {
    private final String name;
+   /** In shared mode, all the panels are windows in the same context, so panels with the same name need different IDs. */
+   private final String windowName;
    private final Runnable renderImGuiWidgets;
    private RDXModelInstance modelInstance = null;
    private ImGuiImplGl3 imGuiGl3;
@@ -64,6 +67,13 @@ public class RDX3DSituatedImGuiPanel
    private float halfPanelHeightInMeters;
    private float metersToPixels;
    private FrameBuffer frameBuffer;
+   private RDX3DSituatedImGuiPanelAtlas atlas;
+   private int atlasX;
+   private int atlasY;
+   private boolean dirty = true;
+   private int framesLeftToRender = RDX3DSituatedImGuiPanelAtlas.FRAMES_TO_SETTLE;
+   private double refreshPeriod = Double.NaN;
+   private double lastRedrawTime = Double.NEGATIVE_INFINITY;
    private boolean useTransparentBackground = false;
    private int backgroundColor;
    private float mousePosX = -20.0f;
@@ -87,6 +97,7 @@ public class RDX3DSituatedImGuiPanel
    public RDX3DSituatedImGuiPanel(String name, Runnable renderImGuiWidgets)
    {
       this.name = name;
+      windowName = name + "###" + System.identityHashCode(this);
       this.renderImGuiWidgets = renderImGuiWidgets;
 
       for (RobotSide side : RobotSide.values)
@@ -96,14 +107,7 @@ public class RDX3DSituatedImGuiPanel
    public void create(ImGuiImplGl3 imGuiGl3, double panelWidthInMeters, double panelHeightInMeters, int pixelsPerCentimeter)
    {
       this.imGuiGl3 = imGuiGl3;
-      this.panelWidthInMeters = (float) panelWidthInMeters;
-      this.panelHeightInMeters = (float) panelHeightInMeters;
-      halfPanelWidthInMeters = this.panelWidthInMeters / 2.0f;
-      halfPanelHeightInMeters = this.panelHeightInMeters / 2.0f;
-      metersToPixels = pixelsPerCentimeter * 100;
-
-      pixelsWidth = Math.round(panelWidthInMeters * metersToPixels);
-      pixelsHeight = Math.round(panelHeightInMeters * metersToPixels);
+      setSize(panelWidthInMeters, panelHeightInMeters, pixelsPerCentimeter);
 
       imGuiContext = ImGuiTools.createContext(ImGuiTools.getFontAtlas());
       ImGuiTools.setCurrentContext(imGuiContext);
@@ -114,8 +118,64 @@ public class RDX3DSituatedImGuiPanel
 
       ImGuiTools.initializeColorStyle();
 
-      buildModel();
+      GLFrameBuffer.FrameBufferBuilder frameBufferBuilder = new GLFrameBuffer.FrameBufferBuilder((int) pixelsWidth, (int) pixelsHeight);
+      frameBufferBuilder.addBasicColorTextureAttachment(Pixmap.Format.RGBA8888);
+      frameBuffer = frameBufferBuilder.build();
+      buildModel(frameBuffer.getColorBufferTexture(), 0.0f, 1.0f, 1.0f, 0.0f);
 
+      setUpFrames();
+   }
+
+   /**
+    * Shared mode, where the panel is drawn into a sub-rectangle of the atlas and only when dirty.
+    * The panel's content is only redrawn on input, when {@link #markDirty()} is called, or every
+    * refresh period if set with {@link #setRefreshPeriod(double)}, so panels showing live values
+    * should do one of those. {@link RDX3DSituatedImGuiPanelAtlas#update()} draws the panels, so
+    * {@link #update()} doesn't need to be called.
+    *
+    * If the panel doesn't fit in the atlas, it falls back to having its own context.
+    */
+   public void create(RDX3DSituatedImGuiPanelAtlas atlas, double panelWidthInMeters, double panelHeightInMeters, int pixelsPerCentimeter)
+   {
+      setSize(panelWidthInMeters, panelHeightInMeters, pixelsPerCentimeter);
+
+      int[] atlasPosition = atlas.add(this, (int) pixelsWidth, (int) pixelsHeight);
+      if (atlasPosition == null)
+      {
+         LogTools.warn("{} ({}x{} pixels) doesn't fit in the situated panel atlas, it will have its own context", name, pixelsWidth, pixelsHeight);
+         create(atlas.getImGuiGl3(), panelWidthInMeters, panelHeightInMeters, pixelsPerCentimeter);
+         return;
+      }
+      this.atlas = atlas;
+      atlasX = atlasPosition[0];
+      atlasY = atlasPosition[1];
+
+      // ImGui's y is down from the top of the atlas and v is up from the bottom
+      float atlasWidth = atlas.getAtlasWidth();
+      float atlasHeight = atlas.getAtlasHeight();
+      buildModel(atlas.getTexture(),
+                 atlasX / atlasWidth,
+                 (atlasHeight - atlasY) / atlasHeight,
+                 (atlasX + pixelsWidth) / atlasWidth,
+                 (atlasHeight - atlasY - pixelsHeight) / atlasHeight);
+
+      setUpFrames();
+   }
+
+   private void setSize(double panelWidthInMeters, double panelHeightInMeters, int pixelsPerCentimeter)
+   {
+      this.panelWidthInMeters = (float) panelWidthInMeters;
+      this.panelHeightInMeters = (float) panelHeightInMeters;
+      halfPanelWidthInMeters = this.panelWidthInMeters / 2.0f;
+      halfPanelHeightInMeters = this.panelHeightInMeters / 2.0f;
+      metersToPixels = pixelsPerCentimeter * 100;
+
+      pixelsWidth = Math.round(panelWidthInMeters * metersToPixels);
+      pixelsHeight = Math.round(panelHeightInMeters * metersToPixels);
+   }
+
+   private void setUpFrames()
+   {
       // set up graphicsXRightYDownToCenterXThroughZUpTransform
       graphicsXRightYDownToCenterXThroughZUpTransform.appendYawRotation(-Math.toRadians(90.0));
       graphicsXRightYDownToCenterXThroughZUpTransform.appendPitchRotation(Math.toRadians(0.0));
@@ -126,7 +186,7 @@ public class RDX3DSituatedImGuiPanel
       plane.getNormal().set(Axis3D.X);
    }
 
-   private void buildModel()
+   private void buildModel(Texture texture, float leftU, float topV, float rightU, float bottomV)
    {
       ModelBuilder modelBuilder = new ModelBuilder();
       modelBuilder.begin();
@@ -143,10 +203,10 @@ public class RDX3DSituatedImGuiPanel
       Vector3 bottomLeftNormal = new Vector3(0.0f, 0.0f, 1.0f);
       Vector3 bottomRightNormal = new Vector3(0.0f, 0.0f, 1.0f);
       Vector3 topRightNormal = new Vector3(0.0f, 0.0f, 1.0f);
-      Vector2 topLeftUV = new Vector2(0.0f, 1.0f);
-      Vector2 bottomLeftUV = new Vector2(0.0f, 0.0f);
-      Vector2 bottomRightUV = new Vector2(1.0f, 0.0f);
-      Vector2 topRightUV = new Vector2(1.0f, 1.0f);
+      Vector2 topLeftUV = new Vector2(leftU, topV);
+      Vector2 bottomLeftUV = new Vector2(leftU, bottomV);
+      Vector2 bottomRightUV = new Vector2(rightU, bottomV);
+      Vector2 topRightUV = new Vector2(rightU, topV);
       meshBuilder.vertex(topLeftPosition, topLeftNormal, Color.WHITE, topLeftUV);
       meshBuilder.vertex(bottomLeftPosition, bottomLeftNormal, Color.WHITE, bottomLeftUV);
       meshBuilder.vertex(bottomRightPosition, bottomRightNormal, Color.WHITE, bottomRightUV);
@@ -159,11 +219,7 @@ public class RDX3DSituatedImGuiPanel
       MeshPart meshPart = new MeshPart("xyz", mesh, 0, mesh.getNumIndices(), GL41.GL_TRIANGLES);
       Material material = new Material();
 
-      GLFrameBuffer.FrameBufferBuilder frameBufferBuilder = new GLFrameBuffer.FrameBufferBuilder((int) pixelsWidth, (int) pixelsHeight);
-      frameBufferBuilder.addBasicColorTextureAttachment(Pixmap.Format.RGBA8888);
-      frameBuffer = frameBufferBuilder.build();
-      Texture colorBufferTexture = frameBuffer.getColorBufferTexture();
-      material.set(PBRTextureAttribute.createBaseColorTexture(colorBufferTexture));
+      material.set(PBRTextureAttribute.createBaseColorTexture(texture));
 
       material.set(PBRColorAttribute.createBaseColorFactor(Color.WHITE));
       modelBuilder.part(meshPart, material);
@@ -179,8 +235,15 @@ public class RDX3DSituatedImGuiPanel
       this.leftMouseDown = leftMouseDown;
    }
 
+   /**
+    * Draws the panel into its own framebuffer. In shared mode, this does nothing, as the atlas
+    * draws the panels.
+    */
    public void update()
    {
+      if (atlas != null)
+         return;
+
       ImGuiTools.setCurrentContext(imGuiContext);
 
       ImGuiIO io = ImGui.getIO();
@@ -200,8 +263,20 @@ public class RDX3DSituatedImGuiPanel
 
       ImGui.newFrame();
       ImGui.pushFont(ImGuiTools.getSmallFont());
+      renderWindow(0.0f, 0.0f);
+      ImGui.popFont();
+      ImGui.render();
 
-      ImGui.setNextWindowPos(0.0f, 0.0f);
+      frameBuffer.begin();
+      GL41.glClearColor(0.3f, 0.3f, 0.3f, 0.0f);
+      GL41.glClear(GL41.GL_COLOR_BUFFER_BIT);
+      imGuiGl3.renderDrawData(ImGui.getDrawData());
+      frameBuffer.end();
+   }
+
+   void renderWindow(float x, float y)
+   {
+      ImGui.setNextWindowPos(x, y);
       ImGui.setNextWindowSize(pixelsWidth, pixelsHeight);
 
       int windowFlags = ImGuiWindowFlags.None;
@@ -209,22 +284,91 @@ public class RDX3DSituatedImGuiPanel
 
       if (useTransparentBackground)
          ImGui.pushStyleColor(ImGuiCol.WindowBg, backgroundColor);
-      if (ImGui.begin(name, windowFlags))
+      if (ImGui.begin(windowName, windowFlags))
       {
          renderImGuiWidgets.run();
-         ImGui.end();
       }
+      ImGui.end();
       if (useTransparentBackground)
          ImGui.popStyleColor();
+   }
 
-      ImGui.popFont();
-      ImGui.render();
+   /**
+    * In shared mode, has the panel redrawn next frame, for when its content changed.
+    */
+   public void markDirty()
+   {
+      dirty = true;
+      framesLeftToRender = RDX3DSituatedImGuiPanelAtlas.FRAMES_TO_SETTLE;
+   }
 
-      frameBuffer.begin();
-      GL41.glClearColor(0.3f, 0.3f, 0.3f, 0.0f);
-      GL41.glClear(GL41.GL_COLOR_BUFFER_BIT);
-      imGuiGl3.renderDrawData(ImGui.getDrawData());
-      frameBuffer.end();
+   /**
+    * In shared mode, has the panel redrawn at least this often, for panels showing live values.
+    * NaN, the default, for only redrawing on input or {@link #markDirty()}.
+    */
+   public void setRefreshPeriod(double refreshPeriod)
+   {
+      this.refreshPeriod = refreshPeriod;
+   }
+
+   boolean updateDirty(double nowSeconds)
+   {
+      if (nowSeconds - lastRedrawTime >= refreshPeriod)
+         markDirty();
+      return dirty;
+   }
+
+   void finishRedraw(boolean drawn, double nowSeconds)
+   {
+      if (drawn)
+         lastRedrawTime = nowSeconds;
+      if (dirty && --framesLeftToRender <= 0)
+         dirty = false;
+   }
+
+   boolean isDirty()
+   {
+      return dirty;
+   }
+
+   boolean isMouseInside()
+   {
+      return mousePosX >= 0.0f && mousePosY >= 0.0f;
+   }
+
+   float getMousePosX()
+   {
+      return mousePosX;
+   }
+
+   float getMousePosY()
+   {
+      return mousePosY;
+   }
+
+   boolean isLeftMouseDown()
+   {
+      return leftMouseDown;
+   }
+
+   int getAtlasX()
+   {
+      return atlasX;
+   }
+
+   int getAtlasY()
+   {
+      return atlasY;
+   }
+
+   float getPixelsWidth()
+   {
+      return pixelsWidth;
+   }
+
+   float getPixelsHeight()
+   {
+      return pixelsHeight;
    }
 
    public void calculateVRPick(RDXVRContext vrContext)
@@ -291,7 +435,10 @@ public class RDX3DSituatedImGuiPanel
 
    public void dispose()
    {
-      frameBuffer.dispose();
+      if (atlas != null)
+         atlas.remove(this);
+      else
+         frameBuffer.dispose();
    }
 
    public void updateDesiredPose(Consumer<RigidBodyTransform> transformUpdater)
@@ -0,0 +1,288 @@
+package us.ihmc.rdx.imgui;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.GLFrameBuffer;
+import imgui.ImGui;
+import imgui.ImGuiIO;
+import imgui.ImGuiPlatformIO;
+import imgui.flag.ImGuiMouseButton;
+import imgui.gl3.ImGuiImplGl3;
+import org.lwjgl.opengl.GL41;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Lays out many {@link RDX3DSituatedImGuiPanel}s into a single texture, drawn with one shared ImGui
+ * context, instead of each panel having its own context and framebuffer. Each panel is a window
+ * at its sub-rectangle of the atlas and its quad samples just that sub-rectangle.
+ *
+ * Panels are only redrawn when they're dirty, which is when the pointer is on a panel, the panel was
+ * marked dirty with {@link RDX3DSituatedImGuiPanel#markDirty()}, or its refresh period elapsed.
+ * When nothing is dirty, the ImGui frame is skipped entirely.
+ *
+ * Call {@link #update()} once per frame, instead of the panels' update.
+ *
+ * Panels are packed in shelves. When one is removed, its sub-rectangle goes to a free list and
+ * is given to the next panel that fits in it. When they're all removed, the packing starts over.
+ */
+public class RDX3DSituatedImGuiPanelAtlas
+{
+   /** ImGui lays out over a couple frames, so a dirty panel gets drawn this many times. */
+   static final int FRAMES_TO_SETTLE = 2;
+   /** Space between panels, so texture filtering doesn't bleed neighbors into each other. */
+   private static final int PADDING = 2;
+
+   private final ImGuiImplGl3 imGuiGl3;
+   private final int atlasWidth;
+   private final int atlasHeight;
+   private final long imGuiContext;
+   private final FrameBuffer frameBuffer;
+   private final ArrayList<RDX3DSituatedImGuiPanel> panels = new ArrayList<>();
+   private final IdentityHashMap<RDX3DSituatedImGuiPanel, Rectangle> reservedRectangles = new IdentityHashMap<>();
+   private final ArrayList<Rectangle> freeRectangles = new ArrayList<>();
+   private int shelfX = 0;
+   private int shelfY = 0;
+   private int shelfHeight = 0;
+   private boolean wasInteractive = false;
+   private long numberOfAtlasRedraws = 0;
+   private long numberOfPanelRedraws = 0;
+
+   /** Including the padding. */
+   private record Rectangle(int x, int y, int width, int height)
+   {
+   }
+
+   /**
+    * Needs to be on the libGDX thread.
+    */
+   public RDX3DSituatedImGuiPanelAtlas(ImGuiImplGl3 imGuiGl3, int atlasWidth, int atlasHeight)
+   {
+      this.imGuiGl3 = imGuiGl3;
+      this.atlasWidth = atlasWidth;
+      this.atlasHeight = atlasHeight;
+
+      imGuiContext = ImGuiTools.createContext(ImGuiTools.getFontAtlas());
+      ImGuiTools.setCurrentContext(imGuiContext);
+
+      ImGuiIO io = ImGui.getIO();
+      io.setIniFilename(null); // We don't want to save .ini file
+      io.setMouseDrawCursor(true);
+
+      ImGuiTools.initializeColorStyle();
+
+      GLFrameBuffer.FrameBufferBuilder frameBufferBuilder = new GLFrameBuffer.FrameBufferBuilder(atlasWidth, atlasHeight);
+      frameBufferBuilder.addBasicColorTextureAttachment(Pixmap.Format.RGBA8888);
+      frameBuffer = frameBufferBuilder.build();
+
+      frameBuffer.begin();
+      GL41.glClearColor(0.3f, 0.3f, 0.3f, 0.0f);
+      GL41.glClear(GL41.GL_COLOR_BUFFER_BIT);
+      frameBuffer.end();
+   }
+
+   /**
+    * Reserves a sub-rectangle for the panel, in rows from the top left.
+    * @return the x and y of the sub-rectangle in ImGui coordinates, or null if the atlas is full
+    */
+   int[] add(RDX3DSituatedImGuiPanel panel, int width, int height)
+   {
+      if (width + PADDING > atlasWidth)
+         return null;
+
+      // The smallest free sub-rectangle that fits, left by a removed panel
+      Rectangle bestFree = null;
+      for (Rectangle free : freeRectangles)
+      {
+         if (width + PADDING <= free.width() && height + PADDING <= free.height())
+         {
+            if (bestFree == null || free.width() * free.height() < bestFree.width() * bestFree.height())
+               bestFree = free;
+         }
+      }
+      if (bestFree != null)
+      {
+         freeRectangles.remove(bestFree);
+         reservedRectangles.put(panel, bestFree);
+         panels.add(panel);
+         return new int[] {bestFree.x(), bestFree.y()};
+      }
+
+      if (shelfX + width + PADDING > atlasWidth)
+      {
+         shelfX = 0;
+         shelfY += shelfHeight;
+         shelfHeight = 0;
+      }
+      if (shelfY + height + PADDING > atlasHeight)
+         return null;
+
+      int[] position = new int[] {shelfX, shelfY};
+      reservedRectangles.put(panel, new Rectangle(shelfX, shelfY, width + PADDING, height + PADDING));
+      shelfX += width + PADDING;
+      shelfHeight = Math.max(shelfHeight, height + PADDING);
+      panels.add(panel);
+      return position;
+   }
+
+   void remove(RDX3DSituatedImGuiPanel panel)
+   {
+      panels.remove(panel);
+      Rectangle reserved = reservedRectangles.remove(panel);
+      if (reserved != null)
+         freeRectangles.add(reserved);
+
+      if (panels.isEmpty())
+      {
+         freeRectangles.clear();
+         shelfX = 0;
+         shelfY = 0;
+         shelfHeight = 0;
+      }
+   }
+
+   public void update()
+   {
+      RDX3DSituatedImGuiPanel pointedAtPanel = null;
+      for (int i = 0; i < panels.size() && pointedAtPanel == null; i++)
+      {
+         if (panels.get(i).isMouseInside())
+            pointedAtPanel = panels.get(i);
+      }
+
+      // Tooltips and popups can spill over neighboring panels, so while the pointer is on
+      // any panel, and the frame after, the whole atlas gets redrawn.
+      boolean redrawAll = pointedAtPanel != null || wasInteractive;
+      wasInteractive = pointedAtPanel != null;
+
+      double nowSeconds = System.nanoTime() * 1.0e-9;
+      boolean anyDirty = redrawAll;
+      for (int i = 0; i < panels.size(); i++)
+         anyDirty |= panels.get(i).updateDirty(nowSeconds);
+
+      if (!anyDirty)
+         return;
+
+      ImGuiTools.setCurrentContext(imGuiContext);
+
+      ImGuiIO io = ImGui.getIO();
+      io.setDisplaySize(atlasWidth, atlasHeight);
+      io.setDisplayFramebufferScale(1.0f, 1.0f);
+      if (pointedAtPanel != null)
+      {
+         io.setMousePos(pointedAtPanel.getAtlasX() + pointedAtPanel.getMousePosX(), pointedAtPanel.getAtlasY() + pointedAtPanel.getMousePosY());
+         io.setMouseDown(ImGuiMouseButton.Left, pointedAtPanel.isLeftMouseDown());
+      }
+      else
+      {
+         io.setMousePos(-20.0f, -20.0f);
+         io.setMouseDown(ImGuiMouseButton.Left, false);
+      }
+
+      ImGuiPlatformIO platformIO = ImGui.getPlatformIO();
+      platformIO.resizeMonitors(0);
+      platformIO.pushMonitors(0.0f, 0.0f, atlasWidth, atlasHeight, 0.0f, 0.0f, atlasWidth, atlasHeight, 1.0f);
+
+      float deltaTime = Gdx.app.getGraphics().getDeltaTime();
+      io.setDeltaTime(deltaTime > 0.0f ? deltaTime : 1.0f / 60.0f);
+
+      ImGui.newFrame();
+      ImGui.pushFont(ImGuiTools.getSmallFont());
+      // Panels that aren't submitted this frame keep what's already in the atlas
+      for (int i = 0; i < panels.size(); i++)
+      {
+         RDX3DSituatedImGuiPanel panel = panels.get(i);
+         if (redrawAll || panel.isDirty())
+            panel.renderWindow(panel.getAtlasX(), panel.getAtlasY());
+      }
+      ImGui.popFont();
+      ImGui.render();
+
+      frameBuffer.begin();
+      GL41.glClearColor(0.3f, 0.3f, 0.3f, 0.0f);
+      if (redrawAll)
+      {
+         GL41.glClear(GL41.GL_COLOR_BUFFER_BIT);
+      }
+      else
+      {
+         GL41.glEnable(GL41.GL_SCISSOR_TEST);
+         for (int i = 0; i < panels.size(); i++)
+         {
+            RDX3DSituatedImGuiPanel panel = panels.get(i);
+            if (panel.isDirty())
+            {
+               // ImGui's y is down from the top, GL's is up from the bottom
+               int width = (int) panel.getPixelsWidth();
+               int height = (int) panel.getPixelsHeight();
+               GL41.glScissor(panel.getAtlasX(), atlasHeight - panel.getAtlasY() - height, width, height);
+               GL41.glClear(GL41.GL_COLOR_BUFFER_BIT);
+            }
+         }
+         GL41.glDisable(GL41.GL_SCISSOR_TEST);
+      }
+      imGuiGl3.renderDrawData(ImGui.getDrawData());
+      frameBuffer.end();
+
+      ++numberOfAtlasRedraws;
+      for (int i = 0; i < panels.size(); i++)
+      {
+         RDX3DSituatedImGuiPanel panel = panels.get(i);
+         boolean drawn = redrawAll || panel.isDirty();
+         if (drawn)
+            ++numberOfPanelRedraws;
+         panel.finishRedraw(drawn, nowSeconds);
+      }
+   }
+
+   /** Marks all the panels dirty, for example after a style change. */
+   public void markAllDirty()
+   {
+      for (int i = 0; i < panels.size(); i++)
+         panels.get(i).markDirty();
+   }
+
+   public ImGuiImplGl3 getImGuiGl3()
+   {
+      return imGuiGl3;
+   }
+
+   public Texture getTexture()
+   {
+      return frameBuffer.getColorBufferTexture();
+   }
+
+   public int getAtlasWidth()
+   {
+      return atlasWidth;
+   }
+
+   public int getAtlasHeight()
+   {
+      return atlasHeight;
+   }
+
+   /** Number of frames the atlas was drawn to, out of the frames {@link #update()} was called. */
+   public long getNumberOfAtlasRedraws()
+   {
+      return numberOfAtlasRedraws;
+   }
+
+   /** Number of panel windows drawn, over all the atlas redraws. */
+   public long getNumberOfPanelRedraws()
+   {
+      return numberOfPanelRedraws;
+   }
+
+   public void dispose()
+   {
+      frameBuffer.dispose();
+      long previousContext = ImGuiTools.getCurrentContext();
+      ImGuiTools.setCurrentContext(imGuiContext);
+      ImGui.destroyContext();
+      ImGuiTools.setCurrentContext(previousContext);
+   }
+}
@@ -45,7 +45,7 @@ import static com.badlogic.gdx.graphics.VertexAttributes.Usage.*;
 
 /**
  * WARNING: Probably should not be used anymore.
- * @deprecated Use RDX3DSituatedImGuiPanel
+ * @deprecated Use RDX3DSituatedImGuiPanel, with a RDX3DSituatedImGuiPanelAtlas for sharing one context between many panels
  */
 public class RDXSingleContext3DSituatedImGuiPanel implements RenderableProvider
 {
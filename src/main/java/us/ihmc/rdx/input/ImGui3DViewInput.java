@@ -187,6 +187,15 @@ public class ImGui3DViewInput
       pickResults.add(pickResult);
    }
 
+   /**
+    * Runs the exact pick calculators of objects registered with the broad phase
+    * whose bounds are hit by the pick ray.
+    */
+   public void calculateBroadPhasePicks()
+   {
+      panel.getPickBroadPhase().calculatePicks(this);
+   }
+
    public void calculateClosestPick()
    {
       closestPick = null;
@@ -216,6 +225,11 @@ public class ImGui3DViewInput
       return isWindowHovered;
    }
 
+   public ImGui3DViewPickBroadPhase getPickBroadPhase()
+   {
+      return panel.getPickBroadPhase();
+   }
+
    public ImGuiMouseDragData getMouseDragData(int imGuiMouseButton)
    {
       return mouseDragData[imGuiMouseButton];
@@ -0,0 +1,65 @@
+package us.ihmc.rdx.input;
+
+import us.ihmc.euclid.geometry.interfaces.BoundingBox3DReadOnly;
+import us.ihmc.rdx.tools.RDXDynamicAABBTree;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Shared broad phase for 3D view picking. Pickable objects register their world frame bounds
+ * along with their exact pick calculator, and update the bounds when they move. Each frame
+ * the pick ray is tested against the tree first, and only the calculators of candidates whose
+ * bounds are hit get run.
+ *
+ * This replaces registering a pick calculator with {@link us.ihmc.rdx.ui.RDX3DPanel#addImGui3DViewPickCalculator}
+ * for objects that can provide bounds, so the per mouse move cost depends on what's under the
+ * mouse instead of the total number of pickable shapes.
+ */
+public class ImGui3DViewPickBroadPhase
+{
+   private final RDXDynamicAABBTree<Consumer<ImGui3DViewInput>> tree = new RDXDynamicAABBTree<>();
+   private final ArrayList<Consumer<ImGui3DViewInput>> candidates = new ArrayList<>();
+   private final Consumer<Consumer<ImGui3DViewInput>> candidateCollector = candidates::add;
+
+   /**
+    * @param boundsInWorld the world frame bounds of everything the pick calculator tests against
+    * @param calculate3DViewPick the exact intersection code, adding a pick result on collision
+    * @return the proxy ID used to update and remove the bounds
+    */
+   public int addPickBounds(BoundingBox3DReadOnly boundsInWorld, Consumer<ImGui3DViewInput> calculate3DViewPick)
+   {
+      return tree.add(boundsInWorld, calculate3DViewPick);
+   }
+
+   /**
+    * Call when the object moves. Small motions are absorbed by the tree's margin and are cheap.
+    */
+   public void updatePickBounds(int proxyID, BoundingBox3DReadOnly boundsInWorld)
+   {
+      tree.update(proxyID, boundsInWorld);
+   }
+
+   public void removePickBounds(int proxyID)
+   {
+      tree.remove(proxyID);
+   }
+
+   /**
+    * Runs the exact pick calculators of the candidates hit by the pick ray.
+    */
+   public void calculatePicks(ImGui3DViewInput input)
+   {
+      candidates.clear();
+      tree.rayCast(input.getPickRayInWorld(), candidateCollector);
+      for (int i = 0; i < candidates.size(); i++)
+      {
+         candidates.get(i).accept(input);
+      }
+   }
+
+   public int getNumberOfCandidates()
+   {
+      return candidates.size();
+   }
+}
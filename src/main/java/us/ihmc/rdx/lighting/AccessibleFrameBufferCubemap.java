@@ -4,12 +4,35 @@ import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Cubemap;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.glutils.FrameBufferCubemap;
+import com.badlogic.gdx.graphics.glutils.GLFrameBuffer;
 
 /**
  * This class only exists so we can directly access bindSide(), and should never be used for any other reason
  */
 public class AccessibleFrameBufferCubemap extends FrameBufferCubemap
 {
+   /**
+    * For attachments other than {@link Pixmap.Format}s, like a GL_R32F cubemap.
+    */
+   public static class Builder extends GLFrameBuffer.GLFrameBufferBuilder<AccessibleFrameBufferCubemap>
+   {
+      public Builder(int width, int height)
+      {
+         super(width, height);
+      }
+
+      @Override
+      public AccessibleFrameBufferCubemap build()
+      {
+         return new AccessibleFrameBufferCubemap(this);
+      }
+   }
+
+   protected AccessibleFrameBufferCubemap(GLFrameBufferBuilder<? extends GLFrameBuffer<Cubemap>> bufferBuilder)
+   {
+      super(bufferBuilder);
+   }
+
    protected AccessibleFrameBufferCubemap(Pixmap.Format format, int width, int height, boolean hasDepth)
    {
       super(format, width, height, hasDepth);
@@ -21,12 +44,15 @@ public class AccessibleFrameBufferCubemap extends FrameBufferCubemap
    }
 
    @Override
-   protected void bindSide(Cubemap.CubemapSide side)
+   public void bindSide(Cubemap.CubemapSide side)
    {
       super.bindSide(side);
    }
 
-   protected void bindSide(Cubemap.CubemapSide side, Camera camera)
+   /**
+    * Points the camera down the side, keeping its position, and attaches that side for rendering.
+    */
+   public void bindSide(Cubemap.CubemapSide side, Camera camera)
    {
       switch (side)
       {
@@ -0,0 +1,104 @@
+package us.ihmc.rdx.lighting;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import net.mgsx.gltf.scene3d.lights.DirectionalShadowLight;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
+
+import java.util.Arrays;
+
+/**
+ * A directional shadow map that keeps the static shadow casters, like environments and terrain,
+ * in a separate cached map. That map is only rendered again when the light's projection changes or
+ * the static shadow casters change. Each frame, the cached map is copied into the light's map and
+ * the dynamic shadow casters, like robots, are rendered on top of it.
+ */
+public class RDXCachedDirectionalShadowLight extends DirectionalShadowLight
+{
+   private final FrameBuffer staticFrameBuffer;
+   private final float[] cachedProjViewTrans = new float[16];
+   private long cachedStaticShadowCastersVersion = -1;
+   private long numberOfStaticRenders = 0;
+
+   public RDXCachedDirectionalShadowLight(int shadowMapSize)
+   {
+      super(shadowMapSize, shadowMapSize);
+      boolean hasDepth = true;
+      staticFrameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, shadowMapSize, shadowMapSize, hasDepth);
+   }
+
+   /**
+    * Call outside of any frame buffer, before rendering the scene.
+    *
+    * @param depthModelBatch a batch with the depth shader the PBR shader's shadow maps expect
+    */
+   public void render(RDX3DScene scene, ModelBatch depthModelBatch)
+   {
+      validate();
+      Camera camera = getCamera();
+      FrameBuffer frameBuffer = getFrameBuffer();
+
+      long staticShadowCastersVersion = scene.getStaticShadowCastersVersion();
+      if (staticShadowCastersVersion != cachedStaticShadowCastersVersion || !Arrays.equals(camera.combined.val, cachedProjViewTrans))
+      {
+         beginShadowMap(staticFrameBuffer, true);
+         depthModelBatch.begin(camera);
+         scene.renderShadowCasters(depthModelBatch, true);
+         depthModelBatch.end();
+         endShadowMap(staticFrameBuffer);
+
+         System.arraycopy(camera.combined.val, 0, cachedProjViewTrans, 0, cachedProjViewTrans.length);
+         cachedStaticShadowCastersVersion = staticShadowCastersVersion;
+         ++numberOfStaticRenders;
+      }
+
+      int width = frameBuffer.getWidth();
+      int height = frameBuffer.getHeight();
+      GL41.glBindFramebuffer(GL41.GL_READ_FRAMEBUFFER, staticFrameBuffer.getFramebufferHandle());
+      GL41.glBindFramebuffer(GL41.GL_DRAW_FRAMEBUFFER, frameBuffer.getFramebufferHandle());
+      GL41.glBlitFramebuffer(0, 0, width, height, 0, 0, width, height, GL41.GL_COLOR_BUFFER_BIT | GL41.GL_DEPTH_BUFFER_BIT, GL41.GL_NEAREST);
+      GL41.glBindFramebuffer(GL41.GL_FRAMEBUFFER, 0);
+
+      beginShadowMap(frameBuffer, false);
+      depthModelBatch.begin(camera);
+      scene.renderShadowCasters(depthModelBatch, false);
+      depthModelBatch.end();
+      endShadowMap(frameBuffer);
+   }
+
+   private void beginShadowMap(FrameBuffer frameBuffer, boolean clear)
+   {
+      frameBuffer.begin();
+      GL41.glViewport(0, 0, frameBuffer.getWidth(), frameBuffer.getHeight());
+      if (clear)
+      {
+         GL41.glClearColor(1.0f, 1.0f, 1.0f, 1.0f);
+         GL41.glClear(GL41.GL_COLOR_BUFFER_BIT | GL41.GL_DEPTH_BUFFER_BIT);
+      }
+      // Leave a border at the far depth so lookups outside the map aren't shadowed
+      GL41.glEnable(GL41.GL_SCISSOR_TEST);
+      GL41.glScissor(1, 1, frameBuffer.getWidth() - 2, frameBuffer.getHeight() - 2);
+   }
+
+   private void endShadowMap(FrameBuffer frameBuffer)
+   {
+      GL41.glDisable(GL41.GL_SCISSOR_TEST);
+      frameBuffer.end();
+   }
+
+   /** How many times the static shadow casters were rendered, to check that caching works. */
+   public long getNumberOfStaticRenders()
+   {
+      return numberOfStaticRenders;
+   }
+
+   @Override
+   public void dispose()
+   {
+      staticFrameBuffer.dispose();
+      super.dispose();
+   }
+}
@@ -0,0 +1,141 @@
+package us.ihmc.rdx.lighting;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.math.Vector3;
+import net.mgsx.gltf.scene3d.scene.CascadeShadowMap;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
+
+/**
+ * Cascaded shadow maps for a directional light. The view frustum is split by distance and each
+ * split gets its own shadow map fit around it, so nearby shadows are sharp while large outdoor
+ * scenes are still covered, without one huge map.
+ *
+ * Each cascade is an {@link RDXCachedDirectionalShadowLight}. So its static shadow casters are only
+ * rendered again when its projection changes. A cascade's size only depends on the splits and the
+ * camera's field of view. Its center is snapped to a grid of an eighth of its size. So the far
+ * cascades, which cost the most to render, keep their cached maps while the camera moves around.
+ * Snapping also keeps shadow edges from shimmering.
+ *
+ * The first cascade is the light that goes in the environment; the rest go to the PBR shader
+ * through {@link #getCascadeShadowMap()}.
+ */
+public class RDXCascadedShadowMap
+{
+   private static final float CACHE_CELL_FRACTION = 1.0f / 8.0f;
+   /** Blends between logarithmic and uniform splits, the "practical split scheme". */
+   private static final float SPLIT_LOGARITHMIC_WEIGHT = 0.75f;
+
+   private final RDXCachedDirectionalShadowLight[] cascades;
+   private final CascadeShadowMap cascadeShadowMap;
+   private final float[] splitDistances;
+   private final Vector3 center = new Vector3();
+   private float maximumDistance;
+
+   /**
+    * @param maximumDistance how far from the camera there are shadows, in meters
+    */
+   public RDXCascadedShadowMap(int shadowMapSize, int numberOfCascades, float maximumDistance)
+   {
+      this.maximumDistance = maximumDistance;
+      cascades = new RDXCachedDirectionalShadowLight[numberOfCascades];
+      splitDistances = new float[numberOfCascades + 1];
+      cascadeShadowMap = new CascadeShadowMap(numberOfCascades - 1);
+      for (int i = 0; i < numberOfCascades; i++)
+      {
+         cascades[i] = new RDXCachedDirectionalShadowLight(shadowMapSize);
+         if (i > 0)
+            cascadeShadowMap.lights.add(cascades[i]);
+      }
+   }
+
+   /**
+    * Fits the cascades to the camera and renders them. Call outside of any frame buffer, before rendering the scene.
+    *
+    * @param verticalFieldOfView the scene camera's, in degrees
+    */
+   public void update(Camera sceneCamera, float verticalFieldOfView, RDX3DScene scene, ModelBatch depthModelBatch)
+   {
+      float near = sceneCamera.near;
+      float far = Math.min(sceneCamera.far, maximumDistance);
+      for (int i = 0; i <= cascades.length; i++)
+      {
+         float fraction = (float) i / cascades.length;
+         float logarithmic = near * (float) Math.pow(far / near, fraction);
+         float uniform = near + (far - near) * fraction;
+         splitDistances[i] = SPLIT_LOGARITHMIC_WEIGHT * logarithmic + (1.0f - SPLIT_LOGARITHMIC_WEIGHT) * uniform;
+      }
+
+      // The squared distance from the view axis to a frustum corner, per squared distance along it
+      float tanHalfFieldOfView = (float) Math.tan(Math.toRadians(verticalFieldOfView) / 2.0);
+      float aspectRatio = sceneCamera.viewportWidth / sceneCamera.viewportHeight;
+      float cornerSlopeSquared = tanHalfFieldOfView * tanHalfFieldOfView * (1.0f + aspectRatio * aspectRatio);
+
+      RDXCachedDirectionalShadowLight baseLight = cascades[0];
+      for (int i = 0; i < cascades.length; i++)
+      {
+         // The smallest sphere around this split of the frustum, centered on the view axis
+         float splitNear = splitDistances[i];
+         float splitFar = splitDistances[i + 1];
+         float centerDistance = Math.min((1.0f + cornerSlopeSquared) * (splitNear + splitFar) / 2.0f, splitFar);
+         float nearRadiusSquared = (centerDistance - splitNear) * (centerDistance - splitNear) + cornerSlopeSquared * splitNear * splitNear;
+         float farRadiusSquared = (splitFar - centerDistance) * (splitFar - centerDistance) + cornerSlopeSquared * splitFar * splitFar;
+         float radius = (float) Math.sqrt(Math.max(nearRadiusSquared, farRadiusSquared));
+
+         float cellSize = 2.0f * radius * CACHE_CELL_FRACTION;
+         center.set(sceneCamera.direction).scl(centerDistance).add(sceneCamera.position);
+         center.x = snap(center.x, cellSize);
+         center.y = snap(center.y, cellSize);
+         center.z = snap(center.z, cellSize);
+         // Still covers the whole sphere after snapping
+         float halfSize = radius + cellSize;
+
+         RDXCachedDirectionalShadowLight cascade = cascades[i];
+         cascade.direction.set(baseLight.direction);
+         // Deep enough toward the light for casters out of view, like a building behind the camera
+         float depth = 2.0f * (halfSize + maximumDistance);
+         cascade.setViewport(2.0f * halfSize, 2.0f * halfSize, 0.0f, depth);
+         cascade.setCenter(center);
+         cascade.render(scene, depthModelBatch);
+      }
+   }
+
+   private static float snap(float value, float cellSize)
+   {
+      return (float) Math.floor(value / cellSize + 0.5f) * cellSize;
+   }
+
+   public void setMaximumDistance(float maximumDistance)
+   {
+      this.maximumDistance = maximumDistance;
+   }
+
+   /** The nearest cascade, which is the light in the environment and its shadow map. */
+   public RDXCachedDirectionalShadowLight getBaseLight()
+   {
+      return cascades[0];
+   }
+
+   /** The cascades after the first, for the PBR shader. */
+   public CascadeShadowMap getCascadeShadowMap()
+   {
+      return cascadeShadowMap;
+   }
+
+   public int getNumberOfCascades()
+   {
+      return cascades.length;
+   }
+
+   public RDXCachedDirectionalShadowLight getCascade(int index)
+   {
+      return cascades[index];
+   }
+
+   public void dispose()
+   {
+      // Not disposing the CascadeShadowMap, which would dispose the cascades again
+      for (RDXCachedDirectionalShadowLight cascade : cascades)
+         cascade.dispose();
+   }
+}
@@ -0,0 +1,293 @@
+package us.ihmc.rdx.lighting;
+
+import com.badlogic.gdx.graphics.g3d.Environment;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.attributes.PointLightsAttribute;
+import com.badlogic.gdx.graphics.g3d.environment.PointLight;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FlushablePool;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongMap;
+import net.mgsx.gltf.scene3d.lights.PointLightEx;
+
+/**
+ * Lifts the limit on the number of point lights in a scene. The PBR shader loops over a fixed number
+ * of point lights for every fragment, so instead of giving every renderable all the lights, the lights
+ * are binned into a world grid by their range and each renderable gets its own environment with only
+ * the most influential lights near its bounds. Lights without a range reach everywhere, so they're
+ * candidates for every renderable. The cost per fragment stays the same with hundreds of lights,
+ * like LED indicators or sensor emitters, and the binning is linear in the number of lights.
+ *
+ * This is per renderable rather than per fragment, because the PBR shader comes from gdx-gltf,
+ * so a big renderable, like a floor, only gets the lights that matter most to it as a whole.
+ */
+public class RDXClusteredPointLights
+{
+   /** Lights reaching more cells than this are treated like they have no range. */
+   private static final int MAX_CELLS_PER_LIGHT = 512;
+   /** Renderables overlapping more cells than this consider all the lights. */
+   private static final int MAX_CELLS_PER_QUERY = 64;
+
+   private final int maxLightsPerRenderable;
+   private final LongMap<IntArray> cells = new LongMap<>();
+   /** The map is rebuilt each update, so only cells with lights in them stay around. */
+   private final FlushablePool<IntArray> cellPool = new FlushablePool<>()
+   {
+      @Override
+      protected IntArray newObject()
+      {
+         return new IntArray();
+      }
+
+      @Override
+      protected void reset(IntArray cell)
+      {
+         cell.clear();
+      }
+   };
+   private final IntArray unboundedLightIndices = new IntArray();
+   private final Array<PointLight> lights = new Array<>();
+   private final FlushablePool<Renderable> renderablePool = new FlushablePool<>()
+   {
+      @Override
+      protected Renderable newObject()
+      {
+         return new Renderable();
+      }
+
+      @Override
+      public Renderable obtain()
+      {
+         Renderable renderable = super.obtain();
+         renderable.environment = null;
+         renderable.material = null;
+         renderable.meshPart.set("", null, 0, 0, 0);
+         renderable.shader = null;
+         renderable.userData = null;
+         return renderable;
+      }
+   };
+   private final Array<Renderable> providerRenderables = new Array<>();
+   private final Array<Environment> environments = new Array<>();
+   private final Array<PointLightsAttribute> environmentPointLights = new Array<>();
+   private int numberOfEnvironmentsUsed = 0;
+   private final Vector3 center = new Vector3();
+   private final Vector3 scale = new Vector3();
+   private final int[] bestLightIndices;
+   private final float[] bestScores;
+   private int[] candidateStamps = new int[0];
+   private int stamp = 0;
+   private float cellSize = 2.0f;
+
+   /**
+    * @param maxLightsPerRenderable the PBR shader config's number of point lights
+    */
+   public RDXClusteredPointLights(int maxLightsPerRenderable)
+   {
+      this.maxLightsPerRenderable = maxLightsPerRenderable;
+      bestLightIndices = new int[maxLightsPerRenderable];
+      bestScores = new float[maxLightsPerRenderable];
+   }
+
+   /**
+    * Bins the lights. Call before each pass, after the previous pass's model batch has ended,
+    * as that's also when the renderables and environments handed out are recycled.
+    */
+   public void update(PointLightsAttribute allPointLights)
+   {
+      renderablePool.flush();
+      numberOfEnvironmentsUsed = 0;
+
+      cellPool.flush();
+      cells.clear();
+      unboundedLightIndices.clear();
+      lights.clear();
+      lights.addAll(allPointLights.lights);
+
+      if (candidateStamps.length < lights.size)
+         candidateStamps = new int[lights.size];
+
+      for (int i = 0; i < lights.size; i++)
+      {
+         PointLight light = lights.get(i);
+         float range = getRange(light);
+         int minX = toCell(light.position.x - range);
+         int minY = toCell(light.position.y - range);
+         int minZ = toCell(light.position.z - range);
+         int maxX = toCell(light.position.x + range);
+         int maxY = toCell(light.position.y + range);
+         int maxZ = toCell(light.position.z + range);
+         if (Float.isInfinite(range) || (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1) > MAX_CELLS_PER_LIGHT)
+         {
+            unboundedLightIndices.add(i);
+            continue;
+         }
+
+         for (int x = minX; x <= maxX; x++)
+         {
+            for (int y = minY; y <= maxY; y++)
+            {
+               for (int z = minZ; z <= maxZ; z++)
+               {
+                  long key = toKey(x, y, z);
+                  IntArray cell = cells.get(key);
+                  if (cell == null)
+                  {
+                     cell = cellPool.obtain();
+                     cells.put(key, cell);
+                  }
+                  cell.add(i);
+               }
+            }
+         }
+      }
+   }
+
+   /**
+    * Like {@link ModelBatch#render(RenderableProvider, Environment)}, but each renderable
+    * gets an environment with only its nearby lights.
+    */
+   public void render(ModelBatch modelBatch, RenderableProvider renderableProvider, Environment sceneEnvironment)
+   {
+      providerRenderables.clear();
+      renderableProvider.getRenderables(providerRenderables, renderablePool);
+      for (int i = 0; i < providerRenderables.size; i++)
+      {
+         Renderable renderable = providerRenderables.get(i);
+         renderable.environment = createEnvironment(renderable, sceneEnvironment);
+         modelBatch.render(renderable);
+      }
+   }
+
+   private Environment createEnvironment(Renderable renderable, Environment sceneEnvironment)
+   {
+      float radius = renderable.meshPart.radius;
+      boolean hasBounds = radius > 0.0f;
+      if (hasBounds)
+      {
+         center.set(renderable.meshPart.center).mul(renderable.worldTransform);
+         renderable.worldTransform.getScale(scale);
+         radius *= Math.max(scale.x, Math.max(scale.y, scale.z));
+      }
+      else
+      {
+         renderable.worldTransform.getTranslation(center);
+      }
+
+      ++stamp;
+      int numberOfBest = 0;
+      for (int i = 0; i < unboundedLightIndices.size; i++)
+         numberOfBest = consider(unboundedLightIndices.get(i), radius, numberOfBest);
+
+      int minX = toCell(center.x - radius);
+      int minY = toCell(center.y - radius);
+      int minZ = toCell(center.z - radius);
+      int maxX = toCell(center.x + radius);
+      int maxY = toCell(center.y + radius);
+      int maxZ = toCell(center.z + radius);
+      if (!hasBounds || (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1) > MAX_CELLS_PER_QUERY)
+      {
+         for (int i = 0; i < lights.size; i++)
+            numberOfBest = consider(i, radius, numberOfBest);
+      }
+      else
+      {
+         for (int x = minX; x <= maxX; x++)
+         {
+            for (int y = minY; y <= maxY; y++)
+            {
+               for (int z = minZ; z <= maxZ; z++)
+               {
+                  IntArray cell = cells.get(toKey(x, y, z));
+                  if (cell != null)
+                  {
+                     for (int i = 0; i < cell.size; i++)
+                        numberOfBest = consider(cell.get(i), radius, numberOfBest);
+                  }
+               }
+            }
+         }
+      }
+
+      if (numberOfEnvironmentsUsed == environments.size)
+      {
+         environments.add(new Environment());
+         environmentPointLights.add(new PointLightsAttribute());
+      }
+      Environment environment = environments.get(numberOfEnvironmentsUsed);
+      PointLightsAttribute pointLights = environmentPointLights.get(numberOfEnvironmentsUsed);
+      ++numberOfEnvironmentsUsed;
+
+      pointLights.lights.clear();
+      for (int i = 0; i < numberOfBest; i++)
+         pointLights.lights.add(lights.get(bestLightIndices[i]));
+
+      environment.clear();
+      environment.set(sceneEnvironment);
+      environment.set(pointLights);
+      environment.shadowMap = sceneEnvironment.shadowMap;
+      return environment;
+   }
+
+   /**
+    * Keeps the best lights sorted by how much they light the sphere around {@link #center}.
+    */
+   private int consider(int lightIndex, float radius, int numberOfBest)
+   {
+      if (candidateStamps[lightIndex] == stamp)
+         return numberOfBest;
+      candidateStamps[lightIndex] = stamp;
+
+      PointLight light = lights.get(lightIndex);
+      float distance = Math.max(light.position.dst(center) - radius, 0.0f);
+      if (distance > getRange(light))
+         return numberOfBest;
+
+      float score = light.intensity / (1.0f + distance * distance);
+      if (numberOfBest == maxLightsPerRenderable && score <= bestScores[numberOfBest - 1])
+         return numberOfBest;
+
+      int insertIndex = Math.min(numberOfBest, maxLightsPerRenderable - 1);
+      while (insertIndex > 0 && bestScores[insertIndex - 1] < score)
+      {
+         bestScores[insertIndex] = bestScores[insertIndex - 1];
+         bestLightIndices[insertIndex] = bestLightIndices[insertIndex - 1];
+         --insertIndex;
+      }
+      bestScores[insertIndex] = score;
+      bestLightIndices[insertIndex] = lightIndex;
+      return Math.min(numberOfBest + 1, maxLightsPerRenderable);
+   }
+
+   private static float getRange(PointLight light)
+   {
+      if (light instanceof PointLightEx pointLightEx && pointLightEx.range != null)
+         return pointLightEx.range;
+      return Float.POSITIVE_INFINITY;
+   }
+
+   private int toCell(float coordinate)
+   {
+      return (int) Math.floor(coordinate / cellSize);
+   }
+
+   private static long toKey(int x, int y, int z)
+   {
+      return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+   }
+
+   /** The size of the grid cells in meters, around the typical range of the lights. */
+   public void setCellSize(float cellSize)
+   {
+      this.cellSize = cellSize;
+      cells.clear();
+   }
+
+   public int getMaxLightsPerRenderable()
+   {
+      return maxLightsPerRenderable;
+   }
+}
@@ -9,9 +9,30 @@ import us.ihmc.rdx.tools.LibGDXTools;
 
 public class RDXDirectionalLight
 {
-   private final DirectionalLightEx directionalLightEx = new DirectionalLightEx();
+   private final DirectionalLightEx directionalLightEx;
+   private final RDXCascadedShadowMap shadowMap;
 
    public RDXDirectionalLight()
+   {
+      directionalLightEx = new DirectionalLightEx();
+      shadowMap = null;
+      setDefaults();
+   }
+
+   /**
+    * A light that casts shadows, see {@link RDXCascadedShadowMap}.
+    * Only one directional light in a scene casts shadows.
+    *
+    * @param maximumShadowDistance how far from the camera there are shadows, in meters
+    */
+   public RDXDirectionalLight(int shadowMapSize, int numberOfCascades, float maximumShadowDistance)
+   {
+      shadowMap = new RDXCascadedShadowMap(shadowMapSize, numberOfCascades, maximumShadowDistance);
+      directionalLightEx = shadowMap.getBaseLight();
+      setDefaults();
+   }
+
+   private void setDefaults()
    {
       float directionalLightIntensity = RDX3DScene.DEFAULT_DIRECTIONAL_LIGHT_INTENSITY;
       Vector3 direction = new Vector3(-1.0f, -4.0f, -2.0f);
@@ -27,4 +48,16 @@ public class RDXDirectionalLight
    {
       return directionalLightEx;
    }
+
+   /** @return null unless this light casts shadows */
+   public RDXCascadedShadowMap getShadowMap()
+   {
+      return shadowMap;
+   }
+
+   public void dispose()
+   {
+      if (shadowMap != null)
+         shadowMap.dispose();
+   }
 }
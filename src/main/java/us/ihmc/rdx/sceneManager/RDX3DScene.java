@@ -1,25 +1,33 @@
 package us.ihmc.rdx.sceneManager;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g3d.Environment;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.graphics.g3d.RenderableProvider;
 import com.badlogic.gdx.graphics.g3d.attributes.ColorAttribute;
 import com.badlogic.gdx.graphics.g3d.attributes.DirectionalLightsAttribute;
 import com.badlogic.gdx.graphics.g3d.attributes.PointLightsAttribute;
 import com.badlogic.gdx.graphics.g3d.attributes.SpotLightsAttribute;
+import com.badlogic.gdx.graphics.g3d.environment.DirectionalLight;
+import com.badlogic.gdx.graphics.g3d.environment.PointLight;
 import com.badlogic.gdx.graphics.g3d.shaders.DepthShader;
 import com.badlogic.gdx.graphics.g3d.utils.DepthShaderProvider;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FlushablePool;
+import net.mgsx.gltf.scene3d.attributes.CascadeShadowMapAttribute;
 import net.mgsx.gltf.scene3d.lights.DirectionalLightEx;
 import net.mgsx.gltf.scene3d.lights.PointLightEx;
-import net.mgsx.gltf.scene3d.scene.SceneRenderableSorter;
 import net.mgsx.gltf.scene3d.shaders.PBRShaderConfig;
 import net.mgsx.gltf.scene3d.shaders.PBRShaderProvider;
+import org.lwjgl.opengl.GL41;
 import us.ihmc.commons.exception.DefaultExceptionHandler;
 import us.ihmc.commons.exception.ExceptionTools;
+import us.ihmc.rdx.lighting.RDXClusteredPointLights;
 import us.ihmc.rdx.lighting.RDXDirectionalLight;
 import us.ihmc.rdx.lighting.RDXPointLight;
 import us.ihmc.rdx.tools.RDXModelBuilder;
@@ -27,12 +35,21 @@ import us.ihmc.rdx.vr.RDXVREye;
 import us.ihmc.robotics.robotSide.RobotSide;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 public class RDX3DScene
 {
    public static final float DEFAULT_AMBIENT_LIGHT_INTENSITY = 0.0f;
    public static final float DEFAULT_POINT_LIGHT_INTENSITY = 660.0f;
    public static final float DEFAULT_DIRECTIONAL_LIGHT_INTENSITY = 2.0f;
+   /**
+    * How many point lights the PBR shader evaluates per fragment. Scenes with more point lights
+    * than this give each renderable the ones nearest to it, see {@link RDXClusteredPointLights}.
+    */
+   public static final int MAX_POINT_LIGHTS_PER_RENDERABLE = 10;
+   /** Virtual things, like gizmos, don't cast shadows. */
+   private static final Set<RDXSceneLevel> SHADOW_CASTER_SCENE_LEVELS = Set.of(RDXSceneLevel.GROUND_TRUTH, RDXSceneLevel.MODEL);
 
    private final HashSet<ModelInstance> modelInstances = new HashSet<>();
    private final Set<RDXRenderableAdapter> renderables = new HashSet<>();
@@ -44,10 +61,43 @@ public class RDX3DScene
    private float directionalLightIntensity = DEFAULT_DIRECTIONAL_LIGHT_INTENSITY;
    private ModelBatch colorModelBatch;
    private ModelBatch depthModelBatch;
+   private RDXStereoModelBatch stereoModelBatch;
+   private RDXRenderQueueSorter renderQueueSorter;
    private Environment environment;
    private final PointLightsAttribute pointLights = new PointLightsAttribute();
    private final DirectionalLightsAttribute directionalLights = new DirectionalLightsAttribute();
    private final SpotLightsAttribute spotLights = new SpotLightsAttribute();
+   private RDXDirectionalLight shadowCastingDirectionalLight;
+   private Camera shadowFitCamera;
+   private long shadowsFrameID = -1;
+   private long shadowFitCameraRequestFrameID = Long.MIN_VALUE;
+   private long staticShadowCastersVersion = 0;
+   private RDXClusteredPointLights clusteredPointLights;
+   private boolean clusteringPointLights = false;
+   private RDXStaticBatch staticBatch;
+   private static final AtomicLong allScenesRedrawRequestCount = new AtomicLong();
+   private final AtomicLong redrawRequestCount = new AtomicLong();
+   private final FlushablePool<Renderable> fingerprintRenderablePool = new FlushablePool<>()
+   {
+      @Override
+      protected Renderable newObject()
+      {
+         return new Renderable();
+      }
+   };
+   private final Array<Renderable> fingerprintRenderables = new Array<>();
+   private final Set<RDXSceneLevel> fingerprintSceneLevels = new HashSet<>();
+   private long fingerprintFrameID = -1;
+   private long fingerprint;
+   private Set<RDXSceneLevel> sceneLevelsToFingerprintNextRender;
+   private RDXRenderableAdapter renderableBeingFingerprinted;
+   private long renderFingerprint;
+   private final RenderableProvider fingerprintingRenderableProvider = (renderables, pool) ->
+   {
+      int offset = renderables.size;
+      renderableBeingFingerprinted.getRenderables(renderables, pool);
+      renderFingerprint = hashRenderables(renderFingerprint, renderables, offset);
+   };
 
    public void create()
    {
@@ -62,7 +112,7 @@ public class RDX3DScene
       int maxBones = 0; // We aren't using bones
       PBRShaderConfig pbrColorShaderConfig = new PBRShaderConfig();
       pbrColorShaderConfig.numBones = maxBones;
-      pbrColorShaderConfig.numPointLights = 10; // Increase max
+      pbrColorShaderConfig.numPointLights = MAX_POINT_LIGHTS_PER_RENDERABLE;
       // pbrColorShaderConfig.numSpotLights = X  <-- Use this to enable spot lights
 
       DepthShader.Config depthShaderConfig = new DepthShader.Config();
@@ -70,10 +120,12 @@ public class RDX3DScene
 
       PBRShaderProvider pbrColorShader = PBRShaderProvider.createDefault(pbrColorShaderConfig);
       DepthShaderProvider pbrDepthShader = PBRShaderProvider.createDefaultDepth(depthShaderConfig);
-      SceneRenderableSorter sceneRenderableSorter = new SceneRenderableSorter();
+      renderQueueSorter = new RDXRenderQueueSorter();
 
-      colorModelBatch = new ModelBatch(pbrColorShader, sceneRenderableSorter);
+      colorModelBatch = new ModelBatch(pbrColorShader, renderQueueSorter);
       depthModelBatch = new ModelBatch(pbrDepthShader);
+      // Shares the shader provider so the shaders are only compiled once
+      stereoModelBatch = new RDXStereoModelBatch(pbrColorShader, renderQueueSorter);
 
       environment = new Environment();
       ambientLight = ColorAttribute.createAmbientLight(DEFAULT_AMBIENT_LIGHT_INTENSITY,
@@ -84,13 +136,37 @@ public class RDX3DScene
       environment.set(pointLights);
       environment.set(directionalLights);
       environment.set(spotLights);
+
+      clusteredPointLights = new RDXClusteredPointLights(MAX_POINT_LIGHTS_PER_RENDERABLE);
+
+      staticBatch = new RDXStaticBatch();
+      RDXRenderableAdapter staticBatchAdapter = addRenderableProvider(staticBatch, RDXSceneLevel.MODEL);
+      setStaticShadowCaster(staticBatchAdapter, true);
    }
 
    public void preRender(Camera camera)
    {
+      updateStaticBatch();
+      updateClusteredPointLights();
       colorModelBatch.begin(camera);
    }
 
+   /**
+    * Call before beginning a color pass, after the previous one has ended.
+    */
+   private void updateClusteredPointLights()
+   {
+      clusteringPointLights = pointLights.lights.size > MAX_POINT_LIGHTS_PER_RENDERABLE;
+      if (clusteringPointLights)
+         clusteredPointLights.update(pointLights);
+   }
+
+   private void updateStaticBatch()
+   {
+      if (staticBatch.update())
+         invalidateStaticShadows();
+   }
+
    public void preRenderDepth(Camera camera)
    {
       depthModelBatch.begin(camera);
@@ -122,6 +198,59 @@ public class RDX3DScene
       renderInternal(depthModelBatch, sceneLevel);
    }
 
+   /**
+    * Updates the shadow maps of the shadow casting directional light, if there is one.
+    * Call outside of any frame buffer, before rendering the scene.
+    *
+    * The cascades are fit to one camera and rendered once per frame, which all the 3D panels and
+    * VR eyes of the scene share. Refitting them for each panel would render the cached static
+    * cascades again every frame. See {@link #setShadowFitCamera}.
+    *
+    * @param verticalFieldOfView the camera's, in degrees
+    */
+   public void renderShadows(Camera camera, float verticalFieldOfView)
+   {
+      updateStaticBatch();
+      if (shadowCastingDirectionalLight == null)
+         return;
+
+      long frameID = Gdx.graphics.getFrameId();
+      if (camera == shadowFitCamera)
+         shadowFitCameraRequestFrameID = frameID;
+      else if (shadowFitCameraRequestFrameID >= frameID - 1) // The fit camera is rendering, so it does the fit
+         return;
+
+      if (shadowsFrameID == frameID)
+         return;
+      shadowsFrameID = frameID;
+
+      shadowCastingDirectionalLight.getShadowMap().update(camera, verticalFieldOfView, this, depthModelBatch);
+   }
+
+   /**
+    * The camera the shadow cascades are fit to, like the primary 3D panel's. While it isn't being
+    * rendered, like when its panel is closed, the first camera to render each frame is used.
+    */
+   public void setShadowFitCamera(Camera shadowFitCamera)
+   {
+      this.shadowFitCamera = shadowFitCamera;
+   }
+
+   /**
+    * Renders either the static shadow casters, which are cached, or the dynamic ones.
+    */
+   public void renderShadowCasters(ModelBatch modelBatch, boolean staticShadowCasters)
+   {
+      for (RDXRenderableAdapter renderable : renderables)
+      {
+         if (renderable.isStaticShadowCaster() == staticShadowCasters)
+         {
+            renderable.setSceneLevelsToRender(SHADOW_CASTER_SCENE_LEVELS);
+            modelBatch.render(renderable, environment);
+         }
+      }
+   }
+
    // For VR in particular
    public void renderToCamera(Camera camera)
    {
@@ -138,6 +267,8 @@ public class RDX3DScene
          }
       }
 
+      updateStaticBatch();
+      updateClusteredPointLights();
       colorModelBatch.begin(camera);
       renderInternal(colorModelBatch, sceneLevelsToRender);
 
@@ -157,15 +288,86 @@ public class RDX3DScene
       postRender();
    }
 
+   /**
+    * For single pass stereo VR. Traverses the scene levels shared by both eyes once and submits the
+    * draw calls to each half of the currently bound side by side render target. Then renders
+    * the eye specific scene levels, which are usually small, to each eye separately.
+    */
+   public void renderToStereoCameras(RDXVREye leftEye, RDXVREye rightEye, int eyeWidth, int eyeHeight)
+   {
+      renderToStereoCameras(leftEye, rightEye, eyeWidth, eyeHeight, null);
+   }
+
+   /**
+    * @param beforeEyeDraw see {@link RDXStereoModelBatch#setBeforeEyeDraw}, can be null
+    */
+   public void renderToStereoCameras(RDXVREye leftEye, RDXVREye rightEye, int eyeWidth, int eyeHeight, Consumer<RobotSide> beforeEyeDraw)
+   {
+      renderToStereoCameras(leftEye, rightEye, eyeWidth, eyeWidth, eyeHeight, beforeEyeDraw);
+   }
+
+   /**
+    * @param rightEyeViewportX where the right half of the render target starts, which is
+    *                          more than eyeWidth when only part of each half is drawn to
+    */
+   public void renderToStereoCameras(RDXVREye leftEye,
+                                     RDXVREye rightEye,
+                                     int rightEyeViewportX,
+                                     int eyeWidth,
+                                     int eyeHeight,
+                                     Consumer<RobotSide> beforeEyeDraw)
+   {
+      updateStaticBatch();
+      updateClusteredPointLights();
+      stereoModelBatch.setBeforeEyeDraw(beforeEyeDraw);
+      stereoModelBatch.begin(leftEye, rightEye, rightEyeViewportX, eyeWidth, eyeHeight);
+      renderInternal(stereoModelBatch, sceneLevelsToRender);
+      stereoModelBatch.end();
+
+      renderEyeSceneLevel(leftEye, RDXSceneLevel.VR_EYE_LEFT, 0, eyeWidth, eyeHeight);
+      renderEyeSceneLevel(rightEye, RDXSceneLevel.VR_EYE_RIGHT, rightEyeViewportX, eyeWidth, eyeHeight);
+   }
+
+   private void renderEyeSceneLevel(RDXVREye eye, RDXSceneLevel eyeSceneLevel, int viewportX, int eyeWidth, int eyeHeight)
+   {
+      GL41.glViewport(viewportX, 0, eyeWidth, eyeHeight);
+      colorModelBatch.begin(eye);
+      renderInternal(colorModelBatch, eyeSceneLevel.SINGLETON_SET);
+      colorModelBatch.end();
+   }
+
    private void renderInternal(ModelBatch modelBatch, Set<RDXSceneLevel> sceneLevelsToRender)
    {
+      boolean fingerprinting = modelBatch == colorModelBatch && sceneLevelsToRender.equals(sceneLevelsToFingerprintNextRender);
+      if (fingerprinting)
+      {
+         sceneLevelsToFingerprintNextRender = null;
+         renderFingerprint = 1;
+      }
+
       // All rendering except modelBatch.begin() and end()
       // Avoid rendering things twice
       for (RDXRenderableAdapter renderable : renderables)
       {
          renderable.setSceneLevelsToRender(sceneLevelsToRender);
 
-         modelBatch.render(renderable, environment);
+         RenderableProvider renderableProvider = renderable;
+         if (fingerprinting)
+         {
+            renderableBeingFingerprinted = renderable;
+            renderableProvider = fingerprintingRenderableProvider;
+         }
+
+         if (clusteringPointLights && (modelBatch == colorModelBatch || modelBatch == stereoModelBatch))
+            clusteredPointLights.render(modelBatch, renderableProvider, environment);
+         else
+            modelBatch.render(renderableProvider, environment);
+      }
+
+      if (fingerprinting)
+      {
+         renderableBeingFingerprinted = null;
+         renderFingerprint = hashLights(renderFingerprint);
       }
    }
 
@@ -187,6 +389,8 @@ public class RDX3DScene
       }
 
       colorModelBatch.dispose();
+      stereoModelBatch.dispose();
+      staticBatch.dispose();
    }
 
    public RDXRenderableAdapter addModelInstance(ModelInstance modelInstance)
@@ -201,6 +405,23 @@ public class RDX3DScene
       return addRenderableProvider(modelInstance, sceneLevel);
    }
 
+   /**
+    * For model instances that never move, like environments. They are merged with the other
+    * static model instances into a mesh per material, see {@link RDXStaticBatch}, and are
+    * static shadow casters. Rendered at {@link RDXSceneLevel#MODEL}.
+    */
+   public void addStaticModelInstance(ModelInstance modelInstance)
+   {
+      modelInstances.add(modelInstance);
+      staticBatch.add(modelInstance);
+   }
+
+   public void removeStaticModelInstance(ModelInstance modelInstance)
+   {
+      modelInstances.remove(modelInstance);
+      staticBatch.remove(modelInstance);
+   }
+
    public RDXRenderableAdapter addCoordinateFrame(double size)
    {
       return addModelInstance(RDXModelBuilder.createCoordinateFrameInstance(size), RDXSceneLevel.VIRTUAL);
@@ -256,16 +477,46 @@ public class RDX3DScene
       // new Throwable().printStackTrace();
 
       renderables.add(renderableAdapter);
+      if (renderableAdapter.isStaticShadowCaster())
+         invalidateStaticShadows();
    }
 
    public void removeRenderable(Object ownerKey)
    {
-      renderables.remove(renderableOwnerKeyMap.remove(ownerKey));
+      removeRenderableAdapter(renderableOwnerKeyMap.remove(ownerKey));
    }
 
    public void removeRenderableAdapter(RDXRenderableAdapter renderableAdapter)
    {
-      renderables.remove(renderableAdapter);
+      if (renderables.remove(renderableAdapter) && renderableAdapter.isStaticShadowCaster())
+         invalidateStaticShadows();
+   }
+
+   /**
+    * Static shadow casters, like environments and terrain, are rendered into cached shadow maps,
+    * which are only updated when the light moves or {@link #invalidateStaticShadows()} is called.
+    * Everything else is a dynamic shadow caster, rendered on top each frame.
+    */
+   public void setStaticShadowCaster(RDXRenderableAdapter renderableAdapter, boolean staticShadowCaster)
+   {
+      if (renderableAdapter.isStaticShadowCaster() != staticShadowCaster)
+      {
+         renderableAdapter.setStaticShadowCaster(staticShadowCaster);
+         invalidateStaticShadows();
+      }
+   }
+
+   /**
+    * Call when a static shadow caster has moved or changed.
+    */
+   public void invalidateStaticShadows()
+   {
+      ++staticShadowCastersVersion;
+   }
+
+   public long getStaticShadowCastersVersion()
+   {
+      return staticShadowCastersVersion;
    }
 
    public void addDefaultLighting()
@@ -284,6 +535,9 @@ public class RDX3DScene
    {
       pointLights.lights.clear();
       directionalLights.lights.clear();
+      shadowCastingDirectionalLight = null;
+      environment.shadowMap = null;
+      environment.remove(CascadeShadowMapAttribute.Type);
    }
 
    public void addPointLight(RDXPointLight pointLight)
@@ -294,6 +548,14 @@ public class RDX3DScene
    public void addDirectionalLight(RDXDirectionalLight directionalLight)
    {
       environment.add(directionalLight.getDirectionalLightEx());
+
+      if (directionalLight.getShadowMap() != null)
+      {
+         shadowCastingDirectionalLight = directionalLight;
+         environment.shadowMap = directionalLight.getShadowMap().getBaseLight();
+         if (directionalLight.getShadowMap().getNumberOfCascades() > 1)
+            environment.set(directionalLight.getShadowMap().getCascadeShadowMap().attribute);
+      }
    }
 
    public void removePointLight(RDXPointLight pointLight)
@@ -304,6 +566,13 @@ public class RDX3DScene
    public void removeDirectionalLight(RDXDirectionalLight directionalLight)
    {
       directionalLights.lights.removeValue(directionalLight.getDirectionalLightEx(), true);
+
+      if (directionalLight == shadowCastingDirectionalLight)
+      {
+         shadowCastingDirectionalLight = null;
+         environment.shadowMap = null;
+         environment.remove(CascadeShadowMapAttribute.Type);
+      }
    }
 
    public void setAmbientLightIntensity(float ambientLightIntensity)
@@ -351,11 +620,140 @@ public class RDX3DScene
       }
    }
 
+   /** Has the state change counters of the color passes. */
+   public RDXRenderQueueSorter getRenderQueueSorter()
+   {
+      return renderQueueSorter;
+   }
+
+   /** Call {@link RDXStaticBatch#rebuild()} after moving a static model instance. */
+   public RDXStaticBatch getStaticBatch()
+   {
+      return staticBatch;
+   }
+
+   /** For tuning the cell size to the lights' ranges. */
+   public RDXClusteredPointLights getClusteredPointLights()
+   {
+      return clusteredPointLights;
+   }
+
    public Environment getEnvironment()
    {
       return environment;
    }
 
+   /**
+    * For render on demand. Call from any thread when something changed that
+    * {@link #getRenderablesFingerprint} can't see, like new data written into an existing mesh,
+    * a material edited in place, or on each frame of an animation that doesn't move anything.
+    */
+   public void requestRedraw()
+   {
+      redrawRequestCount.incrementAndGet();
+   }
+
+   /**
+    * Like {@link #requestRedraw()}, for renderers that update their meshes in place and don't know
+    * which scene they're in, like {@link us.ihmc.rdx.RDXPointCloudRenderer}.
+    */
+   public static void requestRedrawOfAllScenes()
+   {
+      allScenesRedrawRequestCount.incrementAndGet();
+   }
+
+   /** Compare to the count at the last redraw to see if a redraw was requested since. */
+   public long getRedrawRequestCount()
+   {
+      return redrawRequestCount.get() + allScenesRedrawRequestCount.get();
+   }
+
+   /**
+    * Hash what the next color pass at these scene levels draws, as it draws it, so a redraw doesn't
+    * have to gather the renderables a second time for {@link #getRenderablesFingerprint}.
+    * Get it after with {@link #getLastRenderFingerprint()}.
+    */
+   public void fingerprintNextRender(Set<RDXSceneLevel> sceneLevels)
+   {
+      sceneLevelsToFingerprintNextRender = sceneLevels;
+   }
+
+   /** The same as {@link #getRenderablesFingerprint} would have been for what was drawn. */
+   public long getLastRenderFingerprint()
+   {
+      return renderFingerprint;
+   }
+
+   /**
+    * For render on demand. A hash of what would be drawn at these scene levels: the meshes,
+    * materials, transforms and lights. So most changes, like robots moving and graphics being
+    * rebuilt, are picked up without anything calling {@link #requestRedraw()}. Gathering all the
+    * renderables isn't free, so only call this when nothing else says to redraw. Computed once per
+    * frame for the same scene levels.
+    */
+   public long getRenderablesFingerprint(Set<RDXSceneLevel> sceneLevels)
+   {
+      long frameID = Gdx.graphics.getFrameId();
+      if (frameID == fingerprintFrameID && fingerprintSceneLevels.equals(sceneLevels))
+         return fingerprint;
+
+      long hash = 1;
+      for (RDXRenderableAdapter renderable : renderables)
+      {
+         fingerprintRenderables.clear();
+         renderable.getRenderables(fingerprintRenderables, fingerprintRenderablePool, sceneLevels);
+         hash = hashRenderables(hash, fingerprintRenderables, 0);
+         fingerprintRenderablePool.flush();
+      }
+      fingerprintRenderables.clear();
+
+      fingerprintFrameID = frameID;
+      fingerprintSceneLevels.clear();
+      fingerprintSceneLevels.addAll(sceneLevels);
+      fingerprint = hashLights(hash);
+      return fingerprint;
+   }
+
+   /**
+    * Materials are only hashed by identity, because hashing their attributes walks all of them.
+    * The last row of the transform is skipped, it's always the same.
+    */
+   private static long hashRenderables(long hash, Array<Renderable> renderables, int offset)
+   {
+      for (int i = offset; i < renderables.size; i++)
+      {
+         Renderable renderable = renderables.get(i);
+         hash = 31 * hash + System.identityHashCode(renderable.meshPart.mesh);
+         hash = 31 * hash + renderable.meshPart.offset;
+         hash = 31 * hash + renderable.meshPart.size;
+         hash = 31 * hash + System.identityHashCode(renderable.material);
+         float[] transform = renderable.worldTransform.val;
+         for (int j = 0; j < 12; j++)
+            hash = 31 * hash + Float.floatToIntBits(transform[j + j / 3]);
+      }
+      return hash;
+   }
+
+   private long hashLights(long hash)
+   {
+      for (int i = 0; i < pointLights.lights.size; i++)
+      {
+         PointLight light = pointLights.lights.get(i);
+         hash = 31 * hash + light.position.hashCode();
+         hash = 31 * hash + light.color.hashCode();
+         hash = 31 * hash + Float.floatToIntBits(light.intensity);
+      }
+      for (int i = 0; i < directionalLights.lights.size; i++)
+      {
+         DirectionalLight light = directionalLights.lights.get(i);
+         hash = 31 * hash + light.direction.hashCode();
+         hash = 31 * hash + light.color.hashCode();
+         if (light instanceof DirectionalLightEx directionalLightEx)
+            hash = 31 * hash + Float.floatToIntBits(directionalLightEx.intensity);
+      }
+      return 31 * hash + ambientLight.color.hashCode();
+   }
+
    public TreeSet<RDXSceneLevel> getSceneLevelsToRender()
    {
       return sceneLevelsToRender;
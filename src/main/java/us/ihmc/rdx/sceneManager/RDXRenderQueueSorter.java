@@ -0,0 +1,297 @@
+package us.ihmc.rdx.sceneManager;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IdentityMap;
+
+import java.util.Arrays;
+
+/**
+ * Sorts each pass's renderables by a 64 bit key with a radix sort, so the draw calls are grouped to
+ * minimize state changes, and transparent renderables are blended in a consistent order.
+ *
+ * Opaque renderables come first, grouped by shader, then by material, then front to back so the
+ * depth test rejects more fragments. Transparent renderables come after, back to front, then by
+ * shader and material.
+ *
+ * <pre>
+ * Opaque:      | 0 | shader 16 | material 16 | depth 31          |
+ * Transparent: | 1 | inverse depth 31          | shader 16 | material 16 |
+ * </pre>
+ *
+ * The number of state changes each frame is counted, both in the order the renderables were
+ * submitted and in the sorted order, so the reduction can be measured.
+ */
+public class RDXRenderQueueSorter implements RenderableSorter
+{
+   private static final int ID_BITS = 16;
+   private static final int ID_MASK = (1 << ID_BITS) - 1;
+   private static final int DEPTH_BITS = 31;
+   private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+   private static final long TRANSPARENT_BIT = 1L << 63;
+   private static final int RADIX_BITS = 8;
+   private static final int RADIX_BUCKETS = 1 << RADIX_BITS;
+
+   private final IdentityMap<Shader, Integer> shaderIDs = new IdentityMap<>();
+   private final IdentityMap<Material, Integer> materialIDs = new IdentityMap<>();
+   private final Array<Renderable> sorted = new Array<>();
+   private final int[] bucketCounts = new int[RADIX_BUCKETS];
+   private final Vector3 position = new Vector3();
+   private long[] keys = new long[0];
+   private long[] keysBuffer = new long[0];
+   private int[] indices = new int[0];
+   private int[] indicesBuffer = new int[0];
+
+   private long frameID = -1;
+   private int numberOfRenderables;
+   private int shaderChanges;
+   private int materialChanges;
+   private int blendingChanges;
+   private int unsortedShaderChanges;
+   private int unsortedMaterialChanges;
+   private int unsortedBlendingChanges;
+   private int lastFrameNumberOfRenderables;
+   private int lastFrameShaderChanges;
+   private int lastFrameMaterialChanges;
+   private int lastFrameBlendingChanges;
+   private int lastFrameUnsortedShaderChanges;
+   private int lastFrameUnsortedMaterialChanges;
+   private int lastFrameUnsortedBlendingChanges;
+
+   @Override
+   public void sort(Camera camera, Array<Renderable> renderables)
+   {
+      rollOverCounters();
+
+      // IDs only need to be consistent within a sort, and keeping them would hold on to every
+      // shader and material ever drawn, even after their models are disposed
+      shaderIDs.clear();
+      materialIDs.clear();
+
+      int size = renderables.size;
+      if (keys.length < size)
+      {
+         keys = new long[size];
+         keysBuffer = new long[size];
+         indices = new int[size];
+         indicesBuffer = new int[size];
+      }
+
+      countStateChanges(renderables, false);
+      if (size < 2)
+      {
+         countStateChanges(renderables, true);
+         return;
+      }
+
+      for (int i = 0; i < size; i++)
+      {
+         keys[i] = computeKey(camera, renderables.get(i));
+         indices[i] = i;
+      }
+
+      radixSort(size);
+
+      sorted.clear();
+      sorted.ensureCapacity(size);
+      for (int i = 0; i < size; i++)
+         sorted.add(renderables.get(indices[i]));
+      renderables.clear();
+      renderables.addAll(sorted);
+      sorted.clear();
+
+      countStateChanges(renderables, true);
+   }
+
+   private long computeKey(Camera camera, Renderable renderable)
+   {
+      long shaderID = getID(shaderIDs, renderable.shader);
+      long materialID = getID(materialIDs, renderable.material);
+
+      renderable.worldTransform.getTranslation(position);
+      if (renderable.meshPart.radius > 0.0f)
+         position.set(renderable.meshPart.center).mul(renderable.worldTransform);
+      float normalizedDepth = Math.min(camera.position.dst(position) / Math.abs(camera.far), 1.0f);
+      long depth = (long) (normalizedDepth * DEPTH_MASK);
+
+      if (isTransparent(renderable))
+      {
+         long inverseDepth = DEPTH_MASK - depth;
+         return TRANSPARENT_BIT | inverseDepth << (2 * ID_BITS) | shaderID << ID_BITS | materialID;
+      }
+      else
+      {
+         return shaderID << (ID_BITS + DEPTH_BITS) | materialID << DEPTH_BITS | depth;
+      }
+   }
+
+   private static <T> long getID(IdentityMap<T, Integer> ids, T object)
+   {
+      if (object == null)
+         return 0;
+
+      Integer id = ids.get(object);
+      if (id == null)
+      {
+         // IDs are only for grouping, so if a single sort runs out of them, start over
+         if (ids.size > ID_MASK - 1)
+            ids.clear();
+         id = ids.size + 1;
+         ids.put(object, id);
+      }
+      return id;
+   }
+
+   private static boolean isTransparent(Renderable renderable)
+   {
+      return renderable.material != null
+             && renderable.material.has(BlendingAttribute.Type)
+             && ((BlendingAttribute) renderable.material.get(BlendingAttribute.Type)).blended;
+   }
+
+   /**
+    * Least significant byte first, stable, so it's at most 8 passes over the keys no matter how many
+    * there are. Bytes that are the same in every key, which is most of them, are skipped.
+    */
+   private void radixSort(int size)
+   {
+      for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS)
+      {
+         Arrays.fill(bucketCounts, 0);
+         for (int i = 0; i < size; i++)
+            ++bucketCounts[(int) (keys[i] >>> shift) & (RADIX_BUCKETS - 1)];
+
+         // All in one bucket, like the material bits when there's only one material
+         if (bucketCounts[(int) (keys[0] >>> shift) & (RADIX_BUCKETS - 1)] == size)
+            continue;
+
+         int offset = 0;
+         for (int bucket = 0; bucket < RADIX_BUCKETS; bucket++)
+         {
+            int count = bucketCounts[bucket];
+            bucketCounts[bucket] = offset;
+            offset += count;
+         }
+
+         for (int i = 0; i < size; i++)
+         {
+            int bucket = (int) (keys[i] >>> shift) & (RADIX_BUCKETS - 1);
+            int destination = bucketCounts[bucket]++;
+            keysBuffer[destination] = keys[i];
+            indicesBuffer[destination] = indices[i];
+         }
+
+         long[] swapKeys = keys;
+         keys = keysBuffer;
+         keysBuffer = swapKeys;
+         int[] swapIndices = indices;
+         indices = indicesBuffer;
+         indicesBuffer = swapIndices;
+      }
+   }
+
+   private void countStateChanges(Array<Renderable> renderables, boolean isSorted)
+   {
+      int shaderChanges = 0;
+      int materialChanges = 0;
+      int blendingChanges = 0;
+      Shader previousShader = null;
+      Material previousMaterial = null;
+      boolean previousTransparent = false;
+      for (int i = 0; i < renderables.size; i++)
+      {
+         Renderable renderable = renderables.get(i);
+         if (renderable.shader != previousShader)
+            ++shaderChanges;
+         if (renderable.material != previousMaterial)
+            ++materialChanges;
+         boolean transparent = isTransparent(renderable);
+         if (i > 0 && transparent != previousTransparent)
+            ++blendingChanges;
+         previousShader = renderable.shader;
+         previousMaterial = renderable.material;
+         previousTransparent = transparent;
+      }
+
+      if (isSorted)
+      {
+         numberOfRenderables += renderables.size;
+         this.shaderChanges += shaderChanges;
+         this.materialChanges += materialChanges;
+         this.blendingChanges += blendingChanges;
+      }
+      else
+      {
+         unsortedShaderChanges += shaderChanges;
+         unsortedMaterialChanges += materialChanges;
+         unsortedBlendingChanges += blendingChanges;
+      }
+   }
+
+   private void rollOverCounters()
+   {
+      long currentFrameID = Gdx.graphics.getFrameId();
+      if (currentFrameID != frameID)
+      {
+         frameID = currentFrameID;
+         lastFrameNumberOfRenderables = numberOfRenderables;
+         lastFrameShaderChanges = shaderChanges;
+         lastFrameMaterialChanges = materialChanges;
+         lastFrameBlendingChanges = blendingChanges;
+         lastFrameUnsortedShaderChanges = unsortedShaderChanges;
+         lastFrameUnsortedMaterialChanges = unsortedMaterialChanges;
+         lastFrameUnsortedBlendingChanges = unsortedBlendingChanges;
+         numberOfRenderables = 0;
+         shaderChanges = 0;
+         materialChanges = 0;
+         blendingChanges = 0;
+         unsortedShaderChanges = 0;
+         unsortedMaterialChanges = 0;
+         unsortedBlendingChanges = 0;
+      }
+   }
+
+   /** Over all the passes sorted by this sorter in the last frame. */
+   public int getLastFrameNumberOfRenderables()
+   {
+      return lastFrameNumberOfRenderables;
+   }
+
+   public int getLastFrameShaderChanges()
+   {
+      return lastFrameShaderChanges;
+   }
+
+   public int getLastFrameMaterialChanges()
+   {
+      return lastFrameMaterialChanges;
+   }
+
+   public int getLastFrameBlendingChanges()
+   {
+      return lastFrameBlendingChanges;
+   }
+
+   /** What the shader changes would have been in the order the renderables were submitted. */
+   public int getLastFrameUnsortedShaderChanges()
+   {
+      return lastFrameUnsortedShaderChanges;
+   }
+
+   public int getLastFrameUnsortedMaterialChanges()
+   {
+      return lastFrameUnsortedMaterialChanges;
+   }
+
+   public int getLastFrameUnsortedBlendingChanges()
+   {
+      return lastFrameUnsortedBlendingChanges;
+   }
+}
@@ -13,6 +13,7 @@ public class RDXRenderableAdapter implements RenderableProvider
    private final RenderableProvider renderableProvider;
    private final RDXSceneLevel sceneLevel;
    private Set<RDXSceneLevel> sceneLevelsToRender;
+   private boolean staticShadowCaster = false;
 
    public RDXRenderableAdapter(RenderableProvider renderableProvider, RDXSceneLevel sceneLevel)
    {
@@ -30,6 +31,12 @@ public class RDXRenderableAdapter implements RenderableProvider
 
    @Override
    public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool)
+   {
+      getRenderables(renderables, pool, sceneLevelsToRender);
+   }
+
+   /** Without changing the scene levels set with {@link #setSceneLevelsToRender}. */
+   public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool, Set<RDXSceneLevel> sceneLevelsToRender)
    {
       if (rdxRenderableProvider != null)
       {
@@ -48,4 +55,15 @@ public class RDXRenderableAdapter implements RenderableProvider
    {
       this.sceneLevelsToRender = sceneLevelsToRender;
    }
+
+   /** Set with {@link RDX3DScene#setStaticShadowCaster}, so cached shadow maps get updated. */
+   void setStaticShadowCaster(boolean staticShadowCaster)
+   {
+      this.staticShadowCaster = staticShadowCaster;
+   }
+
+   public boolean isStaticShadowCaster()
+   {
+      return staticShadowCaster;
+   }
 }
@@ -0,0 +1,362 @@
+package us.ihmc.rdx.sceneManager;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Material;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.attributes.BlendingAttribute;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.math.Matrix3;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FlushablePool;
+import com.badlogic.gdx.utils.Pool;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.log.LogTools;
+import us.ihmc.tools.thread.MissingThreadTools;
+import us.ihmc.tools.thread.ResettableExceptionHandlingExecutorService;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Merges model instances that never move, like environments loaded with RDXModelLoader, into a
+ * few large meshes, one per material, with the vertices transformed to world frame. So instead of
+ * a draw call per mesh part per instance, there's one per material.
+ *
+ * Adding or removing an instance rebuilds the batch on a worker thread. Until it's done, the old
+ * batch keeps rendering, instances that were added are rendered by themselves, and instances that
+ * were removed are still in the batch.
+ *
+ * Mesh parts that aren't triangles, or that are blended, which need sorting back to front, are
+ * rendered by themselves. The indices are shorts, so a material with more than 65536 vertices
+ * gets a draw call per 65536 vertices.
+ */
+public class RDXStaticBatch implements RenderableProvider
+{
+   private static final int MAX_VERTICES_PER_MESH = 1 << 16;
+
+   private final Set<ModelInstance> modelInstances = new LinkedHashSet<>();
+   private final ResettableExceptionHandlingExecutorService executorService = MissingThreadTools.newSingleThreadExecutor(getClass().getSimpleName(), true, 1);
+   private final FlushablePool<Renderable> snapshotPool = new FlushablePool<>()
+   {
+      @Override
+      protected Renderable newObject()
+      {
+         return new Renderable();
+      }
+   };
+   private final Array<Renderable> snapshotRenderables = new Array<>();
+   private boolean rebuildRequested = false;
+   private final AtomicReference<Build> finishedBuild = new AtomicReference<>();
+   private Build build = new Build(Collections.emptySet(), new ArrayList<>(), new ArrayList<>(), 0);
+   private long numberOfRebuilds = 0;
+
+   private record SourcePart(MeshPart meshPart, MeshData meshData, Material material, Matrix4 worldTransform)
+   {
+   }
+
+   private record MeshData(VertexAttributes attributes, float[] vertices, short[] indices)
+   {
+   }
+
+   private record MaterialKey(Material material, VertexAttributes attributes)
+   {
+   }
+
+   private static class Chunk
+   {
+      private final Material material;
+      private final VertexAttributes attributes;
+      private float[] vertices = new float[0];
+      private short[] indices = new short[0];
+      private int numberOfVertices = 0;
+      private int numberOfIndices = 0;
+      private final BoundingBox bounds = new BoundingBox().inf();
+      private MeshPart meshPart;
+
+      private Chunk(Material material, VertexAttributes attributes)
+      {
+         this.material = material;
+         this.attributes = attributes;
+      }
+   }
+
+   private record Build(Set<ModelInstance> modelInstances, List<Chunk> chunks, List<SourcePart> unmergedParts, int numberOfSourceParts)
+   {
+   }
+
+   /** Takes effect on the next {@link #update()}. */
+   public void add(ModelInstance modelInstance)
+   {
+      if (modelInstances.add(modelInstance))
+         rebuildRequested = true;
+   }
+
+   /** Takes effect when the rebuild is done. */
+   public void remove(ModelInstance modelInstance)
+   {
+      if (modelInstances.remove(modelInstance))
+         rebuildRequested = true;
+   }
+
+   /** Call when an instance's transform or materials have changed. */
+   public void rebuild()
+   {
+      rebuildRequested = true;
+   }
+
+   /**
+    * Starts a rebuild if the instances changed and swaps in a finished one.
+    * Call on the render thread.
+    *
+    * @return whether a new batch was swapped in
+    */
+   public boolean update()
+   {
+      if (rebuildRequested)
+      {
+         rebuildRequested = false;
+         List<SourcePart> sourceParts = snapshot();
+         Set<ModelInstance> builtModelInstances = new HashSet<>(modelInstances);
+         executorService.clearQueueAndExecute(() -> finishedBuild.set(merge(builtModelInstances, sourceParts)));
+      }
+
+      // Taken atomically, so a newer build published in between isn't lost
+      Build newBuild = finishedBuild.getAndSet(null);
+      if (newBuild == null)
+         return false;
+
+      for (Chunk chunk : newBuild.chunks())
+      {
+         Mesh mesh = new Mesh(true, chunk.numberOfVertices, chunk.numberOfIndices, chunk.attributes);
+         mesh.setVertices(chunk.vertices, 0, chunk.numberOfVertices * chunk.attributes.vertexSize / Float.BYTES);
+         mesh.setIndices(chunk.indices, 0, chunk.numberOfIndices);
+         chunk.meshPart = new MeshPart("staticBatch", mesh, 0, chunk.numberOfIndices, GL41.GL_TRIANGLES);
+         chunk.bounds.getCenter(chunk.meshPart.center);
+         chunk.bounds.getDimensions(chunk.meshPart.halfExtents).scl(0.5f);
+         chunk.meshPart.radius = chunk.meshPart.halfExtents.len();
+         // The worker doesn't need them anymore
+         chunk.vertices = null;
+         chunk.indices = null;
+      }
+
+      disposeMeshes(build);
+      build = newBuild;
+      ++numberOfRebuilds;
+      LogTools.debug("Merged {} mesh parts into {} draw calls", build.numberOfSourceParts(), getNumberOfDrawCalls());
+      return true;
+   }
+
+   /**
+    * Copies what the worker needs on the render thread, so the instances can keep being used.
+    */
+   private List<SourcePart> snapshot()
+   {
+      List<SourcePart> sourceParts = new ArrayList<>();
+      IdentityHashMap<Mesh, MeshData> meshData = new IdentityHashMap<>();
+      for (ModelInstance modelInstance : modelInstances)
+      {
+         snapshotRenderables.clear();
+         modelInstance.getRenderables(snapshotRenderables, snapshotPool);
+         for (Renderable renderable : snapshotRenderables)
+         {
+            Mesh mesh = renderable.meshPart.mesh;
+            MeshData data = meshData.computeIfAbsent(mesh, key ->
+            {
+               float[] vertices = new float[mesh.getNumVertices() * mesh.getVertexSize() / Float.BYTES];
+               mesh.getVertices(vertices);
+               short[] indices = new short[mesh.getNumIndices()];
+               mesh.getIndices(indices);
+               return new MeshData(mesh.getVertexAttributes(), vertices, indices);
+            });
+            MeshPart meshPart = new MeshPart(renderable.meshPart);
+            sourceParts.add(new SourcePart(meshPart, data, renderable.material, new Matrix4(renderable.worldTransform)));
+         }
+         snapshotPool.flush();
+      }
+      snapshotRenderables.clear();
+      return sourceParts;
+   }
+
+   private static Build merge(Set<ModelInstance> modelInstances, List<SourcePart> sourceParts)
+   {
+      Map<MaterialKey, List<Chunk>> chunksByMaterial = new LinkedHashMap<>();
+      List<SourcePart> unmergedParts = new ArrayList<>();
+      Matrix3 normalMatrix = new Matrix3();
+      Vector3 vector = new Vector3();
+      int[] newVertexIndices = new int[0];
+
+      for (SourcePart sourcePart : sourceParts)
+      {
+         MeshPart meshPart = sourcePart.meshPart();
+         MeshData meshData = sourcePart.meshData();
+         // An upper bound, for when the mesh part shares vertices
+         int numberOfVertices = meshPart.size;
+         if (!isMergeable(sourcePart) || numberOfVertices > MAX_VERTICES_PER_MESH)
+         {
+            unmergedParts.add(sourcePart);
+            continue;
+         }
+
+         List<Chunk> chunks = chunksByMaterial.computeIfAbsent(new MaterialKey(sourcePart.material(), meshData.attributes()), key -> new ArrayList<>());
+         Chunk chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+         if (chunk == null || chunk.numberOfVertices + numberOfVertices > MAX_VERTICES_PER_MESH)
+         {
+            chunk = new Chunk(sourcePart.material(), meshData.attributes());
+            chunks.add(chunk);
+         }
+
+         int floatsPerVertex = meshData.attributes().vertexSize / Float.BYTES;
+         int sourceNumberOfVertices = meshData.vertices().length / floatsPerVertex;
+         if (newVertexIndices.length < sourceNumberOfVertices)
+            newVertexIndices = new int[sourceNumberOfVertices];
+         Arrays.fill(newVertexIndices, 0, sourceNumberOfVertices, -1);
+         chunk.vertices = ensureCapacity(chunk.vertices, (chunk.numberOfVertices + numberOfVertices) * floatsPerVertex);
+         chunk.indices = ensureCapacity(chunk.indices, chunk.numberOfIndices + meshPart.size);
+
+         normalMatrix.set(sourcePart.worldTransform()).inv().transpose();
+         boolean indexed = meshData.indices().length > 0;
+         for (int i = meshPart.offset; i < meshPart.offset + meshPart.size; i++)
+         {
+            int sourceVertexIndex = indexed ? Short.toUnsignedInt(meshData.indices()[i]) : i;
+            int vertexIndex = newVertexIndices[sourceVertexIndex];
+            if (vertexIndex < 0)
+            {
+               vertexIndex = chunk.numberOfVertices++;
+               newVertexIndices[sourceVertexIndex] = vertexIndex;
+               int destination = vertexIndex * floatsPerVertex;
+               System.arraycopy(meshData.vertices(), sourceVertexIndex * floatsPerVertex, chunk.vertices, destination, floatsPerVertex);
+               transformVertex(chunk, destination, sourcePart.worldTransform(), normalMatrix, vector);
+            }
+            chunk.indices[chunk.numberOfIndices++] = (short) vertexIndex;
+         }
+      }
+
+      List<Chunk> chunks = new ArrayList<>();
+      chunksByMaterial.values().forEach(chunks::addAll);
+      return new Build(modelInstances, chunks, unmergedParts, sourceParts.size());
+   }
+
+   private static boolean isMergeable(SourcePart sourcePart)
+   {
+      VertexAttribute position = sourcePart.meshData().attributes().findByUsage(VertexAttributes.Usage.Position);
+      BlendingAttribute blending = sourcePart.material() == null ? null : sourcePart.material().get(BlendingAttribute.class, BlendingAttribute.Type);
+      return sourcePart.meshPart().primitiveType == GL41.GL_TRIANGLES
+             && position != null && position.numComponents == 3
+             && (blending == null || !blending.blended);
+   }
+
+   private static void transformVertex(Chunk chunk, int offset, Matrix4 worldTransform, Matrix3 normalMatrix, Vector3 vector)
+   {
+      float[] vertices = chunk.vertices;
+      for (VertexAttribute attribute : chunk.attributes)
+      {
+         int index = offset + attribute.offset / Float.BYTES;
+         if (attribute.usage == VertexAttributes.Usage.Position)
+         {
+            vector.set(vertices[index], vertices[index + 1], vertices[index + 2]).mul(worldTransform);
+            chunk.bounds.ext(vector);
+         }
+         else if ((attribute.usage == VertexAttributes.Usage.Normal
+                   || attribute.usage == VertexAttributes.Usage.Tangent
+                   || attribute.usage == VertexAttributes.Usage.BiNormal) && attribute.numComponents >= 3)
+         {
+            vector.set(vertices[index], vertices[index + 1], vertices[index + 2]).mul(normalMatrix).nor();
+         }
+         else
+         {
+            continue;
+         }
+         vertices[index] = vector.x;
+         vertices[index + 1] = vector.y;
+         vertices[index + 2] = vector.z;
+      }
+   }
+
+   private static float[] ensureCapacity(float[] array, int size)
+   {
+      return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+   }
+
+   private static short[] ensureCapacity(short[] array, int size)
+   {
+      return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+   }
+
+   @Override
+   public void getRenderables(Array<Renderable> renderables, Pool<Renderable> pool)
+   {
+      for (Chunk chunk : build.chunks())
+      {
+         Renderable renderable = pool.obtain();
+         renderable.meshPart.set(chunk.meshPart);
+         renderable.material = chunk.material;
+         renderable.worldTransform.idt();
+         renderable.environment = null;
+         renderable.userData = null;
+         renderable.shader = null;
+         renderable.bones = null;
+         renderables.add(renderable);
+      }
+
+      for (SourcePart unmergedPart : build.unmergedParts())
+      {
+         Renderable renderable = pool.obtain();
+         renderable.meshPart.set(unmergedPart.meshPart());
+         renderable.material = unmergedPart.material();
+         renderable.worldTransform.set(unmergedPart.worldTransform());
+         renderable.environment = null;
+         renderable.userData = null;
+         renderable.shader = null;
+         renderable.bones = null;
+         renderables.add(renderable);
+      }
+
+      // Added since the last build
+      for (ModelInstance modelInstance : modelInstances)
+      {
+         if (!build.modelInstances().contains(modelInstance))
+            modelInstance.getRenderables(renderables, pool);
+      }
+   }
+
+   private static void disposeMeshes(Build build)
+   {
+      for (Chunk chunk : build.chunks())
+         chunk.meshPart.mesh.dispose();
+   }
+
+   public boolean isRebuilding()
+   {
+      return rebuildRequested || finishedBuild.get() != null || executorService.isExecuting();
+   }
+
+   public int getNumberOfDrawCalls()
+   {
+      return build.chunks().size() + build.unmergedParts().size();
+   }
+
+   /** The number of draw calls it would be without merging. */
+   public int getNumberOfSourceParts()
+   {
+      return build.numberOfSourceParts();
+   }
+
+   public long getNumberOfRebuilds()
+   {
+      return numberOfRebuilds;
+   }
+
+   public void dispose()
+   {
+      executorService.destroy();
+      // A finished build that wasn't swapped in has no meshes yet
+      disposeMeshes(build);
+   }
+}
@@ -0,0 +1,100 @@
+package us.ihmc.rdx.sceneManager;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.utils.RenderableSorter;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.robotics.robotSide.RobotSide;
+import us.ihmc.robotics.robotSide.SideDependentList;
+
+import java.util.function.Consumer;
+
+/**
+ * A model batch that renders everything it collects to both eyes of a side by side
+ * stereo render target. The scene is traversed once, the renderables are sorted once,
+ * and then the draw calls are submitted for the left eye viewport and the right eye
+ * viewport in turn. This avoids doing all the CPU side traversal twice.
+ */
+public class RDXStereoModelBatch extends ModelBatch
+{
+   private final SideDependentList<Camera> eyeCameras = new SideDependentList<>();
+   private int rightEyeViewportX;
+   private int eyeWidth;
+   private int eyeHeight;
+   private Consumer<RobotSide> beforeEyeDraw;
+
+   public RDXStereoModelBatch(ShaderProvider shaderProvider, RenderableSorter sorter)
+   {
+      super(shaderProvider, sorter);
+   }
+
+   /**
+    * The left eye is drawn into the left half of the currently bound frame buffer
+    * and the right eye into the right half.
+    */
+   public void begin(Camera leftEyeCamera, Camera rightEyeCamera, int eyeWidth, int eyeHeight)
+   {
+      begin(leftEyeCamera, rightEyeCamera, eyeWidth, eyeWidth, eyeHeight);
+   }
+
+   /**
+    * For drawing to only part of each half, like with dynamic resolution.
+    *
+    * @param rightEyeViewportX where the right half starts
+    */
+   public void begin(Camera leftEyeCamera, Camera rightEyeCamera, int rightEyeViewportX, int eyeWidth, int eyeHeight)
+   {
+      eyeCameras.set(RobotSide.LEFT, leftEyeCamera);
+      eyeCameras.set(RobotSide.RIGHT, rightEyeCamera);
+      this.rightEyeViewportX = rightEyeViewportX;
+      this.eyeWidth = eyeWidth;
+      this.eyeHeight = eyeHeight;
+      begin(leftEyeCamera);
+   }
+
+   /**
+    * Called right before each eye's draw calls, after the renderables have been gathered and sorted.
+    * Can be used to update the eye camera's view matrices with a newer pose.
+    */
+   public void setBeforeEyeDraw(Consumer<RobotSide> beforeEyeDraw)
+   {
+      this.beforeEyeDraw = beforeEyeDraw;
+   }
+
+   @Override
+   public void flush()
+   {
+      sorter.sort(camera, renderables);
+
+      for (RobotSide side : RobotSide.values)
+      {
+         if (beforeEyeDraw != null)
+            beforeEyeDraw.accept(side);
+         camera = eyeCameras.get(side);
+         GL41.glViewport(side == RobotSide.LEFT ? 0 : rightEyeViewportX, 0, eyeWidth, eyeHeight);
+
+         Shader currentShader = null;
+         for (int i = 0; i < renderables.size; i++)
+         {
+            Renderable renderable = renderables.get(i);
+            if (currentShader != renderable.shader)
+            {
+               if (currentShader != null)
+                  currentShader.end();
+               currentShader = renderable.shader;
+               currentShader.begin(camera, context);
+            }
+            currentShader.render(renderable);
+         }
+         if (currentShader != null)
+            currentShader.end();
+      }
+
+      camera = eyeCameras.get(RobotSide.LEFT);
+      renderablesPool.flush();
+      renderables.clear();
+   }
+}
@@ -15,6 +15,7 @@ public class RDXShader implements ShaderProvider
    private final Class<?> clazz;
    private BaseShader baseShader;
    private ShaderProgram shaderProgram;
+   private boolean blendingEnabled = false;
 
    public RDXShader(Class<?> clazz)
    {
@@ -42,7 +43,7 @@ public class RDXShader implements ShaderProvider
             // - cull face
             // - depth test
             // - depth mask
-            context.setBlending(false, GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+            context.setBlending(blendingEnabled, GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
             context.setCullFace(GL20.GL_BACK);
             context.setDepthTest(GL20.GL_LEQUAL, 0.0f, 50.0f);
             context.setDepthMask(true);
@@ -51,6 +52,14 @@ public class RDXShader implements ShaderProvider
       };
    }
 
+   /**
+    * For shaders that output alpha, like text. Disabled by default.
+    */
+   public void setBlendingEnabled(boolean blendingEnabled)
+   {
+      this.blendingEnabled = blendingEnabled;
+   }
+
    public void init(Renderable renderable)
    {
       baseShader.init(shaderProgram, renderable);
@@ -0,0 +1,266 @@
+package us.ihmc.rdx.simulation;
+
+import com.badlogic.gdx.graphics.Cubemap;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.SensorFrameBuffer;
+import com.badlogic.gdx.graphics.glutils.SensorFrameBufferAsyncReadback;
+import com.badlogic.gdx.graphics.glutils.SensorFrameBufferBuilder;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix3;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import org.apache.commons.lang3.tuple.Pair;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.transform.interfaces.RigidBodyTransformReadOnly;
+import us.ihmc.log.LogTools;
+import us.ihmc.rdx.lighting.AccessibleFrameBufferCubemap;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
+import us.ihmc.rdx.sceneManager.RDXSceneLevel;
+import us.ihmc.rdx.tools.LibGDXTools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Simulates a spinning lidar, like an Ouster or Velodyne. Each sweep renders the depth around the
+ * sensor into the six sides of a cubemap with {@link LidarCubemapModelBatch}, which culls per side,
+ * then a full screen pass samples the cubemap along each beam of the beam table to make a range image.
+ * This costs seven passes per sweep, no matter how many beams and azimuth samples there are, instead of
+ * casting every ray on the CPU.
+ *
+ * The range image has one row per beam, in the order of the beam table, and one column per azimuth
+ * sample, counterclockwise from the sensor's x axis. The sensor frame is x forward and z up.
+ * Ranges are in meters, 0 where there was no return.
+ */
+public class CubemapLidarSimulator
+{
+   /** Matches MAX_BEAMS in the shader. */
+   public static final int MAX_BEAMS = 256;
+
+   private final RigidBodyTransform sensorPose = new RigidBodyTransform();
+   private final Matrix4 sensorToWorld = new Matrix4();
+   private final Matrix3 sensorToWorldRotation = new Matrix3();
+   private PerspectiveCamera cubeCamera;
+   private AccessibleFrameBufferCubemap cubemapFrameBuffer;
+   private LidarCubemapModelBatch modelBatch;
+   private SensorFrameBuffer rangeImageFrameBuffer;
+   private ShaderProgram rangeImageShader;
+   private int vertexArrayHandle;
+   private float[] verticalAngles;
+   private int numberOfAzimuthSamples;
+   private float minimumRange;
+   private float maximumRange;
+   private FloatBuffer rangeBuffer;
+   private ByteBuffer rangeByteBuffer;
+
+   /**
+    * Needs to be on the libGDX thread.
+    *
+    * @param cubemapSideSize        the resolution of each side. Around the number of azimuth samples divided by 4
+    *                               keeps about one texel per sample at the horizon.
+    * @param verticalAngles         the elevation of each beam, in radians, up from the sensor's x-y plane
+    * @param numberOfAzimuthSamples the number of columns per revolution, like 512, 1024 or 2048
+    */
+   public void create(int cubemapSideSize, float[] verticalAngles, int numberOfAzimuthSamples, float minimumRange, float maximumRange)
+   {
+      if (verticalAngles.length > MAX_BEAMS)
+         throw new GdxRuntimeException("A lidar can have at most " + MAX_BEAMS + " beams, not " + verticalAngles.length);
+
+      this.verticalAngles = verticalAngles;
+      this.numberOfAzimuthSamples = numberOfAzimuthSamples;
+      this.minimumRange = minimumRange;
+      this.maximumRange = maximumRange;
+
+      cubeCamera = new PerspectiveCamera(90.0f, cubemapSideSize, cubemapSideSize);
+      cubeCamera.near = Math.min(0.05f, minimumRange);
+      // The depth along a side's axis is never more than the range
+      cubeCamera.far = maximumRange;
+
+      LogTools.info("Allocating lidar cubemap of side size: {} and range image of size: {}x{}",
+                    cubemapSideSize,
+                    numberOfAzimuthSamples,
+                    verticalAngles.length);
+      AccessibleFrameBufferCubemap.Builder cubemapBuilder = new AccessibleFrameBufferCubemap.Builder(cubemapSideSize, cubemapSideSize);
+      boolean gpuOnly = true;
+      cubemapBuilder.addFloatAttachment(GL41.GL_R32F, GL41.GL_RED, GL41.GL_FLOAT, gpuOnly);
+      cubemapBuilder.addDepthRenderBuffer(GL41.GL_DEPTH_COMPONENT32F);
+      cubemapFrameBuffer = cubemapBuilder.build();
+      // Interpolating depth across edges would make points that aren't on anything
+      cubemapFrameBuffer.getColorBufferTexture().setFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest);
+
+      SensorFrameBufferBuilder rangeImageBuilder = new SensorFrameBufferBuilder(numberOfAzimuthSamples, verticalAngles.length);
+      rangeImageBuilder.addColorTextureAttachment(GL41.GL_RGBA8, GL41.GL_RGBA, GL41.GL_UNSIGNED_BYTE);
+      rangeImageBuilder.addColorTextureAttachment(GL41.GL_R32F, GL41.GL_RED, GL41.GL_FLOAT);
+      rangeImageFrameBuffer = rangeImageBuilder.build();
+
+      rangeByteBuffer = ByteBuffer.allocateDirect(numberOfAzimuthSamples * verticalAngles.length * Float.BYTES);
+      rangeByteBuffer.order(ByteOrder.nativeOrder());
+      rangeBuffer = rangeByteBuffer.asFloatBuffer();
+
+      Pair<String, String> shaderStrings = LibGDXTools.loadCombinedShader(DepthSensorShader.class.getName().replace(".", "/") + ".glsl");
+      DepthSensorShader.Config config = new DepthSensorShader.Config(shaderStrings.getLeft(), shaderStrings.getRight());
+      config.numBones = 0; // We aren't using bones
+      config.numPointLights = 0;
+      config.numSpotLights = 0;
+      config.eyeDepthOnly = true;
+      modelBatch = new LidarCubemapModelBatch(new DepthSensorShaderProvider(config));
+
+      String rangeImageShaderPath = getClass().getName().replace(".", "/") + ".glsl";
+      shaderStrings = LibGDXTools.loadCombinedShader(rangeImageShaderPath);
+      rangeImageShader = new ShaderProgram(shaderStrings.getLeft(), shaderStrings.getRight());
+      if (!rangeImageShader.isCompiled())
+         throw new GdxRuntimeException("Failed to compile " + rangeImageShaderPath + ":\n" + rangeImageShader.getLog());
+
+      // The full screen triangle has no vertex attributes, but core profile needs a vertex array bound to draw
+      vertexArrayHandle = GL41.glGenVertexArrays();
+   }
+
+   /**
+    * Evenly spaced beams, like most spinning lidars.
+    *
+    * @return the vertical angles in radians, from the lowest beam to the highest
+    */
+   public static float[] createUniformBeamTable(int numberOfBeams, float lowestAngle, float highestAngle)
+   {
+      float[] verticalAngles = new float[numberOfBeams];
+      for (int i = 0; i < numberOfBeams; i++)
+      {
+         verticalAngles[i] = numberOfBeams == 1 ? lowestAngle : lowestAngle + i * (highestAngle - lowestAngle) / (numberOfBeams - 1);
+      }
+      return verticalAngles;
+   }
+
+   /**
+    * Sets the sensor frame in world for the next {@link #render}.
+    */
+   public void setSensorPose(RigidBodyTransformReadOnly sensorToWorld)
+   {
+      sensorPose.set(sensorToWorld);
+   }
+
+   /**
+    * Renders one sweep into the range image.
+    */
+   public void render(RDX3DScene scene, Set<RDXSceneLevel> sceneLevels)
+   {
+      // The cubemap sides stay aligned with world, only the beam directions are rotated
+      LibGDXTools.toLibGDX(sensorPose, sensorToWorld);
+      sensorToWorld.getTranslation(cubeCamera.position);
+      sensorToWorldRotation.set(sensorToWorld);
+
+      cubemapFrameBuffer.begin();
+      modelBatch.begin(cubeCamera, cubemapFrameBuffer);
+      scene.renderExternalBatch(modelBatch, sceneLevels);
+      modelBatch.end();
+      cubemapFrameBuffer.end();
+
+      rangeImageFrameBuffer.begin();
+      rangeImageShader.bind();
+      cubemapFrameBuffer.getColorBufferTexture().bind(0);
+      rangeImageShader.setUniformi("u_eyeDepthCubemap", 0);
+      rangeImageShader.setUniform1fv("u_verticalAngles", verticalAngles, 0, verticalAngles.length);
+      rangeImageShader.setUniformi("u_numberOfAzimuthSamples", numberOfAzimuthSamples);
+      rangeImageShader.setUniformMatrix("u_sensorToWorldRotation", sensorToWorldRotation);
+      rangeImageShader.setUniformf("u_rangeLimits", minimumRange, maximumRange);
+      GL41.glBindVertexArray(vertexArrayHandle);
+      GL41.glDrawArrays(GL41.GL_TRIANGLES, 0, 3);
+      GL41.glBindVertexArray(0);
+      rangeImageFrameBuffer.end();
+   }
+
+   /**
+    * Copies the range image to the CPU. This waits on the GPU to finish rendering.
+    * Use {@link #enableAsyncReadback} to not wait.
+    */
+   public void readRanges()
+   {
+      rangeImageFrameBuffer.begin();
+      GL41.glPixelStorei(GL41.GL_PACK_ALIGNMENT, 4);
+      rangeByteBuffer.rewind();
+      GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT1);
+      GL41.glReadPixels(0, 0, numberOfAzimuthSamples, verticalAngles.length, GL41.GL_RED, GL41.GL_FLOAT, rangeByteBuffer);
+      rangeImageFrameBuffer.end();
+   }
+
+   /**
+    * @return the range in meters from the last {@link #readRanges()}, 0 where there was no return
+    */
+   public float getRange(int beamIndex, int azimuthIndex)
+   {
+      return rangeBuffer.get(beamIndex * numberOfAzimuthSamples + azimuthIndex);
+   }
+
+   /**
+    * Delivers range images on a worker thread without stalling the render thread. The frames'
+    * depth is the range in meters and their camera pose is the sensor pose.
+    * See {@link SensorFrameBufferAsyncReadback}.
+    */
+   public void enableAsyncReadback(int ringSize, Consumer<SensorFrameBufferAsyncReadback.Frame> consumer)
+   {
+      rangeImageFrameBuffer.enableAsyncReadback(ringSize, consumer);
+      rangeImageFrameBuffer.getAsyncReadback().setDepthColorAttachment(GL41.GL_COLOR_ATTACHMENT1);
+   }
+
+   /**
+    * Call after {@link #render}.
+    */
+   public void requestAsyncReadback(long timestampNanos)
+   {
+      rangeImageFrameBuffer.begin();
+      rangeImageFrameBuffer.requestAsyncReadback(numberOfAzimuthSamples, verticalAngles.length, sensorPose, timestampNanos);
+      rangeImageFrameBuffer.end();
+   }
+
+   /**
+    * Call once per frame, so completed readbacks are delivered even on frames without a sweep.
+    */
+   public void pollAsyncReadback()
+   {
+      rangeImageFrameBuffer.pollAsyncReadback();
+   }
+
+   /** The range image shaded from white up close to black at the maximum range, for display. */
+   public Texture getRangeImageColorTexture()
+   {
+      return rangeImageFrameBuffer.getColorTexture();
+   }
+
+   public Cubemap getEyeDepthCubemap()
+   {
+      return cubemapFrameBuffer.getColorBufferTexture();
+   }
+
+   public FloatBuffer getRangeBuffer()
+   {
+      return rangeBuffer;
+   }
+
+   public int getNumberOfBeams()
+   {
+      return verticalAngles.length;
+   }
+
+   public int getNumberOfAzimuthSamples()
+   {
+      return numberOfAzimuthSamples;
+   }
+
+   public LidarCubemapModelBatch getModelBatch()
+   {
+      return modelBatch;
+   }
+
+   public void dispose()
+   {
+      GL41.glDeleteVertexArrays(vertexArrayHandle);
+      rangeImageShader.dispose();
+      modelBatch.dispose(); // Also disposes the shaders
+      rangeImageFrameBuffer.dispose();
+      cubemapFrameBuffer.dispose();
+   }
+}
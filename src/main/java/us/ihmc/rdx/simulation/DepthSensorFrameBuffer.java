@@ -1,35 +1,204 @@
 package us.ihmc.rdx.simulation;
 
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.glutils.GLOnlyTextureData;
+import com.badlogic.gdx.graphics.glutils.SensorFrameBuffer;
+import com.badlogic.gdx.graphics.glutils.SensorFrameBufferBuilder;
+import org.apache.commons.lang3.tuple.Pair;
 import org.lwjgl.opengl.GL41;
+import us.ihmc.log.LogTools;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
+import us.ihmc.rdx.sceneManager.RDXSceneLevel;
+import us.ihmc.rdx.tools.LibGDXTools;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Set;
 
 /**
- * TODO: Work in progress. Develop a general purpose shader for speeding up depth sensor simulation.
+ * Simulates several depth and color sensors at once. Each sensor gets a tile of one shared
+ * frame buffer and the scene is traversed once for all of them with {@link DepthSensorModelBatch},
+ * drawing with {@link DepthSensorShader}, which writes the color and the depth along the view axis
+ * in meters. A simulation with N cameras pays for one scene traversal instead of N.
+ *
+ * Tiles are laid out in a grid from the bottom left. Pixel coordinates of the read back
+ * data are GL's, with y up from the bottom.
  */
 public class DepthSensorFrameBuffer
 {
-   private Texture colorTexture;
-   private Pixmap colorPixmap;
+   private int tileWidth;
+   private int tileHeight;
+   private int numberOfSensors;
+   private int[] tileXs;
+   private int[] tileYs;
+   private PerspectiveCamera[] cameras;
+   private SensorFrameBuffer frameBuffer;
+   private DepthSensorModelBatch modelBatch;
+   private FloatBuffer depthBuffer;
+   private ByteBuffer depthByteBuffer;
+
+   /**
+    * Needs to be on the libGDX thread.
+    */
+   public void create(int tileWidth, int tileHeight, int numberOfSensors)
+   {
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      this.numberOfSensors = numberOfSensors;
+
+      int columns = (int) Math.ceil(Math.sqrt(numberOfSensors));
+      int rows = (numberOfSensors + columns - 1) / columns;
+      int width = columns * tileWidth;
+      int height = rows * tileHeight;
+
+      tileXs = new int[numberOfSensors];
+      tileYs = new int[numberOfSensors];
+      cameras = new PerspectiveCamera[numberOfSensors];
+      for (int i = 0; i < numberOfSensors; i++)
+      {
+         tileXs[i] = (i % columns) * tileWidth;
+         tileYs[i] = (i / columns) * tileHeight;
+         cameras[i] = new PerspectiveCamera(60.0f, tileWidth, tileHeight);
+      }
+
+      LogTools.info("Allocating {} sensor frame buffer of size: {}x{}", numberOfSensors, width, height);
+      SensorFrameBufferBuilder frameBufferBuilder = new SensorFrameBufferBuilder(width, height);
+      frameBufferBuilder.addColorTextureAttachment(GL41.GL_RGBA8, GL41.GL_RGBA, GL41.GL_UNSIGNED_BYTE);
+      frameBufferBuilder.addDepthTextureAttachment(GL41.GL_DEPTH_COMPONENT32F, GL41.GL_FLOAT);
+      frameBufferBuilder.addColorTextureAttachment(GL41.GL_R32F, GL41.GL_RED, GL41.GL_FLOAT);
+      frameBuffer = frameBufferBuilder.build();
+
+      depthByteBuffer = ByteBuffer.allocateDirect(width * height * Float.BYTES);
+      depthByteBuffer.order(ByteOrder.nativeOrder());
+      depthBuffer = depthByteBuffer.asFloatBuffer();
 
-   public void create(int width, int height)
+      Pair<String, String> shaderStrings = LibGDXTools.loadCombinedShader(DepthSensorShader.class.getName().replace(".", "/") + ".glsl");
+      DepthSensorShader.Config config = new DepthSensorShader.Config(shaderStrings.getLeft(), shaderStrings.getRight());
+      config.numBones = 0; // We aren't using bones
+      config.numPointLights = 0;
+      config.numSpotLights = 0;
+      DepthSensorShaderProvider shaderProvider = new DepthSensorShaderProvider(config);
+      modelBatch = new DepthSensorModelBatch(shaderProvider);
+   }
+
+   /**
+    * Set the pose, field of view, and near and far of these before {@link #render}.
+    * The viewport is the tile size.
+    */
+   public PerspectiveCamera getCamera(int sensorIndex)
    {
-      int internalFormat;
-      int format;
-      int type;
-      int levelOfDetail;
+      return cameras[sensorIndex];
+   }
 
-      levelOfDetail = 0; // not mattering; for uploading an image
-      internalFormat = GL41.GL_RGBA8;
-      format = GL41.GL_RGBA;
-      type = GL41.GL_UNSIGNED_BYTE;
-      GLOnlyTextureData colorTextureData = new GLOnlyTextureData(width, height, levelOfDetail, internalFormat, format, type);
-      colorTexture = new Texture(colorTextureData);
-      colorTexture.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
-      colorTexture.setWrap(Texture.TextureWrap.ClampToEdge, Texture.TextureWrap.ClampToEdge);
+   /**
+    * Renders all the sensors in one traversal of the scene. Pixels where nothing
+    * was hit have a depth of 0.
+    */
+   public void render(RDX3DScene scene, Set<RDXSceneLevel> sceneLevels)
+   {
+      for (Camera camera : cameras)
+         camera.update();
 
+      frameBuffer.begin();
+      GL41.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+      GL41.glClear(GL41.GL_COLOR_BUFFER_BIT | GL41.GL_DEPTH_BUFFER_BIT);
 
+      modelBatch.begin(cameras, tileXs, tileYs, tileWidth, tileHeight);
+      scene.renderExternalBatch(modelBatch, sceneLevels);
+      modelBatch.end();
 
+      frameBuffer.end();
+   }
+
+   /**
+    * Copies the color and depth of all the tiles to the CPU. This waits on the GPU to finish rendering.
+    */
+   public void readPixels()
+   {
+      frameBuffer.begin();
+      GL41.glPixelStorei(GL41.GL_PACK_ALIGNMENT, 4);
+
+      Pixmap colorPixmap = frameBuffer.getColorPixmap();
+      GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT0);
+      GL41.glReadPixels(0, 0, frameBuffer.getWidth(), frameBuffer.getHeight(), GL41.GL_RGBA, GL41.GL_UNSIGNED_BYTE, colorPixmap.getPixels());
+
+      depthByteBuffer.rewind();
+      GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT1);
+      GL41.glReadPixels(0, 0, frameBuffer.getWidth(), frameBuffer.getHeight(), GL41.GL_RED, GL41.GL_FLOAT, depthByteBuffer);
+
+      frameBuffer.end();
+   }
+
+   /**
+    * @return the depth in meters along the sensor's view axis from the last {@link #readPixels()}, 0 where nothing was hit
+    */
+   public float getDepth(int sensorIndex, int x, int y)
+   {
+      return depthBuffer.get((tileYs[sensorIndex] + y) * frameBuffer.getWidth() + tileXs[sensorIndex] + x);
+   }
+
+   /**
+    * @return RGBA8888 from the last {@link #readPixels()}
+    */
+   public int getColor(int sensorIndex, int x, int y)
+   {
+      return frameBuffer.getColorPixmap().getPixel(tileXs[sensorIndex] + x, tileYs[sensorIndex] + y);
+   }
+
+   /** All the tiles' color, see {@link #getTileX} and {@link #getTileY}. */
+   public Pixmap getColorPixmap()
+   {
+      return frameBuffer.getColorPixmap();
+   }
+
+   /** All the tiles' depth, row by row from the bottom, see {@link #getTileX} and {@link #getTileY}. */
+   public FloatBuffer getDepthBuffer()
+   {
+      return depthBuffer;
+   }
+
+   /** The R32F attachment with the depth in meters along the view axis, for GPU passes like {@link DepthSensorPointCloudPass}. */
+   public Texture getEyeDepthTexture()
+   {
+      return frameBuffer.getTextureAttachments().get(2);
+   }
+
+   public SensorFrameBuffer getFrameBuffer()
+   {
+      return frameBuffer;
+   }
+
+   public int getTileX(int sensorIndex)
+   {
+      return tileXs[sensorIndex];
+   }
+
+   public int getTileY(int sensorIndex)
+   {
+      return tileYs[sensorIndex];
+   }
+
+   public int getTileWidth()
+   {
+      return tileWidth;
+   }
+
+   public int getTileHeight()
+   {
+      return tileHeight;
+   }
+
+   public int getNumberOfSensors()
+   {
+      return numberOfSensors;
+   }
+
+   public void dispose()
+   {
+      modelBatch.dispose(); // Also disposes the shaders
+      frameBuffer.dispose();
    }
 }
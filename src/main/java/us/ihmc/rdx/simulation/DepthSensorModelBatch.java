@@ -0,0 +1,74 @@
+package us.ihmc.rdx.simulation;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import org.lwjgl.opengl.GL41;
+
+/**
+ * A model batch that renders everything it collects once per simulated sensor, each into
+ * its own tile of the currently bound frame buffer. The scene is traversed once and the
+ * renderables are sorted once, then the draw calls are submitted for each tile with that
+ * sensor's camera. This is like {@link us.ihmc.rdx.sceneManager.RDXStereoModelBatch}, but for N cameras.
+ */
+public class DepthSensorModelBatch extends ModelBatch
+{
+   private Camera[] tileCameras;
+   private int[] tileXs;
+   private int[] tileYs;
+   private int tileWidth;
+   private int tileHeight;
+
+   public DepthSensorModelBatch(ShaderProvider shaderProvider)
+   {
+      super(shaderProvider);
+   }
+
+   /**
+    * @param tileXs GL viewport x of each tile
+    * @param tileYs GL viewport y of each tile
+    */
+   public void begin(Camera[] tileCameras, int[] tileXs, int[] tileYs, int tileWidth, int tileHeight)
+   {
+      this.tileCameras = tileCameras;
+      this.tileXs = tileXs;
+      this.tileYs = tileYs;
+      this.tileWidth = tileWidth;
+      this.tileHeight = tileHeight;
+      begin(tileCameras[0]);
+   }
+
+   @Override
+   public void flush()
+   {
+      sorter.sort(camera, renderables);
+
+      for (int tile = 0; tile < tileCameras.length; tile++)
+      {
+         camera = tileCameras[tile];
+         GL41.glViewport(tileXs[tile], tileYs[tile], tileWidth, tileHeight);
+
+         Shader currentShader = null;
+         for (int i = 0; i < renderables.size; i++)
+         {
+            Renderable renderable = renderables.get(i);
+            if (currentShader != renderable.shader)
+            {
+               if (currentShader != null)
+                  currentShader.end();
+               currentShader = renderable.shader;
+               currentShader.begin(camera, context);
+            }
+            currentShader.render(renderable);
+         }
+         if (currentShader != null)
+            currentShader.end();
+      }
+
+      camera = tileCameras[0];
+      renderablesPool.flush();
+      renderables.clear();
+   }
+}
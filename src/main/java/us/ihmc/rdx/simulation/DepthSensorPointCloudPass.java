@@ -0,0 +1,335 @@
+package us.ihmc.rdx.simulation;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.GLBufferVertexData;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.rdx.RDXPointCloudRenderer;
+import us.ihmc.tools.thread.MissingThreadTools;
+import us.ihmc.tools.thread.ResettableExceptionHandlingExecutorService;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Turns a simulated depth image into a world frame point cloud on the GPU. A vertex shader runs once
+ * per decimated pixel, deprojects it with the sensor camera, adds depth noise, drops points outside
+ * the range limits, and writes position, color and size with transform feedback straight into the
+ * vertex buffer of an {@link RDXPointCloudRenderer} created with {@link RDXPointCloudRenderer#createForGPUBuffer}.
+ * Nothing goes through the CPU unless {@link #enableAsyncReadback} and {@link #requestReadback} are used.
+ *
+ * Points that are dropped are NaN, so the number of points is always the number of decimated pixels.
+ */
+public class DepthSensorPointCloudPass
+{
+   private final int program;
+   private final int vertexArrayHandle;
+   private final int depthTextureLocation;
+   private final int colorTextureLocation;
+   private final int depthIsEyeDepthLocation;
+   private final int nearFarLocation;
+   private final int tileOffsetLocation;
+   private final int outputWidthLocation;
+   private final int decimationLocation;
+   private final int focalLengthLocation;
+   private final int principalPointLocation;
+   private final int cameraToWorldLocation;
+   private final int rangeLimitsLocation;
+   private final int noiseStandardDeviationLocation;
+   private final int noiseSeedLocation;
+   private final int pointSizeLocation;
+   private final Matrix4 cameraToWorld = new Matrix4();
+   private int decimation = 1;
+   private float minimumRange = 0.0f;
+   private float maximumRange = Float.MAX_VALUE;
+   private float noiseStandardDeviation = 0.0f;
+   private float pointSize = 0.01f;
+
+   private int readbackRingSize;
+   private int[] readbackBuffers;
+   private long[] readbackFences;
+   private int[] readbackNumberOfPoints;
+   private FloatBuffer[] readbackFrames;
+   private AtomicBoolean[] readbackBeingConsumed;
+   private Consumer<FloatBuffer> readbackConsumer;
+   private ResettableExceptionHandlingExecutorService readbackExecutor;
+   private int readbackWriteIndex = 0;
+
+   /**
+    * Needs to be on the libGDX thread.
+    */
+   public DepthSensorPointCloudPass()
+   {
+      String path = getClass().getName().replace(".", "/") + ".glsl";
+      String vertexShaderSource = Gdx.files.classpath(path).readString();
+
+      int vertexShader = GL41.glCreateShader(GL41.GL_VERTEX_SHADER);
+      GL41.glShaderSource(vertexShader, vertexShaderSource);
+      GL41.glCompileShader(vertexShader);
+      if (GL41.glGetShaderi(vertexShader, GL41.GL_COMPILE_STATUS) == GL41.GL_FALSE)
+         throw new GdxRuntimeException("Failed to compile " + path + ":\n" + GL41.glGetShaderInfoLog(vertexShader));
+
+      program = GL41.glCreateProgram();
+      GL41.glAttachShader(program, vertexShader);
+      // Interleaved in the order of RDXPointCloudRenderer's vertex attributes
+      GL41.glTransformFeedbackVaryings(program, new CharSequence[] {"tf_position", "tf_color", "tf_size"}, GL41.GL_INTERLEAVED_ATTRIBS);
+      GL41.glLinkProgram(program);
+      GL41.glDeleteShader(vertexShader);
+      if (GL41.glGetProgrami(program, GL41.GL_LINK_STATUS) == GL41.GL_FALSE)
+         throw new GdxRuntimeException("Failed to link " + path + ":\n" + GL41.glGetProgramInfoLog(program));
+
+      depthTextureLocation = GL41.glGetUniformLocation(program, "u_depthTexture");
+      colorTextureLocation = GL41.glGetUniformLocation(program, "u_colorTexture");
+      depthIsEyeDepthLocation = GL41.glGetUniformLocation(program, "u_depthIsEyeDepth");
+      nearFarLocation = GL41.glGetUniformLocation(program, "u_nearFar");
+      tileOffsetLocation = GL41.glGetUniformLocation(program, "u_tileOffset");
+      outputWidthLocation = GL41.glGetUniformLocation(program, "u_outputWidth");
+      decimationLocation = GL41.glGetUniformLocation(program, "u_decimation");
+      focalLengthLocation = GL41.glGetUniformLocation(program, "u_focalLength");
+      principalPointLocation = GL41.glGetUniformLocation(program, "u_principalPoint");
+      cameraToWorldLocation = GL41.glGetUniformLocation(program, "u_cameraToWorld");
+      rangeLimitsLocation = GL41.glGetUniformLocation(program, "u_rangeLimits");
+      noiseStandardDeviationLocation = GL41.glGetUniformLocation(program, "u_noiseStandardDeviation");
+      noiseSeedLocation = GL41.glGetUniformLocation(program, "u_noiseSeed");
+      pointSizeLocation = GL41.glGetUniformLocation(program, "u_pointSize");
+
+      // There are no vertex attributes, but core profile needs a vertex array bound to draw
+      vertexArrayHandle = GL41.glGenVertexArrays();
+   }
+
+   /**
+    * Renders the point cloud of one of the sensors of a {@link DepthSensorFrameBuffer}.
+    *
+    * @return the number of points written
+    */
+   public int render(DepthSensorFrameBuffer sensors, int sensorIndex, RDXPointCloudRenderer output, int firstPointIndex)
+   {
+      return render(sensors.getEyeDepthTexture(),
+                    true,
+                    sensors.getFrameBuffer().getColorTexture(),
+                    sensors.getTileX(sensorIndex),
+                    sensors.getTileY(sensorIndex),
+                    sensors.getTileWidth(),
+                    sensors.getTileHeight(),
+                    sensors.getCamera(sensorIndex),
+                    output,
+                    firstPointIndex);
+   }
+
+   /**
+    * @param depthIsEyeDepth true for depth in meters along the view axis, like the R32F attachment of
+    *                        {@link DepthSensorFrameBuffer}, false for a depth buffer, which is linearized
+    *                        with the camera's near and far
+    * @param firstPointIndex where in the output to start, so several sensors can go into one point cloud
+    * @return the number of points written, which may be clipped to fit in the output
+    */
+   public int render(Texture depthTexture,
+                     boolean depthIsEyeDepth,
+                     Texture colorTexture,
+                     int tileX,
+                     int tileY,
+                     int tileWidth,
+                     int tileHeight,
+                     PerspectiveCamera camera,
+                     RDXPointCloudRenderer output,
+                     int firstPointIndex)
+   {
+      int outputWidth = (tileWidth + decimation - 1) / decimation;
+      int outputHeight = (tileHeight + decimation - 1) / decimation;
+      int numberOfPoints = Math.min(outputWidth * outputHeight, output.getMaxPoints() - firstPointIndex);
+      if (numberOfPoints <= 0)
+         return 0;
+
+      float focalLength = tileHeight / (2.0f * (float) Math.tan(Math.toRadians(camera.fieldOfView) / 2.0));
+      cameraToWorld.set(camera.view).inv();
+
+      GL41.glUseProgram(program);
+      depthTexture.bind(0);
+      colorTexture.bind(1);
+      GL41.glActiveTexture(GL41.GL_TEXTURE0); // libGDX assumes unit 0 is active
+      GL41.glUniform1i(depthTextureLocation, 0);
+      GL41.glUniform1i(colorTextureLocation, 1);
+      GL41.glUniform1i(depthIsEyeDepthLocation, depthIsEyeDepth ? 1 : 0);
+      GL41.glUniform2f(nearFarLocation, camera.near, camera.far);
+      GL41.glUniform2i(tileOffsetLocation, tileX, tileY);
+      GL41.glUniform1i(outputWidthLocation, outputWidth);
+      GL41.glUniform1i(decimationLocation, decimation);
+      GL41.glUniform2f(focalLengthLocation, focalLength, focalLength);
+      GL41.glUniform2f(principalPointLocation, tileWidth / 2.0f, tileHeight / 2.0f);
+      GL41.glUniformMatrix4fv(cameraToWorldLocation, false, cameraToWorld.val);
+      GL41.glUniform2f(rangeLimitsLocation, minimumRange, maximumRange);
+      GL41.glUniform1f(noiseStandardDeviationLocation, noiseStandardDeviation);
+      GL41.glUniform1f(noiseSeedLocation, (float) Math.random() * 1000.0f);
+      GL41.glUniform1f(pointSizeLocation, pointSize);
+
+      long bytesPerPoint = RDXPointCloudRenderer.BYTES_PER_VERTEX;
+      int outputBuffer = output.getGPUVertexData().getBufferHandle();
+      GL41.glBindBufferRange(GL41.GL_TRANSFORM_FEEDBACK_BUFFER,
+                             0,
+                             outputBuffer,
+                             firstPointIndex * bytesPerPoint,
+                             numberOfPoints * bytesPerPoint);
+      GL41.glEnable(GL41.GL_RASTERIZER_DISCARD);
+      GL41.glBindVertexArray(vertexArrayHandle);
+      GL41.glBeginTransformFeedback(GL41.GL_POINTS);
+      GL41.glDrawArrays(GL41.GL_POINTS, 0, numberOfPoints);
+      GL41.glEndTransformFeedback();
+      GL41.glBindVertexArray(0);
+      GL41.glDisable(GL41.GL_RASTERIZER_DISCARD);
+      GL41.glBindBufferBase(GL41.GL_TRANSFORM_FEEDBACK_BUFFER, 0, 0);
+      GL41.glUseProgram(0);
+
+      output.setNumberOfPointsFromGPU(firstPointIndex + numberOfPoints);
+
+      return numberOfPoints;
+   }
+
+   /**
+    * For consumers that need the points on the CPU. Each {@link #requestReadback} copies the output
+    * buffer on the GPU into a ring of buffers, then delivers it to the consumer on a worker thread once
+    * the copy is done, without stalling the render thread. The buffer is only valid during the callback
+    * and has {@link RDXPointCloudRenderer#FLOATS_PER_VERTEX} floats per point.
+    */
+   public void enableAsyncReadback(int maxPoints, int ringSize, Consumer<FloatBuffer> consumer)
+   {
+      readbackRingSize = ringSize;
+      readbackConsumer = consumer;
+      readbackBuffers = new int[ringSize];
+      readbackFences = new long[ringSize];
+      readbackNumberOfPoints = new int[ringSize];
+      readbackFrames = new FloatBuffer[ringSize];
+      readbackBeingConsumed = new AtomicBoolean[ringSize];
+      for (int i = 0; i < ringSize; i++)
+      {
+         readbackBuffers[i] = GL41.glGenBuffers();
+         GL41.glBindBuffer(GL41.GL_COPY_WRITE_BUFFER, readbackBuffers[i]);
+         GL41.glBufferData(GL41.GL_COPY_WRITE_BUFFER, (long) maxPoints * RDXPointCloudRenderer.BYTES_PER_VERTEX, GL41.GL_STREAM_READ);
+         readbackFrames[i] = ByteBuffer.allocateDirect(maxPoints * RDXPointCloudRenderer.BYTES_PER_VERTEX)
+                                       .order(ByteOrder.nativeOrder())
+                                       .asFloatBuffer();
+         readbackBeingConsumed[i] = new AtomicBoolean(false);
+      }
+      GL41.glBindBuffer(GL41.GL_COPY_WRITE_BUFFER, 0);
+      readbackExecutor = MissingThreadTools.newSingleThreadExecutor(getClass().getSimpleName(), true, ringSize);
+   }
+
+   /**
+    * Reads back the whole point cloud of the output. Call it once after the last {@link #render}
+    * into it, so the consumer gets complete clouds with the points of every sensor.
+    */
+   public void requestReadback(RDXPointCloudRenderer output)
+   {
+      if (readbackConsumer == null)
+         return;
+
+      pollReadback();
+      if (readbackFences[readbackWriteIndex] != 0)
+         return; // The ring is full, so this one is dropped
+
+      int maxPoints = readbackFrames[readbackWriteIndex].capacity() / RDXPointCloudRenderer.FLOATS_PER_VERTEX;
+      GLBufferVertexData outputVertexData = output.getGPUVertexData();
+      int numberOfPoints = Math.min(outputVertexData.getNumVertices(), maxPoints);
+      readbackNumberOfPoints[readbackWriteIndex] = numberOfPoints;
+      GL41.glBindBuffer(GL41.GL_COPY_READ_BUFFER, outputVertexData.getBufferHandle());
+      GL41.glBindBuffer(GL41.GL_COPY_WRITE_BUFFER, readbackBuffers[readbackWriteIndex]);
+      GL41.glCopyBufferSubData(GL41.GL_COPY_READ_BUFFER, GL41.GL_COPY_WRITE_BUFFER, 0L, 0L, (long) numberOfPoints * RDXPointCloudRenderer.BYTES_PER_VERTEX);
+      GL41.glBindBuffer(GL41.GL_COPY_READ_BUFFER, 0);
+      GL41.glBindBuffer(GL41.GL_COPY_WRITE_BUFFER, 0);
+      readbackFences[readbackWriteIndex] = GL41.glFenceSync(GL41.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+      readbackWriteIndex = (readbackWriteIndex + 1) % readbackRingSize;
+   }
+
+   /**
+    * Delivers finished readbacks without blocking. Called by {@link #requestReadback}, but can be
+    * called every frame so readbacks get delivered when nothing is being rendered.
+    */
+   public void pollReadback()
+   {
+      if (readbackConsumer == null)
+         return;
+
+      for (int i = 0; i < readbackRingSize; i++)
+      {
+         int index = (readbackWriteIndex + i) % readbackRingSize; // Oldest first
+         if (readbackFences[index] == 0)
+            continue;
+
+         int waitResult = GL41.glClientWaitSync(readbackFences[index], 0, 0L);
+         if (waitResult != GL41.GL_ALREADY_SIGNALED && waitResult != GL41.GL_CONDITION_SATISFIED)
+            continue;
+
+         GL41.glDeleteSync(readbackFences[index]);
+         readbackFences[index] = 0;
+
+         AtomicBoolean beingConsumed = readbackBeingConsumed[index];
+         if (!beingConsumed.compareAndSet(false, true))
+            continue; // The consumer is behind, so this one is dropped
+
+         FloatBuffer frame = readbackFrames[index];
+         frame.clear().limit(readbackNumberOfPoints[index] * RDXPointCloudRenderer.FLOATS_PER_VERTEX);
+         GL41.glBindBuffer(GL41.GL_COPY_READ_BUFFER, readbackBuffers[index]);
+         GL41.glGetBufferSubData(GL41.GL_COPY_READ_BUFFER, 0L, frame);
+         GL41.glBindBuffer(GL41.GL_COPY_READ_BUFFER, 0);
+
+         readbackExecutor.execute(() ->
+         {
+            try
+            {
+               readbackConsumer.accept(frame);
+            }
+            finally
+            {
+               beingConsumed.set(false);
+            }
+         });
+      }
+   }
+
+   /** Only every nth pixel in x and y becomes a point. */
+   public void setDecimation(int decimation)
+   {
+      this.decimation = Math.max(1, decimation);
+   }
+
+   /** In meters along the view axis. */
+   public void setRangeLimits(float minimumRange, float maximumRange)
+   {
+      this.minimumRange = minimumRange;
+      this.maximumRange = maximumRange;
+   }
+
+   /**
+    * Gaussian depth noise, in meters at 1 meter away. It grows with the depth squared.
+    */
+   public void setNoiseStandardDeviation(float noiseStandardDeviation)
+   {
+      this.noiseStandardDeviation = noiseStandardDeviation;
+   }
+
+   public void setPointSize(float pointSize)
+   {
+      this.pointSize = pointSize;
+   }
+
+   public void dispose()
+   {
+      if (readbackExecutor != null)
+      {
+         readbackExecutor.destroy();
+         for (int i = 0; i < readbackRingSize; i++)
+         {
+            if (readbackFences[i] != 0)
+               GL41.glDeleteSync(readbackFences[i]);
+         }
+         GL41.glDeleteBuffers(readbackBuffers);
+      }
+      GL41.glDeleteVertexArrays(vertexArrayHandle);
+      GL41.glDeleteProgram(program);
+   }
+}
@@ -35,7 +35,8 @@ import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.GdxRuntimeException;
-import org.lwjgl.opengl.GL41;
+import net.mgsx.gltf.scene3d.attributes.PBRColorAttribute;
+import net.mgsx.gltf.scene3d.attributes.PBRTextureAttribute;
 
 public class DepthSensorShader extends BaseShader
 {
@@ -58,6 +59,8 @@ public class DepthSensorShader extends BaseShader
 		public int defaultCullFace = -1;
 		/** Set to 0 to disable depth test, -1 to inherit from {@link DepthSensorShader#defaultDepthFunc} */
 		public int defaultDepthFunc = -1;
+		/** Only output the depth along the view axis, to the first color attachment, like for a lidar's cubemap */
+		public boolean eyeDepthOnly = false;
 
 		public Config () {
 		}
@@ -102,6 +105,8 @@ public class DepthSensorShader extends BaseShader
 		public final static Uniform ambientTexture = new Uniform("u_ambientTexture", TextureAttribute.Ambient);
 		public final static Uniform ambientUVTransform = new Uniform("u_ambientUVTransform", TextureAttribute.Ambient);
 		public final static Uniform alphaTest = new Uniform("u_alphaTest");
+		public final static Uniform baseColorFactor = new Uniform("u_baseColorFactor", PBRColorAttribute.BaseColorFactor);
+		public final static Uniform baseColorTexture = new Uniform("u_baseColorTexture", PBRTextureAttribute.BaseColorTexture);
 
 		public final static Uniform ambientCube = new Uniform("u_ambientCubemap");
 		public final static Uniform dirLights = new Uniform("u_dirLights");
@@ -233,6 +238,20 @@ public class DepthSensorShader extends BaseShader
 				shader.set(inputID, ta.offsetU, ta.offsetV, ta.scaleU, ta.scaleV);
 			}
 		};
+		public final static Setter baseColorFactor = new LocalSetter() {
+			@Override
+			public void set (BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+				shader.set(inputID, ((ColorAttribute)(combinedAttributes.get(PBRColorAttribute.BaseColorFactor))).color);
+			}
+		};
+		public final static Setter baseColorTexture = new LocalSetter() {
+			@Override
+			public void set (BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
+				final int unit = shader.context.textureBinder.bind(((TextureAttribute)(combinedAttributes
+					.get(PBRTextureAttribute.BaseColorTexture))).textureDescription);
+				shader.set(inputID, unit);
+			}
+		};
 		public final static Setter specularColor = new LocalSetter() {
 			@Override
 			public void set (BaseShader shader, int inputID, Renderable renderable, Attributes combinedAttributes) {
@@ -437,6 +456,8 @@ public class DepthSensorShader extends BaseShader
 	public final int u_ambientTexture;
 	public final int u_ambientUVTransform;
 	public final int u_alphaTest;
+	public final int u_baseColorFactor;
+	public final int u_baseColorTexture;
 	// Lighting uniforms
 	protected final int u_ambientCubemap;
 	protected final int u_environmentCubemap;
@@ -518,10 +539,6 @@ public class DepthSensorShader extends BaseShader
 		final Attributes attributes = combineAttributes(renderable);
 		this.config = config;
 		this.program = shaderProgram;
-//		GL41.glBindFragDataLocation(program.getHandle(), 0, "out_color");
-//		GL41.glBindFragDataLocation(program.getHandle(), 0, "out_depth");
-		GL41.glBindFragDataLocation(program.getHandle(), 1, "out_processedDepth");
-		ShaderProgram.invalidateAllShaderPrograms(Gdx.app);
 //		LogTools.info("Vertex shader: \n{}", shaderProgram.getVertexShaderSource());
 //		LogTools.info("Fragment shader: \n{}", shaderProgram.getFragmentShaderSource());
 		this.lighting = renderable.environment != null;
@@ -585,6 +602,8 @@ public class DepthSensorShader extends BaseShader
 		u_ambientTexture = register(Inputs.ambientTexture, Setters.ambientTexture);
 		u_ambientUVTransform = register(Inputs.ambientUVTransform, Setters.ambientUVTransform);
 		u_alphaTest = register(Inputs.alphaTest);
+		u_baseColorFactor = register(Inputs.baseColorFactor, Setters.baseColorFactor);
+		u_baseColorTexture = register(Inputs.baseColorTexture, Setters.baseColorTexture);
 
 		u_ambientCubemap = lighting ? register(Inputs.ambientCube, new Setters.ACubemap(config.numDirectionalLights,
                                                                                       config.numPointLights)) : -1;
@@ -671,6 +690,7 @@ public class DepthSensorShader extends BaseShader
 				if (attributes.has(CubemapAttribute.EnvironmentMap)) prefix += "#define environmentCubemapFlag\n";
 			}
 		}
+		if (config.eyeDepthOnly) prefix += "#define eyeDepthOnlyFlag\n";
 		final int n = renderable.meshPart.mesh.getVertexAttributes().size();
 		for (int i = 0; i < n; i++) {
 			final VertexAttribute attr = renderable.meshPart.mesh.getVertexAttributes().get(i);
@@ -706,6 +726,11 @@ public class DepthSensorShader extends BaseShader
 		}
 		if ((attributesMask & ColorAttribute.Diffuse) == ColorAttribute.Diffuse)
 			prefix += "#define " + ColorAttribute.DiffuseAlias + "Flag\n";
+		// The scene's models mostly use the glTF PBR materials
+		if ((attributesMask & PBRColorAttribute.BaseColorFactor) == PBRColorAttribute.BaseColorFactor)
+			prefix += "#define baseColorFactorFlag\n";
+		if ((attributesMask & PBRTextureAttribute.BaseColorTexture) == PBRTextureAttribute.BaseColorTexture)
+			prefix += "#define baseColorTextureFlag\n";
 		if ((attributesMask & ColorAttribute.Specular) == ColorAttribute.Specular)
 			prefix += "#define " + ColorAttribute.SpecularAlias + "Flag\n";
 		if ((attributesMask & ColorAttribute.Emissive) == ColorAttribute.Emissive)
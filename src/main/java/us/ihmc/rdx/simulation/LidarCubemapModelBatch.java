@@ -0,0 +1,108 @@
+package us.ihmc.rdx.simulation;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Cubemap;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.Shader;
+import com.badlogic.gdx.graphics.g3d.utils.ShaderProvider;
+import com.badlogic.gdx.math.Vector3;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.rdx.lighting.AccessibleFrameBufferCubemap;
+
+/**
+ * A model batch that renders everything it collects into each of the six sides of a cubemap,
+ * like {@link DepthSensorModelBatch} does for tiles. The scene is traversed and sorted once,
+ * then each side only draws the renderables whose bounding spheres are in that side's frustum,
+ * so most renderables are drawn about once per sweep instead of six times.
+ */
+public class LidarCubemapModelBatch extends ModelBatch
+{
+   private static final Cubemap.CubemapSide[] SIDES = Cubemap.CubemapSide.values();
+
+   private final Vector3 center = new Vector3();
+   private final Vector3 scale = new Vector3();
+   private AccessibleFrameBufferCubemap cubemapFrameBuffer;
+   private int numberOfCulledRenderables;
+   private int numberOfDrawnRenderables;
+
+   public LidarCubemapModelBatch(ShaderProvider shaderProvider)
+   {
+      super(shaderProvider);
+   }
+
+   /**
+    * Call with the cubemap frame buffer begun.
+    *
+    * @param camera at the lidar's position with a 90 degree field of view. Its direction gets set for each side.
+    */
+   public void begin(Camera camera, AccessibleFrameBufferCubemap cubemapFrameBuffer)
+   {
+      this.cubemapFrameBuffer = cubemapFrameBuffer;
+      begin(camera);
+   }
+
+   @Override
+   public void flush()
+   {
+      sorter.sort(camera, renderables);
+      numberOfCulledRenderables = 0;
+      numberOfDrawnRenderables = 0;
+
+      for (Cubemap.CubemapSide side : SIDES)
+      {
+         cubemapFrameBuffer.bindSide(side, camera);
+         GL41.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+         GL41.glClear(GL41.GL_COLOR_BUFFER_BIT | GL41.GL_DEPTH_BUFFER_BIT);
+
+         Shader currentShader = null;
+         for (int i = 0; i < renderables.size; i++)
+         {
+            Renderable renderable = renderables.get(i);
+            if (!isInFrustum(renderable))
+            {
+               ++numberOfCulledRenderables;
+               continue;
+            }
+
+            if (currentShader != renderable.shader)
+            {
+               if (currentShader != null)
+                  currentShader.end();
+               currentShader = renderable.shader;
+               currentShader.begin(camera, context);
+            }
+            currentShader.render(renderable);
+            ++numberOfDrawnRenderables;
+         }
+         if (currentShader != null)
+            currentShader.end();
+      }
+
+      renderablesPool.flush();
+      renderables.clear();
+   }
+
+   private boolean isInFrustum(Renderable renderable)
+   {
+      float radius = renderable.meshPart.radius;
+      if (radius <= 0.0f) // The mesh part's bounds weren't computed
+         return true;
+
+      center.set(renderable.meshPart.center).mul(renderable.worldTransform);
+      renderable.worldTransform.getScale(scale);
+      return camera.frustum.sphereInFrustum(center, radius * Math.max(scale.x, Math.max(scale.y, scale.z)));
+   }
+
+   /** Over all six sides of the last flush. */
+   public int getNumberOfCulledRenderables()
+   {
+      return numberOfCulledRenderables;
+   }
+
+   /** Over all six sides of the last flush. */
+   public int getNumberOfDrawnRenderables()
+   {
+      return numberOfDrawnRenderables;
+   }
+}
@@ -0,0 +1,476 @@
+package us.ihmc.rdx.tools;
+
+import gnu.trove.list.array.TIntArrayList;
+import us.ihmc.euclid.geometry.interfaces.BoundingBox3DReadOnly;
+import us.ihmc.euclid.geometry.interfaces.Line3DReadOnly;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A dynamic bounding volume hierarchy of axis aligned bounding boxes, after the one in Box2D.
+ *
+ * Leaves store "fat" boxes that are grown by a margin, so objects that move a little
+ * don't cause any tree updates. When a leaf does need to move, it is removed and reinserted
+ * using the surface area heuristic, and the ancestors are rebalanced with tree rotations.
+ *
+ * Nodes are stored in flat arrays and recycled through a free list, so steady state use
+ * doesn't allocate.
+ *
+ * @param <T> the user data stored with each leaf
+ */
+public class RDXDynamicAABBTree<T>
+{
+   public static final int NULL_NODE = -1;
+   public static final double DEFAULT_MARGIN = 0.05;
+
+   private final double margin;
+   private int capacity = 16;
+   private int root = NULL_NODE;
+   private int freeList = NULL_NODE;
+   private int nodeCount = 0;
+   // min x, y, z, max x, y, z per node
+   private double[] bounds = new double[capacity * 6];
+   private int[] parents = new int[capacity];
+   private int[] leftChildren = new int[capacity];
+   private int[] rightChildren = new int[capacity];
+   private int[] heights = new int[capacity];
+   private Object[] userData = new Object[capacity];
+   private final TIntArrayList stack = new TIntArrayList();
+   private final double[] tempBounds = new double[6];
+
+   public RDXDynamicAABBTree()
+   {
+      this(DEFAULT_MARGIN);
+   }
+
+   /**
+    * @param margin how far leaf boxes are grown in each direction, in meters
+    */
+   public RDXDynamicAABBTree(double margin)
+   {
+      this.margin = margin;
+      buildFreeList(0);
+   }
+
+   /**
+    * @return the proxy ID, used to move and remove the leaf later
+    */
+   public int add(BoundingBox3DReadOnly boundingBox, T data)
+   {
+      int proxyID = allocateNode();
+      setFatBounds(proxyID, boundingBox);
+      userData[proxyID] = data;
+      heights[proxyID] = 0;
+      insertLeaf(proxyID);
+      return proxyID;
+   }
+
+   public void remove(int proxyID)
+   {
+      removeLeaf(proxyID);
+      freeNode(proxyID);
+   }
+
+   /**
+    * Only changes the tree if the new box is no longer contained in the fat box of the leaf.
+    *
+    * @return whether the tree was modified
+    */
+   public boolean update(int proxyID, BoundingBox3DReadOnly boundingBox)
+   {
+      int index = proxyID * 6;
+      boolean contained = bounds[index] <= boundingBox.getMinPoint().getX();
+      contained &= bounds[index + 1] <= boundingBox.getMinPoint().getY();
+      contained &= bounds[index + 2] <= boundingBox.getMinPoint().getZ();
+      contained &= bounds[index + 3] >= boundingBox.getMaxPoint().getX();
+      contained &= bounds[index + 4] >= boundingBox.getMaxPoint().getY();
+      contained &= bounds[index + 5] >= boundingBox.getMaxPoint().getZ();
+      if (contained)
+         return false;
+
+      removeLeaf(proxyID);
+      setFatBounds(proxyID, boundingBox);
+      insertLeaf(proxyID);
+      return true;
+   }
+
+   @SuppressWarnings("unchecked")
+   public T getUserData(int proxyID)
+   {
+      return (T) userData[proxyID];
+   }
+
+   /**
+    * Passes the user data of every leaf whose box is hit by the ray going forward from
+    * the line's point, in no particular order.
+    */
+   @SuppressWarnings("unchecked")
+   public void rayCast(Line3DReadOnly ray, Consumer<T> candidateConsumer)
+   {
+      if (root == NULL_NODE)
+         return;
+
+      double originX = ray.getPoint().getX();
+      double originY = ray.getPoint().getY();
+      double originZ = ray.getPoint().getZ();
+      double inverseDirectionX = 1.0 / ray.getDirection().getX();
+      double inverseDirectionY = 1.0 / ray.getDirection().getY();
+      double inverseDirectionZ = 1.0 / ray.getDirection().getZ();
+
+      stack.resetQuick();
+      stack.add(root);
+      while (!stack.isEmpty())
+      {
+         int node = stack.removeAt(stack.size() - 1);
+         if (rayHitsBox(node, originX, originY, originZ, inverseDirectionX, inverseDirectionY, inverseDirectionZ))
+         {
+            if (isLeaf(node))
+            {
+               candidateConsumer.accept((T) userData[node]);
+            }
+            else
+            {
+               stack.add(leftChildren[node]);
+               stack.add(rightChildren[node]);
+            }
+         }
+      }
+   }
+
+   private boolean rayHitsBox(int node,
+                              double originX,
+                              double originY,
+                              double originZ,
+                              double inverseDirectionX,
+                              double inverseDirectionY,
+                              double inverseDirectionZ)
+   {
+      int index = node * 6;
+      double near = 0.0;
+      double far = Double.POSITIVE_INFINITY;
+
+      // When the ray is parallel to a slab, it's only in it if the origin is. The slab math would
+      // give 0 * infinity = NaN for an origin on a face.
+      if (Double.isInfinite(inverseDirectionX))
+      {
+         if (originX < bounds[index] || originX > bounds[index + 3])
+            return false;
+      }
+      else
+      {
+         double t1 = (bounds[index] - originX) * inverseDirectionX;
+         double t2 = (bounds[index + 3] - originX) * inverseDirectionX;
+         near = Math.max(near, Math.min(t1, t2));
+         far = Math.min(far, Math.max(t1, t2));
+      }
+
+      if (Double.isInfinite(inverseDirectionY))
+      {
+         if (originY < bounds[index + 1] || originY > bounds[index + 4])
+            return false;
+      }
+      else
+      {
+         double t1 = (bounds[index + 1] - originY) * inverseDirectionY;
+         double t2 = (bounds[index + 4] - originY) * inverseDirectionY;
+         near = Math.max(near, Math.min(t1, t2));
+         far = Math.min(far, Math.max(t1, t2));
+      }
+
+      if (Double.isInfinite(inverseDirectionZ))
+      {
+         if (originZ < bounds[index + 2] || originZ > bounds[index + 5])
+            return false;
+      }
+      else
+      {
+         double t1 = (bounds[index + 2] - originZ) * inverseDirectionZ;
+         double t2 = (bounds[index + 5] - originZ) * inverseDirectionZ;
+         near = Math.max(near, Math.min(t1, t2));
+         far = Math.min(far, Math.max(t1, t2));
+      }
+
+      return near <= far;
+   }
+
+   private void insertLeaf(int leaf)
+   {
+      if (root == NULL_NODE)
+      {
+         root = leaf;
+         parents[root] = NULL_NODE;
+         return;
+      }
+
+      // Find the best sibling by descending with the surface area heuristic
+      int sibling = root;
+      while (!isLeaf(sibling))
+      {
+         int left = leftChildren[sibling];
+         int right = rightChildren[sibling];
+
+         double area = surfaceArea(sibling);
+         combine(sibling, leaf, tempBounds);
+         double combinedArea = surfaceArea(tempBounds);
+
+         // Cost of creating a new parent for this node and the new leaf
+         double cost = 2.0 * combinedArea;
+         // Minimum cost of pushing the leaf further down the tree
+         double inheritanceCost = 2.0 * (combinedArea - area);
+
+         double costLeft = descendCost(left, leaf) + inheritanceCost;
+         double costRight = descendCost(right, leaf) + inheritanceCost;
+
+         if (cost < costLeft && cost < costRight)
+            break;
+
+         sibling = costLeft < costRight ? left : right;
+      }
+
+      int oldParent = parents[sibling];
+      int newParent = allocateNode();
+      parents[newParent] = oldParent;
+      userData[newParent] = null;
+      combine(sibling, leaf, tempBounds);
+      System.arraycopy(tempBounds, 0, bounds, newParent * 6, 6);
+      heights[newParent] = heights[sibling] + 1;
+      leftChildren[newParent] = sibling;
+      rightChildren[newParent] = leaf;
+      parents[sibling] = newParent;
+      parents[leaf] = newParent;
+
+      if (oldParent != NULL_NODE)
+      {
+         if (leftChildren[oldParent] == sibling)
+            leftChildren[oldParent] = newParent;
+         else
+            rightChildren[oldParent] = newParent;
+      }
+      else
+      {
+         root = newParent;
+      }
+
+      refitAncestors(parents[leaf]);
+   }
+
+   private double descendCost(int child, int leaf)
+   {
+      combine(child, leaf, tempBounds);
+      if (isLeaf(child))
+         return surfaceArea(tempBounds);
+      else
+         return surfaceArea(tempBounds) - surfaceArea(child);
+   }
+
+   private void removeLeaf(int leaf)
+   {
+      if (leaf == root)
+      {
+         root = NULL_NODE;
+         return;
+      }
+
+      int parent = parents[leaf];
+      int grandParent = parents[parent];
+      int sibling = leftChildren[parent] == leaf ? rightChildren[parent] : leftChildren[parent];
+
+      if (grandParent != NULL_NODE)
+      {
+         if (leftChildren[grandParent] == parent)
+            leftChildren[grandParent] = sibling;
+         else
+            rightChildren[grandParent] = sibling;
+         parents[sibling] = grandParent;
+         freeNode(parent);
+
+         refitAncestors(grandParent);
+      }
+      else
+      {
+         root = sibling;
+         parents[sibling] = NULL_NODE;
+         freeNode(parent);
+      }
+   }
+
+   private void refitAncestors(int node)
+   {
+      while (node != NULL_NODE)
+      {
+         node = balance(node);
+
+         int left = leftChildren[node];
+         int right = rightChildren[node];
+         heights[node] = 1 + Math.max(heights[left], heights[right]);
+         combine(left, right, tempBounds);
+         System.arraycopy(tempBounds, 0, bounds, node * 6, 6);
+
+         node = parents[node];
+      }
+   }
+
+   /**
+    * Performs a left or right rotation if node A is imbalanced.
+    *
+    * @return the new root of the subtree
+    */
+   private int balance(int a)
+   {
+      if (isLeaf(a) || heights[a] < 2)
+         return a;
+
+      int b = leftChildren[a];
+      int c = rightChildren[a];
+      int balance = heights[c] - heights[b];
+
+      if (balance > 1)
+         return rotate(a, c, b, false);
+      if (balance < -1)
+         return rotate(a, b, c, true);
+      return a;
+   }
+
+   /**
+    * Promotes the taller child up to replace A.
+    */
+   private int rotate(int a, int tallChild, int shortChild, boolean tallChildIsLeft)
+   {
+      int f = leftChildren[tallChild];
+      int g = rightChildren[tallChild];
+
+      leftChildren[tallChild] = a;
+      parents[tallChild] = parents[a];
+      parents[a] = tallChild;
+
+      if (parents[tallChild] != NULL_NODE)
+      {
+         if (leftChildren[parents[tallChild]] == a)
+            leftChildren[parents[tallChild]] = tallChild;
+         else
+            rightChildren[parents[tallChild]] = tallChild;
+      }
+      else
+      {
+         root = tallChild;
+      }
+
+      int keep = heights[f] > heights[g] ? f : g;
+      int give = keep == f ? g : f;
+
+      rightChildren[tallChild] = keep;
+      if (tallChildIsLeft)
+         leftChildren[a] = give;
+      else
+         rightChildren[a] = give;
+      parents[give] = a;
+
+      combine(shortChild, give, tempBounds);
+      System.arraycopy(tempBounds, 0, bounds, a * 6, 6);
+      heights[a] = 1 + Math.max(heights[shortChild], heights[give]);
+
+      combine(a, keep, tempBounds);
+      System.arraycopy(tempBounds, 0, bounds, tallChild * 6, 6);
+      heights[tallChild] = 1 + Math.max(heights[a], heights[keep]);
+
+      return tallChild;
+   }
+
+   private void setFatBounds(int node, BoundingBox3DReadOnly boundingBox)
+   {
+      int index = node * 6;
+      bounds[index] = boundingBox.getMinPoint().getX() - margin;
+      bounds[index + 1] = boundingBox.getMinPoint().getY() - margin;
+      bounds[index + 2] = boundingBox.getMinPoint().getZ() - margin;
+      bounds[index + 3] = boundingBox.getMaxPoint().getX() + margin;
+      bounds[index + 4] = boundingBox.getMaxPoint().getY() + margin;
+      bounds[index + 5] = boundingBox.getMaxPoint().getZ() + margin;
+   }
+
+   private void combine(int nodeA, int nodeB, double[] result)
+   {
+      int a = nodeA * 6;
+      int b = nodeB * 6;
+      for (int i = 0; i < 3; i++)
+      {
+         result[i] = Math.min(bounds[a + i], bounds[b + i]);
+         result[i + 3] = Math.max(bounds[a + i + 3], bounds[b + i + 3]);
+      }
+   }
+
+   private double surfaceArea(int node)
+   {
+      System.arraycopy(bounds, node * 6, tempBounds, 0, 6);
+      return surfaceArea(tempBounds);
+   }
+
+   private static double surfaceArea(double[] box)
+   {
+      double dx = box[3] - box[0];
+      double dy = box[4] - box[1];
+      double dz = box[5] - box[2];
+      return 2.0 * (dx * dy + dy * dz + dz * dx);
+   }
+
+   private boolean isLeaf(int node)
+   {
+      return leftChildren[node] == NULL_NODE;
+   }
+
+   private int allocateNode()
+   {
+      if (freeList == NULL_NODE)
+      {
+         int oldCapacity = capacity;
+         capacity *= 2;
+         bounds = Arrays.copyOf(bounds, capacity * 6);
+         parents = Arrays.copyOf(parents, capacity);
+         leftChildren = Arrays.copyOf(leftChildren, capacity);
+         rightChildren = Arrays.copyOf(rightChildren, capacity);
+         heights = Arrays.copyOf(heights, capacity);
+         userData = Arrays.copyOf(userData, capacity);
+         buildFreeList(oldCapacity);
+      }
+
+      int node = freeList;
+      freeList = parents[node];
+      parents[node] = NULL_NODE;
+      leftChildren[node] = NULL_NODE;
+      rightChildren[node] = NULL_NODE;
+      heights[node] = 0;
+      ++nodeCount;
+      return node;
+   }
+
+   private void freeNode(int node)
+   {
+      userData[node] = null;
+      parents[node] = freeList; // The free list is linked through the parents array
+      heights[node] = -1;
+      freeList = node;
+      --nodeCount;
+   }
+
+   private void buildFreeList(int start)
+   {
+      for (int i = start; i < capacity - 1; i++)
+      {
+         parents[i] = i + 1;
+         heights[i] = -1;
+      }
+      parents[capacity - 1] = NULL_NODE;
+      heights[capacity - 1] = -1;
+      freeList = start;
+   }
+
+   public int getNodeCount()
+   {
+      return nodeCount;
+   }
+
+   public int getHeight()
+   {
+      return root == NULL_NODE ? 0 : heights[root];
+   }
+}
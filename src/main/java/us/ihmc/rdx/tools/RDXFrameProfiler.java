@@ -0,0 +1,570 @@
+package us.ihmc.rdx.tools;
+
+import com.badlogic.gdx.utils.IntArray;
+import imgui.ImDrawList;
+import imgui.ImGui;
+import imgui.ImVec2;
+import imgui.extension.implot.ImPlot;
+import imgui.flag.ImGuiCond;
+import imgui.type.ImBoolean;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.rdx.imgui.ImGuiNumberText;
+import us.ihmc.rdx.imgui.ImGuiUniqueLabelMap;
+import us.ihmc.rdx.imgui.ImPlotDoublePlotLine;
+import us.ihmc.rdx.imgui.ImPlotPlot;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how long each part of a frame takes on the CPU and the GPU, like each 3D panel, each
+ * scene pass, each VR eye and the ImGui draw. Scopes nest, so the results can be shown as a flame
+ * chart, and each scope keeps a rolling history so regressions can be tracked per subsystem.
+ *
+ * GL_TIME_ELAPSED queries can't be nested, so the GPU times come from a GL_TIMESTAMP query at the
+ * start and end of each scope. Like {@link RDXGPUTimer}, the results are read a few frames late,
+ * once available, so measuring never stalls the pipeline. If the GPU is more than
+ * {@link #FRAMES_IN_FLIGHT} frames behind, that frame only gets CPU times.
+ *
+ * All the methods need to be called on the libGDX thread.
+ */
+public class RDXFrameProfiler
+{
+   private static final int FRAMES_IN_FLIGHT = 3;
+   public static final int HISTORY_LENGTH = 240;
+   private static final String ROOT_SCOPE_NAME = "Frame";
+
+   private final ImGuiUniqueLabelMap labels = new ImGuiUniqueLabelMap(getClass());
+   private final Scope rootScope = new Scope(null, ROOT_SCOPE_NAME);
+   private final Map<String, Scope> scopesByPath = new LinkedHashMap<>();
+   private final FrameRecord[] frames = new FrameRecord[FRAMES_IN_FLIGHT];
+   private final FrameRecord lastResolvedFrame = new FrameRecord();
+   private final IntArray scopeStack = new IntArray();
+   private final ArrayList<Scope> resolvedScopes = new ArrayList<>();
+   private int resolveStamp = 0;
+   private final ImBoolean enabled = new ImBoolean(true);
+   private FrameRecord currentFrame;
+   private int currentFrameIndex = 0;
+   private long numberOfFrames = 0;
+   private long numberOfFramesWithoutGPUTimes = 0;
+   private Scope currentScope = rootScope;
+
+   private final ImPlotPlot flamePlot = new ImPlotPlot(150.0f);
+   private final ImPlotPlot historyPlot = new ImPlotPlot(150.0f);
+   private final Map<Scope, ImPlotDoublePlotLine> historyPlotLines = new HashMap<>();
+   private final ImVec2 rectangleMin = new ImVec2();
+   private final ImVec2 rectangleMax = new ImVec2();
+   private final ImBoolean showCPUTimes = new ImBoolean(false);
+   private final ImGuiNumberText numberOfFramesText = new ImGuiNumberText("Frames: ", ", ");
+   private final ImGuiNumberText numberOfFramesWithoutGPUTimesText = new ImGuiNumberText("without GPU times: ", "");
+
+   public static class Scope
+   {
+      private final Scope parent;
+      private final String name;
+      private final String path;
+      private final int depth;
+      private final Map<String, Scope> children = new LinkedHashMap<>();
+      private final double[] cpuHistoryMs = new double[HISTORY_LENGTH];
+      private final double[] gpuHistoryMs = new double[HISTORY_LENGTH];
+      private int historyIndex = 0;
+      private int historySize = 0;
+      private final int color;
+      private int resolveStamp = -1;
+      private double frameCPUMs;
+      private double frameGPUMs;
+      private final String indentedName;
+      private final ImGuiNumberText latestCPUText = new ImGuiNumberText();
+      private final ImGuiNumberText averageCPUText = new ImGuiNumberText();
+      private final ImGuiNumberText latestGPUText = new ImGuiNumberText();
+      private final ImGuiNumberText averageGPUText = new ImGuiNumberText();
+
+      private Scope(Scope parent, String name)
+      {
+         this.parent = parent;
+         this.name = name;
+         path = parent == null ? name : parent.path + "/" + name;
+         depth = parent == null ? 0 : parent.depth + 1;
+         indentedName = "  ".repeat(depth) + name;
+         // A stable pastel color per scope, in ImGui's ABGR
+         float hue = (path.hashCode() & 0xFFFF) / (float) 0xFFFF;
+         int rgb = java.awt.Color.HSBtoRGB(hue, 0.5f, 0.9f);
+         color = 0xFF000000 | (rgb & 0xFF) << 16 | (rgb & 0xFF00) | (rgb >> 16) & 0xFF;
+      }
+
+      private void addToHistory(double cpuMs, double gpuMs)
+      {
+         cpuHistoryMs[historyIndex] = cpuMs;
+         gpuHistoryMs[historyIndex] = gpuMs;
+         historyIndex = (historyIndex + 1) % HISTORY_LENGTH;
+         historySize = Math.min(historySize + 1, HISTORY_LENGTH);
+      }
+
+      private double average(double[] history)
+      {
+         double sum = 0.0;
+         int count = 0;
+         for (int i = 0; i < historySize; i++)
+         {
+            if (!Double.isNaN(history[i]))
+            {
+               sum += history[i];
+               ++count;
+            }
+         }
+         return count == 0 ? Double.NaN : sum / count;
+      }
+
+      private double latest(double[] history)
+      {
+         return historySize == 0 ? Double.NaN : history[(historyIndex + HISTORY_LENGTH - 1) % HISTORY_LENGTH];
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+
+      /** Like "Frame/3D View/Shadows" */
+      public String getPath()
+      {
+         return path;
+      }
+
+      public Scope getParent()
+      {
+         return parent;
+      }
+
+      public int getDepth()
+      {
+         return depth;
+      }
+
+      public List<Scope> getChildren()
+      {
+         return new ArrayList<>(children.values());
+      }
+
+      /** Over the frames in the history that this scope ran in. */
+      public double getAverageCPUMs()
+      {
+         return average(cpuHistoryMs);
+      }
+
+      /** Over the frames in the history that this scope ran in and the GPU times arrived for. */
+      public double getAverageGPUMs()
+      {
+         return average(gpuHistoryMs);
+      }
+
+      public double getLatestCPUMs()
+      {
+         return latest(cpuHistoryMs);
+      }
+
+      /** NaN when the GPU time didn't arrive in time. */
+      public double getLatestGPUMs()
+      {
+         return latest(gpuHistoryMs);
+      }
+
+      /**
+       * @param destination at least {@link #HISTORY_LENGTH} long, oldest first
+       * @return the number of values copied
+       */
+      public int getCPUHistoryMs(double[] destination)
+      {
+         return copyHistory(cpuHistoryMs, destination);
+      }
+
+      public int getGPUHistoryMs(double[] destination)
+      {
+         return copyHistory(gpuHistoryMs, destination);
+      }
+
+      private int copyHistory(double[] history, double[] destination)
+      {
+         int start = (historyIndex + HISTORY_LENGTH - historySize) % HISTORY_LENGTH;
+         for (int i = 0; i < historySize; i++)
+            destination[i] = history[(start + i) % HISTORY_LENGTH];
+         return historySize;
+      }
+   }
+
+   /**
+    * The scopes that ran in a frame, in the order they began, with the queries for their GPU times.
+    */
+   private static class FrameRecord
+   {
+      private final ArrayList<Scope> scopes = new ArrayList<>();
+      private final IntArray depths = new IntArray();
+      private int[] startQueries = new int[16];
+      private int[] endQueries = new int[16];
+      private long[] cpuStartNanos = new long[16];
+      private long[] cpuEndNanos = new long[16];
+      private double[] cpuStartMs = new double[16];
+      private double[] cpuDurationMs = new double[16];
+      private double[] gpuStartMs = new double[16];
+      private double[] gpuDurationMs = new double[16];
+      private final IntArray queryHandles = new IntArray();
+      private int numberOfQueriesUsed = 0;
+      private boolean pending = false;
+
+      private int add(Scope scope, int depth)
+      {
+         int index = scopes.size();
+         scopes.add(scope);
+         depths.add(depth);
+         if (cpuStartNanos.length <= index)
+         {
+            int length = cpuStartNanos.length * 2;
+            startQueries = Arrays.copyOf(startQueries, length);
+            endQueries = Arrays.copyOf(endQueries, length);
+            cpuStartNanos = Arrays.copyOf(cpuStartNanos, length);
+            cpuEndNanos = Arrays.copyOf(cpuEndNanos, length);
+            cpuStartMs = Arrays.copyOf(cpuStartMs, length);
+            cpuDurationMs = Arrays.copyOf(cpuDurationMs, length);
+            gpuStartMs = Arrays.copyOf(gpuStartMs, length);
+            gpuDurationMs = Arrays.copyOf(gpuDurationMs, length);
+         }
+         return index;
+      }
+
+      /** @return the index of the query */
+      private int queryTimestamp()
+      {
+         if (numberOfQueriesUsed == queryHandles.size)
+            queryHandles.add(GL41.glGenQueries());
+         GL41.glQueryCounter(queryHandles.get(numberOfQueriesUsed), GL41.GL_TIMESTAMP);
+         return numberOfQueriesUsed++;
+      }
+
+      private void clear()
+      {
+         scopes.clear();
+         depths.clear();
+         numberOfQueriesUsed = 0;
+         pending = false;
+      }
+   }
+
+   public RDXFrameProfiler()
+   {
+      scopesByPath.put(rootScope.path, rootScope);
+      for (int i = 0; i < FRAMES_IN_FLIGHT; i++)
+         frames[i] = new FrameRecord();
+
+      flamePlot.setXFlags(0);
+      flamePlot.setYFlags(0);
+      flamePlot.setCustomBeforePlotLogic(this::setFlamePlotLimits);
+      flamePlot.setCustomDuringPlotLogic(this::renderFlameChart);
+   }
+
+   /**
+    * Starts the frame's root scope. Call before anything else in the frame.
+    */
+   public void beginFrame()
+   {
+      resolveFinishedFrames();
+
+      currentFrame = null;
+      currentScope = rootScope;
+      scopeStack.clear();
+      if (!enabled.get())
+         return;
+
+      currentFrameIndex = (currentFrameIndex + 1) % FRAMES_IN_FLIGHT;
+      currentFrame = frames[currentFrameIndex];
+      if (currentFrame.pending)
+      {
+         // The GPU is too far behind to wait on it
+         resolve(currentFrame, false);
+         ++numberOfFramesWithoutGPUTimes;
+      }
+      currentFrame.clear();
+      beginScope(rootScope);
+   }
+
+   /**
+    * Ends the frame's root scope and any scopes that were left open.
+    */
+   public void endFrame()
+   {
+      if (currentFrame == null)
+         return;
+
+      while (scopeStack.size > 0)
+         endScope();
+      currentFrame.pending = true;
+      currentFrame = null;
+      ++numberOfFrames;
+   }
+
+   /**
+    * Begins a scope nested in the current one. Scopes with the same name under the same parent
+    * are the same scope. Does nothing outside of a frame or when disabled.
+    */
+   public void begin(String name)
+   {
+      if (currentFrame == null)
+         return;
+
+      Scope scope = currentScope.children.get(name);
+      if (scope == null)
+      {
+         scope = new Scope(currentScope, name);
+         currentScope.children.put(name, scope);
+         scopesByPath.put(scope.path, scope);
+      }
+      beginScope(scope);
+   }
+
+   public void end()
+   {
+      if (currentFrame == null || scopeStack.size <= 1) // The root scope is ended by endFrame()
+         return;
+
+      endScope();
+   }
+
+   private void beginScope(Scope scope)
+   {
+      int recordIndex = currentFrame.add(scope, scope.depth);
+      currentFrame.cpuStartNanos[recordIndex] = System.nanoTime();
+      currentFrame.startQueries[recordIndex] = currentFrame.queryTimestamp();
+      scopeStack.add(recordIndex);
+      currentScope = scope;
+   }
+
+   private void endScope()
+   {
+      int recordIndex = scopeStack.pop();
+      currentFrame.endQueries[recordIndex] = currentFrame.queryTimestamp();
+      currentFrame.cpuEndNanos[recordIndex] = System.nanoTime();
+      currentScope = currentScope.parent == null ? rootScope : currentScope.parent;
+   }
+
+   /**
+    * Queries finish in order, so a frame's results are all there once its last query's are.
+    */
+   private void resolveFinishedFrames()
+   {
+      for (int i = 1; i <= FRAMES_IN_FLIGHT; i++)
+      {
+         FrameRecord frame = frames[(currentFrameIndex + i) % FRAMES_IN_FLIGHT];
+         if (frame.pending && frame.numberOfQueriesUsed > 0)
+         {
+            int lastQuery = frame.queryHandles.get(frame.numberOfQueriesUsed - 1);
+            if (GL41.glGetQueryObjecti(lastQuery, GL41.GL_QUERY_RESULT_AVAILABLE) == GL41.GL_TRUE)
+               resolve(frame, true);
+         }
+      }
+   }
+
+   private void resolve(FrameRecord frame, boolean withGPUTimes)
+   {
+      frame.pending = false;
+      long cpuFrameStartNanos = frame.cpuStartNanos[0];
+      long gpuFrameStartNanos = withGPUTimes ? GL41.glGetQueryObjecti64(frame.queryHandles.get(0), GL41.GL_QUERY_RESULT) : 0;
+
+      for (int i = 0; i < frame.scopes.size(); i++)
+      {
+         frame.cpuStartMs[i] = (frame.cpuStartNanos[i] - cpuFrameStartNanos) * 1.0e-6;
+         frame.cpuDurationMs[i] = (frame.cpuEndNanos[i] - frame.cpuStartNanos[i]) * 1.0e-6;
+         if (withGPUTimes)
+         {
+            long gpuStartNanos = GL41.glGetQueryObjecti64(frame.queryHandles.get(frame.startQueries[i]), GL41.GL_QUERY_RESULT);
+            long gpuEndNanos = GL41.glGetQueryObjecti64(frame.queryHandles.get(frame.endQueries[i]), GL41.GL_QUERY_RESULT);
+            frame.gpuStartMs[i] = (gpuStartNanos - gpuFrameStartNanos) * 1.0e-6;
+            frame.gpuDurationMs[i] = (gpuEndNanos - gpuStartNanos) * 1.0e-6;
+         }
+         else
+         {
+            frame.gpuStartMs[i] = Double.NaN;
+            frame.gpuDurationMs[i] = Double.NaN;
+         }
+      }
+
+      // Scopes that ran more than once in the frame get their times summed
+      ++resolveStamp;
+      resolvedScopes.clear();
+      for (int i = 0; i < frame.scopes.size(); i++)
+      {
+         Scope scope = frame.scopes.get(i);
+         if (scope.resolveStamp != resolveStamp)
+         {
+            scope.resolveStamp = resolveStamp;
+            scope.frameCPUMs = 0.0;
+            scope.frameGPUMs = 0.0;
+            resolvedScopes.add(scope);
+         }
+         scope.frameCPUMs += frame.cpuDurationMs[i];
+         scope.frameGPUMs += frame.gpuDurationMs[i];
+      }
+      for (Scope scope : resolvedScopes)
+         scope.addToHistory(scope.frameCPUMs, scope.frameGPUMs);
+
+      copyForFlameChart(frame);
+   }
+
+   private void copyForFlameChart(FrameRecord frame)
+   {
+      lastResolvedFrame.clear();
+      for (int i = 0; i < frame.scopes.size(); i++)
+      {
+         int index = lastResolvedFrame.add(frame.scopes.get(i), frame.depths.get(i));
+         lastResolvedFrame.cpuStartMs[index] = frame.cpuStartMs[i];
+         lastResolvedFrame.cpuDurationMs[index] = frame.cpuDurationMs[i];
+         lastResolvedFrame.gpuStartMs[index] = frame.gpuStartMs[i];
+         lastResolvedFrame.gpuDurationMs[index] = frame.gpuDurationMs[i];
+      }
+   }
+
+   private void setFlamePlotLimits()
+   {
+      double frameMs = 1.0;
+      int maxDepth = 1;
+      for (int i = 0; i < lastResolvedFrame.scopes.size(); i++)
+      {
+         double start = showCPUTimes.get() ? lastResolvedFrame.cpuStartMs[i] : lastResolvedFrame.gpuStartMs[i];
+         double duration = showCPUTimes.get() ? lastResolvedFrame.cpuDurationMs[i] : lastResolvedFrame.gpuDurationMs[i];
+         if (!Double.isNaN(start + duration))
+            frameMs = Math.max(frameMs, start + duration);
+         maxDepth = Math.max(maxDepth, lastResolvedFrame.depths.get(i) + 1);
+      }
+      // The root scope on top
+      ImPlot.setNextPlotLimits(0.0, frameMs, -maxDepth, 0.0, ImGuiCond.Always);
+   }
+
+   /**
+    * Draws a bar per scope, from when it started to when it ended, in a row per depth.
+    */
+   private void renderFlameChart()
+   {
+      ImDrawList drawList = ImPlot.getPlotDrawList();
+      ImPlot.pushPlotClipRect();
+      String hoveredTooltip = null;
+      for (int i = 0; i < lastResolvedFrame.scopes.size(); i++)
+      {
+         Scope scope = lastResolvedFrame.scopes.get(i);
+         double start = showCPUTimes.get() ? lastResolvedFrame.cpuStartMs[i] : lastResolvedFrame.gpuStartMs[i];
+         double duration = showCPUTimes.get() ? lastResolvedFrame.cpuDurationMs[i] : lastResolvedFrame.gpuDurationMs[i];
+         if (Double.isNaN(start) || Double.isNaN(duration))
+            continue;
+
+         int depth = lastResolvedFrame.depths.get(i);
+         ImVec2 min = ImPlot.plotToPixels(start, -depth);
+         ImVec2 max = ImPlot.plotToPixels(start + duration, -depth - 1);
+         rectangleMin.set(min.x, Math.min(min.y, max.y));
+         rectangleMax.set(Math.max(max.x, min.x + 1.0f), Math.max(min.y, max.y) - 1.0f);
+         drawList.addRectFilled(rectangleMin.x, rectangleMin.y, rectangleMax.x, rectangleMax.y, scope.color);
+         if (rectangleMax.x - rectangleMin.x > ImGui.calcTextSize(scope.name).x + 4.0f)
+            drawList.addText(rectangleMin.x + 2.0f, rectangleMin.y, ImGui.getColorU32(0.0f, 0.0f, 0.0f, 1.0f), scope.name);
+
+         if (ImGui.isMouseHoveringRect(rectangleMin.x, rectangleMin.y, rectangleMax.x, rectangleMax.y))
+            hoveredTooltip = "%s%n%.3f ms, average %.3f ms".formatted(scope.path,
+                                                                        duration,
+                                                                        showCPUTimes.get() ? scope.getAverageCPUMs() : scope.getAverageGPUMs());
+      }
+      ImPlot.popPlotClipRect();
+      if (hoveredTooltip != null)
+         ImGui.setTooltip(hoveredTooltip);
+   }
+
+   public void renderImGuiWidgets()
+   {
+      ImGui.checkbox(labels.get("Enabled"), enabled);
+      ImGui.sameLine();
+      ImGui.checkbox(labels.get("Show CPU times"), showCPUTimes);
+      ImGui.text(numberOfFramesText.format(numberOfFrames));
+      ImGui.sameLine(0.0f, 0.0f);
+      ImGui.text(numberOfFramesWithoutGPUTimesText.format(numberOfFramesWithoutGPUTimes));
+
+      ImGui.text("Last measured frame, in ms:");
+      flamePlot.render();
+
+      ImGui.text("History of the top level scopes, in ms:");
+      for (Scope scope : rootScope.children.values())
+      {
+         ImPlotDoublePlotLine plotLine = historyPlotLines.get(scope);
+         if (plotLine == null)
+         {
+            plotLine = new ImPlotDoublePlotLine(scope.name, HISTORY_LENGTH, 5.0, new DecimalFormat("0.000"));
+            historyPlotLines.put(scope, plotLine);
+            historyPlot.getPlotLines().add(plotLine);
+         }
+         plotLine.addValue(showCPUTimes.get() ? scope.getLatestCPUMs() : scope.getLatestGPUMs());
+      }
+      historyPlot.render();
+
+      if (ImGui.beginTable(labels.get("Scopes"), 5))
+      {
+         ImGui.tableSetupColumn("Scope");
+         ImGui.tableSetupColumn("CPU ms");
+         ImGui.tableSetupColumn("CPU avg");
+         ImGui.tableSetupColumn("GPU ms");
+         ImGui.tableSetupColumn("GPU avg");
+         ImGui.tableHeadersRow();
+         for (Scope scope : scopesByPath.values())
+         {
+            ImGui.tableNextRow();
+            ImGui.tableSetColumnIndex(0);
+            ImGui.text(scope.indentedName);
+            ImGui.tableSetColumnIndex(1);
+            ImGui.text(scope.latestCPUText.format(scope.getLatestCPUMs(), 3));
+            ImGui.tableSetColumnIndex(2);
+            ImGui.text(scope.averageCPUText.format(scope.getAverageCPUMs(), 3));
+            ImGui.tableSetColumnIndex(3);
+            ImGui.text(scope.latestGPUText.format(scope.getLatestGPUMs(), 3));
+            ImGui.tableSetColumnIndex(4);
+            ImGui.text(scope.averageGPUText.format(scope.getAverageGPUMs(), 3));
+         }
+         ImGui.endTable();
+      }
+   }
+
+   public void setEnabled(boolean enabled)
+   {
+      this.enabled.set(enabled);
+   }
+
+   public boolean isEnabled()
+   {
+      return enabled.get();
+   }
+
+   /** The whole frame. The other scopes are nested in it. */
+   public Scope getRootScope()
+   {
+      return rootScope;
+   }
+
+   /**
+    * @param path like "Frame/3D View/Shadows", see {@link Scope#getPath()}
+    * @return null if that scope hasn't run yet
+    */
+   public Scope getScope(String path)
+   {
+      return scopesByPath.get(path);
+   }
+
+   public List<Scope> getScopes()
+   {
+      return new ArrayList<>(scopesByPath.values());
+   }
+
+   public void dispose()
+   {
+      for (FrameRecord frame : frames)
+      {
+         for (int i = 0; i < frame.queryHandles.size; i++)
+            GL41.glDeleteQueries(frame.queryHandles.get(i));
+      }
+   }
+}
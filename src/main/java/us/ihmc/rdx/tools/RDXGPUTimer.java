@@ -0,0 +1,80 @@
+package us.ihmc.rdx.tools;
+
+import org.lwjgl.opengl.GL41;
+
+/**
+ * Measures how long the GPU takes to execute the commands between {@link #begin()} and {@link #end()}
+ * using GL_TIME_ELAPSED queries.
+ *
+ * Query results arrive a few frames late, so there is a small ring of queries and results are
+ * only read once available. This never stalls the pipeline.
+ */
+public class RDXGPUTimer
+{
+   private static final int NUMBER_OF_QUERIES = 4;
+   private final int[] queryHandles = new int[NUMBER_OF_QUERIES];
+   private final boolean[] queryPending = new boolean[NUMBER_OF_QUERIES];
+   private int nextQueryIndex = 0;
+   private boolean running = false;
+   private double latestElapsedMs = Double.NaN;
+
+   /**
+    * Needs to be on the libGDX thread.
+    */
+   public RDXGPUTimer()
+   {
+      GL41.glGenQueries(queryHandles);
+   }
+
+   /**
+    * Only one GL_TIME_ELAPSED query can be active at a time, so timers can't be nested.
+    * If all queries are still waiting on results, this frame doesn't get measured.
+    */
+   public void begin()
+   {
+      pollResults();
+      if (!queryPending[nextQueryIndex])
+      {
+         GL41.glBeginQuery(GL41.GL_TIME_ELAPSED, queryHandles[nextQueryIndex]);
+         running = true;
+      }
+   }
+
+   public void end()
+   {
+      if (running)
+      {
+         GL41.glEndQuery(GL41.GL_TIME_ELAPSED);
+         queryPending[nextQueryIndex] = true;
+         nextQueryIndex = (nextQueryIndex + 1) % NUMBER_OF_QUERIES;
+         running = false;
+      }
+   }
+
+   private void pollResults()
+   {
+      // Check oldest first so the latest result ends up being the most recent
+      for (int i = 0; i < NUMBER_OF_QUERIES; i++)
+      {
+         int queryIndex = (nextQueryIndex + i) % NUMBER_OF_QUERIES;
+         if (queryPending[queryIndex] && GL41.glGetQueryObjecti(queryHandles[queryIndex], GL41.GL_QUERY_RESULT_AVAILABLE) == GL41.GL_TRUE)
+         {
+            latestElapsedMs = GL41.glGetQueryObjecti64(queryHandles[queryIndex], GL41.GL_QUERY_RESULT) * 1.0e-6;
+            queryPending[queryIndex] = false;
+         }
+      }
+   }
+
+   /**
+    * @return the most recent measurement, a few frames old, or NaN before the first one arrives
+    */
+   public double getLatestElapsedMs()
+   {
+      return latestElapsedMs;
+   }
+
+   public void dispose()
+   {
+      GL41.glDeleteQueries(queryHandles);
+   }
+}
@@ -0,0 +1,126 @@
+package us.ihmc.rdx.tools;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.glutils.GLFrameBuffer;
+import org.lwjgl.opengl.GL41;
+
+/**
+ * A frame buffer with multisampled color and depth render buffers, for rendering anti-aliased
+ * images that then get resolved into a regular texture backed frame buffer with glBlitFramebuffer.
+ *
+ * libGDX's frame buffers don't support multisampled render buffers, so this uses OpenGL directly.
+ */
+public class RDXMultisampleFrameBuffer
+{
+   private final int samples;
+   private final int width;
+   private final int height;
+   private final int frameBufferHandle;
+   private final int colorRenderBufferHandle;
+   private final int depthRenderBufferHandle;
+
+   /**
+    * @param samples clamped to GL_MAX_SAMPLES
+    */
+   public RDXMultisampleFrameBuffer(int samples, int width, int height)
+   {
+      this.samples = Math.min(samples, getMaxSamples());
+      this.width = width;
+      this.height = height;
+
+      frameBufferHandle = GL41.glGenFramebuffers();
+      GL41.glBindFramebuffer(GL41.GL_FRAMEBUFFER, frameBufferHandle);
+
+      colorRenderBufferHandle = GL41.glGenRenderbuffers();
+      GL41.glBindRenderbuffer(GL41.GL_RENDERBUFFER, colorRenderBufferHandle);
+      GL41.glRenderbufferStorageMultisample(GL41.GL_RENDERBUFFER, this.samples, GL41.GL_RGBA8, width, height);
+      GL41.glFramebufferRenderbuffer(GL41.GL_FRAMEBUFFER, GL41.GL_COLOR_ATTACHMENT0, GL41.GL_RENDERBUFFER, colorRenderBufferHandle);
+
+      depthRenderBufferHandle = GL41.glGenRenderbuffers();
+      GL41.glBindRenderbuffer(GL41.GL_RENDERBUFFER, depthRenderBufferHandle);
+      GL41.glRenderbufferStorageMultisample(GL41.GL_RENDERBUFFER, this.samples, GL41.GL_DEPTH_COMPONENT24, width, height);
+      GL41.glFramebufferRenderbuffer(GL41.GL_FRAMEBUFFER, GL41.GL_DEPTH_ATTACHMENT, GL41.GL_RENDERBUFFER, depthRenderBufferHandle);
+
+      GL41.glBindRenderbuffer(GL41.GL_RENDERBUFFER, 0);
+
+      int status = GL41.glCheckFramebufferStatus(GL41.GL_FRAMEBUFFER);
+      GLFrameBuffer.unbind();
+      if (status != GL41.GL_FRAMEBUFFER_COMPLETE)
+      {
+         dispose();
+         throw new IllegalStateException("Multisample frame buffer incomplete. Status: " + status);
+      }
+   }
+
+   public void begin()
+   {
+      begin(width, height);
+   }
+
+   /**
+    * For rendering to only part of the buffer, starting at the origin.
+    */
+   public void begin(int viewportWidth, int viewportHeight)
+   {
+      GL41.glBindFramebuffer(GL41.GL_FRAMEBUFFER, frameBufferHandle);
+      GL41.glViewport(0, 0, viewportWidth, viewportHeight);
+   }
+
+   /**
+    * Resolves the multisampled color into the color texture of the given frame buffer,
+    * which must be the same size, and unbinds.
+    */
+   public void endAndResolveTo(GLFrameBuffer<Texture> resolveFrameBuffer)
+   {
+      endAndResolveTo(resolveFrameBuffer.getFramebufferHandle(), width, height, 0, 0);
+   }
+
+   /**
+    * Resolves a width x height region at the origin into the given frame buffer at
+    * (destinationX, destinationY), and unbinds. Resolving can't scale, so the
+    * destination region is the same size.
+    */
+   public void endAndResolveTo(int resolveFrameBufferHandle, int width, int height, int destinationX, int destinationY)
+   {
+      GL41.glBindFramebuffer(GL41.GL_READ_FRAMEBUFFER, frameBufferHandle);
+      GL41.glBindFramebuffer(GL41.GL_DRAW_FRAMEBUFFER, resolveFrameBufferHandle);
+      GL41.glBlitFramebuffer(0,
+                             0,
+                             width,
+                             height,
+                             destinationX,
+                             destinationY,
+                             destinationX + width,
+                             destinationY + height,
+                             GL41.GL_COLOR_BUFFER_BIT,
+                             GL41.GL_NEAREST);
+      GLFrameBuffer.unbind();
+   }
+
+   public void dispose()
+   {
+      GL41.glDeleteRenderbuffers(colorRenderBufferHandle);
+      GL41.glDeleteRenderbuffers(depthRenderBufferHandle);
+      GL41.glDeleteFramebuffers(frameBufferHandle);
+   }
+
+   public static int getMaxSamples()
+   {
+      return GL41.glGetInteger(GL41.GL_MAX_SAMPLES);
+   }
+
+   public int getSamples()
+   {
+      return samples;
+   }
+
+   public int getWidth()
+   {
+      return width;
+   }
+
+   public int getHeight()
+   {
+      return height;
+   }
+}
@@ -5,7 +5,6 @@ import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.InputProcessor;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.glutils.SensorFrameBuffer;
-import com.badlogic.gdx.graphics.glutils.SensorFrameBufferBuilder;
 import com.badlogic.gdx.graphics.profiling.GLProfiler;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import imgui.ImGui;
@@ -21,15 +20,18 @@ import us.ihmc.rdx.imgui.ImGuiTools;
 import us.ihmc.rdx.imgui.RDXPanel;
 import us.ihmc.rdx.imgui.RDXPanelSizeHandler;
 import us.ihmc.rdx.input.ImGui3DViewInput;
+import us.ihmc.rdx.input.ImGui3DViewPickBroadPhase;
 import us.ihmc.rdx.input.RDXInputMode;
 import us.ihmc.rdx.sceneManager.RDX3DScene;
 import us.ihmc.rdx.sceneManager.RDX3DSceneTools;
 import us.ihmc.rdx.sceneManager.RDXSceneLevel;
 import us.ihmc.rdx.tools.LibGDXTools;
+import us.ihmc.rdx.tools.RDXFrameProfiler;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +41,8 @@ import java.util.function.Consumer;
 public class RDX3DPanel extends RDXPanel
 {
    public static final int OVERLAY_BACKGROUND_COLOR = new Color(1.0f, 1.0f, 1.0f, 0.5f).toIntBits();
+   /** Seconds the frame buffer has to be oversized for before it's swapped for a smaller one. */
+   private static final float SHRINK_DELAY = 2.0f;
    private final RDXPanelSizeHandler view3DPanelSizeHandler = new RDXPanelSizeHandler();
    private final String panelName;
    private final int antiAliasing;
@@ -46,9 +50,13 @@ public class RDX3DPanel extends RDXPanel
    private boolean modelSceneMouseCollisionEnabled = false;
    private GLProfiler glProfiler;
    private SensorFrameBuffer frameBuffer;
+   private RDX3DPanelFrameBufferPool frameBufferPool = new RDX3DPanelFrameBufferPool();
+   private boolean ownsFrameBufferPool = true;
+   private float oversizedDuration = 0.0f;
    private float windowSizeX;
    private float windowSizeY;
    private ImGui3DViewInput inputCalculator;
+   private final ImGui3DViewPickBroadPhase pickBroadPhase = new ImGui3DViewPickBroadPhase();
    private final ArrayList<Consumer<ImGui3DViewInput>> imgui3DViewPickCalculators = new ArrayList<>();
    private final ArrayList<Consumer<ImGui3DViewInput>> imgui3DViewInputProcessors = new ArrayList<>();
    private final Map<Object, Consumer<ImGui3DViewInput>> imgui3DViewPickCalculatorOwnerKeyMap = new HashMap<>();
@@ -78,6 +86,21 @@ public class RDX3DPanel extends RDXPanel
    private float windowPositionX;
    private float windowPositionY;
    private final RDX3DPanelNotificationManager notificationManager = new RDX3DPanelNotificationManager(this);
+   private final RDX3DPanelObjectIDPicker objectIDPicker = new RDX3DPanelObjectIDPicker(this);
+   private boolean frameBufferHasObjectIDAttachment = false;
+   private boolean renderOnDemand = false;
+   private boolean redrawRequested = true;
+   private long lastRedrawRequestCount = -1;
+   private long lastRenderablesFingerprint;
+   private final float[] cameraState = new float[12];
+   private final float[] lastCameraState = new float[12];
+   private float lastRenderSizeX;
+   private float lastRenderSizeY;
+   private float lastBackgroundShade;
+   private long numberOfRedraws = 0;
+   private long numberOfSkippedRedraws = 0;
+   private RDXFrameProfiler frameProfiler;
+   private final String[] scenePassNames = new String[1 << RDXSceneLevel.values().length];
 
    public RDX3DPanel(String panelName)
    {
@@ -120,6 +143,7 @@ public class RDX3DPanel extends RDXPanel
       }
       inputCalculator = new ImGui3DViewInput(this);
       imgui3DViewInputProcessors.add(camera3D::processImGuiInput);
+      imgui3DViewPickCalculators.add(objectIDPicker::calculate3DViewPick);
 
       if (addFocusSphere)
          scene.addModelInstance(camera3D.getFocusPointSphere(), RDXSceneLevel.VIRTUAL);
@@ -133,10 +157,11 @@ public class RDX3DPanel extends RDXPanel
    {
       if (getIsShowing().get() && ImGuiTools.getCurrentContext() != 0)
       {
+         beginProfilerScope(panelName);
          view3DPanelSizeHandler.handleSizeBeforeBegin();
          ImGui.pushStyleVar(ImGuiStyleVar.WindowPadding, 0.0f, 0.0f);
          int flags = ImGuiWindowFlags.None;
-         ImGui.begin(panelName, flags);
+         boolean visible = ImGui.begin(panelName, flags);
          view3DPanelSizeHandler.handleSizeAfterBegin();
          ImGui.popStyleVar();
 
@@ -154,6 +179,7 @@ public class RDX3DPanel extends RDXPanel
             {
                imgui3DViewPickCalculator.accept(inputCalculator);
             }
+            inputCalculator.calculateBroadPhasePicks();
             inputCalculator.calculateClosestPick();
          }
          for (Consumer<ImGui3DViewInput> imGuiInputProcessor : imgui3DViewInputProcessors)
@@ -161,66 +187,121 @@ public class RDX3DPanel extends RDXPanel
             imGuiInputProcessor.accept(inputCalculator);
          }
 
-         // Allows for dynamically resizing the 3D view panel. Grows by 2x when needed, but never shrinks.
-         if (frameBuffer == null || frameBuffer.getWidth() < renderSizeX || frameBuffer.getHeight() < renderSizeY)
+         // Hidden, like in a docked tab that isn't selected, so let another panel use the frame buffer
+         if (!visible)
          {
-            if (frameBuffer != null)
-               frameBuffer.dispose();
-
-            int newWidth = frameBuffer == null ? Gdx.graphics.getWidth() * antiAliasing : frameBuffer.getWidth() * 2;
-            int newHeight = frameBuffer == null ? Gdx.graphics.getHeight() * antiAliasing : frameBuffer.getHeight() * 2;
-            LogTools.info("Allocating framebuffer of size: {}x{}", newWidth, newHeight);
-            SensorFrameBufferBuilder frameBufferBuilder = new SensorFrameBufferBuilder(newWidth, newHeight);
-            frameBufferBuilder.addColorTextureAttachment(GL41.GL_RGBA8, GL41.GL_RGBA, GL41.GL_UNSIGNED_BYTE);
-            frameBufferBuilder.addDepthTextureAttachment(GL41.GL_DEPTH_COMPONENT32F, GL41.GL_FLOAT);
-            frameBufferBuilder.addColorTextureAttachment(GL41.GL_R32F, GL41.GL_RED, GL41.GL_FLOAT);
-            frameBuffer = frameBufferBuilder.build();
-
-            int bytesPerPixel = Float.BYTES;
-            normalizedDeviceCoordinateDepthDirectByteBuffer = ByteBuffer.allocateDirect(newWidth * newHeight * bytesPerPixel);
-            normalizedDeviceCoordinateDepthDirectByteBuffer.order(ByteOrder.nativeOrder());
+            releaseFrameBuffer();
          }
+         else
+         {
+            // Allows for dynamically resizing the 3D view panel. Frame buffers come from a pool in size buckets.
+            // They are swapped right away to grow or when object ID picking gets turned on or off,
+            // but only after being too big for a while to shrink, so dragging the panel's edge around doesn't thrash.
+            boolean objectIDPickingEnabled = objectIDPicker.isEnabled();
+            boolean objectIDAttachmentChanged = frameBufferHasObjectIDAttachment != objectIDPickingEnabled;
+            boolean tooSmall = frameBuffer == null || frameBuffer.getWidth() < renderSizeX || frameBuffer.getHeight() < renderSizeY;
+            if (!tooSmall && RDX3DPanelFrameBufferPool.isOversized(frameBuffer, (int) renderSizeX, (int) renderSizeY))
+               oversizedDuration += Gdx.graphics.getDeltaTime();
+            else
+               oversizedDuration = 0.0f;
+            if (tooSmall || objectIDAttachmentChanged || oversizedDuration > SHRINK_DELAY)
+            {
+               if (frameBuffer != null)
+                  frameBufferPool.release(frameBuffer);
+               oversizedDuration = 0.0f;
+
+               frameBuffer = frameBufferPool.acquire((int) renderSizeX, (int) renderSizeY, objectIDPickingEnabled);
+               frameBufferHasObjectIDAttachment = objectIDPickingEnabled;
+
+               if (frameBufferHasObjectIDAttachment)
+               {
+                  frameBuffer.begin();
+                  objectIDPicker.setupFrameBufferDrawBuffers();
+                  frameBuffer.end();
+               }
+
+               int bytesPerPixel = Float.BYTES;
+               int depthBufferSize = frameBuffer.getWidth() * frameBuffer.getHeight() * bytesPerPixel;
+               if (normalizedDeviceCoordinateDepthDirectByteBuffer == null || normalizedDeviceCoordinateDepthDirectByteBuffer.capacity() != depthBufferSize)
+               {
+                  normalizedDeviceCoordinateDepthDirectByteBuffer = ByteBuffer.allocateDirect(depthBufferSize);
+                  normalizedDeviceCoordinateDepthDirectByteBuffer.order(ByteOrder.nativeOrder());
+               }
+               redrawRequested = true;
+            }
 
-         setViewportBounds(0, 0, (int) renderSizeX, (int) renderSizeY);
-
-         int frameBufferWidth = frameBuffer.getWidth();
-         int frameBufferHeight = frameBuffer.getHeight();
+            setViewportBounds(0, 0, (int) renderSizeX, (int) renderSizeY);
 
-         // We do this render to get the Z buffer from just the model scene level
-         if (modelSceneMouseCollisionEnabled && scene.getSceneLevelsToRender().contains(RDXSceneLevel.MODEL))
-         {
-            frameBuffer.begin();
-            renderScene(RDXSceneLevel.MODEL.SINGLETON_SET);
+            int frameBufferWidth = frameBuffer.getWidth();
+            int frameBufferHeight = frameBuffer.getHeight();
 
-            normalizedDeviceCoordinateDepthDirectByteBuffer.rewind(); // SIGSEV otherwise
-            GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT1);
-            GL41.glPixelStorei(GL41.GL_UNPACK_ALIGNMENT, 4); // to read floats
-            // Note: This line has significant performance impact
-            GL41.glReadPixels(0, 0, (int) renderSizeX, (int) renderSizeY, GL41.GL_RED, GL41.GL_FLOAT, normalizedDeviceCoordinateDepthDirectByteBuffer);
-            GL41.glPixelStorei(GL41.GL_UNPACK_ALIGNMENT, 1); // undo what we did
+            if (needsRedraw())
+            {
+               ++numberOfRedraws;
+               // Shadow maps have their own frame buffers, so they go before any of ours is bound
+               beginProfilerScope("Shadows");
+               scene.renderShadows(camera3D, camera3D.getVerticalFieldOfView());
+               endProfilerScope();
+
+               // We do this render to get the Z buffer from just the model scene level
+               if (modelSceneMouseCollisionEnabled && scene.getSceneLevelsToRender().contains(RDXSceneLevel.MODEL))
+               {
+                  frameBuffer.begin();
+                  renderScene(RDXSceneLevel.MODEL.SINGLETON_SET);
+
+                  normalizedDeviceCoordinateDepthDirectByteBuffer.rewind(); // SIGSEV otherwise
+                  GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT1);
+                  GL41.glPixelStorei(GL41.GL_UNPACK_ALIGNMENT, 4); // to read floats
+                  // Note: This line has significant performance impact
+                  beginProfilerScope("Mouse collision depth readback");
+                  GL41.glReadPixels(0, 0, (int) renderSizeX, (int) renderSizeY, GL41.GL_RED, GL41.GL_FLOAT, normalizedDeviceCoordinateDepthDirectByteBuffer);
+                  endProfilerScope();
+                  GL41.glPixelStorei(GL41.GL_UNPACK_ALIGNMENT, 1); // undo what we did
+
+                  frameBuffer.end();
+               }
+
+               // The scene will render twice if both real and virtual environments are showing
+               frameBuffer.begin();
+               if (renderOnDemand)
+                  scene.fingerprintNextRender(scene.getSceneLevelsToRender());
+               renderScene(scene.getSceneLevelsToRender());
+               if (renderOnDemand)
+                  lastRenderablesFingerprint = scene.getLastRenderFingerprint();
+               if (frameBufferHasObjectIDAttachment)
+               {
+                  int aliasedMouseX = (int) inputCalculator.getMousePosX() * antiAliasing;
+                  int aliasedFlippedMouseY = (int) renderSizeY - 1 - (int) inputCalculator.getMousePosY() * antiAliasing;
+                  boolean mouseInBounds = inputCalculator.isWindowHovered();
+                  mouseInBounds &= aliasedMouseX >= 0 && aliasedMouseX < (int) renderSizeX;
+                  mouseInBounds &= aliasedFlippedMouseY >= 0 && aliasedFlippedMouseY < (int) renderSizeY;
+                  beginProfilerScope("Object ID pass");
+                  objectIDPicker.renderObjectIDPass(camera3D, aliasedMouseX, aliasedFlippedMouseY, mouseInBounds);
+                  endProfilerScope();
+               }
+               frameBuffer.end();
+            }
+            else
+            {
+               // Nothing changed, so the last frame is still in the frame buffer
+               ++numberOfSkippedRedraws;
+            }
 
-            frameBuffer.end();
+            float percentOfFramebufferUsedX = renderSizeX / frameBufferWidth;
+            float percentOfFramebufferUsedY = renderSizeY / frameBufferHeight;
+            int textureID = frameBuffer.getColorBufferTexture().getTextureObjectHandle();
+            windowDrawMinX = windowPositionX;
+            windowDrawMinY = windowPositionY;
+            windowDrawMaxX = windowPositionX + windowSizeX;
+            windowDrawMaxY = windowPositionY + windowSizeY;
+            float uvMinX = 0.0f;
+            float uvMinY = percentOfFramebufferUsedY; // flip Y
+            float uvMaxX = percentOfFramebufferUsedX;
+            float uvMaxY = 0.0f;
+
+            ImGui.getWindowDrawList().addImage(textureID, windowDrawMinX, windowDrawMinY, windowDrawMaxX, windowDrawMaxY, uvMinX, uvMinY, uvMaxX, uvMaxY);
          }
 
-         // The scene will render twice if both real and virtual environments are showing
-         frameBuffer.begin();
-         renderScene(scene.getSceneLevelsToRender());
-         frameBuffer.end();
-
-         float percentOfFramebufferUsedX = renderSizeX / frameBufferWidth;
-         float percentOfFramebufferUsedY = renderSizeY / frameBufferHeight;
-         int textureID = frameBuffer.getColorBufferTexture().getTextureObjectHandle();
-         windowDrawMinX = windowPositionX;
-         windowDrawMinY = windowPositionY;
-         windowDrawMaxX = windowPositionX + windowSizeX;
-         windowDrawMaxY = windowPositionY + windowSizeY;
-         float uvMinX = 0.0f;
-         float uvMinY = percentOfFramebufferUsedY; // flip Y
-         float uvMaxX = percentOfFramebufferUsedX;
-         float uvMaxY = 0.0f;
-
-         ImGui.getWindowDrawList().addImage(textureID, windowDrawMinX, windowDrawMinY, windowDrawMaxX, windowDrawMaxY, uvMinX, uvMinY, uvMaxX, uvMaxY);
-
          for (Runnable imguiOverlayAddition : imGuiOverlayAdditions)
             imguiOverlayAddition.run();
 
@@ -242,11 +323,83 @@ public class RDX3DPanel extends RDXPanel
          }
 
          ImGui.end();
+         endProfilerScope();
+      }
+      else
+      {
+         releaseFrameBuffer();
       }
    }
 
+   private void releaseFrameBuffer()
+   {
+      if (frameBuffer != null)
+      {
+         frameBufferPool.release(frameBuffer);
+         frameBuffer = null;
+         oversizedDuration = 0.0f;
+      }
+   }
+
+   /**
+    * Share frame buffers with other panels. Otherwise, the panel has a pool of its own.
+    */
+   public void setFrameBufferPool(RDX3DPanelFrameBufferPool frameBufferPool)
+   {
+      releaseFrameBuffer();
+      if (ownsFrameBufferPool)
+         this.frameBufferPool.dispose();
+      this.frameBufferPool = frameBufferPool;
+      ownsFrameBufferPool = false;
+   }
+
+   /**
+    * With render on demand, only redraws when the view, the scene, or what would be drawn changed,
+    * or when a redraw was requested, like for input.
+    */
+   private boolean needsRedraw()
+   {
+      long redrawRequestCount = scene.getRedrawRequestCount();
+      packCameraState();
+
+      boolean needsRedraw = !renderOnDemand || redrawRequested;
+      needsRedraw |= redrawRequestCount != lastRedrawRequestCount;
+      needsRedraw |= !Arrays.equals(cameraState, lastCameraState);
+      needsRedraw |= renderSizeX != lastRenderSizeX || renderSizeY != lastRenderSizeY;
+      needsRedraw |= backgroundShade != lastBackgroundShade;
+      // Gathering the renderables for the fingerprint is only worth it when nothing else changed.
+      // When redrawing, the fingerprint comes from the draw pass instead.
+      if (!needsRedraw)
+         needsRedraw = scene.getRenderablesFingerprint(scene.getSceneLevelsToRender()) != lastRenderablesFingerprint;
+
+      redrawRequested = false;
+      lastRedrawRequestCount = redrawRequestCount;
+      System.arraycopy(cameraState, 0, lastCameraState, 0, cameraState.length);
+      lastRenderSizeX = renderSizeX;
+      lastRenderSizeY = renderSizeY;
+      lastBackgroundShade = backgroundShade;
+      return needsRedraw;
+   }
+
+   private void packCameraState()
+   {
+      cameraState[0] = camera3D.position.x;
+      cameraState[1] = camera3D.position.y;
+      cameraState[2] = camera3D.position.z;
+      cameraState[3] = camera3D.direction.x;
+      cameraState[4] = camera3D.direction.y;
+      cameraState[5] = camera3D.direction.z;
+      cameraState[6] = camera3D.up.x;
+      cameraState[7] = camera3D.up.y;
+      cameraState[8] = camera3D.up.z;
+      cameraState[9] = camera3D.getVerticalFieldOfView();
+      cameraState[10] = camera3D.near;
+      cameraState[11] = camera3D.far;
+   }
+
    private void renderScene(Set<RDXSceneLevel> sceneLevels)
    {
+      beginProfilerScope(getScenePassName(sceneLevels));
       preRender();
 
       if (backgroundRenderer != null)
@@ -254,11 +407,41 @@ public class RDX3DPanel extends RDXPanel
 
       scene.render(sceneLevels);
       scene.postRender();
+      endProfilerScope();
 
       if (LibGDXTools.ENABLE_OPENGL_DEBUGGER)
          glProfiler.reset();
    }
 
+   /** Like "MODEL pass" or "MODEL, VIRTUAL pass", cached so there's no garbage each frame. */
+   private String getScenePassName(Set<RDXSceneLevel> sceneLevels)
+   {
+      int mask = 0;
+      for (RDXSceneLevel sceneLevel : sceneLevels)
+         mask |= 1 << sceneLevel.ordinal();
+      if (scenePassNames[mask] == null)
+      {
+         StringBuilder name = new StringBuilder();
+         for (RDXSceneLevel sceneLevel : RDXSceneLevel.values())
+            if ((mask & 1 << sceneLevel.ordinal()) != 0)
+               name.append(name.length() == 0 ? "" : ", ").append(sceneLevel.name());
+         scenePassNames[mask] = name.append(" pass").toString();
+      }
+      return scenePassNames[mask];
+   }
+
+   private void beginProfilerScope(String name)
+   {
+      if (frameProfiler != null)
+         frameProfiler.begin(name);
+   }
+
+   private void endProfilerScope()
+   {
+      if (frameProfiler != null)
+         frameProfiler.end();
+   }
+
    private void preRender()
    {
       if (!firstRenderStarted)
@@ -283,6 +466,42 @@ public class RDX3DPanel extends RDXPanel
    public void dispose()
    {
       ExceptionTools.handle(() -> camera3D.dispose(), DefaultExceptionHandler.PRINT_MESSAGE);
+      ExceptionTools.handle(objectIDPicker::dispose, DefaultExceptionHandler.PRINT_MESSAGE);
+      releaseFrameBuffer();
+      if (ownsFrameBufferPool)
+         frameBufferPool.dispose();
+   }
+
+   /**
+    * Only redraw when something changed, otherwise show the last frame again.
+    * See {@link #needsRedraw()}.
+    */
+   public void setRenderOnDemand(boolean renderOnDemand)
+   {
+      this.renderOnDemand = renderOnDemand;
+      redrawRequested = true;
+   }
+
+   /** Redraw on the next frame, even if nothing seems to have changed. */
+   public void requestRedraw()
+   {
+      redrawRequested = true;
+   }
+
+   /** Times this panel's rendering and scene passes. */
+   public void setFrameProfiler(RDXFrameProfiler frameProfiler)
+   {
+      this.frameProfiler = frameProfiler;
+   }
+
+   public long getNumberOfRedraws()
+   {
+      return numberOfRedraws;
+   }
+
+   public long getNumberOfSkippedRedraws()
+   {
+      return numberOfSkippedRedraws;
    }
 
    public void setViewportBoundsToWindow()
@@ -358,6 +577,15 @@ public class RDX3DPanel extends RDXPanel
       imgui3DViewPickCalculators.add(calculate3DViewPick);
    }
 
+   /**
+    * An alternative to adding a pick calculator for objects that can provide their bounds.
+    * The calculator will only be run when the pick ray hits the bounds.
+    */
+   public ImGui3DViewPickBroadPhase getPickBroadPhase()
+   {
+      return pickBroadPhase;
+   }
+
    public void addImGui3DViewInputProcessor(Consumer<ImGui3DViewInput> processImGuiInput)
    {
       imgui3DViewInputProcessors.add(processImGuiInput);
@@ -507,4 +735,13 @@ public class RDX3DPanel extends RDXPanel
    {
       return notificationManager;
    }
+
+   /**
+    * Register pickables here to have them picked via GPU object IDs instead of CPU ray tests.
+    * The frame buffer only gets an object ID attachment while there are pickables registered.
+    */
+   public RDX3DPanelObjectIDPicker getObjectIDPicker()
+   {
+      return objectIDPicker;
+   }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package us.ihmc.rdx.ui;
+
+import com.badlogic.gdx.graphics.glutils.SensorFrameBuffer;
+import com.badlogic.gdx.graphics.glutils.SensorFrameBufferBuilder;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.commons.time.Stopwatch;
+import us.ihmc.log.LogTools;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Shares frame buffers between the 3D panels. Sizes are rounded up to buckets, so resizing a panel
+ * only reallocates now and then, and a buffer let go of by one panel, like when it's closed, in a
+ * hidden tab, or has shrunk, can be picked up by another. Free buffers that aren't picked up within
+ * {@link #FREE_BUFFER_TIMEOUT} seconds are disposed.
+ *
+ * A panel keeps its buffer for as long as it's drawn, because with render on demand the last frame
+ * is shown again from it, so two panels drawn in the same frame never share one.
+ */
+public class RDX3DPanelFrameBufferPool
+{
+   private static final int MINIMUM_BUCKET_SIZE = 256;
+   /** Seconds a free buffer is kept for reuse before it's disposed. */
+   public static final double FREE_BUFFER_TIMEOUT = 5.0;
+   /** Color, depth and the R32F mouse collision depth. */
+   private static final int BYTES_PER_PIXEL = 3 * Integer.BYTES;
+   private static final int OBJECT_ID_BYTES_PER_PIXEL = Integer.BYTES;
+
+   private final Stopwatch clock = new Stopwatch().start();
+   private final IdentityHashMap<SensorFrameBuffer, PooledFrameBuffer> inUseFrameBuffers = new IdentityHashMap<>();
+   private final ArrayList<PooledFrameBuffer> freeFrameBuffers = new ArrayList<>();
+   private long numberOfAllocations = 0;
+   private long numberOfReuses = 0;
+
+   private static class PooledFrameBuffer
+   {
+      private final SensorFrameBuffer frameBuffer;
+      private final boolean hasObjectIDAttachment;
+      private final long gpuBytes;
+      private double releaseTime;
+
+      private PooledFrameBuffer(SensorFrameBuffer frameBuffer, boolean hasObjectIDAttachment)
+      {
+         this.frameBuffer = frameBuffer;
+         this.hasObjectIDAttachment = hasObjectIDAttachment;
+         long pixels = (long) frameBuffer.getWidth() * frameBuffer.getHeight();
+         gpuBytes = pixels * (BYTES_PER_PIXEL + (hasObjectIDAttachment ? OBJECT_ID_BYTES_PER_PIXEL : 0));
+      }
+   }
+
+   /**
+    * Sizes go up in quarters of a power of two, so at most a quarter of each dimension is unused,
+    * e.g. 1000 becomes 1024 and 1100 becomes 1280.
+    */
+   public static int getBucketSize(int size)
+   {
+      if (size <= MINIMUM_BUCKET_SIZE)
+         return MINIMUM_BUCKET_SIZE;
+
+      int powerOfTwo = Integer.highestOneBit(size - 1);
+      int step = powerOfTwo / 4;
+      return powerOfTwo + (size - powerOfTwo + step - 1) / step * step;
+   }
+
+   /**
+    * With hysteresis, so a buffer doesn't go back and forth between sizes: it's only oversized when
+    * it's more than twice the bucket needed in either dimension.
+    */
+   public static boolean isOversized(SensorFrameBuffer frameBuffer, int requiredWidth, int requiredHeight)
+   {
+      return frameBuffer.getWidth() > 2 * getBucketSize(requiredWidth) || frameBuffer.getHeight() > 2 * getBucketSize(requiredHeight);
+   }
+
+   /**
+    * @return the smallest free buffer that fits and isn't oversized, or a new one at the bucket size
+    */
+   public SensorFrameBuffer acquire(int requiredWidth, int requiredHeight, boolean objectIDAttachment)
+   {
+      disposeExpiredFrameBuffers();
+
+      PooledFrameBuffer best = null;
+      for (PooledFrameBuffer free : freeFrameBuffers)
+      {
+         boolean fits = free.frameBuffer.getWidth() >= requiredWidth && free.frameBuffer.getHeight() >= requiredHeight;
+         if (fits && free.hasObjectIDAttachment == objectIDAttachment && !isOversized(free.frameBuffer, requiredWidth, requiredHeight))
+         {
+            if (best == null || free.gpuBytes < best.gpuBytes)
+               best = free;
+         }
+      }
+
+      if (best != null)
+      {
+         freeFrameBuffers.remove(best);
+         ++numberOfReuses;
+      }
+      else
+      {
+         best = allocate(getBucketSize(requiredWidth), getBucketSize(requiredHeight), objectIDAttachment);
+         ++numberOfAllocations;
+      }
+
+      inUseFrameBuffers.put(best.frameBuffer, best);
+      return best.frameBuffer;
+   }
+
+   private PooledFrameBuffer allocate(int width, int height, boolean objectIDAttachment)
+   {
+      LogTools.info("Allocating framebuffer of size: {}x{}", width, height);
+      SensorFrameBufferBuilder frameBufferBuilder = new SensorFrameBufferBuilder(width, height);
+      frameBufferBuilder.addColorTextureAttachment(GL41.GL_RGBA8, GL41.GL_RGBA, GL41.GL_UNSIGNED_BYTE);
+      frameBufferBuilder.addDepthTextureAttachment(GL41.GL_DEPTH_COMPONENT32F, GL41.GL_FLOAT);
+      frameBufferBuilder.addColorTextureAttachment(GL41.GL_R32F, GL41.GL_RED, GL41.GL_FLOAT);
+      if (objectIDAttachment)
+         frameBufferBuilder.addColorTextureAttachment(GL41.GL_R32UI, GL41.GL_RED_INTEGER, GL41.GL_UNSIGNED_INT);
+      return new PooledFrameBuffer(frameBufferBuilder.build(), objectIDAttachment);
+   }
+
+   /** Gives the buffer back so another panel can use it. It's disposed if nobody does for a while. */
+   public void release(SensorFrameBuffer frameBuffer)
+   {
+      PooledFrameBuffer pooledFrameBuffer = inUseFrameBuffers.remove(frameBuffer);
+      if (pooledFrameBuffer == null) // Already disposed with the pool
+         return;
+
+      pooledFrameBuffer.releaseTime = clock.totalElapsed();
+      freeFrameBuffers.add(pooledFrameBuffer);
+      disposeExpiredFrameBuffers();
+   }
+
+   /** Call once per frame, so free buffers are disposed even when no panel acquires or releases any. */
+   public void update()
+   {
+      disposeExpiredFrameBuffers();
+   }
+
+   private void disposeExpiredFrameBuffers()
+   {
+      double now = clock.totalElapsed();
+      for (int i = freeFrameBuffers.size() - 1; i >= 0; i--)
+      {
+         PooledFrameBuffer free = freeFrameBuffers.get(i);
+         if (now - free.releaseTime > FREE_BUFFER_TIMEOUT)
+         {
+            LogTools.info("Disposing unused framebuffer of size: {}x{}", free.frameBuffer.getWidth(), free.frameBuffer.getHeight());
+            free.frameBuffer.dispose();
+            freeFrameBuffers.remove(i);
+         }
+      }
+   }
+
+   /** Of the frame buffers both in use and free. */
+   public long getAllocatedGPUBytes()
+   {
+      long bytes = 0;
+      for (PooledFrameBuffer inUse : inUseFrameBuffers.values())
+         bytes += inUse.gpuBytes;
+      for (PooledFrameBuffer free : freeFrameBuffers)
+         bytes += free.gpuBytes;
+      return bytes;
+   }
+
+   /** The color attachments keep a pixmap in host memory the size of the buffer. */
+   public long getAllocatedPixmapBytes()
+   {
+      long bytes = 0;
+      for (SensorFrameBuffer inUse : inUseFrameBuffers.keySet())
+         bytes += (long) inUse.getWidth() * inUse.getHeight() * Integer.BYTES;
+      for (PooledFrameBuffer free : freeFrameBuffers)
+         bytes += (long) free.frameBuffer.getWidth() * free.frameBuffer.getHeight() * Integer.BYTES;
+      return bytes;
+   }
+
+   public int getNumberOfFrameBuffersInUse()
+   {
+      return inUseFrameBuffers.size();
+   }
+
+   public int getNumberOfFreeFrameBuffers()
+   {
+      return freeFrameBuffers.size();
+   }
+
+   public long getNumberOfAllocations()
+   {
+      return numberOfAllocations;
+   }
+
+   public long getNumberOfReuses()
+   {
+      return numberOfReuses;
+   }
+
+   public void dispose()
+   {
+      for (SensorFrameBuffer inUse : inUseFrameBuffers.keySet())
+         inUse.dispose();
+      for (PooledFrameBuffer free : freeFrameBuffers)
+         free.frameBuffer.dispose();
+      inUseFrameBuffers.clear();
+      freeFrameBuffers.clear();
+   }
+}
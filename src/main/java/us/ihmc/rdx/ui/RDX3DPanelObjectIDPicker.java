@@ -0,0 +1,275 @@
+package us.ihmc.rdx.ui;
+
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.graphics.g3d.Renderable;
+import com.badlogic.gdx.graphics.g3d.RenderableProvider;
+import com.badlogic.gdx.graphics.g3d.shaders.DefaultShader;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Vector3;
+import org.lwjgl.opengl.GL41;
+import us.ihmc.euclid.geometry.interfaces.Line3DReadOnly;
+import us.ihmc.rdx.input.ImGui3DViewInput;
+import us.ihmc.rdx.input.ImGui3DViewPickResult;
+import us.ihmc.rdx.shader.RDXShader;
+import us.ihmc.rdx.shader.RDXUniform;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves which object is under the mouse by rendering registered pickables with
+ * their pick ID into an integer attachment of the {@link RDX3DPanel} framebuffer.
+ *
+ * The ID pass is depth tested against the depth buffer of the color pass, so occlusion
+ * by the rest of the scene is handled for free. The ID and depth under the mouse are
+ * read back asynchronously through a small ring of pixel buffer objects, so the result
+ * lags the mouse by a couple of frames, but the render thread never waits on the GPU.
+ *
+ * This makes picking cost independent of scene complexity and allows arbitrary meshes,
+ * like loaded robot models, to be picked without writing per-object collision code.
+ * Pickables are registered with an owner key and get back an {@link ImGui3DViewPickResult},
+ * which is added to the {@link ImGui3DViewInput} when hovered, so they take part in the
+ * usual closest pick resolution alongside CPU pick calculators.
+ */
+public class RDX3DPanelObjectIDPicker
+{
+   /** The value the ID attachment is cleared to. Pick IDs start at 1. */
+   public static final int NO_OBJECT_ID = 0;
+   /** Number of frames we allow the GPU to be behind before we read a result. */
+   private static final int READBACK_RING_SIZE = 3;
+   private static final int READBACK_BYTES = Integer.BYTES + Float.BYTES;
+
+   private final RDX3DPanel panel3D;
+   private final Map<Integer, Pickable> idToPickableMap = new HashMap<>();
+   private final Map<Object, Pickable> ownerKeyToPickableMap = new HashMap<>();
+   private int nextObjectID = NO_OBJECT_ID + 1;
+   private int currentObjectID = NO_OBJECT_ID;
+   private final RDXUniform objectIDUniform = RDXUniform.createLocalUniform("u_objectID", (shader, inputID, renderable, combinedAttributes) ->
+   {
+      shader.set(inputID, currentObjectID);
+   });
+   private RDXShader shader;
+   private ModelBatch modelBatch;
+   private final int[] pixelBufferObjects = new int[READBACK_RING_SIZE];
+   private final long[] fences = new long[READBACK_RING_SIZE];
+   private int readbackWriteIndex = 0;
+   private final ByteBuffer readbackBuffer = ByteBuffer.allocateDirect(READBACK_BYTES).order(ByteOrder.nativeOrder());
+   private final int[] clearValue = new int[] {NO_OBJECT_ID, 0, 0, 0};
+   private final int[] colorPassDrawBuffers = new int[] {GL41.GL_COLOR_ATTACHMENT0, GL41.GL_COLOR_ATTACHMENT1};
+   private final int[] objectIDPassDrawBuffers = new int[] {GL41.GL_COLOR_ATTACHMENT2};
+   private int hoveredObjectID = NO_OBJECT_ID;
+   private float hoveredDepth = 1.0f;
+   private final Vector3 cameraDirection = new Vector3();
+   private final Vector3 rayDirection = new Vector3();
+
+   private static class Pickable
+   {
+      private final int objectID;
+      private final RenderableProvider renderableProvider;
+      private final ImGui3DViewPickResult pickResult = new ImGui3DViewPickResult();
+
+      private Pickable(int objectID, RenderableProvider renderableProvider)
+      {
+         this.objectID = objectID;
+         this.renderableProvider = renderableProvider;
+      }
+   }
+
+   public RDX3DPanelObjectIDPicker(RDX3DPanel panel3D)
+   {
+      this.panel3D = panel3D;
+   }
+
+   private void create()
+   {
+      Renderable initializationRenderable = new Renderable();
+      boolean isStatic = true;
+      int maxVertices = 1;
+      int maxIndices = 0;
+      initializationRenderable.meshPart.mesh = new Mesh(isStatic,
+                                                        maxVertices,
+                                                        maxIndices,
+                                                        new VertexAttributes(new VertexAttribute(VertexAttributes.Usage.Position,
+                                                                                                 3,
+                                                                                                 ShaderProgram.POSITION_ATTRIBUTE)));
+
+      shader = new RDXShader(getClass());
+      shader.create();
+      shader.getBaseShader().register(DefaultShader.Inputs.projViewTrans, DefaultShader.Setters.projViewTrans);
+      shader.getBaseShader().register(DefaultShader.Inputs.worldTrans, DefaultShader.Setters.worldTrans);
+      shader.registerUniform(objectIDUniform);
+      shader.init(initializationRenderable);
+      initializationRenderable.meshPart.mesh.dispose();
+
+      modelBatch = new ModelBatch(shader);
+
+      for (int i = 0; i < READBACK_RING_SIZE; i++)
+      {
+         pixelBufferObjects[i] = GL41.glGenBuffers();
+         GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, pixelBufferObjects[i]);
+         GL41.glBufferData(GL41.GL_PIXEL_PACK_BUFFER, READBACK_BYTES, GL41.GL_STREAM_READ);
+      }
+      GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, 0);
+   }
+
+   /**
+    * @param ownerKey used to remove the pickable later
+    * @param renderableProvider renders the geometry that should be pickable, usually the same one that's in the scene
+    * @return the pick result that will be added to the input when this pickable is under the mouse.
+    *         Check {@code pickResult == input.getClosestPick()} to see if it's hovered.
+    */
+   public ImGui3DViewPickResult addPickable(Object ownerKey, RenderableProvider renderableProvider)
+   {
+      removePickable(ownerKey);
+
+      Pickable pickable = new Pickable(nextObjectID++, renderableProvider);
+      idToPickableMap.put(pickable.objectID, pickable);
+      ownerKeyToPickableMap.put(ownerKey, pickable);
+      return pickable.pickResult;
+   }
+
+   public void removePickable(Object ownerKey)
+   {
+      Pickable pickable = ownerKeyToPickableMap.remove(ownerKey);
+      if (pickable != null)
+         idToPickableMap.remove(pickable.objectID);
+   }
+
+   /**
+    * Makes the frame buffer ready for the color pass. Called after the frame buffer is (re)allocated,
+    * because the integer attachment must not be a draw target for the color shaders.
+    */
+   /* package private */ void setupFrameBufferDrawBuffers()
+   {
+      GL41.glDrawBuffers(colorPassDrawBuffers);
+   }
+
+   /**
+    * Run with the panel's frame buffer bound, after the color pass has filled the depth buffer.
+    */
+   /* package private */ void renderObjectIDPass(Camera camera, int mousePixelX, int mousePixelY, boolean mouseInBounds)
+   {
+      if (shader == null)
+         create();
+
+      GL41.glDrawBuffers(objectIDPassDrawBuffers);
+      GL41.glClearBufferuiv(GL41.GL_COLOR, 0, clearValue);
+
+      // Pull the ID geometry slightly toward the camera so it passes the depth test against the color pass
+      GL41.glEnable(GL41.GL_POLYGON_OFFSET_FILL);
+      GL41.glPolygonOffset(-1.0f, -1.0f);
+      modelBatch.begin(camera);
+      for (Pickable pickable : idToPickableMap.values())
+      {
+         currentObjectID = pickable.objectID;
+         modelBatch.render(pickable.renderableProvider);
+         modelBatch.flush(); // The object ID uniform is set at flush time
+      }
+      modelBatch.end();
+      currentObjectID = NO_OBJECT_ID;
+      GL41.glDisable(GL41.GL_POLYGON_OFFSET_FILL);
+
+      pollCompletedReadback();
+
+      if (mouseInBounds && fences[readbackWriteIndex] == 0)
+      {
+         int previousReadBuffer = GL41.glGetInteger(GL41.GL_READ_BUFFER);
+         GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, pixelBufferObjects[readbackWriteIndex]);
+         GL41.glReadBuffer(GL41.GL_COLOR_ATTACHMENT2);
+         GL41.glReadPixels(mousePixelX, mousePixelY, 1, 1, GL41.GL_RED_INTEGER, GL41.GL_UNSIGNED_INT, 0L);
+         GL41.glReadPixels(mousePixelX, mousePixelY, 1, 1, GL41.GL_DEPTH_COMPONENT, GL41.GL_FLOAT, Integer.BYTES);
+         GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, 0);
+         GL41.glReadBuffer(previousReadBuffer);
+         fences[readbackWriteIndex] = GL41.glFenceSync(GL41.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+         readbackWriteIndex = (readbackWriteIndex + 1) % READBACK_RING_SIZE;
+      }
+      else if (!mouseInBounds)
+      {
+         hoveredObjectID = NO_OBJECT_ID;
+      }
+
+      GL41.glDrawBuffers(colorPassDrawBuffers);
+   }
+
+   /** Takes the newest readback the GPU has finished, without blocking. */
+   private void pollCompletedReadback()
+   {
+      for (int i = 0; i < READBACK_RING_SIZE; i++)
+      {
+         int index = (readbackWriteIndex + i) % READBACK_RING_SIZE; // Oldest first
+         if (fences[index] != 0)
+         {
+            int waitResult = GL41.glClientWaitSync(fences[index], 0, 0L);
+            if (waitResult == GL41.GL_ALREADY_SIGNALED || waitResult == GL41.GL_CONDITION_SATISFIED)
+            {
+               GL41.glDeleteSync(fences[index]);
+               fences[index] = 0;
+
+               readbackBuffer.rewind();
+               GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, pixelBufferObjects[index]);
+               GL41.glGetBufferSubData(GL41.GL_PIXEL_PACK_BUFFER, 0L, readbackBuffer);
+               GL41.glBindBuffer(GL41.GL_PIXEL_PACK_BUFFER, 0);
+               hoveredObjectID = readbackBuffer.getInt(0);
+               hoveredDepth = readbackBuffer.getFloat(Integer.BYTES);
+            }
+         }
+      }
+   }
+
+   /**
+    * Adds the pick result of the hovered pickable using the most recently read back ID.
+    * Registered with the panel as a pick calculator.
+    */
+   public void calculate3DViewPick(ImGui3DViewInput input)
+   {
+      Pickable hoveredPickable = idToPickableMap.get(hoveredObjectID);
+      if (hoveredPickable != null)
+      {
+         Camera camera = panel3D.getCamera3D();
+         float normalizedDeviceCoordinateZ = 2.0f * hoveredDepth - 1.0f;
+         float eyeDepth = 2.0f * camera.near * camera.far / (camera.far + camera.near - normalizedDeviceCoordinateZ * (camera.far - camera.near));
+
+         Line3DReadOnly pickRay = input.getPickRayInWorld();
+         cameraDirection.set(camera.direction).nor();
+         rayDirection.set(pickRay.getDirection().getX32(), pickRay.getDirection().getY32(), pickRay.getDirection().getZ32());
+         float cosineToRay = Math.max(cameraDirection.dot(rayDirection), 1e-3f);
+
+         hoveredPickable.pickResult.setDistanceToCamera(eyeDepth / cosineToRay);
+         input.addPickResult(hoveredPickable.pickResult);
+      }
+   }
+
+   public boolean isEnabled()
+   {
+      return !idToPickableMap.isEmpty();
+   }
+
+   /**
+    * @return the pick ID under the mouse from the latest completed readback, or {@link #NO_OBJECT_ID}
+    */
+   public int getHoveredObjectID()
+   {
+      return hoveredObjectID;
+   }
+
+   public void dispose()
+   {
+      if (shader != null)
+      {
+         for (int i = 0; i < READBACK_RING_SIZE; i++)
+         {
+            if (fences[i] != 0)
+               GL41.glDeleteSync(fences[i]);
+            GL41.glDeleteBuffers(pixelBufferObjects[i]);
+         }
+         modelBatch.dispose();
+         shader.dispose();
+      }
+   }
+}
@@ -5,6 +5,7 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Graphics;
 import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import imgui.ImGuiIO;
 import imgui.flag.ImGuiStyleVar;
 import imgui.flag.ImGuiTableFlags;
 import imgui.internal.ImGui;
@@ -13,6 +14,7 @@ import imgui.type.ImBoolean;
 import imgui.type.ImDouble;
 import imgui.type.ImInt;
 import org.apache.commons.lang3.StringUtils;
+import org.lwjgl.glfw.GLFW;
 import us.ihmc.commons.FormattingTools;
 import us.ihmc.commons.exception.DefaultExceptionHandler;
 import us.ihmc.commons.exception.ExceptionTools;
@@ -24,10 +26,12 @@ import us.ihmc.rdx.RDXKeyBindings;
 import us.ihmc.rdx.RDXSettings;
 import us.ihmc.rdx.imgui.ImGuiFrequencyDisplay;
 import us.ihmc.rdx.imgui.ImGuiLabelledWidgetAligner;
+import us.ihmc.rdx.imgui.ImGuiNumberText;
 import us.ihmc.rdx.imgui.ImGuiSliderDoubleWrapper;
 import us.ihmc.rdx.imgui.ImGuiTools;
 import us.ihmc.rdx.imgui.ImGuiUniqueLabelMap;
 import us.ihmc.rdx.imgui.RDXImGuiWindowAndDockSystem;
+import us.ihmc.rdx.imgui.RDXPanel;
 import us.ihmc.rdx.imgui.RDXPanelManager;
 import us.ihmc.rdx.input.RDXInputMode;
 import us.ihmc.rdx.sceneManager.RDX3DScene;
@@ -35,6 +39,7 @@ import us.ihmc.rdx.sceneManager.RDX3DSceneTools;
 import us.ihmc.rdx.sceneManager.RDXSceneLevel;
 import us.ihmc.rdx.tools.LibGDXApplicationCreator;
 import us.ihmc.rdx.tools.LibGDXTools;
+import us.ihmc.rdx.tools.RDXFrameProfiler;
 import us.ihmc.rdx.vr.RDXVRManager;
 import us.ihmc.tools.IHMCCommonPaths;
 import us.ihmc.tools.io.HybridDirectory;
@@ -42,6 +47,7 @@ import us.ihmc.tools.io.HybridResourceDirectory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Method call order:
@@ -87,6 +93,11 @@ public class RDXBaseUI
    private static boolean RECORD_VIDEO = Boolean.parseBoolean(System.getProperty("record.video"));
    public static volatile Object ACTIVE_EDITOR; // a tool to assist editors in making sure there isn't more than one active
    private static final String VIEW_3D_WINDOW_NAME = "3D View";
+   /** With render on demand, the frame rate while nothing is changing. */
+   private static final int IDLE_FPS = 10;
+   private static final String IDLE_TEXT = "Idle at " + IDLE_FPS + " FPS";
+   /** Keeps the full frame rate for a bit after the last change, so starting to interact again is smooth. */
+   private static final double IDLE_DELAY = 0.5;
 
    private static RDXBaseUI instance;
 
@@ -96,6 +107,8 @@ public class RDXBaseUI
    }
 
    private GLProfiler glProfiler;
+   private RDXFrameProfiler frameProfiler;
+   private final RDX3DPanelFrameBufferPool frameBufferPool = new RDX3DPanelFrameBufferPool();
    private RDXSettings settings;
 
    private final RDX3DScene primaryScene = new RDX3DScene();
@@ -112,9 +125,20 @@ public class RDXBaseUI
    private final Stopwatch runTime = new Stopwatch().start();
    private String statusText = ""; // TODO: Add status at bottom of window
    private final ImGuiUniqueLabelMap labels = new ImGuiUniqueLabelMap(getClass());
+   private final ImGuiNumberText frameBufferGPUMBText = new ImGuiNumberText("3D panel framebuffers: ", " MB GPU, ");
+   private final ImGuiNumberText frameBufferHostMBText = new ImGuiNumberText("", " MB host");
+   private final ImGuiNumberText frameBuffersInUseText = new ImGuiNumberText("", " in use, ");
+   private final ImGuiNumberText frameBuffersFreeText = new ImGuiNumberText("", " free, ");
+   private final ImGuiNumberText frameBufferAllocationsText = new ImGuiNumberText("", " allocated, ");
+   private final ImGuiNumberText frameBufferReusesText = new ImGuiNumberText("", " reused");
+   /** The redraws and skipped redraws of each 3D panel. */
+   private final HashMap<RDX3DPanel, ImGuiNumberText[]> redrawCounterTexts = new HashMap<>();
    private final ImInt foregroundFPSLimit = new ImInt(240);
    private final ImBoolean plotFrameRate = new ImBoolean(false);
    private final ImBoolean vsync = new ImBoolean(false);
+   private final ImBoolean renderOnDemand = new ImBoolean(false);
+   private final Stopwatch timeSinceLastChange = new Stopwatch().start();
+   private boolean idle = false;
    private final ImBoolean lockPanelsWithinWindows = new ImBoolean(true);
    private final ImBoolean middleClickOrbit = new ImBoolean(false);
    private final ImBoolean modelSceneMouseCollisionEnabled = new ImBoolean(false);
@@ -235,6 +259,7 @@ public class RDXBaseUI
       setVsync(settings.vsyncEnabled());
       lockPanelsWithinWindows.set(settings.getlockPanelsWithinWindows());
       setForegroundFPSLimit(settings.getForegroundFPSLimit());
+      setRenderOnDemand(settings.renderOnDemandEnabled());
       libGDXLogLevel.set(settings.getLibGDXLogLevel());
       imguiFontSize.set(settings.getFontSize());
       try
@@ -279,9 +304,14 @@ public class RDXBaseUI
       if (LibGDXTools.ENABLE_OPENGL_DEBUGGER)
          glProfiler = LibGDXTools.createGLProfiler();
 
+      frameProfiler = new RDXFrameProfiler();
+
       primaryScene.create(sceneLevels);
       primaryScene.addDefaultLighting();
       primary3DPanel.create(RDXInputMode.ImGui, glProfiler, primaryScene);
+      primary3DPanel.setFrameProfiler(frameProfiler);
+      primary3DPanel.setFrameBufferPool(frameBufferPool);
+      primaryScene.setShadowFitCamera(primary3DPanel.getCamera3D());
       imGuiWindowAndDockSystem.getPanelManager().addPanel(primary3DPanel);
       primary3DPanel.getIsShowing().set(true);
 
@@ -310,6 +340,7 @@ public class RDXBaseUI
       Runtime.getRuntime().addShutdownHook(new Thread(() -> Gdx.app.exit(), "Exit" + getClass().getSimpleName()));
 
       vrManager.create();
+      vrManager.getContext().setFrameProfiler(frameProfiler);
       primaryScene.addRenderableProvider(vrManager::getVirtualRenderables, RDXSceneLevel.VIRTUAL);
       primary3DPanel.addImGui3DViewPickCalculator(vrManager::calculate3DViewPick);
       primary3DPanel.addImGui3DViewInputProcessor(vrManager::process3DViewInput);
@@ -317,26 +348,100 @@ public class RDXBaseUI
       loadSettings();
 
       keyBindings.register("Show key bindings", "Tab");
+
+      imGuiWindowAndDockSystem.getPanelManager().addPanel(new RDXPanel("Frame Profiler", frameProfiler::renderImGuiWidgets));
    }
 
    public void renderBeforeOnScreenUI()
    {
+      frameProfiler.beginFrame();
+      frameProfiler.begin("VR");
       vrManager.pollEventsAndRender(this, primaryScene);
+      frameProfiler.end();
       Gdx.graphics.setTitle(windowTitle);
+      frameProfiler.begin("ImGui panels");
       imGuiWindowAndDockSystem.beforeWindowManagement(settings.getlockPanelsWithinWindows());
+      frameProfiler.end();
+
+      boolean changed = renderOnDemand.get() && isInputActive();
+      if (changed)
+      {
+         primary3DPanel.requestRedraw();
+         for (RDX3DPanel additional3DPanel : additional3DPanels)
+            additional3DPanel.requestRedraw();
+      }
+
+      frameBufferPool.update();
+      long redrawsBefore = getTotalNumberOfRedraws();
       primary3DPanel.render();
       for (RDX3DPanel additional3DPanel : additional3DPanels)
       {
          additional3DPanel.render();
       }
+      changed |= getTotalNumberOfRedraws() != redrawsBefore;
+      updateIdleThrottle(changed);
+
       renderMenuBar();
 
       keyBindings.renderKeyBindingsTable();
    }
 
+   /**
+    * Input is applied to the 3D views as they render, like the camera moving while a key is held,
+    * so any input at all redraws them.
+    */
+   private boolean isInputActive()
+   {
+      ImGuiIO io = ImGui.getIO();
+      if (io.getMouseDeltaX() != 0.0f || io.getMouseDeltaY() != 0.0f || io.getMouseWheel() != 0.0f || io.getMouseWheelH() != 0.0f)
+         return true;
+      if (ImGui.isAnyMouseDown() || ImGui.isAnyItemActive())
+         return true;
+      for (int key = GLFW.GLFW_KEY_SPACE; key <= GLFW.GLFW_KEY_LAST; key++)
+         if (ImGui.isKeyDown(key))
+            return true;
+      return false;
+   }
+
+   /**
+    * With render on demand, drops to {@link #IDLE_FPS} when nothing has changed for a bit, or right
+    * away when the window isn't focused. The ImGui frame and the application's update code still run,
+    * so new data gets picked up, just with up to 1 / {@link #IDLE_FPS} s of latency.
+    */
+   private void updateIdleThrottle(boolean changed)
+   {
+      if (changed)
+         timeSinceLastChange.reset();
+
+      long windowHandle = ((Lwjgl3Graphics) Gdx.graphics).getWindow().getWindowHandle();
+      boolean windowFocused = GLFW.glfwGetWindowAttrib(windowHandle, GLFW.GLFW_FOCUSED) == GLFW.GLFW_TRUE;
+      boolean shouldIdle = renderOnDemand.get() && !vrManager.isVRReady() && !changed;
+      shouldIdle &= !windowFocused || timeSinceLastChange.totalElapsed() > IDLE_DELAY;
+
+      if (shouldIdle != idle)
+      {
+         idle = shouldIdle;
+         if (idle)
+            Gdx.graphics.setForegroundFPS(IDLE_FPS);
+         else
+            Gdx.graphics.setForegroundFPS(vsync.get() ? Integer.MAX_VALUE : foregroundFPSLimit.get());
+      }
+   }
+
+   private long getTotalNumberOfRedraws()
+   {
+      long numberOfRedraws = primary3DPanel.getNumberOfRedraws();
+      for (RDX3DPanel additional3DPanel : additional3DPanels)
+         numberOfRedraws += additional3DPanel.getNumberOfRedraws();
+      return numberOfRedraws;
+   }
+
    public void renderEnd()
    {
+      frameProfiler.begin("ImGui draw");
       imGuiWindowAndDockSystem.afterWindowManagement();
+      frameProfiler.end();
+      frameProfiler.endFrame();
       ++renderIndex;
 
       // Show the window now that it's been loaded; we started it while it wasn't visible.
@@ -499,6 +604,30 @@ public class RDXBaseUI
          {
             settings.setlockPanelsWithinWindows(lockPanelsWithinWindows.get());
          }
+         if (ImGui.menuItem(labels.get("Render on demand"), null, renderOnDemand))
+         {
+            settings.setRenderOnDemand(renderOnDemand.get());
+            setRenderOnDemand(renderOnDemand.get());
+         }
+         if (renderOnDemand.get())
+         {
+            ImGui.indent();
+            ImGui.text(idle ? IDLE_TEXT : "Active");
+            renderRedrawCounters(primary3DPanel);
+            for (RDX3DPanel additional3DPanel : additional3DPanels)
+               renderRedrawCounters(additional3DPanel);
+            ImGui.unindent();
+         }
+         ImGui.text(frameBufferGPUMBText.format(frameBufferPool.getAllocatedGPUBytes() / 1e6, 1));
+         ImGui.sameLine(0.0f, 0.0f);
+         ImGui.text(frameBufferHostMBText.format(frameBufferPool.getAllocatedPixmapBytes() / 1e6, 1));
+         ImGui.text(frameBuffersInUseText.format(frameBufferPool.getNumberOfFrameBuffersInUse()));
+         ImGui.sameLine(0.0f, 0.0f);
+         ImGui.text(frameBuffersFreeText.format(frameBufferPool.getNumberOfFreeFrameBuffers()));
+         ImGui.sameLine(0.0f, 0.0f);
+         ImGui.text(frameBufferAllocationsText.format(frameBufferPool.getNumberOfAllocations()));
+         ImGui.sameLine(0.0f, 0.0f);
+         ImGui.text(frameBufferReusesText.format(frameBufferPool.getNumberOfReuses()));
 
          ImGui.separator(); // Environment section
          boolean renderingGroundTruthEnvironment = primaryScene.getSceneLevelsToRender().contains(RDXSceneLevel.GROUND_TRUTH);
@@ -573,11 +702,23 @@ public class RDXBaseUI
       ImGui.endMainMenuBar();
    }
 
+   private void renderRedrawCounters(RDX3DPanel panel3D)
+   {
+      ImGuiNumberText[] texts = redrawCounterTexts.computeIfAbsent(panel3D, panel -> new ImGuiNumberText[] {new ImGuiNumberText(panel.getPanelName() + ": ",
+                                                                                                                               " redraws, "),
+                                                                                                          new ImGuiNumberText("", " skipped")});
+      ImGui.text(texts[0].format(panel3D.getNumberOfRedraws()));
+      ImGui.sameLine(0.0f, 0.0f);
+      ImGui.text(texts[1].format(panel3D.getNumberOfSkippedRedraws()));
+   }
+
    public void dispose()
    {
       imGuiWindowAndDockSystem.dispose();
       vrManager.dispose();
       primaryScene.dispose();
+      frameProfiler.dispose();
+      frameBufferPool.dispose();
 
       instance = null;
    }
@@ -593,6 +734,9 @@ public class RDXBaseUI
       panel3D.getCamera3D().changeCameraPosition(-isoZoomOut, -isoZoomOut, isoZoomOut);
       imGuiWindowAndDockSystem.getPanelManager().addPanel(panel3D);
       additional3DPanels.add(panel3D);
+      panel3D.setRenderOnDemand(renderOnDemand.get());
+      panel3D.setFrameProfiler(frameProfiler);
+      panel3D.setFrameBufferPool(frameBufferPool);
    }
 
    public void addOnCloseRequestListener(Runnable onCloseRequest)
@@ -618,6 +762,29 @@ public class RDXBaseUI
       Gdx.graphics.setForegroundFPS(foregroundFPSLimit);
    }
 
+   /**
+    * Only redraw the 3D views when something changed and drop to a low frame rate while idle,
+    * to save GPU, CPU and battery. Call {@link RDX3DScene#requestRedraw()} for changes the
+    * 3D views can't see on their own, like new data in an existing mesh.
+    */
+   public void setRenderOnDemand(boolean renderOnDemand)
+   {
+      this.renderOnDemand.set(renderOnDemand);
+      primary3DPanel.setRenderOnDemand(renderOnDemand);
+      for (RDX3DPanel additional3DPanel : additional3DPanels)
+         additional3DPanel.setRenderOnDemand(renderOnDemand);
+   }
+
+   /**
+    * CPU and GPU times of the parts of each frame, like each 3D panel, scene pass,
+    * VR eye and the ImGui draw. Add scopes for your own subsystems with
+    * {@link RDXFrameProfiler#begin(String)} and {@link RDXFrameProfiler#end()}.
+    */
+   public RDXFrameProfiler getFrameProfiler()
+   {
+      return frameProfiler;
+   }
+
    public RDXPanelManager getImGuiPanelManager()
    {
       return imGuiWindowAndDockSystem.getPanelManager();
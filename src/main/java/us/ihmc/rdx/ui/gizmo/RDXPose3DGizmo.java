@@ -17,6 +17,7 @@ import net.mgsx.gltf.scene3d.attributes.PBRTextureAttribute;
 import us.ihmc.commons.thread.Notification;
 import us.ihmc.euclid.Axis3D;
 import us.ihmc.euclid.exceptions.NotARotationMatrixException;
+import us.ihmc.euclid.geometry.BoundingBox3D;
 import us.ihmc.euclid.geometry.interfaces.Line3DReadOnly;
 import us.ihmc.euclid.orientation.interfaces.Orientation3DBasics;
 import us.ihmc.euclid.referenceFrame.FramePose3D;
@@ -38,6 +39,7 @@ import us.ihmc.rdx.imgui.ImGuiTools;
 import us.ihmc.rdx.imgui.ImGuiUniqueLabelMap;
 import us.ihmc.rdx.imgui.RDXPanel;
 import us.ihmc.rdx.input.ImGui3DViewInput;
+import us.ihmc.rdx.input.ImGui3DViewPickBroadPhase;
 import us.ihmc.rdx.input.ImGui3DViewPickResult;
 import us.ihmc.rdx.input.ImGuiMouseDragData;
 import us.ihmc.rdx.mesh.RDXMeshBuilder;
@@ -98,6 +100,10 @@ public class RDXPose3DGizmo implements RenderableProvider
    private final SphereRayIntersection centerSphereIntersection = new SphereRayIntersection();
    private final DiscreteTorusRayIntersection torusIntersection = new DiscreteTorusRayIntersection();
    private final DiscreteArrowRayIntersection arrowIntersection = new DiscreteArrowRayIntersection();
+   /** Around the bounding sphere, only used when registered with the panel's pick broad phase */
+   private final BoundingBox3D pickBoundsInWorld = new BoundingBox3D();
+   private ImGui3DViewPickBroadPhase pickBroadPhase;
+   private int pickBoundsProxyID;
    /** The main, source, true, base transform that this thing represents. */
    private RigidBodyTransform transformToParent;
    /** This pose 3D should always be left in world frame and represent this gizmo's pose. */
@@ -225,7 +231,9 @@ public class RDXPose3DGizmo implements RenderableProvider
    public void createAndSetupDefault(RDX3DPanel panel3D)
    {
       create(panel3D);
-      panel3D.addImGui3DViewPickCalculator(this::calculate3DViewPick);
+      pickBroadPhase = panel3D.getPickBroadPhase();
+      updatePickBoundsInWorld();
+      pickBoundsProxyID = pickBroadPhase.addPickBounds(pickBoundsInWorld, this::calculate3DViewPick);
       panel3D.addImGui3DViewInputProcessor(this::process3DViewInput);
       panel3D.getScene().addRenderableProvider(this, RDXSceneLevel.VIRTUAL);
    }
@@ -486,6 +494,11 @@ public class RDXPose3DGizmo implements RenderableProvider
       // The above Axis calculations actually end up on Z, so we don't have to recalculate this
       framePose3D.get(transformToWorld);
       updateGraphicTransforms();
+      if (pickBroadPhase != null)
+      {
+         updatePickBoundsInWorld();
+         pickBroadPhase.updatePickBounds(pickBoundsProxyID, pickBoundsInWorld);
+      }
       LibGDXTools.toEuclid(camera3D.position, cameraPosition);
       distanceToCamera = cameraPosition.distance(framePose3D.getPosition());
 
@@ -517,6 +530,15 @@ public class RDXPose3DGizmo implements RenderableProvider
       }
    }
 
+   private void updatePickBoundsInWorld()
+   {
+      double halfSize = 1.5 * torusRadius.get();
+      double x = transformToWorld.getTranslation().getX();
+      double y = transformToWorld.getTranslation().getY();
+      double z = transformToWorld.getTranslation().getZ();
+      pickBoundsInWorld.set(x - halfSize, y - halfSize, z - halfSize, x + halfSize, y + halfSize, z + halfSize);
+   }
+
    private void determineCurrentSelectionFromPickRay(Line3DReadOnly pickRay)
    {
       closestCollisionSelection = null;
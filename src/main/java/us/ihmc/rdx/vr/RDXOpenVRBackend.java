@@ -0,0 +1,224 @@
+package us.ihmc.rdx.vr;
+
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import org.lwjgl.openvr.*;
+import us.ihmc.robotics.robotSide.RobotSide;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import static org.lwjgl.openvr.VR.VR_ShutdownInternal;
+import static org.lwjgl.openvr.VRSystem.VRSystem_GetStringTrackedDeviceProperty;
+
+/**
+ * The real thing, using SteamVR through LWJGL's OpenVR bindings.
+ */
+public class RDXOpenVRBackend implements RDXVRBackend
+{
+   private final IntBuffer errorPointer = BufferUtils.newIntBuffer(1);
+   private final IntBuffer widthPointer = BufferUtils.newIntBuffer(1);
+   private final IntBuffer heightPointer = BufferUtils.newIntBuffer(1);
+   private TrackedDevicePose.Buffer trackedDevicePoses;
+   private TrackedDevicePose.Buffer trackedDeviceGamePoses;
+   private double openvrInitialTime = 0.0;
+   private final CompositorFrameTiming.Buffer latestFrameTimingBuffer = CompositorFrameTiming.create(1);
+   private long numberOfDroppedFrames = 0;
+   private long lastMeasurementTimestamp;
+   private final TrackedDevicePose.Buffer latestHeadsetPose = TrackedDevicePose.create(1);
+   private final FloatBuffer secondsSinceLastVsync = BufferUtils.newFloatBuffer(1);
+   private final LongBuffer frameCounter = BufferUtils.newLongBuffer(1);
+   private float frameDuration;
+   private float secondsFromVsyncToPhotons;
+
+   { // FIXME Workaround to set the field m_nsize before request timing, without that, the VRCompositor.VRCompositor_GetFrameTimings() will not work. Should submit issue to LWJGL
+      getUnsafeInstance().putInt(null, latestFrameTimingBuffer.address() + CompositorFrameTiming.M_NSIZE, latestFrameTimingBuffer.sizeof());
+   }
+
+   @Override
+   public void initialize()
+   {
+      trackedDevicePoses = TrackedDevicePose.create(VR.k_unMaxTrackedDeviceCount);
+      trackedDeviceGamePoses = TrackedDevicePose.create(VR.k_unMaxTrackedDeviceCount); // 10 ms
+
+      int token = VR.VR_InitInternal(errorPointer, VR.EVRApplicationType_VRApplication_Scene); // takes 148 ms
+      checkInitError(errorPointer);
+      OpenVR.create(token); // takes 24 ms
+
+      VR.VR_GetGenericInterface(VR.IVRCompositor_Version, errorPointer);
+      checkInitError(errorPointer);
+
+      VR.VR_GetGenericInterface(VR.IVRRenderModels_Version, errorPointer);
+      checkInitError(errorPointer);
+
+      VRSystem.VRSystem_GetRecommendedRenderTargetSize(widthPointer, heightPointer);
+
+      float displayFrequency = VRSystem.VRSystem_GetFloatTrackedDeviceProperty(VR.k_unTrackedDeviceIndex_Hmd,
+                                                                               VR.ETrackedDeviceProperty_Prop_DisplayFrequency_Float,
+                                                                               errorPointer);
+      frameDuration = 1.0f / (displayFrequency > 0.0f ? displayFrequency : 90.0f);
+      secondsFromVsyncToPhotons = VRSystem.VRSystem_GetFloatTrackedDeviceProperty(VR.k_unTrackedDeviceIndex_Hmd,
+                                                                                  VR.ETrackedDeviceProperty_Prop_SecondsFromVsyncToPhotons_Float,
+                                                                                  errorPointer);
+   }
+
+   private void checkInitError(IntBuffer errorBuffer)
+   {
+      if (errorBuffer.get(0) != VR.EVRInitError_VRInitError_None)
+      {
+         int error = errorBuffer.get(0);
+         throw new GdxRuntimeException("VR Initialization error: " + VR.VR_GetVRInitErrorAsEnglishDescription(error));
+      }
+   }
+
+   @Override
+   public boolean hasOpenVRInput()
+   {
+      return true;
+   }
+
+   @Override
+   public int getRecommendedRenderTargetWidth()
+   {
+      return widthPointer.get(0);
+   }
+
+   @Override
+   public int getRecommendedRenderTargetHeight()
+   {
+      return heightPointer.get(0);
+   }
+
+   @Override
+   public double getDisplayFrequency()
+   {
+      return 1.0 / frameDuration;
+   }
+
+   @Override
+   public void waitGetPoses(RDXVRTrackedDevicePose[] posesToPack)
+   {
+      VRCompositor.VRCompositor_WaitGetPoses(trackedDevicePoses, trackedDeviceGamePoses);
+      VRCompositor.VRCompositor_GetFrameTimings(latestFrameTimingBuffer);
+      // Using the buffer accessors instead of get(0) avoids allocating a struct wrapper each frame
+      double systemTimeInSeconds = latestFrameTimingBuffer.m_flSystemTimeInSeconds();
+      double newPosesReadyMs = latestFrameTimingBuffer.m_flNewPosesReadyMs();
+      numberOfDroppedFrames += latestFrameTimingBuffer.m_nNumDroppedFrames();
+      double openvrTime = systemTimeInSeconds + newPosesReadyMs * 0.001;
+      if (openvrInitialTime == 0.0)
+      {
+         openvrInitialTime = openvrTime;
+      }
+      openvrTime -= openvrInitialTime;
+
+      lastMeasurementTimestamp = (long) (openvrTime * 1.0e9);
+      for (int i = 0; i < posesToPack.length; i++)
+      {
+         posesToPack[i].set(lastMeasurementTimestamp, trackedDevicePoses, i);
+      }
+   }
+
+   @Override
+   public boolean getLatestHeadsetPose(RDXVRTrackedDevicePose headsetPoseToPack)
+   {
+      if (!VRSystem.VRSystem_GetTimeSinceLastVsync(secondsSinceLastVsync, frameCounter))
+         return false;
+
+      // The frame being rendered gets displayed at the next vsync plus the display's photon delay
+      float predictedSecondsToPhotonsFromNow = frameDuration - secondsSinceLastVsync.get(0) + secondsFromVsyncToPhotons;
+      VRSystem.VRSystem_GetDeviceToAbsoluteTrackingPose(VRCompositor.VRCompositor_GetTrackingSpace(), predictedSecondsToPhotonsFromNow, latestHeadsetPose);
+      if (!latestHeadsetPose.bPoseIsValid())
+         return false;
+
+      headsetPoseToPack.set(lastMeasurementTimestamp, latestHeadsetPose, VR.k_unTrackedDeviceIndex_Hmd);
+      return true;
+   }
+
+   @Override
+   public boolean isTrackedDeviceConnected(int deviceIndex)
+   {
+      return VRSystem.VRSystem_IsTrackedDeviceConnected(deviceIndex);
+   }
+
+   @Override
+   public String getRenderModelName(int deviceIndex)
+   {
+      return VRSystem_GetStringTrackedDeviceProperty(deviceIndex, VR.ETrackedDeviceProperty_Prop_RenderModelName_String, errorPointer);
+   }
+
+   @Override
+   public int getControllerDeviceIndex(RobotSide side)
+   {
+      return VR.k_unTrackedDeviceIndexInvalid; // looked up with OpenVR input instead
+   }
+
+   @Override
+   public void getEyeToHeadTransform(int eye, HmdMatrix34 eyeToHeadToPack)
+   {
+      VRSystem.VRSystem_GetEyeToHeadTransform(eye, eyeToHeadToPack);
+   }
+
+   @Override
+   public void getProjectionMatrix(int eye, float near, float far, HmdMatrix44 projectionToPack)
+   {
+      VRSystem.VRSystem_GetProjectionMatrix(eye, near, far, projectionToPack);
+   }
+
+   @Override
+   public void submit(int eye, Texture texture, VRTextureBounds bounds)
+   {
+      VRCompositor.VRCompositor_Submit(eye, texture, bounds, VR.EVRSubmitFlags_Submit_Default);
+   }
+
+   @Override
+   public long getNumberOfDroppedFrames()
+   {
+      return numberOfDroppedFrames;
+   }
+
+   @Override
+   public void shutdown()
+   {
+      VR_ShutdownInternal();
+   }
+
+   private static sun.misc.Unsafe getUnsafeInstance()
+   {
+      java.lang.reflect.Field[] fields = sun.misc.Unsafe.class.getDeclaredFields();
+
+        /*
+        Different runtimes use different names for the Unsafe singleton,
+        so we cannot use .getDeclaredField and we scan instead. For example:
+
+        Oracle: theUnsafe
+        PERC : m_unsafe_instance
+        Android: THE_ONE
+        */
+      for (java.lang.reflect.Field field : fields)
+      {
+         if (!field.getType().equals(sun.misc.Unsafe.class))
+         {
+            continue;
+         }
+
+         int modifiers = field.getModifiers();
+         if (!(java.lang.reflect.Modifier.isStatic(modifiers) && java.lang.reflect.Modifier.isFinal(modifiers)))
+         {
+            continue;
+         }
+
+         try
+         {
+            field.setAccessible(true);
+            return (sun.misc.Unsafe) field.get(null);
+         }
+         catch (Exception ignored)
+         {
+         }
+         break;
+      }
+
+      throw new UnsupportedOperationException("LWJGL requires sun.misc.Unsafe to be available.");
+   }
+}
@@ -0,0 +1,83 @@
+package us.ihmc.rdx.vr;
+
+import org.lwjgl.openvr.HmdMatrix34;
+import org.lwjgl.openvr.HmdMatrix44;
+import org.lwjgl.openvr.Texture;
+import org.lwjgl.openvr.VRTextureBounds;
+import us.ihmc.robotics.robotSide.RobotSide;
+
+/**
+ * What {@link RDXVRContext} needs from the VR runtime for the frame loop: poses, eye geometry
+ * and a place to submit the rendered eyes.
+ *
+ * {@link RDXOpenVRBackend} talks to SteamVR. {@link RDXVRMockBackend} runs without a headset
+ * so VR rendering performance can be measured on any machine.
+ */
+public interface RDXVRBackend
+{
+   /**
+    * Called from the VR init thread.
+    */
+   void initialize();
+
+   /**
+    * When false there's no SteamVR runtime, so controller buttons, trackers and device events
+    * are not available.
+    */
+   boolean hasOpenVRInput();
+
+   int getRecommendedRenderTargetWidth();
+
+   int getRecommendedRenderTargetHeight();
+
+   /**
+    * @return the headset refresh rate in Hz, which sets the frame time budget
+    */
+   double getDisplayFrequency();
+
+   /**
+    * Blocks until it's time to start rendering the next frame.
+    *
+    * @param posesToPack indexed by tracked device index, including the timestamps
+    */
+   void waitGetPoses(RDXVRTrackedDevicePose[] posesToPack);
+
+   /**
+    * A fresh prediction of the headset pose for when the frame being rendered will be displayed,
+    * for late latching right before drawing each eye.
+    *
+    * @return false if there isn't a valid pose
+    */
+   boolean getLatestHeadsetPose(RDXVRTrackedDevicePose headsetPoseToPack);
+
+   boolean isTrackedDeviceConnected(int deviceIndex);
+
+   String getRenderModelName(int deviceIndex);
+
+   /**
+    * Only used when there's no OpenVR input to look it up from.
+    */
+   int getControllerDeviceIndex(RobotSide side);
+
+   /**
+    * @param eye VR.EVREye_Eye_Left or VR.EVREye_Eye_Right
+    */
+   void getEyeToHeadTransform(int eye, HmdMatrix34 eyeToHeadToPack);
+
+   /**
+    * @param eye VR.EVREye_Eye_Left or VR.EVREye_Eye_Right
+    */
+   void getProjectionMatrix(int eye, float near, float far, HmdMatrix44 projectionToPack);
+
+   /**
+    * @param bounds null for the whole texture
+    */
+   void submit(int eye, Texture texture, VRTextureBounds bounds);
+
+   /**
+    * @return frames the runtime had to repeat because a new one wasn't submitted in time
+    */
+   long getNumberOfDroppedFrames();
+
+   void shutdown();
+}
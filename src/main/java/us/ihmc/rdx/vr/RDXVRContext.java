@@ -1,18 +1,15 @@
 package us.ihmc.rdx.vr;
 
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.graphics.g3d.Renderable;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.BufferUtils;
-import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.Pool;
 import org.lwjgl.opengl.GL41;
-import org.lwjgl.openvr.CompositorFrameTiming;
-import org.lwjgl.openvr.OpenVR;
-import org.lwjgl.openvr.TrackedDevicePose;
 import org.lwjgl.openvr.VR;
 import org.lwjgl.openvr.VRActiveActionSet;
-import org.lwjgl.openvr.VRCompositor;
 import org.lwjgl.openvr.VREvent;
 import org.lwjgl.openvr.VRInput;
 import org.lwjgl.openvr.VRSystem;
@@ -25,6 +22,10 @@ import us.ihmc.euclid.tuple3D.Point3D;
 import us.ihmc.euclid.yawPitchRoll.YawPitchRoll;
 import us.ihmc.log.LogTools;
 import us.ihmc.rdx.sceneManager.RDX3DScene;
+import us.ihmc.rdx.sceneManager.RDX3DSceneTools;
+import us.ihmc.rdx.tools.RDXFrameProfiler;
+import us.ihmc.rdx.tools.RDXGPUTimer;
+import us.ihmc.rdx.tools.RDXMultisampleFrameBuffer;
 import us.ihmc.robotics.robotSide.RobotSide;
 import us.ihmc.robotics.robotSide.SideDependentList;
 import us.ihmc.tools.io.JSONFileTools;
@@ -42,10 +43,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
-import static org.lwjgl.openvr.VR.VR_ShutdownInternal;
 import static org.lwjgl.openvr.VRSystem.VRSystem_GetStringTrackedDeviceProperty;
 
 /**
@@ -54,28 +53,52 @@ import static org.lwjgl.openvr.VRSystem.VRSystem_GetStringTrackedDeviceProperty;
  * and rendering the surfaces side by side to the companion window on the
  * desktop. Wrapper around OpenVR.
  * <p>
- * FIXME add multisampling plus draw/resolve buffers
+ * Eyes are rendered into multisampled render buffers, which are resolved into
+ * the textures that get submitted.
  */
 public class RDXVRContext
 {
-   // couple of scratch buffers
-   private final IntBuffer errorPointer = BufferUtils.newIntBuffer(1);
-   private final IntBuffer widthPointer = BufferUtils.newIntBuffer(1);
-   private final IntBuffer heightPointer = BufferUtils.newIntBuffer(1);
+   private final RDXVRBackend backend;
 
    // per eye data such as rendering surfaces, textures, regions, cameras etc. for each eye
    private final SideDependentList<RDXVREye> eyes = new SideDependentList<>();
+   // side by side render target for single pass stereo, allocated when first used
+   private boolean singlePassStereoEnabled = false;
+   private FrameBuffer stereoFrameBuffer;
+   private RDXMultisampleFrameBuffer stereoMultisampleFrameBuffer;
+   private org.lwjgl.openvr.Texture stereoOpenVRTexture;
+   // render target settings are applied on the render thread
+   private int multisampleSamples = 4;
+   private double renderTargetScale = 1.0;
+   private volatile boolean renderTargetSettingsChanged = true;
+   // rendering less of the render targets when the GPU can't keep up
+   private RDXGPUTimer eyesGPUTimer;
+   private RDXFrameProfiler frameProfiler;
+   private final RDXVRDynamicResolution dynamicResolution = new RDXVRDynamicResolution();
+   private boolean dynamicResolutionEnabled = false;
+   private float resolutionScale = 1.0f;
+   // fixed foveated rendering, only for rendering the eyes one at a time
+   private boolean foveatedRenderingEnabled = false;
+   private float fovealFraction = 0.5f;
+   private float peripheryScale = 0.5f;
 
    // internal native objects to get device poses
-   private final AtomicReference<RDXVRTrackedDevicePose[]> trackedDevicePosesParsedRef = new AtomicReference<>();
-   private TrackedDevicePose.Buffer trackedDevicePoses;
-   private TrackedDevicePose.Buffer trackedDeviceGamePoses;
+   private final RDXVRTrackedDevicePoseTripleBuffer trackedDevicePosesParsed = new RDXVRTrackedDevicePoseTripleBuffer();
+   private volatile long posesReadyNanos;
+   // re-reading the headset pose right before drawing each eye
+   private boolean lateLatchEnabled = true;
+   private final RDXVRTrackedDevicePose lateLatchedHeadsetPose = new RDXVRTrackedDevicePose();
+   private long headsetPoseReadNanos;
+   private final Consumer<RobotSide> lateLatchBeforeEyeDraw = this::lateLatchBeforeEyeDraw;
+   private final RDXVRFrameStatistics frameStatistics = new RDXVRFrameStatistics();
 
    // devices, their poses and listeners
    private final LongBuffer mainActionSetHandle = BufferUtils.newLongBuffer(1);
    private VRActiveActionSet.Buffer activeActionSets;
 
    private VREvent event;
+   private int recommendedWidth;
+   private int recommendedHeight;
    private int width;
    private int height;
    private final ArrayList<Consumer<RDXVRContext>> vrPickCalculators = new ArrayList<>();
@@ -140,28 +163,28 @@ public class RDXVRContext
    private final Notification loadingRolesNotification = new Notification();
    private WorkspaceResourceFile trackerRolesFile;
 
+   public RDXVRContext()
+   {
+      this(new RDXOpenVRBackend());
+   }
+
+   public RDXVRContext(RDXVRBackend backend)
+   {
+      this.backend = backend;
+   }
+
    public void initSystem()
    {
       LogTools.info("Initializing");
 
       event = VREvent.create(); // about 92 ms
-      trackedDevicePoses = TrackedDevicePose.create(VR.k_unMaxTrackedDeviceCount);
-      trackedDeviceGamePoses = TrackedDevicePose.create(VR.k_unMaxTrackedDeviceCount); // 10 ms
 
-      int token = VR.VR_InitInternal(errorPointer, VR.EVRApplicationType_VRApplication_Scene); // takes 148 ms
-      checkInitError(errorPointer);
-      OpenVR.create(token); // takes 24 ms
+      backend.initialize();
 
-      VR.VR_GetGenericInterface(VR.IVRCompositor_Version, errorPointer);
-      checkInitError(errorPointer);
-
-      VR.VR_GetGenericInterface(VR.IVRRenderModels_Version, errorPointer);
-      checkInitError(errorPointer);
-
-      VRSystem.VRSystem_GetRecommendedRenderTargetSize(widthPointer, heightPointer);
-      float renderTargetMultiplier = 1.0f; // multiplier to scale the render surface dimensions as a replacement for multisampling
-      width = (int) (widthPointer.get(0) * renderTargetMultiplier);
-      height = (int) (heightPointer.get(0) * renderTargetMultiplier);
+      recommendedWidth = backend.getRecommendedRenderTargetWidth();
+      recommendedHeight = backend.getRecommendedRenderTargetHeight();
+      width = (int) (recommendedWidth * renderTargetScale);
+      height = (int) (recommendedHeight * renderTargetScale);
 
       WorkspaceResourceDirectory directory = new WorkspaceResourceDirectory(getClass(), "/vr");
       WorkspaceResourceFile actionManifestFile = new WorkspaceResourceFile(directory, "actions.json");
@@ -177,14 +200,17 @@ public class RDXVRContext
          });
       });
       LogTools.info("Using VR controller model: {}", controllerModel);
-      VRInput.VRInput_SetActionManifestPath(actionManifestFile.getFilesystemFile().toString());
+      if (backend.hasOpenVRInput())
+      {
+         VRInput.VRInput_SetActionManifestPath(actionManifestFile.getFilesystemFile().toString());
+         VRInput.VRInput_GetActionSetHandle("/actions/main", mainActionSetHandle);
+      }
 
-      VRInput.VRInput_GetActionSetHandle("/actions/main", mainActionSetHandle);
-      headset.initSystem();
+      headset.initSystem(backend);
       for (RDXVRController controller : controllers)
       {
          controller.setModel(controllerModel);
-         controller.initSystem();
+         controller.initSystem(backend);
       }
 
       trackerRolesFile = new WorkspaceResourceFile(directory, "tracker_roles.json");
@@ -195,17 +221,20 @@ public class RDXVRContext
             savedTrackersRoleMap.put(role, node.get(role).asText());
          }
       });
-      int[] deviceIndices = new int[5]; // maximum number of trackers per dongle
-      IntBuffer trackerIndices = IntBuffer.wrap(deviceIndices);
-      int numberOfTrackers = VRSystem.VRSystem_GetSortedTrackedDeviceIndicesOfClass(VR.ETrackedDeviceClass_TrackedDeviceClass_GenericTracker,
-                                                                                    trackerIndices,
-                                                                                    -1);
-      for (int i = 0; i < numberOfTrackers; i++)
-      {
-         int deviceIndex = trackerIndices.get(i);
-         if (!trackers.containsKey(getSerialNumber(deviceIndex)))
+      if (backend.hasOpenVRInput())
+      {
+         int[] deviceIndices = new int[5]; // maximum number of trackers per dongle
+         IntBuffer trackerIndices = IntBuffer.wrap(deviceIndices);
+         int numberOfTrackers = VRSystem.VRSystem_GetSortedTrackedDeviceIndicesOfClass(VR.ETrackedDeviceClass_TrackedDeviceClass_GenericTracker,
+                                                                                       trackerIndices,
+                                                                                       -1);
+         for (int i = 0; i < numberOfTrackers; i++)
          {
-            trackers.put(getSerialNumber(deviceIndex), new RDXVRTracker(vrPlayAreaYUpZBackFrame, deviceIndex));
+            int deviceIndex = trackerIndices.get(i);
+            if (!trackers.containsKey(getSerialNumber(deviceIndex)))
+            {
+               trackers.put(getSerialNumber(deviceIndex), new RDXVRTracker(vrPlayAreaYUpZBackFrame, deviceIndex, backend));
+            }
          }
       }
 
@@ -222,25 +251,10 @@ public class RDXVRContext
       LogTools.info("VR per eye render size: {} x {}", width, height);
       for (RobotSide side : RobotSide.values)
       {
-         eyes.set(side, new RDXVREye(side, headset, width, height));
-      }
-   }
-
-   private void checkInitError(IntBuffer errorBuffer)
-   {
-      if (errorBuffer.get(0) != VR.EVRInitError_VRInitError_None)
-      {
-         int error = errorBuffer.get(0);
-         throw new GdxRuntimeException("VR Initialization error: " + VR.VR_GetVRInitErrorAsEnglishDescription(error));
+         eyes.set(side, new RDXVREye(side, headset, backend, width, height));
       }
-   }
-
-   private double openvrInitialTime = 0.0;
-   private double systemInitialTime = Double.NaN;
-   private CompositorFrameTiming.Buffer latestFrameTimingBuffer = CompositorFrameTiming.create(1);
-
-   { // FIXME Workaround to set the field m_nsize before request timing, without that, the VRCompositor.VRCompositor_GetFrameTimings() will not work. Should submit issue to LWJGL
-      getUnsafeInstance().putInt(null, latestFrameTimingBuffer.address() + CompositorFrameTiming.M_NSIZE, latestFrameTimingBuffer.sizeof());
+      // The new eyes are single sampled, so the sample count and render scale get applied again
+      renderTargetSettingsChanged = true;
    }
 
    /**
@@ -250,32 +264,10 @@ public class RDXVRContext
     */
    public void waitGetPoses()
    {
-
-      VRCompositor.VRCompositor_WaitGetPoses(trackedDevicePoses, trackedDeviceGamePoses);
-      int nRead = VRCompositor.VRCompositor_GetFrameTimings(latestFrameTimingBuffer);
-      CompositorFrameTiming compositorFrameTiming = latestFrameTimingBuffer.get(0);
-      double systemTimeInSeconds = compositorFrameTiming.m_flSystemTimeInSeconds();
-      double newPosesReadyMs = compositorFrameTiming.m_flNewPosesReadyMs();
-      double openvrTime = systemTimeInSeconds + newPosesReadyMs * 0.001;
-      double systemTime = 1.0e-9 * System.nanoTime();
-      if (openvrInitialTime == 0.0)
-      {
-         systemInitialTime = systemTime;
-         openvrInitialTime = openvrTime;
-      }
-      openvrTime -= openvrInitialTime;
-      systemTime -= systemInitialTime;
-
-//      LogTools.info(nRead + " - Times: OpenVR=%6.5f, System=%6.5f, Delta=%6.5f".formatted(openvrTime, systemTime, openvrTime - systemTime));
-
-      //      VRCompositor.VRCompositor_GetLastPoses(trackedDevicePoses, trackedDeviceGamePoses); // Is there a way to wait better?
-      long measurementTimestamp = (long) (openvrTime * 1.0e9);
-      RDXVRTrackedDevicePose[] temp = new RDXVRTrackedDevicePose[VR.k_unMaxTrackedDeviceCount];
-      for (int i = 0; i < temp.length; i++)
-      {
-         temp[i] = new RDXVRTrackedDevicePose(measurementTimestamp, trackedDevicePoses, i);
-      }
-      trackedDevicePosesParsedRef.set(temp);
+      RDXVRTrackedDevicePose[] posesToPack = trackedDevicePosesParsed.getWriteSet();
+      backend.waitGetPoses(posesToPack);
+      posesReadyNanos = System.nanoTime();
+      trackedDevicePosesParsed.publish();
    }
 
    /**
@@ -284,12 +276,13 @@ public class RDXVRContext
     */
    public void pollEvents()
    {
-      RDXVRTrackedDevicePose[] newTrackedDevicePosesParsed = trackedDevicePosesParsedRef.getAndSet(null);
+      RDXVRTrackedDevicePose[] newTrackedDevicePosesParsed = trackedDevicePosesParsed.pollLatest();
 
       if (newTrackedDevicePosesParsed == null)
          return;
 
-      VRInput.VRInput_UpdateActionState(activeActionSets, VRActiveActionSet.SIZEOF);
+      if (backend.hasOpenVRInput())
+         VRInput.VRInput_UpdateActionState(activeActionSets, VRActiveActionSet.SIZEOF);
 
       headset.update(newTrackedDevicePosesParsed);
 
@@ -298,7 +291,7 @@ public class RDXVRContext
          controllers.get(side).update(newTrackedDevicePosesParsed);
       }
 
-      while (VRSystem.VRSystem_PollNextEvent(event)) // a tracker is connected/disconnected after initialization
+      while (backend.hasOpenVRInput() && VRSystem.VRSystem_PollNextEvent(event)) // a tracker is connected/disconnected after initialization
       {
          int deviceIndex = event.trackedDeviceIndex();
          int deviceClass = VRSystem.VRSystem_GetTrackedDeviceClass(deviceIndex);
@@ -308,7 +301,7 @@ public class RDXVRContext
             {
                if (!trackers.containsKey(getSerialNumber(deviceIndex)))
                {
-                  trackers.put(getSerialNumber(deviceIndex), new RDXVRTracker(vrPlayAreaYUpZBackFrame, deviceIndex));
+                  trackers.put(getSerialNumber(deviceIndex), new RDXVRTracker(vrPlayAreaYUpZBackFrame, deviceIndex, backend));
                   newTrackerSerialNumber.add(getSerialNumber(deviceIndex));
                   LogTools.info("Tracker {} connected", getSerialNumber(deviceIndex));
                }
@@ -349,26 +342,194 @@ public class RDXVRContext
     */
    public void renderEyes(RDX3DScene scene)
    {
-      for (RobotSide side : RobotSide.values)
+      long renderStartNanos = System.nanoTime();
+      headsetPoseReadNanos = posesReadyNanos;
+      if (renderTargetSettingsChanged)
+         applyRenderTargetSettings();
+      applyResolutionSettings();
+
+      if (eyesGPUTimer == null)
+         eyesGPUTimer = new RDXGPUTimer();
+      eyesGPUTimer.begin();
+      if (singlePassStereoEnabled)
       {
-         eyes.get(side).render(scene);
+         beginProfilerScope("Both eyes");
+         renderEyesSinglePass(scene);
+         endProfilerScope();
+         eyesGPUTimer.end();
+
+         backend.submit(VR.EVREye_Eye_Left, stereoOpenVRTexture, eyes.get(RobotSide.LEFT).getStereoTextureBounds());
+         backend.submit(VR.EVREye_Eye_Right, stereoOpenVRTexture, eyes.get(RobotSide.RIGHT).getStereoTextureBounds());
       }
+      else
+      {
+         for (RobotSide side : RobotSide.values)
+         {
+            lateLatchHeadsetPose();
+            beginProfilerScope(side == RobotSide.LEFT ? "Left eye" : "Right eye");
+            eyes.get(side).render(scene);
+            endProfilerScope();
+         }
+         eyesGPUTimer.end();
 
-      // These lines take some time
-      // TODO: Do anti aliasing and set EVRSubmitFlags_Submit_GlRenderBuffer
-      VRCompositor.VRCompositor_Submit(VR.EVREye_Eye_Left, eyes.get(RobotSide.LEFT).getOpenVRTexture(), null, VR.EVRSubmitFlags_Submit_Default);
-      VRCompositor.VRCompositor_Submit(VR.EVREye_Eye_Right, eyes.get(RobotSide.RIGHT).getOpenVRTexture(), null, VR.EVRSubmitFlags_Submit_Default);
+         // These lines take some time
+         backend.submit(VR.EVREye_Eye_Left, eyes.get(RobotSide.LEFT).getOpenVRTexture(), eyes.get(RobotSide.LEFT).getTextureBounds());
+         backend.submit(VR.EVREye_Eye_Right, eyes.get(RobotSide.RIGHT).getOpenVRTexture(), eyes.get(RobotSide.RIGHT).getTextureBounds());
+      }
+      frameStatistics.update(posesReadyNanos, renderStartNanos, headsetPoseReadNanos, System.nanoTime(), backend.getNumberOfDroppedFrames());
       GL41.glFlush(); // recommended by OpenVR docs. Needed?
    }
 
+   private void beginProfilerScope(String name)
+   {
+      if (frameProfiler != null)
+         frameProfiler.begin(name);
+   }
+
+   private void endProfilerScope()
+   {
+      if (frameProfiler != null)
+         frameProfiler.end();
+   }
+
+   /** Times each eye, or both for single pass stereo. */
+   public void setFrameProfiler(RDXFrameProfiler frameProfiler)
+   {
+      this.frameProfiler = frameProfiler;
+   }
+
+   /**
+    * Renders both eyes into the halves of one side by side texture with a single traversal of the scene.
+    */
+   private void renderEyesSinglePass(RDX3DScene scene)
+   {
+      if (stereoFrameBuffer == null)
+      {
+         boolean hasDepth = true;
+         boolean hasStencil = false;
+         stereoFrameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, 2 * width, height, hasDepth, hasStencil);
+         stereoOpenVRTexture = org.lwjgl.openvr.Texture.create();
+         stereoOpenVRTexture.set(stereoFrameBuffer.getColorBufferTexture().getTextureObjectHandle(),
+                                 VR.ETextureType_TextureType_OpenGL,
+                                 VR.EColorSpace_ColorSpace_Gamma);
+         if (multisampleSamples > 1)
+            stereoMultisampleFrameBuffer = new RDXMultisampleFrameBuffer(multisampleSamples, 2 * width, height);
+      }
+
+      for (RobotSide side : RobotSide.values)
+      {
+         eyes.get(side).update();
+      }
+
+      // With dynamic resolution, each eye is drawn to the lower left part of its half
+      int scaledWidth = eyes.get(RobotSide.LEFT).getScaledWidth();
+      int scaledHeight = eyes.get(RobotSide.LEFT).getScaledHeight();
+      if (stereoMultisampleFrameBuffer != null)
+      {
+         stereoMultisampleFrameBuffer.begin();
+         RDX3DSceneTools.glClearGray();
+         scene.renderToStereoCameras(eyes.get(RobotSide.LEFT), eyes.get(RobotSide.RIGHT), width, scaledWidth, scaledHeight, lateLatchBeforeEyeDraw);
+         stereoMultisampleFrameBuffer.endAndResolveTo(stereoFrameBuffer);
+      }
+      else
+      {
+         stereoFrameBuffer.begin();
+         GL41.glViewport(0, 0, 2 * width, height);
+         RDX3DSceneTools.glClearGray();
+         scene.renderToStereoCameras(eyes.get(RobotSide.LEFT), eyes.get(RobotSide.RIGHT), width, scaledWidth, scaledHeight, lateLatchBeforeEyeDraw);
+         stereoFrameBuffer.end();
+      }
+   }
+
+   /**
+    * Moves the headset to the newest predicted pose, so the time spent rendering
+    * doesn't add to the head motion latency.
+    */
+   private void lateLatchHeadsetPose()
+   {
+      if (lateLatchEnabled && backend.getLatestHeadsetPose(lateLatchedHeadsetPose) && headset.lateLatch(lateLatchedHeadsetPose))
+         headsetPoseReadNanos = System.nanoTime();
+   }
+
+   /**
+    * For single pass stereo, the renderables have already been gathered and sorted
+    * with the earlier pose, so only the eye's view matrices get updated.
+    */
+   private void lateLatchBeforeEyeDraw(RobotSide side)
+   {
+      if (lateLatchEnabled)
+      {
+         lateLatchHeadsetPose();
+         eyes.get(side).update(false);
+      }
+   }
+
+   private void applyRenderTargetSettings()
+   {
+      renderTargetSettingsChanged = false;
+      width = Math.max(1, (int) (recommendedWidth * renderTargetScale));
+      height = Math.max(1, (int) (recommendedHeight * renderTargetScale));
+      for (RobotSide side : RobotSide.values)
+      {
+         eyes.get(side).setRenderTargetSize(width, height, multisampleSamples);
+      }
+      // reallocated with the new settings when next used
+      disposeStereoFrameBuffers();
+   }
+
+   /**
+    * The GPU time measured a few frames ago picks the resolution scale for this frame.
+    */
+   private void applyResolutionSettings()
+   {
+      if (dynamicResolutionEnabled && eyesGPUTimer != null)
+         resolutionScale = (float) dynamicResolution.update(eyesGPUTimer.getLatestElapsedMs(), 1000.0 / backend.getDisplayFrequency());
+      else
+         resolutionScale = 1.0f;
+
+      for (RobotSide side : RobotSide.values)
+      {
+         eyes.get(side).setResolutionScale(resolutionScale);
+         eyes.get(side).setFoveation(foveatedRenderingEnabled && !singlePassStereoEnabled, fovealFraction, peripheryScale);
+      }
+   }
+
+   private void disposeStereoFrameBuffers()
+   {
+      if (stereoFrameBuffer != null)
+      {
+         stereoFrameBuffer.dispose();
+         stereoFrameBuffer = null;
+      }
+      if (stereoMultisampleFrameBuffer != null)
+      {
+         stereoMultisampleFrameBuffer.dispose();
+         stereoMultisampleFrameBuffer = null;
+      }
+   }
+
    public void dispose()
    {
       for (RDXVREye eyeData : eyes)
-         eyeData.getFrameBuffer().dispose();
+         eyeData.dispose();
+      disposeStereoFrameBuffers();
+      if (eyesGPUTimer != null)
+         eyesGPUTimer.dispose();
+
+      // The devices are reused if VR is turned on again, so they have to let go of the models being disposed
+      headset.clearModelInstance();
+      for (RDXVRController controller : controllers)
+         controller.clearModelInstance();
+      for (RDXVRTracker tracker : trackers.values())
+         tracker.clearModelInstance();
+      for (RDXVRBaseStation baseStation : baseStations.values())
+         baseStation.clearModelInstance();
+      RDXVRModelLoader.dispose();
 
-      // TODO: Dispose models
+      if (frameStatistics.getNumberOfFrames() > 0)
+         LogTools.info("VR frame statistics: {}", frameStatistics);
 
-      VR_ShutdownInternal();
+      backend.shutdown();
    }
 
    public void teleport(Consumer<RigidBodyTransform> teleportIHMCZUpToIHMCZUpWorldConsumer)
@@ -593,62 +754,171 @@ public class RDXVRContext
       return eyes;
    }
 
-   public ReferenceFrame getPlayAreaYUpFrame()
+   /**
+    * When enabled, both eyes are rendered with one traversal of the scene into a shared
+    * side by side texture, and each eye submits its half.
+    */
+   public void setSinglePassStereoEnabled(boolean singlePassStereoEnabled)
    {
-      return vrPlayAreaYUpZBackFrame;
+      this.singlePassStereoEnabled = singlePassStereoEnabled;
    }
 
-   public ReferenceFrame getTeleportFrameIHMCZUp()
+   public boolean getSinglePassStereoEnabled()
    {
-      return teleportFrameIHMCZUp;
+      return singlePassStereoEnabled;
    }
 
-   public RigidBodyTransform getTeleportIHMCZUpToIHMCZUpWorld()
+   /**
+    * When enabled, the headset pose is re-read right before drawing each eye.
+    */
+   public void setLateLatchEnabled(boolean lateLatchEnabled)
    {
-      return teleportIHMCZUpToIHMCZUpWorld;
+      this.lateLatchEnabled = lateLatchEnabled;
    }
 
-   public RDXVRControllerModel getControllerModel()
+   public boolean getLateLatchEnabled()
    {
-      return controllerModel;
+      return lateLatchEnabled;
    }
 
-   private static sun.misc.Unsafe getUnsafeInstance()
+   /**
+    * Number of samples per pixel of the eye render buffers. 1 disables anti-aliasing.
+    * Applied on the next frame.
+    */
+   public void setMultisampleSamples(int multisampleSamples)
    {
-      java.lang.reflect.Field[] fields = sun.misc.Unsafe.class.getDeclaredFields();
+      if (this.multisampleSamples != multisampleSamples)
+      {
+         this.multisampleSamples = multisampleSamples;
+         renderTargetSettingsChanged = true;
+      }
+   }
 
-        /*
-        Different runtimes use different names for the Unsafe singleton,
-        so we cannot use .getDeclaredField and we scan instead. For example:
+   public int getMultisampleSamples()
+   {
+      return multisampleSamples;
+   }
 
-        Oracle: theUnsafe
-        PERC : m_unsafe_instance
-        Android: THE_ONE
-        */
-      for (java.lang.reflect.Field field : fields)
+   /**
+    * Scale of the eye render targets relative to the size recommended by the runtime.
+    * Applied on the next frame.
+    */
+   public void setRenderTargetScale(double renderTargetScale)
+   {
+      if (this.renderTargetScale != renderTargetScale)
       {
-         if (!field.getType().equals(sun.misc.Unsafe.class))
-         {
-            continue;
-         }
+         this.renderTargetScale = renderTargetScale;
+         renderTargetSettingsChanged = true;
+      }
+   }
 
-         int modifiers = field.getModifiers();
-         if (!(java.lang.reflect.Modifier.isStatic(modifiers) && java.lang.reflect.Modifier.isFinal(modifiers)))
-         {
-            continue;
-         }
+   public double getRenderTargetScale()
+   {
+      return renderTargetScale;
+   }
 
-         try
-         {
-            field.setAccessible(true);
-            return (sun.misc.Unsafe) field.get(null);
-         }
-         catch (Exception ignored)
-         {
-         }
-         break;
+   /**
+    * When enabled, the part of the render targets that gets rendered to shrinks when the
+    * GPU time of the eyes gets close to the frame period and grows back when there's headroom.
+    */
+   public void setDynamicResolutionEnabled(boolean dynamicResolutionEnabled)
+   {
+      if (this.dynamicResolutionEnabled != dynamicResolutionEnabled)
+      {
+         this.dynamicResolutionEnabled = dynamicResolutionEnabled;
+         dynamicResolution.reset();
       }
+   }
+
+   public boolean getDynamicResolutionEnabled()
+   {
+      return dynamicResolutionEnabled;
+   }
+
+   public void setDynamicResolutionMinimumScale(double minimumScale)
+   {
+      dynamicResolution.setMinimumScale(minimumScale);
+   }
+
+   public double getDynamicResolutionMinimumScale()
+   {
+      return dynamicResolution.getMinimumScale();
+   }
 
-      throw new UnsupportedOperationException("LWJGL requires sun.misc.Unsafe to be available.");
+   /** @return the fraction of the render target size being rendered this frame, per axis */
+   public float getResolutionScale()
+   {
+      return resolutionScale;
+   }
+
+   /** @return GPU time of rendering both eyes a few frames ago, NaN if not measured yet */
+   public double getEyesGPUTimeMs()
+   {
+      return eyesGPUTimer == null ? Double.NaN : eyesGPUTimer.getLatestElapsedMs();
+   }
+
+   /**
+    * Fixed foveated rendering renders the whole view at a reduced resolution, upscales it,
+    * and renders a full resolution inset in the middle. Not used with single pass stereo.
+    *
+    * @param fovealFraction size of the full resolution inset as a fraction of the view, per axis
+    * @param peripheryScale resolution of the rest of the view, per axis
+    */
+   public void setFoveatedRendering(boolean enabled, float fovealFraction, float peripheryScale)
+   {
+      this.foveatedRenderingEnabled = enabled;
+      this.fovealFraction = fovealFraction;
+      this.peripheryScale = peripheryScale;
+   }
+
+   public boolean getFoveatedRenderingEnabled()
+   {
+      return foveatedRenderingEnabled;
+   }
+
+   public int getEyeRenderTargetWidth()
+   {
+      return width;
+   }
+
+   public int getEyeRenderTargetHeight()
+   {
+      return height;
+   }
+
+   /** @return null until single pass stereo has been used */
+   public FrameBuffer getStereoFrameBuffer()
+   {
+      return stereoFrameBuffer;
+   }
+
+   public ReferenceFrame getPlayAreaYUpFrame()
+   {
+      return vrPlayAreaYUpZBackFrame;
+   }
+
+   public ReferenceFrame getTeleportFrameIHMCZUp()
+   {
+      return teleportFrameIHMCZUp;
+   }
+
+   public RigidBodyTransform getTeleportIHMCZUpToIHMCZUpWorld()
+   {
+      return teleportIHMCZUpToIHMCZUpWorld;
+   }
+
+   public RDXVRFrameStatistics getFrameStatistics()
+   {
+      return frameStatistics;
+   }
+
+   public RDXVRBackend getBackend()
+   {
+      return backend;
+   }
+
+   public RDXVRControllerModel getControllerModel()
+   {
+      return controllerModel;
    }
-}
\ No newline at end of file
+}
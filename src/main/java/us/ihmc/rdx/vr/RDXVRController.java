@@ -160,8 +160,31 @@ public class RDXVRController extends RDXVRTrackedDevice
       radialMenu = new RDXVRControllerRadialMenu(side, xForwardZUpControllerFrame);
    }
 
-   public void initSystem()
+   /**
+    * Without OpenVR input, the device index comes from the backend and
+    * all the action data stays zero, so nothing is ever pressed.
+    */
+   public void initSystem(RDXVRBackend backend)
    {
+      setBackend(backend);
+      if (!backend.hasOpenVRInput())
+      {
+         clickTriggerActionData = InputDigitalActionData.create();
+         triggerTouchedActionData = InputDigitalActionData.create();
+         triggerActionData = InputAnalogActionData.create();
+         aButtonActionData = InputDigitalActionData.create();
+         aTouchedActionData = InputDigitalActionData.create();
+         bButtonActionData = InputDigitalActionData.create();
+         bButtonDoubleClickActionData = InputDigitalActionData.create();
+         bTouchedActionData = InputDigitalActionData.create();
+         joystickPressActionData = InputDigitalActionData.create();
+         touchpadTouchedActionData = InputDigitalActionData.create();
+         touchpadActionData = InputAnalogActionData.create();
+         joystickActionData = InputAnalogActionData.create();
+         gripActionData = InputAnalogActionData.create();
+         return;
+      }
+
       inputOriginInfo = InputOriginInfo.create(1);
       VRInput.VRInput_GetInputSourceHandle("/user/hand/" + side.getLowerCaseName(), inputSourceHandle);
 
@@ -195,8 +218,16 @@ public class RDXVRController extends RDXVRTrackedDevice
 
    public void update(RDXVRTrackedDevicePose[] trackedDevicePoses)
    {
-      VRInput.VRInput_GetOriginTrackedDeviceInfo(inputSourceHandle.get(0), inputOriginInfo.get(0));
-      setDeviceIndex(inputOriginInfo.trackedDeviceIndex());
+      boolean hasOpenVRInput = getBackend().hasOpenVRInput();
+      if (hasOpenVRInput)
+      {
+         VRInput.VRInput_GetOriginTrackedDeviceInfo(inputSourceHandle.get(0), inputOriginInfo.get(0));
+         setDeviceIndex(inputOriginInfo.trackedDeviceIndex());
+      }
+      else
+      {
+         setDeviceIndex(getBackend().getControllerDeviceIndex(side));
+      }
       // VRSystem.VRSystem_IsTrackedDeviceConnected(leftHandDeviceIndex);
       setConnected(getDeviceIndex() != VR.k_unTrackedDeviceIndexInvalid);
 
@@ -244,19 +275,22 @@ public class RDXVRController extends RDXVRTrackedDevice
          radialMenu.update();
       }
 
-      VRInput.VRInput_GetDigitalActionData(clickTriggerActionHandle.get(0), clickTriggerActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(triggerTouchedActionHandle.get(0), triggerTouchedActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetAnalogActionData(triggerActionHandle.get(0), triggerActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(aButtonActionHandle.get(0), aButtonActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(aTouchedActionHandle.get(0), aTouchedActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(bButtonActionHandle.get(0), bButtonActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(bButtonDoubleClickActionHandle.get(0), bButtonDoubleClickActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(bTouchedActionHandle.get(0), bTouchedActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(joystickPressActionHandle.get(0), joystickPressActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetAnalogActionData(touchpadActionHandle.get(0), touchpadActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetDigitalActionData(touchpadTouchedActionHandle.get(0), touchpadTouchedActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetAnalogActionData(joystickActionHandle.get(0), joystickActionData, VR.k_ulInvalidInputValueHandle);
-      VRInput.VRInput_GetAnalogActionData(gripActionHandle.get(0), gripActionData, VR.k_ulInvalidInputValueHandle);
+      if (hasOpenVRInput)
+      {
+         VRInput.VRInput_GetDigitalActionData(clickTriggerActionHandle.get(0), clickTriggerActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(triggerTouchedActionHandle.get(0), triggerTouchedActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetAnalogActionData(triggerActionHandle.get(0), triggerActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(aButtonActionHandle.get(0), aButtonActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(aTouchedActionHandle.get(0), aTouchedActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(bButtonActionHandle.get(0), bButtonActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(bButtonDoubleClickActionHandle.get(0), bButtonDoubleClickActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(bTouchedActionHandle.get(0), bTouchedActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(joystickPressActionHandle.get(0), joystickPressActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetAnalogActionData(touchpadActionHandle.get(0), touchpadActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetDigitalActionData(touchpadTouchedActionHandle.get(0), touchpadTouchedActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetAnalogActionData(joystickActionHandle.get(0), joystickActionData, VR.k_ulInvalidInputValueHandle);
+         VRInput.VRInput_GetAnalogActionData(gripActionHandle.get(0), gripActionData, VR.k_ulInvalidInputValueHandle);
+      }
 
       gripAsButtonDown = gripActionData.x() > GRIP_AS_BUTTON_THRESHOLD;
       joystickIsCentered = Math.abs(joystickActionData.x()) < JOYSTICK_ZERO_THRESHOLD && Math.abs(joystickActionData.y()) < JOYSTICK_ZERO_THRESHOLD;
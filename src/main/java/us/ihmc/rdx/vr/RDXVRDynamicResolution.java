@@ -0,0 +1,83 @@
+package us.ihmc.rdx.vr;
+
+/**
+ * Picks a resolution scale for the eyes from the measured GPU time so the headset
+ * refresh rate is held. The scale drops quickly when over budget and recovers slowly
+ * when there's plenty of headroom. The band in between is left alone, so the
+ * resolution doesn't oscillate.
+ */
+public class RDXVRDynamicResolution
+{
+   /** Over this fraction of the frame budget, scale down. */
+   private static final double DECREASE_THRESHOLD = 0.9;
+   /** Under this fraction of the frame budget, scale up. */
+   private static final double INCREASE_THRESHOLD = 0.7;
+   private static final int FRAMES_TO_DECREASE = 3;
+   private static final int FRAMES_TO_INCREASE = 45;
+   private static final double STEP = 0.05;
+
+   private double minimumScale = 0.5;
+   private double scale = 1.0;
+   private int framesOverBudget = 0;
+   private int framesUnderBudget = 0;
+
+   /**
+    * @param gpuTimeMs measured GPU time of rendering the eyes, NaN if not available yet
+    * @param frameBudgetMs the display's frame period
+    * @return the resolution scale to use, from the minimum scale to 1
+    */
+   public double update(double gpuTimeMs, double frameBudgetMs)
+   {
+      if (Double.isNaN(gpuTimeMs))
+         return scale;
+
+      if (gpuTimeMs > DECREASE_THRESHOLD * frameBudgetMs)
+      {
+         framesUnderBudget = 0;
+         if (++framesOverBudget >= FRAMES_TO_DECREASE)
+         {
+            framesOverBudget = 0;
+            scale = Math.max(minimumScale, scale - STEP);
+         }
+      }
+      else if (gpuTimeMs < INCREASE_THRESHOLD * frameBudgetMs)
+      {
+         framesOverBudget = 0;
+         if (++framesUnderBudget >= FRAMES_TO_INCREASE)
+         {
+            framesUnderBudget = 0;
+            scale = Math.min(1.0, scale + STEP);
+         }
+      }
+      else
+      {
+         framesOverBudget = 0;
+         framesUnderBudget = 0;
+      }
+
+      return scale;
+   }
+
+   public void reset()
+   {
+      scale = 1.0;
+      framesOverBudget = 0;
+      framesUnderBudget = 0;
+   }
+
+   public void setMinimumScale(double minimumScale)
+   {
+      this.minimumScale = minimumScale;
+      scale = Math.max(minimumScale, scale);
+   }
+
+   public double getMinimumScale()
+   {
+      return minimumScale;
+   }
+
+   public double getScale()
+   {
+      return scale;
+   }
+}
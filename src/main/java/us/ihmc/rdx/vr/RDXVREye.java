@@ -11,7 +11,7 @@ import org.lwjgl.opengl.GL41;
 import org.lwjgl.openvr.HmdMatrix34;
 import org.lwjgl.openvr.HmdMatrix44;
 import org.lwjgl.openvr.VR;
-import org.lwjgl.openvr.VRSystem;
+import org.lwjgl.openvr.VRTextureBounds;
 import us.ihmc.euclid.Axis3D;
 import us.ihmc.euclid.referenceFrame.FramePose3D;
 import us.ihmc.euclid.referenceFrame.ReferenceFrame;
@@ -24,14 +24,31 @@ import us.ihmc.euclid.yawPitchRoll.YawPitchRoll;
 import us.ihmc.rdx.sceneManager.RDX3DScene;
 import us.ihmc.rdx.sceneManager.RDX3DSceneTools;
 import us.ihmc.rdx.tools.LibGDXTools;
+import us.ihmc.rdx.tools.RDXMultisampleFrameBuffer;
 import us.ihmc.robotics.robotSide.RobotSide;
 
 public class RDXVREye extends Camera
 {
-   private final GLFrameBuffer<Texture> frameBuffer;
+   private GLFrameBuffer<Texture> frameBuffer;
+   /** Rendered into when anti-aliasing, then resolved into the frame buffer, whose texture is submitted. */
+   private RDXMultisampleFrameBuffer multisampleFrameBuffer;
+   private int multisampleSamples = 1;
    private final org.lwjgl.openvr.Texture openVRTexture;
+   /** The part of the texture rendered to, which is less than all of it with dynamic resolution. */
+   private final VRTextureBounds textureBounds = VRTextureBounds.create();
+   /** This eye's half of the side by side texture used for single pass stereo. */
+   private final VRTextureBounds stereoTextureBounds = VRTextureBounds.create();
+   private float resolutionScale = 1.0f;
+   // Fixed foveated rendering: the whole view at low resolution, upscaled, with a full resolution inset in the middle
+   private boolean foveated = false;
+   private float fovealFraction = 0.5f;
+   private float peripheryScale = 0.5f;
+   private GLFrameBuffer<Texture> peripheryFrameBuffer;
+   private GLFrameBuffer<Texture> insetFrameBuffer;
+   private RDXMultisampleFrameBuffer insetMultisampleFrameBuffer;
 
    private final RobotSide side;
+   private final RDXVRBackend backend;
    private final HmdMatrix44 projectionHmdMatrix44 = HmdMatrix44.create();
    private final HmdMatrix34 eyeToHeadHmdMatrix34 = HmdMatrix34.create();
    private final Vector3 target = new Vector3();
@@ -46,9 +63,10 @@ public class RDXVREye extends Camera
    private final Vector3D euclidDirection = new Vector3D();
    private final Vector3D euclidUp = new Vector3D();
 
-   public RDXVREye(RobotSide side, RDXVRHeadset headset, int width, int height)
+   public RDXVREye(RobotSide side, RDXVRHeadset headset, RDXVRBackend backend, int width, int height)
    {
       this.side = side;
+      this.backend = backend;
 
       eyeXRightZBackFrame = ReferenceFrameTools.constructFrameWithChangingTransformToParent(side.getLowerCaseName() + "EyeXRightZBackFrame",
                                                                                             headset.getDeviceYUpZBackFrame(),
@@ -57,17 +75,124 @@ public class RDXVREye extends Camera
                                                                                               eyeXRightZBackFrame,
                                                                                               xForwardZUpToXRightZBackTransform);
 
+      openVRTexture = org.lwjgl.openvr.Texture.create();
+      allocateFrameBuffers(width, height);
+
+      setResolutionScale(1.0f);
+
+      near = 0.1f;
+      far = 1000.0f;
+   }
+
+   private void allocateFrameBuffers(int width, int height)
+   {
       boolean hasDepth = true;
       boolean hasStencil = false;
       frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, hasDepth, hasStencil);
-
-      openVRTexture = org.lwjgl.openvr.Texture.create();
       openVRTexture.set(frameBuffer.getColorBufferTexture().getTextureObjectHandle(), VR.ETextureType_TextureType_OpenGL, VR.EColorSpace_ColorSpace_Gamma);
 
+      if (multisampleSamples > 1)
+         multisampleFrameBuffer = new RDXMultisampleFrameBuffer(multisampleSamples, width, height);
+
       viewportWidth = width;
       viewportHeight = height;
-      near = 0.1f;
-      far = 1000.0f;
+   }
+
+   private void disposeFrameBuffers()
+   {
+      frameBuffer.dispose();
+      if (multisampleFrameBuffer != null)
+      {
+         multisampleFrameBuffer.dispose();
+         multisampleFrameBuffer = null;
+      }
+      disposeFoveationFrameBuffers();
+   }
+
+   private void allocateFoveationFrameBuffers()
+   {
+      boolean hasDepth = true;
+      boolean hasStencil = false;
+      int width = (int) viewportWidth;
+      int height = (int) viewportHeight;
+      peripheryFrameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888,
+                                             Math.max(1, Math.round(width * peripheryScale)),
+                                             Math.max(1, Math.round(height * peripheryScale)),
+                                             hasDepth,
+                                             hasStencil);
+      int insetWidth = Math.max(1, Math.round(width * fovealFraction));
+      int insetHeight = Math.max(1, Math.round(height * fovealFraction));
+      if (multisampleSamples > 1)
+         insetMultisampleFrameBuffer = new RDXMultisampleFrameBuffer(multisampleSamples, insetWidth, insetHeight);
+      else
+         insetFrameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, insetWidth, insetHeight, hasDepth, hasStencil);
+   }
+
+   private void disposeFoveationFrameBuffers()
+   {
+      if (peripheryFrameBuffer != null)
+      {
+         peripheryFrameBuffer.dispose();
+         peripheryFrameBuffer = null;
+      }
+      if (insetFrameBuffer != null)
+      {
+         insetFrameBuffer.dispose();
+         insetFrameBuffer = null;
+      }
+      if (insetMultisampleFrameBuffer != null)
+      {
+         insetMultisampleFrameBuffer.dispose();
+         insetMultisampleFrameBuffer = null;
+      }
+   }
+
+   /**
+    * Renders to only the lower left part of the render target, for dynamic resolution.
+    * The submitted texture bounds are updated to match.
+    *
+    * @param resolutionScale 0 to 1, per axis
+    */
+   public void setResolutionScale(float resolutionScale)
+   {
+      this.resolutionScale = resolutionScale;
+      textureBounds.set(0.0f, 0.0f, resolutionScale, resolutionScale);
+      float uMin = side == RobotSide.LEFT ? 0.0f : 0.5f;
+      stereoTextureBounds.set(uMin, 0.0f, uMin + 0.5f * resolutionScale, resolutionScale);
+   }
+
+   /**
+    * Needs to be on the libGDX thread.
+    *
+    * @param fovealFraction size of the full resolution inset as a fraction of the view, per axis
+    * @param peripheryScale resolution of the rest of the view, per axis
+    */
+   public void setFoveation(boolean foveated, float fovealFraction, float peripheryScale)
+   {
+      this.foveated = foveated;
+      if (fovealFraction != this.fovealFraction || peripheryScale != this.peripheryScale)
+      {
+         this.fovealFraction = fovealFraction;
+         this.peripheryScale = peripheryScale;
+         disposeFoveationFrameBuffers();
+      }
+      if (!foveated)
+         disposeFoveationFrameBuffers();
+   }
+
+   /**
+    * Reallocates the render targets. Needs to be on the libGDX thread.
+    *
+    * @param samples 1 to disable multisampling
+    */
+   public void setRenderTargetSize(int width, int height, int samples)
+   {
+      if (width != (int) viewportWidth || height != (int) viewportHeight || samples != multisampleSamples)
+      {
+         disposeFrameBuffers();
+         multisampleSamples = samples;
+         allocateFrameBuffers(width, height);
+      }
    }
 
    @Override
@@ -79,7 +204,7 @@ public class RDXVREye extends Camera
    @Override
    public void update(boolean updateFrustum)
    {
-      VRSystem.VRSystem_GetEyeToHeadTransform(side == RobotSide.LEFT ? VR.EVREye_Eye_Left : VR.EVREye_Eye_Right, eyeToHeadHmdMatrix34);
+      backend.getEyeToHeadTransform(side == RobotSide.LEFT ? VR.EVREye_Eye_Left : VR.EVREye_Eye_Right, eyeToHeadHmdMatrix34);
       LibGDXTools.toEuclid(eyeToHeadHmdMatrix34, openVREyeToHeadTransform);
       eyeXRightZBackFrame.update();
 
@@ -95,7 +220,7 @@ public class RDXVREye extends Camera
       direction.set(euclidDirection.getX32(), euclidDirection.getY32(), euclidDirection.getZ32());
       up.set(euclidUp.getX32(), euclidUp.getY32(), euclidUp.getZ32());
 
-      VRSystem.VRSystem_GetProjectionMatrix(side.ordinal(), Math.abs(near), Math.abs(far), projectionHmdMatrix44);
+      backend.getProjectionMatrix(side.ordinal(), Math.abs(near), Math.abs(far), projectionHmdMatrix44);
       LibGDXTools.toLibGDX(projectionHmdMatrix44, projection);
 
       view.setToLookAt(position, target.set(position).add(direction), up);
@@ -113,11 +238,112 @@ public class RDXVREye extends Camera
    public void render(RDX3DScene scene)
    {
       update();
-      frameBuffer.begin();
-      GL41.glViewport(0, 0, (int) viewportWidth, (int) viewportHeight);
+      int width = Math.max(1, Math.round(viewportWidth * resolutionScale));
+      int height = Math.max(1, Math.round(viewportHeight * resolutionScale));
+      if (foveated)
+      {
+         renderFoveated(scene, width, height);
+      }
+      else if (multisampleFrameBuffer != null)
+      {
+         multisampleFrameBuffer.begin(width, height);
+         RDX3DSceneTools.glClearGray();
+         scene.renderToCamera(this);
+         multisampleFrameBuffer.endAndResolveTo(frameBuffer.getFramebufferHandle(), width, height, 0, 0);
+      }
+      else
+      {
+         frameBuffer.begin();
+         GL41.glViewport(0, 0, width, height);
+         RDX3DSceneTools.glClearGray();
+         scene.renderToCamera(this);
+         frameBuffer.end();
+      }
+   }
+
+   private void renderFoveated(RDX3DScene scene, int width, int height)
+   {
+      if (peripheryFrameBuffer == null)
+         allocateFoveationFrameBuffers();
+
+      int peripheryWidth = Math.max(1, Math.round(width * peripheryScale));
+      int peripheryHeight = Math.max(1, Math.round(height * peripheryScale));
+      peripheryFrameBuffer.begin();
+      GL41.glViewport(0, 0, peripheryWidth, peripheryHeight);
+      RDX3DSceneTools.glClearGray();
+      scene.renderToCamera(this);
+      peripheryFrameBuffer.end();
+
+      // Center the inset on the view axis, which isn't the middle of the image for asymmetric eye projections.
+      // In normalized device coordinates, the inset spans the center plus and minus the foveal fraction.
+      float[] projectionValues = projection.val;
+      float clipW = projectionValues[15] - projectionValues[11];
+      float centerX = clampInsetCenter((projectionValues[12] - projectionValues[8]) / clipW);
+      float centerY = clampInsetCenter((projectionValues[13] - projectionValues[9]) / clipW);
+      narrowProjectionToInset(centerX, centerY);
+
+      int insetWidth = Math.max(1, Math.round(width * fovealFraction));
+      int insetHeight = Math.max(1, Math.round(height * fovealFraction));
+      int insetX = Math.round(0.5f * (centerX + 1.0f) * width - 0.5f * insetWidth);
+      int insetY = Math.round(0.5f * (centerY + 1.0f) * height - 0.5f * insetHeight);
+      if (insetMultisampleFrameBuffer != null)
+         insetMultisampleFrameBuffer.begin(insetWidth, insetHeight);
+      else
+         GL41.glBindFramebuffer(GL41.GL_FRAMEBUFFER, insetFrameBuffer.getFramebufferHandle());
+      GL41.glViewport(0, 0, insetWidth, insetHeight);
       RDX3DSceneTools.glClearGray();
       scene.renderToCamera(this);
-      frameBuffer.end();
+
+      // Composite: upscale the periphery into the eye's texture, then put the inset on top
+      GL41.glBindFramebuffer(GL41.GL_READ_FRAMEBUFFER, peripheryFrameBuffer.getFramebufferHandle());
+      GL41.glBindFramebuffer(GL41.GL_DRAW_FRAMEBUFFER, frameBuffer.getFramebufferHandle());
+      GL41.glBlitFramebuffer(0, 0, peripheryWidth, peripheryHeight, 0, 0, width, height, GL41.GL_COLOR_BUFFER_BIT, GL41.GL_LINEAR);
+      if (insetMultisampleFrameBuffer != null)
+      {
+         insetMultisampleFrameBuffer.endAndResolveTo(frameBuffer.getFramebufferHandle(), insetWidth, insetHeight, insetX, insetY);
+      }
+      else
+      {
+         GL41.glBindFramebuffer(GL41.GL_READ_FRAMEBUFFER, insetFrameBuffer.getFramebufferHandle());
+         GL41.glBlitFramebuffer(0,
+                                0,
+                                insetWidth,
+                                insetHeight,
+                                insetX,
+                                insetY,
+                                insetX + insetWidth,
+                                insetY + insetHeight,
+                                GL41.GL_COLOR_BUFFER_BIT,
+                                GL41.GL_NEAREST);
+         GLFrameBuffer.unbind();
+      }
+
+      update(); // back to the full view
+   }
+
+   private float clampInsetCenter(float center)
+   {
+      return Math.max(fovealFraction - 1.0f, Math.min(1.0f - fovealFraction, center));
+   }
+
+   /**
+    * Maps the inset's range of normalized device coordinates to the whole viewport, which
+    * also narrows the frustum so culling gets rid of everything outside the inset.
+    */
+   private void narrowProjectionToInset(float centerX, float centerY)
+   {
+      float[] projectionValues = projection.val;
+      for (int column = 0; column < 4; column++)
+      {
+         int i = 4 * column;
+         projectionValues[i] = (projectionValues[i] - centerX * projectionValues[i + 3]) / fovealFraction;
+         projectionValues[i + 1] = (projectionValues[i + 1] - centerY * projectionValues[i + 3]) / fovealFraction;
+      }
+      combined.set(projection);
+      Matrix4.mul(combined.val, view.val);
+      invProjectionView.set(combined);
+      Matrix4.inv(invProjectionView.val);
+      frustum.update(invProjectionView);
    }
 
    public RobotSide getSide()
@@ -140,8 +366,40 @@ public class RDXVREye extends Camera
       return frameBuffer;
    }
 
+   public void dispose()
+   {
+      disposeFrameBuffers();
+   }
+
+   /** @return the actual number of samples, which may have been clamped to what the GPU supports */
+   public int getMultisampleSamples()
+   {
+      return multisampleFrameBuffer == null ? 1 : multisampleFrameBuffer.getSamples();
+   }
+
    public org.lwjgl.openvr.Texture getOpenVRTexture()
    {
       return openVRTexture;
    }
+
+   public VRTextureBounds getTextureBounds()
+   {
+      return textureBounds;
+   }
+
+   /** @return the size of the part of the render target that gets rendered to */
+   public int getScaledWidth()
+   {
+      return Math.max(1, Math.round(viewportWidth * resolutionScale));
+   }
+
+   public int getScaledHeight()
+   {
+      return Math.max(1, Math.round(viewportHeight * resolutionScale));
+   }
+
+   public VRTextureBounds getStereoTextureBounds()
+   {
+      return stereoTextureBounds;
+   }
 }
@@ -0,0 +1,113 @@
+package us.ihmc.rdx.vr;
+
+/**
+ * Frame time measurements of {@link RDXVRContext}, independent of the backend,
+ * for catching VR performance regressions.
+ */
+public class RDXVRFrameStatistics
+{
+   private long numberOfFrames = 0;
+   private double lastCPURenderTimeMs = Double.NaN;
+   private double totalCPURenderTimeMs = 0.0;
+   private double maxCPURenderTimeMs = 0.0;
+   private double lastSubmitLatencyMs = Double.NaN;
+   private double totalSubmitLatencyMs = 0.0;
+   private double maxSubmitLatencyMs = 0.0;
+   private double lastPoseAgeAtSubmitMs = Double.NaN;
+   private double totalPoseAgeAtSubmitMs = 0.0;
+   private double maxPoseAgeAtSubmitMs = 0.0;
+   private long numberOfDroppedFrames = 0;
+
+   /**
+    * @param posesReadyNanos when the backend handed out the poses for this frame
+    * @param renderStartNanos when rendering the eyes started
+    * @param headsetPoseReadNanos when the headset pose used for the last eye was read, later than posesReadyNanos when late latching
+    * @param submittedNanos when both eyes were submitted
+    */
+   public void update(long posesReadyNanos, long renderStartNanos, long headsetPoseReadNanos, long submittedNanos, long numberOfDroppedFrames)
+   {
+      ++numberOfFrames;
+      lastCPURenderTimeMs = (submittedNanos - renderStartNanos) * 1.0e-6;
+      totalCPURenderTimeMs += lastCPURenderTimeMs;
+      maxCPURenderTimeMs = Math.max(maxCPURenderTimeMs, lastCPURenderTimeMs);
+      lastSubmitLatencyMs = (submittedNanos - posesReadyNanos) * 1.0e-6;
+      totalSubmitLatencyMs += lastSubmitLatencyMs;
+      maxSubmitLatencyMs = Math.max(maxSubmitLatencyMs, lastSubmitLatencyMs);
+      lastPoseAgeAtSubmitMs = (submittedNanos - headsetPoseReadNanos) * 1.0e-6;
+      totalPoseAgeAtSubmitMs += lastPoseAgeAtSubmitMs;
+      maxPoseAgeAtSubmitMs = Math.max(maxPoseAgeAtSubmitMs, lastPoseAgeAtSubmitMs);
+      this.numberOfDroppedFrames = numberOfDroppedFrames;
+   }
+
+   public long getNumberOfFrames()
+   {
+      return numberOfFrames;
+   }
+
+   /** Time to render and submit both eyes. */
+   public double getLastCPURenderTimeMs()
+   {
+      return lastCPURenderTimeMs;
+   }
+
+   public double getAverageCPURenderTimeMs()
+   {
+      return totalCPURenderTimeMs / numberOfFrames;
+   }
+
+   public double getMaxCPURenderTimeMs()
+   {
+      return maxCPURenderTimeMs;
+   }
+
+   /** Time from the poses being ready to both eyes being submitted. */
+   public double getLastSubmitLatencyMs()
+   {
+      return lastSubmitLatencyMs;
+   }
+
+   public double getAverageSubmitLatencyMs()
+   {
+      return totalSubmitLatencyMs / numberOfFrames;
+   }
+
+   public double getMaxSubmitLatencyMs()
+   {
+      return maxSubmitLatencyMs;
+   }
+
+   /** Age of the headset pose the last eye was rendered with when both eyes were submitted. */
+   public double getLastPoseAgeAtSubmitMs()
+   {
+      return lastPoseAgeAtSubmitMs;
+   }
+
+   public double getAveragePoseAgeAtSubmitMs()
+   {
+      return totalPoseAgeAtSubmitMs / numberOfFrames;
+   }
+
+   public double getMaxPoseAgeAtSubmitMs()
+   {
+      return maxPoseAgeAtSubmitMs;
+   }
+
+   public long getNumberOfDroppedFrames()
+   {
+      return numberOfDroppedFrames;
+   }
+
+   @Override
+   public String toString()
+   {
+      return ("%d frames, CPU render time avg %.2f ms max %.2f ms, submit latency avg %.2f ms max %.2f ms, "
+            + "pose age at submit avg %.2f ms max %.2f ms, %d dropped").formatted(numberOfFrames,
+                                                                               getAverageCPURenderTimeMs(),
+                                                                               maxCPURenderTimeMs,
+                                                                               getAverageSubmitLatencyMs(),
+                                                                               maxSubmitLatencyMs,
+                                                                               getAveragePoseAgeAtSubmitMs(),
+                                                                               maxPoseAgeAtSubmitMs,
+                                                                               numberOfDroppedFrames);
+   }
+}
@@ -3,7 +3,6 @@ package us.ihmc.rdx.vr;
 import com.badlogic.gdx.utils.BufferUtils;
 import org.lwjgl.openvr.VR;
 import org.lwjgl.openvr.VRInput;
-import org.lwjgl.openvr.VRSystem;
 import us.ihmc.euclid.referenceFrame.ReferenceFrame;
 import us.ihmc.euclid.referenceFrame.tools.ReferenceFrameTools;
 import us.ihmc.euclid.transform.RigidBodyTransform;
@@ -39,14 +38,16 @@ public class RDXVRHeadset extends RDXVRTrackedDevice
                                                                                 headsetXRightZDownToXForwardZUp);
    }
 
-   public void initSystem()
+   public void initSystem(RDXVRBackend backend)
    {
-      VRInput.VRInput_GetInputSourceHandle("/user/head", inputSourceHandle);
+      setBackend(backend);
+      if (backend.hasOpenVRInput())
+         VRInput.VRInput_GetInputSourceHandle("/user/head", inputSourceHandle);
    }
 
    public void update(RDXVRTrackedDevicePose[] trackedDevicePoses)
    {
-      setConnected(VRSystem.VRSystem_IsTrackedDeviceConnected(VR.k_unTrackedDeviceIndex_Hmd));
+      setConnected(getBackend().isTrackedDeviceConnected(VR.k_unTrackedDeviceIndex_Hmd));
 
       super.update(trackedDevicePoses);
    }
@@ -5,6 +5,8 @@ import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Pool;
 import imgui.internal.ImGui;
 import imgui.type.ImBoolean;
+import imgui.type.ImFloat;
+import imgui.type.ImInt;
 import org.apache.commons.lang3.StringUtils;
 import us.ihmc.commons.exception.DefaultExceptionHandler;
 import us.ihmc.commons.thread.Notification;
@@ -16,12 +18,15 @@ import us.ihmc.rdx.imgui.ImGuiTools;
 import us.ihmc.rdx.imgui.ImGuiUniqueLabelMap;
 import us.ihmc.rdx.input.ImGui3DViewInput;
 import us.ihmc.rdx.sceneManager.RDX3DScene;
+import us.ihmc.rdx.tools.RDXModelInstance;
 import us.ihmc.rdx.ui.RDXBaseUI;
 import us.ihmc.rdx.ui.gizmo.RDXPose3DGizmo;
 import us.ihmc.robotics.robotSide.RobotSide;
 import us.ihmc.tools.thread.MissingThreadTools;
 import us.ihmc.tools.time.FrequencyCalculator;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -31,7 +36,14 @@ public class RDXVRManager
 {
    private final ImGuiUniqueLabelMap labels = new ImGuiUniqueLabelMap(getClass());
 
-   private final RDXVRContext context = new RDXVRContext();
+   /**
+    * Run with -Dvr.mock.rate=90 (or 120, 144) to use a mock headset instead of SteamVR for performance testing.
+    * Add -Dvr.mock.trace=/path/to/trace.csv to replay a recorded pose trace, see {@link RDXVRRecordedPoseTrace}.
+    */
+   private static final double MOCK_VR_RATE = Double.parseDouble(System.getProperty("vr.mock.rate", "0.0"));
+   private static final String MOCK_VR_TRACE = System.getProperty("vr.mock.trace");
+
+   private final RDXVRContext context = new RDXVRContext(createBackend());
    private Notification contextCreatedNotification;
    private boolean contextInitialized = false;
    private boolean initializing = false;
@@ -40,6 +52,17 @@ public class RDXVRManager
    private final ImBoolean showScenePoseGizmo = new ImBoolean(false);
    private RDXPose3DGizmo scenePoseGizmo;
    private final ImBoolean vrEnabled = new ImBoolean(false);
+   private final ImBoolean singlePassStereo = new ImBoolean(false);
+   private final ImBoolean lateLatch = new ImBoolean(true);
+   private static final int[] MULTISAMPLE_OPTIONS = {1, 2, 4, 8};
+   private final String[] multisampleOptionLabels = {labels.get("1"), labels.get("2"), labels.get("4"), labels.get("8")};
+   private final ImInt multisampleSamples = new ImInt(4);
+   private final ImFloat renderTargetScale = new ImFloat(1.0f);
+   private final ImBoolean dynamicResolution = new ImBoolean(false);
+   private final ImFloat dynamicResolutionMinimumScale = new ImFloat(0.5f);
+   private final ImBoolean foveatedRendering = new ImBoolean(false);
+   private final ImFloat fovealFraction = new ImFloat(0.5f);
+   private final ImFloat peripheryScale = new ImFloat(0.5f);
    private final Notification posesReady = new Notification();
    private volatile boolean waitingOnPoses = false;
    private ImGuiPlot vrFPSPlot = new ImGuiPlot(labels.get("VR FPS Hz"), 1000, 180, 50);
@@ -50,6 +73,10 @@ public class RDXVRManager
    private volatile double waitGetToRenderDuration = Double.NaN;
    private FrequencyCalculator waitGetPosesFrequencyCalculator = new FrequencyCalculator();
    private ImGuiPlot pollEventsPlot = new ImGuiPlot(labels.get("Poll Events Hz"), 1000, 180, 50);
+   private ImGuiPlot cpuRenderTimePlot = new ImGuiPlot(labels.get("CPU Render Time ms"), 1000, 180, 50);
+   private ImGuiPlot submitLatencyPlot = new ImGuiPlot(labels.get("Submit Latency ms"), 1000, 180, 50);
+   private ImGuiPlot poseAgeAtSubmitPlot = new ImGuiPlot(labels.get("Pose Age At Submit ms"), 1000, 180, 50);
+   private ImGuiPlot droppedFramesPlot = new ImGuiPlot(labels.get("Dropped Frames"), 1000, 180, 50);
    private FrequencyCalculator pollEventsFrequencyCalculator = new FrequencyCalculator();
    private ImGuiPlot contextInitializedPlot = new ImGuiPlot(labels.get("contextInitialized"), 1000, 180, 50);
    private ImGuiPlot initSystemCountPlot = new ImGuiPlot(labels.get("initSystemCount"), 1000, 180, 50);
@@ -245,11 +272,91 @@ public class RDXVRManager
       {
          ImGuiTools.separatorText("Controls");
          renderEnableCheckbox();
+         if (ImGui.menuItem(labels.get("Single pass stereo"), "", singlePassStereo))
+         {
+            synchronized (syncObject)
+            {
+               context.setSinglePassStereoEnabled(singlePassStereo.get());
+            }
+         }
+         if (ImGui.isItemHovered())
+         {
+            ImGui.setTooltip("Traverse the scene once for both eyes, rendering into a shared side by side texture.");
+         }
+         if (ImGui.menuItem(labels.get("Late latch headset pose"), "", lateLatch))
+         {
+            synchronized (syncObject)
+            {
+               context.setLateLatchEnabled(lateLatch.get());
+            }
+         }
+         if (ImGui.isItemHovered())
+         {
+            ImGui.setTooltip("Re-read the newest predicted headset pose right before drawing each eye.");
+         }
+         ImGui.text("Anti-aliasing samples:");
+         for (int i = 0; i < MULTISAMPLE_OPTIONS.length; i++)
+         {
+            int samples = MULTISAMPLE_OPTIONS[i];
+            ImGui.sameLine();
+            if (ImGui.radioButton(multisampleOptionLabels[i], multisampleSamples.get() == samples))
+            {
+               multisampleSamples.set(samples);
+               synchronized (syncObject)
+               {
+                  context.setMultisampleSamples(samples);
+               }
+            }
+         }
+         if (ImGui.sliderFloat(labels.get("Render scale"), renderTargetScale.getData(), 0.5f, 2.0f))
+         {
+            synchronized (syncObject)
+            {
+               context.setRenderTargetScale(renderTargetScale.get());
+            }
+         }
+         if (ImGui.isItemHovered())
+         {
+            ImGui.setTooltip("Scale of the eye render targets relative to the size recommended by SteamVR.");
+         }
+         if (ImGui.menuItem(labels.get("Dynamic resolution"), "", dynamicResolution))
+         {
+            synchronized (syncObject)
+            {
+               context.setDynamicResolutionEnabled(dynamicResolution.get());
+            }
+         }
+         if (ImGui.isItemHovered())
+         {
+            ImGui.setTooltip("Render less of the render targets when the GPU time gets close to the frame period.");
+         }
+         if (ImGui.sliderFloat(labels.get("Minimum resolution"), dynamicResolutionMinimumScale.getData(), 0.25f, 1.0f))
+         {
+            synchronized (syncObject)
+            {
+               context.setDynamicResolutionMinimumScale(dynamicResolutionMinimumScale.get());
+            }
+         }
+         boolean foveationChanged = ImGui.menuItem(labels.get("Fixed foveated rendering"), "", foveatedRendering);
+         if (ImGui.isItemHovered())
+         {
+            ImGui.setTooltip("Render the periphery at reduced resolution with a full resolution inset in the middle. Not used with single pass stereo.");
+         }
+         foveationChanged |= ImGui.sliderFloat(labels.get("Foveal size"), fovealFraction.getData(), 0.2f, 0.9f);
+         foveationChanged |= ImGui.sliderFloat(labels.get("Periphery resolution"), peripheryScale.getData(), 0.25f, 1.0f);
+         if (foveationChanged)
+         {
+            synchronized (syncObject)
+            {
+               context.setFoveatedRendering(foveatedRendering.get(), fovealFraction.get(), peripheryScale.get());
+            }
+         }
 
          ImGuiTools.separatorText("Status");
          if (isVRReady())
          {
             ImGui.text("Connected headset: " + context.getHeadset().getModelName());
+            ImGui.text("Resolution scale: %.2f  Eyes GPU time: %.2f ms".formatted(context.getResolutionScale(), context.getEyesGPUTimeMs()));
             ImGui.text("Connected controllers: " + StringUtils.join(context.getControllers()
                                                                            .values()
                                                                            .stream()
@@ -317,6 +424,31 @@ public class RDXVRManager
       pollEventsPlot.render(pollEventsFrequencyCalculator.getFrequency());
       vrFPSPlot.render(vrFPSCalculator.getFrequency());
       waitGetToRenderDelayPlot.render(waitGetToRenderDuration);
+      RDXVRFrameStatistics frameStatistics = context.getFrameStatistics();
+      cpuRenderTimePlot.render(frameStatistics.getLastCPURenderTimeMs());
+      submitLatencyPlot.render(frameStatistics.getLastSubmitLatencyMs());
+      poseAgeAtSubmitPlot.render(frameStatistics.getLastPoseAgeAtSubmitMs());
+      droppedFramesPlot.render(frameStatistics.getNumberOfDroppedFrames());
+   }
+
+   private static RDXVRBackend createBackend()
+   {
+      if (MOCK_VR_RATE <= 0.0)
+         return new RDXOpenVRBackend();
+
+      RDXVRPoseTrace poseTrace = RDXVRPoseTrace.SCRIPTED;
+      if (MOCK_VR_TRACE != null)
+      {
+         try
+         {
+            poseTrace = new RDXVRRecordedPoseTrace(Paths.get(MOCK_VR_TRACE));
+         }
+         catch (IOException e)
+         {
+            LogTools.error("Failed to load VR pose trace {}, using the scripted one. {}", MOCK_VR_TRACE, e.getMessage());
+         }
+      }
+      return new RDXVRMockBackend(MOCK_VR_RATE, poseTrace);
    }
 
    public void renderImGuiTunerWidgets()
@@ -337,6 +469,8 @@ public class RDXVRManager
       {
          contextCreatedNotification = null;
          contextInitialized = false;
+         for (RDXVRTrackerRoleManager trackerRoleManager : trackerRoleManagers)
+            trackerRoleManager.clearModelInstance();
          context.dispose();
       }
    }
@@ -380,7 +514,11 @@ public class RDXVRManager
          for (var trackerRoleManager : trackerRoleManagers)
          {
             if (!trackerRoleManager.isRoleAssigned())
-               trackerRoleManager.getRedModelInstance().getRenderables(renderables, pool);
+            {
+               RDXModelInstance redModelInstance = trackerRoleManager.getRedModelInstance();
+               if (redModelInstance != null)
+                  redModelInstance.getRenderables(renderables, pool);
+            }
             else
                context.getTrackerRenderables(trackerRoleManager.getTrackerSerialNumber(), renderables, pool);
          }
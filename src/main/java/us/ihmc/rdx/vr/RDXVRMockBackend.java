@@ -0,0 +1,255 @@
+package us.ihmc.rdx.vr;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.openvr.HmdMatrix34;
+import org.lwjgl.openvr.HmdMatrix44;
+import org.lwjgl.openvr.RenderModel;
+import org.lwjgl.openvr.RenderModelTextureMap;
+import org.lwjgl.openvr.Texture;
+import org.lwjgl.openvr.VR;
+import org.lwjgl.openvr.VRTextureBounds;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.log.LogTools;
+import us.ihmc.robotics.robotSide.RobotSide;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A VR backend without a headset or SteamVR, for measuring VR rendering performance on any machine.
+ * It paces frames like a compositor at a fixed refresh rate, gives out poses from a {@link RDXVRPoseTrace}
+ * and accepts eye submissions without displaying them.
+ *
+ * Pose timestamps are frame index times the frame period, so given the same trace the poses are the
+ * same every run. A frame counts as displayed at the first vertical sync after both eyes were submitted,
+ * and each vertical sync that doesn't get a new frame counts as dropped.
+ *
+ * {@link #waitGetPoses} is called on the VR manager's wait get poses thread, and the late latched
+ * headset pose, device connections and submissions are on the render thread, so the state they
+ * share is volatile and each thread has its own scratch transform.
+ */
+public class RDXVRMockBackend implements RDXVRBackend
+{
+   public static final int HEADSET_DEVICE_INDEX = VR.k_unTrackedDeviceIndex_Hmd;
+   public static final int LEFT_CONTROLLER_DEVICE_INDEX = 1;
+   public static final int RIGHT_CONTROLLER_DEVICE_INDEX = 2;
+   public static final int NUMBER_OF_DEVICES = 3;
+   private static final double INTERPUPILLARY_DISTANCE = 0.063;
+   private static final double FIELD_OF_VIEW = Math.toRadians(100.0);
+
+   private final RDXVRPoseTrace poseTrace;
+   private final int width;
+   private final int height;
+   private final long framePeriodNanos;
+   private final RigidBodyTransform deviceToPlayArea = new RigidBodyTransform();
+   private final RigidBodyTransform latestHeadsetToPlayArea = new RigidBodyTransform();
+   /** A bit per device index. */
+   private volatile int connectedDevices = 0;
+   private volatile long startNanos = -1;
+   private volatile long frameIndex;
+   private volatile long lastDisplayedVSyncIndex;
+   private volatile boolean leftEyeSubmitted;
+   private volatile long numberOfDroppedFrames = 0;
+
+   /**
+    * @param refreshRate i.e. 90, 120 or 144 Hz
+    */
+   public RDXVRMockBackend(double refreshRate, RDXVRPoseTrace poseTrace)
+   {
+      this(refreshRate, poseTrace, 2016, 2240); // Valve Index recommended size at 100%
+   }
+
+   public RDXVRMockBackend(double refreshRate, RDXVRPoseTrace poseTrace, int width, int height)
+   {
+      this.poseTrace = poseTrace;
+      this.width = width;
+      this.height = height;
+      framePeriodNanos = (long) (1.0e9 / refreshRate);
+   }
+
+   @Override
+   public void initialize()
+   {
+      LogTools.info("Using mock VR backend at {} Hz", 1.0e9 / framePeriodNanos);
+      // There's no runtime to get render models from, so devices are drawn without models
+      RDXVRModelLoader.setRenderModels(new RDXVRRenderModels()
+      {
+         @Override
+         public int loadRenderModelAsync(String renderModelName, PointerBuffer renderModelPointer)
+         {
+            return VR.EVRRenderModelError_VRRenderModelError_NotSupported;
+         }
+
+         @Override
+         public int loadTextureAsync(int textureID, PointerBuffer textureMapPointer)
+         {
+            return VR.EVRRenderModelError_VRRenderModelError_NotSupported;
+         }
+
+         @Override
+         public void freeRenderModel(RenderModel renderModel)
+         {
+
+         }
+
+         @Override
+         public void freeTexture(RenderModelTextureMap textureMap)
+         {
+
+         }
+      });
+   }
+
+   @Override
+   public boolean hasOpenVRInput()
+   {
+      return false;
+   }
+
+   @Override
+   public int getRecommendedRenderTargetWidth()
+   {
+      return width;
+   }
+
+   @Override
+   public int getRecommendedRenderTargetHeight()
+   {
+      return height;
+   }
+
+   @Override
+   public double getDisplayFrequency()
+   {
+      return 1.0e9 / framePeriodNanos;
+   }
+
+   @Override
+   public void waitGetPoses(RDXVRTrackedDevicePose[] posesToPack)
+   {
+      long now = System.nanoTime();
+      if (startNanos < 0)
+         startNanos = now;
+
+      // Start rendering at the vertical sync after the last displayed frame, or the current one if we're behind
+      frameIndex = Math.max(lastDisplayedVSyncIndex, (now - startNanos) / framePeriodNanos);
+      long frameStartNanos = startNanos + frameIndex * framePeriodNanos;
+      long remainingNanos;
+      while ((remainingNanos = frameStartNanos - System.nanoTime()) > 0)
+         LockSupport.parkNanos(remainingNanos);
+      leftEyeSubmitted = false;
+
+      // Poses are predicted for when the frame will be displayed
+      long displayTimestamp = (frameIndex + 1) * framePeriodNanos;
+      int connectedDevices = 0;
+      for (int i = 0; i < NUMBER_OF_DEVICES; i++)
+      {
+         if (getDeviceToPlayArea(displayTimestamp, i, deviceToPlayArea))
+         {
+            connectedDevices |= 1 << i;
+            posesToPack[i].set(displayTimestamp, deviceToPlayArea);
+         }
+      }
+      this.connectedDevices = connectedDevices;
+   }
+
+   /** Traces can have scratch variables of their own, so they're only used by one thread at a time. */
+   private boolean getDeviceToPlayArea(long timestampNanos, int deviceIndex, RigidBodyTransform deviceToPlayAreaToPack)
+   {
+      synchronized (poseTrace)
+      {
+         return poseTrace.getDeviceToPlayArea(timestampNanos * 1.0e-9, deviceIndex, deviceToPlayAreaToPack);
+      }
+   }
+
+   @Override
+   public boolean getLatestHeadsetPose(RDXVRTrackedDevicePose headsetPoseToPack)
+   {
+      // The trace is a function of time, so this is the same pose as from waitGetPoses, just read later
+      long displayTimestamp = (frameIndex + 1) * framePeriodNanos;
+      if (!getDeviceToPlayArea(displayTimestamp, HEADSET_DEVICE_INDEX, latestHeadsetToPlayArea))
+         return false;
+
+      headsetPoseToPack.set(displayTimestamp, latestHeadsetToPlayArea);
+      return true;
+   }
+
+   @Override
+   public boolean isTrackedDeviceConnected(int deviceIndex)
+   {
+      return deviceIndex >= 0 && deviceIndex < NUMBER_OF_DEVICES && (connectedDevices & 1 << deviceIndex) != 0;
+   }
+
+   @Override
+   public String getRenderModelName(int deviceIndex)
+   {
+      if (deviceIndex == LEFT_CONTROLLER_DEVICE_INDEX)
+         return "mock_controller_left";
+      else if (deviceIndex == RIGHT_CONTROLLER_DEVICE_INDEX)
+         return "mock_controller_right";
+      else
+         return "mock_headset";
+   }
+
+   @Override
+   public int getControllerDeviceIndex(RobotSide side)
+   {
+      int deviceIndex = side == RobotSide.LEFT ? LEFT_CONTROLLER_DEVICE_INDEX : RIGHT_CONTROLLER_DEVICE_INDEX;
+      return isTrackedDeviceConnected(deviceIndex) ? deviceIndex : VR.k_unTrackedDeviceIndexInvalid;
+   }
+
+   @Override
+   public void getEyeToHeadTransform(int eye, HmdMatrix34 eyeToHeadToPack)
+   {
+      // Row major 3x4, identity rotation, eyes offset along X
+      for (int i = 0; i < 12; i++)
+         eyeToHeadToPack.m(i, 0.0f);
+      eyeToHeadToPack.m(0, 1.0f);
+      eyeToHeadToPack.m(5, 1.0f);
+      eyeToHeadToPack.m(10, 1.0f);
+      eyeToHeadToPack.m(3, (float) ((eye == VR.EVREye_Eye_Left ? -0.5 : 0.5) * INTERPUPILLARY_DISTANCE));
+   }
+
+   @Override
+   public void getProjectionMatrix(int eye, float near, float far, HmdMatrix44 projectionToPack)
+   {
+      // Row major symmetric OpenGL perspective projection
+      float yScale = (float) (1.0 / Math.tan(0.5 * FIELD_OF_VIEW));
+      float xScale = yScale * height / width;
+      for (int i = 0; i < 16; i++)
+         projectionToPack.m(i, 0.0f);
+      projectionToPack.m(0, xScale);
+      projectionToPack.m(5, yScale);
+      projectionToPack.m(10, -(far + near) / (far - near));
+      projectionToPack.m(11, -2.0f * far * near / (far - near));
+      projectionToPack.m(14, -1.0f);
+   }
+
+   @Override
+   public void submit(int eye, Texture texture, VRTextureBounds bounds)
+   {
+      if (eye == VR.EVREye_Eye_Left)
+      {
+         leftEyeSubmitted = true;
+      }
+      else if (leftEyeSubmitted)
+      {
+         leftEyeSubmitted = false;
+         long sinceStart = System.nanoTime() - startNanos;
+         long vSyncIndex = Math.max(frameIndex + 1, (sinceStart + framePeriodNanos - 1) / framePeriodNanos);
+         numberOfDroppedFrames += Math.max(0, vSyncIndex - lastDisplayedVSyncIndex - 1);
+         lastDisplayedVSyncIndex = vSyncIndex;
+      }
+   }
+
+   @Override
+   public long getNumberOfDroppedFrames()
+   {
+      return numberOfDroppedFrames;
+   }
+
+   @Override
+   public void shutdown()
+   {
+      RDXVRModelLoader.setRenderModels(RDXVRRenderModels.OPENVR);
+   }
+}
@@ -10,86 +10,123 @@ import com.badlogic.gdx.graphics.g3d.model.MeshPart;
 import com.badlogic.gdx.graphics.g3d.model.Node;
 import com.badlogic.gdx.graphics.g3d.model.NodePart;
 import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
 import net.mgsx.gltf.scene3d.attributes.PBRTextureAttribute;
 import org.lwjgl.PointerBuffer;
 import org.lwjgl.opengl.GL41;
 import org.lwjgl.openvr.*;
-
+import org.lwjgl.system.MemoryUtil;
+import us.ihmc.log.LogTools;
+
+/**
+ * Loads OpenVR render models without blocking. Call {@link #pollRenderModel} once per frame
+ * from the libGDX thread until it returns the model. Each call advances the load by at most
+ * one step, asking OpenVR once whether the model or its texture is ready and returning right away
+ * if not.
+ *
+ * Models are cached by render model name and textures by OpenVR texture ID, so reconnecting
+ * devices and devices sharing a texture reuse what's already on the GPU.
+ */
 public class RDXVRModelLoader
 {
+   private static final int FLOATS_PER_VERTEX = 8; // position, normal, texture coordinate
+   private static RDXVRRenderModels renderModels = RDXVRRenderModels.OPENVR;
    private static final ObjectMap<String, Model> models = new ObjectMap<>();
+   private static final IntMap<Texture> textures = new IntMap<>();
+   private static final ObjectMap<String, RenderModelLoad> loadsInProgress = new ObjectMap<>();
+   private static final ObjectSet<String> failedModelNames = new ObjectSet<>();
+
+   private static class RenderModelLoad
+   {
+      private final PointerBuffer modelPointer = PointerBuffer.allocateDirect(1);
+      private final PointerBuffer texturePointer = PointerBuffer.allocateDirect(1);
+      private RenderModel renderModel;
+   }
 
-   public static Model loadRenderModel(String name)
+   /**
+    * @return the model, or null while it's still loading or if loading failed
+    */
+   public static Model pollRenderModel(String name)
    {
-      if (models.containsKey(name))
-         return models.get(name);
+      Model model = models.get(name);
+      if (model != null || failedModelNames.contains(name))
+         return model;
 
-      // FIXME we load the models synchronously cause we are lazy
-      int error = 0;
-      PointerBuffer modelPointer = PointerBuffer.allocateDirect(1);
-      do
+      RenderModelLoad load = loadsInProgress.get(name);
+      if (load == null)
       {
-         error = VRRenderModels.VRRenderModels_LoadRenderModel_Async(name, modelPointer);
+         load = new RenderModelLoad();
+         loadsInProgress.put(name, load);
       }
-      while (error == VR.EVRRenderModelError_VRRenderModelError_Loading);
 
-      if (error != VR.EVRRenderModelError_VRRenderModelError_None)
-         return null;
-      RenderModel renderModel = new RenderModel(modelPointer.getByteBuffer(RenderModel.SIZEOF));
-
-      error = 0;
-      PointerBuffer texturePointer = PointerBuffer.allocateDirect(1);
-      do
+      if (load.renderModel == null)
       {
-         error = VRRenderModels.VRRenderModels_LoadTexture_Async(renderModel.diffuseTextureId(), texturePointer);
+         int error = renderModels.loadRenderModelAsync(name, load.modelPointer);
+         if (error == VR.EVRRenderModelError_VRRenderModelError_Loading)
+            return null;
+         if (error != VR.EVRRenderModelError_VRRenderModelError_None)
+         {
+            fail(name, "render model", error);
+            return null;
+         }
+         load.renderModel = RenderModel.create(load.modelPointer.get(0));
       }
-      while (error == VR.EVRRenderModelError_VRRenderModelError_Loading);
 
-      if (error != VR.EVRRenderModelError_VRRenderModelError_None)
+      int textureID = load.renderModel.diffuseTextureId();
+      Texture texture = textures.get(textureID);
+      if (texture == null)
       {
-         VRRenderModels.VRRenderModels_FreeRenderModel(renderModel);
-         return null;
+         int error = renderModels.loadTextureAsync(textureID, load.texturePointer);
+         if (error == VR.EVRRenderModelError_VRRenderModelError_Loading)
+            return null;
+         if (error != VR.EVRRenderModelError_VRRenderModelError_None)
+         {
+            renderModels.freeRenderModel(load.renderModel);
+            fail(name, "texture", error);
+            return null;
+         }
+         RenderModelTextureMap textureMap = RenderModelTextureMap.create(load.texturePointer.get(0));
+         texture = createTexture(textureMap);
+         renderModels.freeTexture(textureMap);
+         textures.put(textureID, texture);
       }
 
-      RenderModelTextureMap renderModelTexture = new RenderModelTextureMap(texturePointer.getByteBuffer(RenderModelTextureMap.SIZEOF));
-
-      // convert to a Model
-      Mesh mesh = new Mesh(true,
-                           renderModel.unVertexCount(),
-                           renderModel.unTriangleCount() * 3,
-                           VertexAttribute.Position(),
-                           VertexAttribute.Normal(),
-                           VertexAttribute.TexCoords(0));
-      MeshPart meshPart = new MeshPart(name, mesh, 0, renderModel.unTriangleCount() * 3, GL41.GL_TRIANGLES);
-      RenderModelVertex.Buffer vertices = renderModel.rVertexData();
-      float[] packedVertices = new float[8 * renderModel.unVertexCount()];
-      int i = 0;
-      while (vertices.remaining() > 0)
-      {
-         RenderModelVertex v = vertices.get();
-         packedVertices[i++] = v.vPosition().v(0);
-         packedVertices[i++] = v.vPosition().v(1);
-         packedVertices[i++] = v.vPosition().v(2);
+      model = createModel(name, load.renderModel, texture);
+      renderModels.freeRenderModel(load.renderModel);
+      loadsInProgress.remove(name);
+      models.put(name, model);
+      return model;
+   }
 
-         packedVertices[i++] = v.vNormal().v(0);
-         packedVertices[i++] = v.vNormal().v(1);
-         packedVertices[i++] = v.vNormal().v(2);
+   private static void fail(String name, String what, int error)
+   {
+      LogTools.error("Failed to load {} for {}. EVRRenderModelError: {}", what, name, error);
+      loadsInProgress.remove(name);
+      failedModelNames.add(name);
+   }
 
-         packedVertices[i++] = v.rfTextureCoord().get(0);
-         packedVertices[i++] = v.rfTextureCoord().get(1);
-      }
+   public static boolean hasFailed(String name)
+   {
+      return failedModelNames.contains(name);
+   }
+
+   private static Model createModel(String name, RenderModel renderModel, Texture texture)
+   {
+      int vertexCount = renderModel.unVertexCount();
+      int indexCount = renderModel.unTriangleCount() * 3;
+      Mesh mesh = new Mesh(true, vertexCount, indexCount, VertexAttribute.Position(), VertexAttribute.Normal(), VertexAttribute.TexCoords(0));
+      MeshPart meshPart = new MeshPart(name, mesh, 0, indexCount, GL41.GL_TRIANGLES);
+
+      // RenderModel_Vertex_t is tightly packed floats in the same order as our vertex attributes
+      float[] packedVertices = new float[FLOATS_PER_VERTEX * vertexCount];
+      MemoryUtil.memFloatBuffer(renderModel.rVertexData().address(), packedVertices.length).get(packedVertices);
       mesh.setVertices(packedVertices);
-      short[] indices = new short[renderModel.unTriangleCount() * 3];
+      short[] indices = new short[indexCount];
       renderModel.IndexData().get(indices);
       mesh.setIndices(indices);
 
-      Pixmap pixmap = new Pixmap(renderModelTexture.unWidth(), renderModelTexture.unHeight(), Pixmap.Format.RGBA8888);
-      byte[] pixels = new byte[renderModelTexture.unWidth() * renderModelTexture.unHeight() * 4];
-      renderModelTexture.rubTextureMapData(pixels.length).get(pixels);
-      pixmap.getPixels().put(pixels);
-      pixmap.getPixels().position(0);
-      com.badlogic.gdx.graphics.Texture texture = new Texture(new PixmapTextureData(pixmap, pixmap.getFormat(), true, true));
       Material material = new Material(PBRTextureAttribute.createBaseColorTexture(texture));
 
       Model model = new Model();
@@ -101,13 +138,37 @@ public class RDXVRModelLoader
       node.parts.add(new NodePart(meshPart, material));
       model.nodes.add(node);
       model.manageDisposable(mesh);
-      model.manageDisposable(texture);
+      return model;
+   }
 
-      VRRenderModels.VRRenderModels_FreeRenderModel(renderModel);
-      VRRenderModels.VRRenderModels_FreeTexture(renderModelTexture);
+   private static Texture createTexture(RenderModelTextureMap textureMap)
+   {
+      Pixmap pixmap = new Pixmap(textureMap.unWidth(), textureMap.unHeight(), Pixmap.Format.RGBA8888);
+      pixmap.getPixels().put(textureMap.rubTextureMapData(textureMap.unWidth() * textureMap.unHeight() * 4));
+      pixmap.getPixels().position(0);
+      return new Texture(new PixmapTextureData(pixmap, pixmap.getFormat(), true, true));
+   }
 
-      models.put(name, model);
+   /**
+    * For feeding the loader with something other than the OpenVR runtime.
+    */
+   public static void setRenderModels(RDXVRRenderModels renderModels)
+   {
+      RDXVRModelLoader.renderModels = renderModels;
+   }
 
-      return model;
+   public static void dispose()
+   {
+      for (Model model : models.values())
+         model.dispose();
+      models.clear();
+      for (Texture texture : textures.values())
+         texture.dispose();
+      textures.clear();
+      for (RenderModelLoad load : loadsInProgress.values())
+         if (load.renderModel != null)
+            renderModels.freeRenderModel(load.renderModel);
+      loadsInProgress.clear();
+      failedModelNames.clear();
    }
 }
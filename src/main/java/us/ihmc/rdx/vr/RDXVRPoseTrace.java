@@ -0,0 +1,39 @@
+package us.ihmc.rdx.vr;
+
+import us.ihmc.euclid.transform.RigidBodyTransform;
+
+/**
+ * Device poses as a function of time, for driving {@link RDXVRMockBackend}.
+ * Poses are in the OpenVR play area frame, which is Y up and Z back, in meters.
+ */
+public interface RDXVRPoseTrace
+{
+   /**
+    * A person looking around and moving their hands in front of them,
+    * with the headset and both controllers, looping every 8 seconds.
+    */
+   RDXVRPoseTrace SCRIPTED = (time, deviceIndex, deviceToPlayAreaToPack) ->
+   {
+      double phase = 2.0 * Math.PI * time / 8.0;
+      deviceToPlayAreaToPack.setToZero();
+      if (deviceIndex == RDXVRMockBackend.HEADSET_DEVICE_INDEX)
+      {
+         deviceToPlayAreaToPack.getRotation().setYawPitchRoll(0.0, Math.toRadians(40.0) * Math.sin(phase), Math.toRadians(10.0) * Math.sin(2.0 * phase));
+         deviceToPlayAreaToPack.getTranslation().set(0.05 * Math.sin(phase), 1.6, 0.0);
+         return true;
+      }
+      else if (deviceIndex == RDXVRMockBackend.LEFT_CONTROLLER_DEVICE_INDEX || deviceIndex == RDXVRMockBackend.RIGHT_CONTROLLER_DEVICE_INDEX)
+      {
+         double sign = deviceIndex == RDXVRMockBackend.LEFT_CONTROLLER_DEVICE_INDEX ? -1.0 : 1.0;
+         deviceToPlayAreaToPack.getRotation().setYawPitchRoll(sign * Math.toRadians(20.0) * Math.sin(phase), Math.toRadians(-30.0), 0.0);
+         deviceToPlayAreaToPack.getTranslation().set(sign * (0.25 + 0.1 * Math.cos(phase)), 1.2 + 0.1 * Math.sin(phase), -0.35);
+         return true;
+      }
+      return false;
+   };
+
+   /**
+    * @return false if the device isn't present
+    */
+   boolean getDeviceToPlayArea(double time, int deviceIndex, RigidBodyTransform deviceToPlayAreaToPack);
+}
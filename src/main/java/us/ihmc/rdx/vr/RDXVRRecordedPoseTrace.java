@@ -0,0 +1,96 @@
+package us.ihmc.rdx.vr;
+
+import gnu.trove.list.array.TDoubleArrayList;
+import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.tuple3D.Point3D;
+import us.ihmc.euclid.tuple4D.Quaternion;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A pose trace loaded from a CSV file with rows of
+ * <pre>time, deviceIndex, x, y, z, qx, qy, qz, qs</pre>
+ * with time in seconds. Rows for a device must be in increasing time order.
+ * Poses are interpolated between rows and the trace loops.
+ */
+public class RDXVRRecordedPoseTrace implements RDXVRPoseTrace
+{
+   private static final int VALUES_PER_ROW = 8; // time and pose
+   private final TDoubleArrayList[] deviceRows = new TDoubleArrayList[RDXVRMockBackend.NUMBER_OF_DEVICES];
+   private double duration = 0.0;
+   private final Point3D positionA = new Point3D();
+   private final Point3D positionB = new Point3D();
+   private final Quaternion orientationA = new Quaternion();
+   private final Quaternion orientationB = new Quaternion();
+
+   public RDXVRRecordedPoseTrace(Path csvFile) throws IOException
+   {
+      List<String> lines = Files.readAllLines(csvFile);
+      for (String line : lines)
+      {
+         line = line.trim();
+         if (line.isEmpty() || line.startsWith("#"))
+            continue;
+
+         String[] values = line.split(",");
+         int deviceIndex = Integer.parseInt(values[1].trim());
+         if (deviceIndex < 0 || deviceIndex >= deviceRows.length)
+            continue;
+
+         if (deviceRows[deviceIndex] == null)
+            deviceRows[deviceIndex] = new TDoubleArrayList();
+         double time = Double.parseDouble(values[0].trim());
+         deviceRows[deviceIndex].add(time);
+         for (int i = 2; i < 2 + VALUES_PER_ROW - 1; i++)
+         {
+            deviceRows[deviceIndex].add(Double.parseDouble(values[i].trim()));
+         }
+         duration = Math.max(duration, time);
+      }
+   }
+
+   @Override
+   public boolean getDeviceToPlayArea(double time, int deviceIndex, RigidBodyTransform deviceToPlayAreaToPack)
+   {
+      if (deviceIndex < 0 || deviceIndex >= deviceRows.length || deviceRows[deviceIndex] == null)
+         return false;
+
+      TDoubleArrayList rows = deviceRows[deviceIndex];
+      int numberOfRows = rows.size() / VALUES_PER_ROW;
+      double loopedTime = duration > 0.0 ? time % duration : 0.0;
+
+      // binary search for the last row at or before the time
+      int low = 0;
+      int high = numberOfRows - 1;
+      while (low < high)
+      {
+         int mid = (low + high + 1) >>> 1;
+         if (rows.get(mid * VALUES_PER_ROW) <= loopedTime)
+            low = mid;
+         else
+            high = mid - 1;
+      }
+      int next = Math.min(low + 1, numberOfRows - 1);
+
+      packRow(rows, low, positionA, orientationA);
+      packRow(rows, next, positionB, orientationB);
+      double timeA = rows.get(low * VALUES_PER_ROW);
+      double timeB = rows.get(next * VALUES_PER_ROW);
+      double alpha = timeB > timeA ? Math.min(1.0, Math.max(0.0, (loopedTime - timeA) / (timeB - timeA))) : 0.0;
+
+      positionA.interpolate(positionB, alpha);
+      orientationA.interpolate(orientationB, alpha);
+      deviceToPlayAreaToPack.set(orientationA, positionA);
+      return true;
+   }
+
+   private static void packRow(TDoubleArrayList rows, int row, Point3D positionToPack, Quaternion orientationToPack)
+   {
+      int start = row * VALUES_PER_ROW;
+      positionToPack.set(rows.get(start + 1), rows.get(start + 2), rows.get(start + 3));
+      orientationToPack.set(rows.get(start + 4), rows.get(start + 5), rows.get(start + 6), rows.get(start + 7));
+   }
+}
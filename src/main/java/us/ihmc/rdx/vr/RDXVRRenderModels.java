@@ -0,0 +1,51 @@
+package us.ihmc.rdx.vr;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.openvr.RenderModel;
+import org.lwjgl.openvr.RenderModelTextureMap;
+import org.lwjgl.openvr.VRRenderModels;
+
+/**
+ * The subset of OpenVR's IVRRenderModels used by {@link RDXVRModelLoader}.
+ * The async calls return VR.EVRRenderModelError_VRRenderModelError_Loading
+ * until the data is ready, so they must never be waited on in a loop.
+ *
+ * Implement this to feed the loader without a running VR runtime.
+ */
+public interface RDXVRRenderModels
+{
+   RDXVRRenderModels OPENVR = new RDXVRRenderModels()
+   {
+      @Override
+      public int loadRenderModelAsync(String renderModelName, PointerBuffer renderModelPointer)
+      {
+         return VRRenderModels.VRRenderModels_LoadRenderModel_Async(renderModelName, renderModelPointer);
+      }
+
+      @Override
+      public int loadTextureAsync(int textureID, PointerBuffer textureMapPointer)
+      {
+         return VRRenderModels.VRRenderModels_LoadTexture_Async(textureID, textureMapPointer);
+      }
+
+      @Override
+      public void freeRenderModel(RenderModel renderModel)
+      {
+         VRRenderModels.VRRenderModels_FreeRenderModel(renderModel);
+      }
+
+      @Override
+      public void freeTexture(RenderModelTextureMap textureMap)
+      {
+         VRRenderModels.VRRenderModels_FreeTexture(textureMap);
+      }
+   };
+
+   int loadRenderModelAsync(String renderModelName, PointerBuffer renderModelPointer);
+
+   int loadTextureAsync(int textureID, PointerBuffer textureMapPointer);
+
+   void freeRenderModel(RenderModel renderModel);
+
+   void freeTexture(RenderModelTextureMap textureMap);
+}
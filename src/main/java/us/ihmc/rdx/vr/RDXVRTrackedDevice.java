@@ -2,9 +2,6 @@ package us.ihmc.rdx.vr;
 
 import com.badlogic.gdx.graphics.g3d.Model;
 import com.badlogic.gdx.graphics.g3d.ModelInstance;
-import com.badlogic.gdx.utils.BufferUtils;
-import org.lwjgl.openvr.VR;
-import org.lwjgl.openvr.VRSystem;
 import us.ihmc.euclid.exceptions.NotARotationMatrixException;
 import us.ihmc.euclid.referenceFrame.ReferenceFrame;
 import us.ihmc.euclid.referenceFrame.tools.ReferenceFrameTools;
@@ -15,16 +12,15 @@ import us.ihmc.rdx.tools.LibGDXTools;
 import us.ihmc.rdx.tools.RDXModelInstance;
 import us.ihmc.rdx.tools.RDXModelLoader;
 
-import java.nio.IntBuffer;
-
 public abstract class RDXVRTrackedDevice
 {
    private int deviceIndex;
    private boolean isConnected;
-   private final IntBuffer errorCode = BufferUtils.newIntBuffer(1);
+   private RDXVRBackend backend;
    private final RigidBodyTransform deviceToPlayAreaTransform = new RigidBodyTransform();
    private final ReferenceFrame deviceYUpZBackFrame;
    private final RigidBodyTransform tempOpenVRToWorldTransform = new RigidBodyTransform();
+   private final RigidBodyTransform lateLatchTransform = new RigidBodyTransform();
    private ModelInstance modelInstance = null;
    private long lastPollTimeNanos;
    private final Vector3D trackedLinearVelocity = new Vector3D();
@@ -75,7 +71,7 @@ public abstract class RDXVRTrackedDevice
             if (modelInstance == null)
             {
                String renderModelName = getModelName();
-               Model model = new Model();
+               Model model = null;
                if (renderModelName.contains("controller"))
                {
                   if (renderModelName.contains("focus3")) // vive focus 3 controller render models are not supported in open vr
@@ -96,14 +92,23 @@ public abstract class RDXVRTrackedDevice
                         modelFile += "valve_controller_knu_1_0_right.g3dj";
                      model = RDXModelLoader.load(modelFile);
                   }
+                  else
+                  {
+                     model = new Model();
+                  }
                }
                else
-                  model = RDXVRModelLoader.loadRenderModel(renderModelName);
+               {
+                  model = RDXVRModelLoader.pollRenderModel(renderModelName); // null until loaded
+               }
                modelInstance = model != null ? new RDXModelInstance(model) : null;
             }
 
-            deviceYUpZBackFrame.getTransformToDesiredFrame(tempOpenVRToWorldTransform, ReferenceFrame.getWorldFrame());
-            LibGDXTools.toLibGDX(tempOpenVRToWorldTransform, modelInstance.transform);
+            if (modelInstance != null)
+            {
+               deviceYUpZBackFrame.getTransformToDesiredFrame(tempOpenVRToWorldTransform, ReferenceFrame.getWorldFrame());
+               LibGDXTools.toLibGDX(tempOpenVRToWorldTransform, modelInstance.transform);
+            }
 
             deviceYUpZBackFrame.getParent().getTransformToRoot().transform(trackedLinearVelocity);
             deviceYUpZBackFrame.getParent().getTransformToRoot().transform(trackedAngularVelocity);
@@ -111,6 +116,30 @@ public abstract class RDXVRTrackedDevice
       }
    }
 
+   /**
+    * Updates only the device frame with a newer pose, without touching the model or velocities.
+    *
+    * @return false if the pose was invalid, in which case nothing changed
+    */
+   protected boolean lateLatch(RDXVRTrackedDevicePose trackedDevicePose)
+   {
+      if (!isConnected || trackedDevicePose.mDeviceToAbsoluteTracking.containsNaN())
+         return false;
+
+      lateLatchTransform.set(trackedDevicePose.mDeviceToAbsoluteTracking);
+      try
+      {
+         lateLatchTransform.getRotation().normalize();
+      }
+      catch (NotARotationMatrixException notARotationMatrixException)
+      {
+         return false;
+      }
+      deviceToPlayAreaTransform.set(lateLatchTransform);
+      deviceYUpZBackFrame.update();
+      return true;
+   }
+
    public long getLastPollTimeNanos()
    {
       return lastPollTimeNanos;
@@ -118,7 +147,17 @@ public abstract class RDXVRTrackedDevice
 
    public String getModelName()
    {
-      return VRSystem.VRSystem_GetStringTrackedDeviceProperty(deviceIndex, VR.ETrackedDeviceProperty_Prop_RenderModelName_String, errorCode);
+      return backend.getRenderModelName(deviceIndex);
+   }
+
+   protected void setBackend(RDXVRBackend backend)
+   {
+      this.backend = backend;
+   }
+
+   protected RDXVRBackend getBackend()
+   {
+      return backend;
    }
 
    public ReferenceFrame getDeviceYUpZBackFrame()
@@ -141,6 +180,15 @@ public abstract class RDXVRTrackedDevice
       return modelInstance;
    }
 
+   /**
+    * For when the render models are disposed. The instance is created again from
+    * the reloaded model when the device is next updated.
+    */
+   protected void clearModelInstance()
+   {
+      modelInstance = null;
+   }
+
    public boolean isConnected()
    {
       return isConnected;
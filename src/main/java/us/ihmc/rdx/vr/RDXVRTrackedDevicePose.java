@@ -1,26 +1,81 @@
 package us.ihmc.rdx.vr;
 
+import org.lwjgl.openvr.HmdMatrix34;
+import org.lwjgl.openvr.HmdVector3;
 import org.lwjgl.openvr.TrackedDevicePose;
 import org.lwjgl.openvr.VR;
+import org.lwjgl.system.MemoryUtil;
 import us.ihmc.euclid.transform.RigidBodyTransform;
+import us.ihmc.euclid.transform.interfaces.RigidBodyTransformReadOnly;
 import us.ihmc.euclid.tuple3D.Vector3D;
-import us.ihmc.rdx.tools.LibGDXTools;
 
+/**
+ * Mutable so that pose sets can be preallocated and reused.
+ * See {@link RDXVRTrackedDevicePoseTripleBuffer}.
+ */
 public class RDXVRTrackedDevicePose
 {
-   public final long timestamp;
+   public long timestamp;
    public final RigidBodyTransform mDeviceToAbsoluteTracking = new RigidBodyTransform();
    public final Vector3D vVelocity = new Vector3D();
    public final Vector3D vAngularVelocity = new Vector3D();
 
+   public RDXVRTrackedDevicePose()
+   {
+
+   }
+
    public RDXVRTrackedDevicePose(long timestamp, TrackedDevicePose.Buffer trackedDevicePoses, int deviceIndex)
+   {
+      set(timestamp, trackedDevicePoses, deviceIndex);
+   }
+
+   /**
+    * Reads straight from native memory, so it doesn't create any struct wrapper objects.
+    */
+   public void set(long timestamp, TrackedDevicePose.Buffer trackedDevicePoses, int deviceIndex)
    {
       this.timestamp = timestamp;
       if (deviceIndex == VR.k_unTrackedDeviceIndexInvalid)
          return;
 
-      LibGDXTools.toEuclidUnsafe(trackedDevicePoses.get(deviceIndex).mDeviceToAbsoluteTracking(), mDeviceToAbsoluteTracking);
-      LibGDXTools.toEuclid(trackedDevicePoses.get(deviceIndex).vVelocity(), vVelocity);
-      LibGDXTools.toEuclid(trackedDevicePoses.get(deviceIndex).vAngularVelocity(), vAngularVelocity);
+      long poseAddress = trackedDevicePoses.address(deviceIndex);
+      long matrixAddress = poseAddress + TrackedDevicePose.MDEVICETOABSOLUTETRACKING + HmdMatrix34.M;
+      mDeviceToAbsoluteTracking.getRotation().setUnsafe(getFloat(matrixAddress, 0),
+                                                        getFloat(matrixAddress, 1),
+                                                        getFloat(matrixAddress, 2),
+                                                        getFloat(matrixAddress, 4),
+                                                        getFloat(matrixAddress, 5),
+                                                        getFloat(matrixAddress, 6),
+                                                        getFloat(matrixAddress, 8),
+                                                        getFloat(matrixAddress, 9),
+                                                        getFloat(matrixAddress, 10));
+      mDeviceToAbsoluteTracking.getTranslation().set(getFloat(matrixAddress, 3), getFloat(matrixAddress, 7), getFloat(matrixAddress, 11));
+
+      long velocityAddress = poseAddress + TrackedDevicePose.VVELOCITY + HmdVector3.V;
+      vVelocity.set(getFloat(velocityAddress, 0), getFloat(velocityAddress, 1), getFloat(velocityAddress, 2));
+      long angularVelocityAddress = poseAddress + TrackedDevicePose.VANGULARVELOCITY + HmdVector3.V;
+      vAngularVelocity.set(getFloat(angularVelocityAddress, 0), getFloat(angularVelocityAddress, 1), getFloat(angularVelocityAddress, 2));
+   }
+
+   public void set(long timestamp, RigidBodyTransformReadOnly deviceToAbsoluteTracking)
+   {
+      this.timestamp = timestamp;
+      mDeviceToAbsoluteTracking.set(deviceToAbsoluteTracking);
+      vVelocity.setToZero();
+      vAngularVelocity.setToZero();
+   }
+
+   public void set(RDXVRTrackedDevicePose other)
+   {
+      timestamp = other.timestamp;
+      mDeviceToAbsoluteTracking.set(other.mDeviceToAbsoluteTracking);
+      vVelocity.set(other.vVelocity);
+      vAngularVelocity.set(other.vAngularVelocity);
+   }
+
+   private static float getFloat(long address, int index)
+   {
+      return MemoryUtil.memGetFloat(address + (long) index * Float.BYTES);
    }
 }
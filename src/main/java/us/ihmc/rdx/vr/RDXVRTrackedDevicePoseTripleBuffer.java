@@ -0,0 +1,81 @@
+package us.ihmc.rdx.vr;
+
+import org.lwjgl.openvr.VR;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands tracked device pose sets from the wait get poses thread to the render thread
+ * without locking or allocating.
+ *
+ * There are three preallocated pose sets. The writer always owns one, the reader always
+ * owns one, and the third is the most recently published one. Publishing and polling
+ * swap the owned set with the published one atomically. The writer never waits and
+ * the reader always gets the newest complete set.
+ */
+public class RDXVRTrackedDevicePoseTripleBuffer
+{
+   private static final int INDEX_MASK = 0b11;
+   private static final int NEW_DATA_BIT = 0b100;
+
+   private final RDXVRTrackedDevicePose[][] poseSets = new RDXVRTrackedDevicePose[3][VR.k_unMaxTrackedDeviceCount];
+   private final long[] sequenceNumbers = new long[3];
+   private final AtomicInteger publishedIndex = new AtomicInteger(0);
+   private int writeIndex = 1;
+   private int readIndex = 2;
+   private long nextSequenceNumber = 1;
+   private long lastReadSequenceNumber = 0;
+
+   public RDXVRTrackedDevicePoseTripleBuffer()
+   {
+      for (RDXVRTrackedDevicePose[] poseSet : poseSets)
+      {
+         for (int i = 0; i < poseSet.length; i++)
+         {
+            poseSet[i] = new RDXVRTrackedDevicePose();
+         }
+      }
+   }
+
+   /**
+    * Writer side. The returned set is owned by the writer until {@link #publish()}.
+    */
+   public RDXVRTrackedDevicePose[] getWriteSet()
+   {
+      return poseSets[writeIndex];
+   }
+
+   /**
+    * Writer side. Makes the write set the latest and takes back a free one.
+    */
+   public void publish()
+   {
+      sequenceNumbers[writeIndex] = nextSequenceNumber++;
+      writeIndex = publishedIndex.getAndSet(writeIndex | NEW_DATA_BIT) & INDEX_MASK;
+   }
+
+   /**
+    * Reader side. The returned set stays valid until the next call.
+    *
+    * @return the latest published pose set, or null if nothing new has been published since the last poll
+    */
+   public RDXVRTrackedDevicePose[] pollLatest()
+   {
+      if ((publishedIndex.get() & NEW_DATA_BIT) == 0)
+         return null;
+
+      readIndex = publishedIndex.getAndSet(readIndex) & INDEX_MASK;
+      lastReadSequenceNumber = sequenceNumbers[readIndex];
+      return poseSets[readIndex];
+   }
+
+   /**
+    * Reader side.
+    *
+    * @return the sequence number of the set returned by the last {@link #pollLatest()}, starting at 1
+    */
+   public long getLastReadSequenceNumber()
+   {
+      return lastReadSequenceNumber;
+   }
+}
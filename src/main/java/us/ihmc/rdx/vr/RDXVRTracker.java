@@ -30,9 +30,10 @@ public class RDXVRTracker extends RDXVRTrackedDevice
    private final FramePose3D tempFramePose = new FramePose3D();
    private final RigidBodyTransform tempRigidBodyTransform = new RigidBodyTransform();
 
-   public RDXVRTracker(ReferenceFrame vrPlayAreaYUpZBackFrame, int deviceIndex)
+   public RDXVRTracker(ReferenceFrame vrPlayAreaYUpZBackFrame, int deviceIndex, RDXVRBackend backend)
    {
       super(vrPlayAreaYUpZBackFrame);
+      setBackend(backend);
       setDeviceIndex(deviceIndex);
       setConnected(true);
 
@@ -38,7 +38,7 @@ public class RDXVRTrackerRoleManager
    private double closestCollisionDistance;
    private final SphereRayIntersection boundingSphereIntersection = new SphereRayIntersection();
    private final SphereRayIntersection modelSphereIntersection = new SphereRayIntersection();
-   private final RDXModelInstance uninitializedModelInstance;
+   private RDXModelInstance uninitializedModelInstance; // created when the tracker's model has loaded
 
    public RDXVRTrackerRoleManager(RDXVRContext vrContext, RDXVRTracker tracker)
    {
@@ -53,10 +53,6 @@ public class RDXVRTrackerRoleManager
       SortedSet<String> roles = vrContext.getAvailableTrackerRoles();
       roles.forEach(role -> roleActivationMap.put(role, false));
       roles.forEach(role -> changedColorRoleButton.put(role, false));
-
-      uninitializedModelInstance = new RDXModelInstance(tracker.getModelInstance().model);
-      uninitializedModelInstance.setColor(ColorDefinitions.Red());
-      uninitializedModelInstance.setOpacity(0.5f);
    }
 
    public void calculate3DViewPick(ImGui3DViewInput input)
@@ -106,7 +102,8 @@ public class RDXVRTrackerRoleManager
    public void process3DViewInput(ImGui3DViewInput input)
    {
       isTrackerHovered = pickResult == input.getClosestPick();
-      uninitializedModelInstance.setOpacity(isTrackerHovered ? 1.0f : 0.5f);
+      if (uninitializedModelInstance != null)
+         uninitializedModelInstance.setOpacity(isTrackerHovered ? 1.0f : 0.5f);
 
       if (isTrackerHovered && input.mouseReleasedWithoutDrag(ImGuiMouseButton.Right))
       {
@@ -203,12 +200,32 @@ public class RDXVRTrackerRoleManager
       return false;
    }
 
+   /**
+    * @return null until the tracker's model has loaded
+    */
    public RDXModelInstance getRedModelInstance()
    {
+      if (uninitializedModelInstance == null)
+      {
+         if (tracker.getModelInstance() == null)
+            return null;
+
+         uninitializedModelInstance = new RDXModelInstance(tracker.getModelInstance().model);
+         uninitializedModelInstance.setColor(ColorDefinitions.Red());
+         uninitializedModelInstance.setOpacity(isTrackerHovered ? 1.0f : 0.5f);
+      }
       uninitializedModelInstance.setPoseInWorldFrame(tracker.getDeviceYUpZBackFrame().getTransformToWorldFrame());
       return uninitializedModelInstance;
    }
 
+   /**
+    * For when the render models are disposed. The red instance is created again from the tracker's reloaded model.
+    */
+   public void clearModelInstance()
+   {
+      uninitializedModelInstance = null;
+   }
+
    public String getTrackerSerialNumber()
    {
       return tracker.getSerialNumber();
@@ -0,0 +1,38 @@
+#type vertex
+#version 410
+
+in vec3 a_position;
+in vec2 a_texCoord0;
+
+uniform mat4 u_projViewTrans;
+uniform mat4 u_worldTrans;
+
+out vec2 v_texCoord0;
+
+void main()
+{
+   v_texCoord0 = a_texCoord0;
+   gl_Position = u_projViewTrans * u_worldTrans * vec4(a_position, 1.0);
+}
+
+#type fragment
+#version 410
+
+in vec2 v_texCoord0;
+
+uniform sampler2D u_atlas;
+uniform vec4 u_color;
+
+out vec4 out_color;
+
+void main()
+{
+   // 0.5 is the glyph edge. Smoothing over the distance change across one
+   // screen pixel keeps the edge sharp at any size or distance.
+   float distance = texture(u_atlas, v_texCoord0).a;
+   float smoothing = max(fwidth(distance), 0.0001);
+   float alpha = smoothstep(0.5 - smoothing, 0.5 + smoothing, distance) * u_color.a;
+   if (alpha < 0.01)
+      discard;
+   out_color = vec4(u_color.rgb, alpha);
+}
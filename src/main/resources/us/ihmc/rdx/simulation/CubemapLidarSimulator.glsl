@@ -0,0 +1,46 @@
+#type vertex
+#version 410
+
+void main()
+{
+   // One triangle that covers the viewport, no vertex buffer needed
+   vec2 position = vec2((gl_VertexID << 1) & 2, gl_VertexID & 2);
+   gl_Position = vec4(position * 2.0 - 1.0, 0.0, 1.0);
+}
+
+#type fragment
+#version 410
+
+#define MAX_BEAMS 256
+
+// The depth along each side's view axis, 0 where nothing was hit
+uniform samplerCube u_eyeDepthCubemap;
+uniform float u_verticalAngles[MAX_BEAMS];
+uniform int u_numberOfAzimuthSamples;
+uniform mat3 u_sensorToWorldRotation;
+uniform vec2 u_rangeLimits;
+
+layout(location = 0) out vec4 out_color;
+layout(location = 1) out float out_range;
+
+void main()
+{
+   // One row per beam, one column per azimuth, counterclockwise from the sensor's x axis
+   ivec2 pixel = ivec2(gl_FragCoord.xy);
+   float azimuth = 6.2831853 * float(pixel.x) / float(u_numberOfAzimuthSamples);
+   float elevation = u_verticalAngles[pixel.y];
+   vec3 sensorDirection = vec3(cos(elevation) * cos(azimuth), cos(elevation) * sin(azimuth), sin(elevation));
+   vec3 direction = u_sensorToWorldRotation * sensorDirection;
+
+   float eyeDepth = texture(u_eyeDepthCubemap, direction).r;
+   // The side that was sampled is the one of the direction's largest component,
+   // and the depth along that side's axis is the range times that component
+   vec3 absoluteDirection = abs(direction);
+   float range = eyeDepth / max(absoluteDirection.x, max(absoluteDirection.y, absoluteDirection.z));
+   if (eyeDepth <= 0.0 || range < u_rangeLimits.x || range > u_rangeLimits.y)
+      range = 0.0;
+
+   out_range = range;
+   float shade = range > 0.0 ? 1.0 - range / u_rangeLimits.y : 0.0;
+   out_color = vec4(vec3(shade), 1.0);
+}
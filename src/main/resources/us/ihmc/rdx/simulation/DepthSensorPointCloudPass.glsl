@@ -0,0 +1,68 @@
+#version 410
+// Vertex only; run with GL_RASTERIZER_DISCARD and transform feedback.
+// One vertex per decimated depth pixel, output in RDXPointCloudRenderer's vertex layout.
+
+uniform sampler2D u_depthTexture;
+uniform sampler2D u_colorTexture;
+// 1 when the depth is meters along the view axis, 0 when it's the depth buffer's 0 to 1
+uniform int u_depthIsEyeDepth;
+uniform vec2 u_nearFar;
+uniform ivec2 u_tileOffset;
+uniform int u_outputWidth;
+uniform int u_decimation;
+uniform vec2 u_focalLength;
+uniform vec2 u_principalPoint;
+// From the libGDX camera frame, x right, y up, looking down -z
+uniform mat4 u_cameraToWorld;
+uniform vec2 u_rangeLimits;
+// Standard deviation at 1 meter, grows with depth squared like a stereo or structured light sensor
+uniform float u_noiseStandardDeviation;
+uniform float u_noiseSeed;
+uniform float u_pointSize;
+
+out vec3 tf_position;
+out vec4 tf_color;
+out float tf_size;
+
+float hash(vec2 value)
+{
+   return fract(sin(dot(value, vec2(12.9898, 78.233))) * 43758.5453);
+}
+
+void main()
+{
+   ivec2 pixel = ivec2(gl_VertexID % u_outputWidth, gl_VertexID / u_outputWidth) * u_decimation;
+   ivec2 texel = u_tileOffset + pixel;
+
+   float depth = texelFetch(u_depthTexture, texel, 0).r;
+   if (u_depthIsEyeDepth == 0)
+   {
+      float normalizedDeviceCoordinateZ = 2.0 * depth - 1.0;
+      float near = u_nearFar.x;
+      float far = u_nearFar.y;
+      depth = depth >= 1.0 ? 0.0 : 2.0 * near * far / (far + near - normalizedDeviceCoordinateZ * (far - near));
+   }
+
+   if (u_noiseStandardDeviation > 0.0)
+   {
+      // Box-Muller
+      vec2 seed = vec2(float(gl_VertexID), u_noiseSeed);
+      float uniform1 = max(hash(seed), 1e-7);
+      float uniform2 = hash(seed + vec2(0.5, 17.0));
+      float gaussian = sqrt(-2.0 * log(uniform1)) * cos(6.2831853 * uniform2);
+      depth += gaussian * u_noiseStandardDeviation * depth * depth;
+   }
+
+   tf_size = u_pointSize;
+   if (depth <= 0.0 || depth < u_rangeLimits.x || depth > u_rangeLimits.y)
+   {
+      // NaN points aren't drawn
+      tf_position = vec3(intBitsToFloat(0x7fc00000));
+      tf_color = vec4(0.0);
+      return;
+   }
+
+   vec2 cameraXY = (vec2(pixel) + 0.5 - u_principalPoint) / u_focalLength * depth;
+   tf_position = (u_cameraToWorld * vec4(cameraXY, -depth, 1.0)).xyz;
+   tf_color = vec4(texelFetch(u_colorTexture, texel, 0).rgb, 1.0);
+}
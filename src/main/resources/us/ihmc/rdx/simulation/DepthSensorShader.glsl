@@ -0,0 +1,116 @@
+#type vertex
+// The #version and the #defines for the renderable's attributes are prepended by DepthSensorShader.createPrefix
+
+in vec3 a_position;
+#ifdef normalFlag
+in vec3 a_normal;
+#endif
+#ifdef colorFlag
+in vec4 a_color;
+#endif
+#ifdef texCoord0Flag
+in vec2 a_texCoord0;
+#endif
+
+uniform mat4 u_projViewTrans;
+uniform mat4 u_viewTrans;
+uniform mat4 u_worldTrans;
+uniform mat3 u_normalMatrix;
+
+out float v_eyeDepth;
+out vec3 v_normal;
+out vec4 v_color;
+out vec2 v_texCoord0;
+
+void main()
+{
+   vec4 worldPosition = u_worldTrans * vec4(a_position, 1.0);
+   // Distance along the camera's view axis, which is what a depth sensor measures
+   v_eyeDepth = -(u_viewTrans * worldPosition).z;
+
+#ifdef normalFlag
+   v_normal = normalize(u_normalMatrix * a_normal);
+#else
+   v_normal = vec3(0.0, 0.0, 1.0);
+#endif
+#ifdef colorFlag
+   v_color = a_color;
+#else
+   v_color = vec4(1.0);
+#endif
+#ifdef texCoord0Flag
+   v_texCoord0 = a_texCoord0;
+#else
+   v_texCoord0 = vec2(0.0);
+#endif
+
+   gl_Position = u_projViewTrans * worldPosition;
+}
+
+#type fragment
+
+in float v_eyeDepth;
+in vec3 v_normal;
+in vec4 v_color;
+in vec2 v_texCoord0;
+
+#ifdef diffuseColorFlag
+uniform vec4 u_diffuseColor;
+#endif
+#ifdef diffuseTextureFlag
+uniform sampler2D u_diffuseTexture;
+#endif
+#ifdef baseColorFactorFlag
+uniform vec4 u_baseColorFactor;
+#endif
+#ifdef baseColorTextureFlag
+uniform sampler2D u_baseColorTexture;
+#endif
+
+#if defined(lightingFlag) && numDirectionalLights > 0
+struct DirectionalLight
+{
+   vec3 color;
+   vec3 direction;
+};
+uniform DirectionalLight u_dirLights[numDirectionalLights];
+#endif
+
+#ifdef eyeDepthOnlyFlag
+layout(location = 0) out float out_processedDepth;
+#else
+layout(location = 0) out vec4 out_color;
+layout(location = 1) out float out_processedDepth;
+#endif
+
+void main()
+{
+#ifdef eyeDepthOnlyFlag
+   out_processedDepth = v_eyeDepth;
+#else
+   vec4 color = v_color;
+#ifdef diffuseColorFlag
+   color *= u_diffuseColor;
+#endif
+#ifdef diffuseTextureFlag
+   color *= texture(u_diffuseTexture, v_texCoord0);
+#endif
+#ifdef baseColorFactorFlag
+   color *= u_baseColorFactor;
+#endif
+#ifdef baseColorTextureFlag
+   color *= texture(u_baseColorTexture, v_texCoord0);
+#endif
+
+   // Simple diffuse shading; the simulated camera image doesn't need the full PBR model
+   vec3 light = vec3(0.3);
+#if defined(lightingFlag) && numDirectionalLights > 0
+   vec3 normal = normalize(v_normal);
+   for (int i = 0; i < numDirectionalLights; i++)
+      light += u_dirLights[i].color * max(dot(normal, -u_dirLights[i].direction), 0.0);
+#endif
+
+   out_color = vec4(min(color.rgb * light, vec3(1.0)), color.a);
+   out_processedDepth = v_eyeDepth;
+#endif
+}
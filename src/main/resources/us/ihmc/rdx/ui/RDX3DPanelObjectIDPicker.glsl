@@ -0,0 +1,24 @@
+#type vertex
+#version 410
+
+in vec3 a_position;
+
+uniform mat4 u_projViewTrans;
+uniform mat4 u_worldTrans;
+
+void main()
+{
+   gl_Position = u_projViewTrans * u_worldTrans * vec4(a_position, 1.0);
+}
+
+#type fragment
+#version 410
+
+uniform int u_objectID;
+
+layout(location = 0) out uint out_objectID;
+
+void main()
+{
+   out_objectID = uint(u_objectID);
+}
@@ -0,0 +1,48 @@
+package us.ihmc.rdx.tools;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import us.ihmc.rdx.Lwjgl3ApplicationAdapter;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * For tests that need an OpenGL context. Needs a display, so tag those tests with "gui".
+ */
+public class LibGDXTestTools
+{
+   /**
+    * Opens a hidden window, runs the test on the libGDX thread with its context current,
+    * and closes the window. Blocks until done and rethrows anything the test threw.
+    */
+   public static void runInHiddenWindow(Class<?> testClass, Runnable test)
+   {
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      Lwjgl3ApplicationConfiguration applicationConfiguration = LibGDXApplicationCreator.getDefaultConfiguration(testClass);
+      applicationConfiguration.setInitialVisible(false);
+      LibGDXApplicationCreator.launchGDXApplication(applicationConfiguration, new Lwjgl3ApplicationAdapter()
+      {
+         @Override
+         public void create()
+         {
+            try
+            {
+               test.run();
+            }
+            catch (Throwable throwable)
+            {
+               failure.set(throwable);
+            }
+            Gdx.app.exit();
+         }
+      });
+
+      Throwable throwable = failure.get();
+      if (throwable instanceof RuntimeException runtimeException)
+         throw runtimeException;
+      if (throwable instanceof Error error)
+         throw error;
+      if (throwable != null)
+         throw new RuntimeException(throwable);
+   }
+}
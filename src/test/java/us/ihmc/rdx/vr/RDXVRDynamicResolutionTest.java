@@ -0,0 +1,97 @@
+package us.ihmc.rdx.vr;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RDXVRDynamicResolutionTest
+{
+   private static final double BUDGET = 11.1;
+   private static final double OVER_BUDGET = 0.95 * BUDGET;
+   private static final double IN_BAND = 0.8 * BUDGET;
+   private static final double UNDER_BUDGET = 0.5 * BUDGET;
+   private static final double EPSILON = 1e-9;
+
+   @Test
+   public void testScalesDownQuicklyAndUpSlowly()
+   {
+      RDXVRDynamicResolution dynamicResolution = new RDXVRDynamicResolution();
+
+      int framesToDecrease = countFramesUntilScaleChanges(dynamicResolution, OVER_BUDGET);
+      assertTrue(dynamicResolution.getScale() < 1.0);
+      int framesToIncrease = countFramesUntilScaleChanges(dynamicResolution, UNDER_BUDGET);
+      assertEquals(1.0, dynamicResolution.getScale(), EPSILON);
+
+      assertTrue(framesToDecrease < 10, "Took " + framesToDecrease + " frames to scale down");
+      assertTrue(framesToIncrease > 5 * framesToDecrease, "Scaled up after " + framesToIncrease + " frames, down after " + framesToDecrease);
+   }
+
+   @Test
+   public void testHoldsInTheHysteresisBand()
+   {
+      RDXVRDynamicResolution dynamicResolution = new RDXVRDynamicResolution();
+      countFramesUntilScaleChanges(dynamicResolution, OVER_BUDGET);
+      double scale = dynamicResolution.getScale();
+
+      for (int i = 0; i < 1000; i++)
+         assertEquals(scale, dynamicResolution.update(IN_BAND, BUDGET), EPSILON);
+   }
+
+   /** Alternating frames must not add up to a change, or the resolution would oscillate. */
+   @Test
+   public void testBandResetsTheFrameCounts()
+   {
+      RDXVRDynamicResolution dynamicResolution = new RDXVRDynamicResolution();
+      for (int i = 0; i < 1000; i++)
+      {
+         dynamicResolution.update(i % 2 == 0 ? OVER_BUDGET : IN_BAND, BUDGET);
+         assertEquals(1.0, dynamicResolution.getScale(), EPSILON);
+      }
+   }
+
+   @Test
+   public void testClampedToMinimumScaleAndOne()
+   {
+      RDXVRDynamicResolution dynamicResolution = new RDXVRDynamicResolution();
+      dynamicResolution.setMinimumScale(0.6);
+
+      for (int i = 0; i < 1000; i++)
+         dynamicResolution.update(2.0 * BUDGET, BUDGET);
+      assertEquals(0.6, dynamicResolution.getScale(), EPSILON);
+
+      for (int i = 0; i < 10000; i++)
+         dynamicResolution.update(0.0, BUDGET);
+      assertEquals(1.0, dynamicResolution.getScale(), EPSILON);
+
+      dynamicResolution.update(2.0 * BUDGET, BUDGET);
+      dynamicResolution.setMinimumScale(0.9);
+      for (int i = 0; i < 1000; i++)
+         dynamicResolution.update(2.0 * BUDGET, BUDGET);
+      assertEquals(0.9, dynamicResolution.getScale(), EPSILON);
+   }
+
+   @Test
+   public void testMissingMeasurementsAreIgnored()
+   {
+      RDXVRDynamicResolution dynamicResolution = new RDXVRDynamicResolution();
+      dynamicResolution.update(OVER_BUDGET, BUDGET);
+      dynamicResolution.update(OVER_BUDGET, BUDGET);
+      for (int i = 0; i < 100; i++)
+         dynamicResolution.update(Double.NaN, BUDGET);
+      assertEquals(1.0, dynamicResolution.getScale(), EPSILON);
+
+      dynamicResolution.reset();
+      assertEquals(1.0, dynamicResolution.getScale(), EPSILON);
+   }
+
+   private static int countFramesUntilScaleChanges(RDXVRDynamicResolution dynamicResolution, double gpuTimeMs)
+   {
+      double initialScale = dynamicResolution.getScale();
+      for (int frame = 1; frame <= 10000; frame++)
+      {
+         if (dynamicResolution.update(gpuTimeMs, BUDGET) != initialScale)
+            return frame;
+      }
+      throw new AssertionError("The scale didn't change from " + initialScale);
+   }
+}
@@ -0,0 +1,191 @@
+package us.ihmc.rdx.vr;
+
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.g3d.Model;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.openvr.RenderModel;
+import org.lwjgl.openvr.RenderModelTextureMap;
+import org.lwjgl.openvr.VR;
+import org.lwjgl.system.MemoryUtil;
+import us.ihmc.rdx.tools.LibGDXTestTools;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RDXVRModelLoaderTest
+{
+   private static final int TEXTURE_ID = 7;
+   private static final int TEXTURE_SIZE = 4;
+
+   /**
+    * Stands in for OpenVR. Reports loading for a number of calls, then either
+    * fails or hands out a triangle with a small texture from native memory.
+    */
+   private static class MockRenderModels implements RDXVRRenderModels
+   {
+      private int callsBeforeReady;
+      private int errorWhenReady = VR.EVRRenderModelError_VRRenderModelError_None;
+      private int numberOfModelLoadCalls = 0;
+      private int numberOfTextureLoadCalls = 0;
+      private int numberOfModelFrees = 0;
+      private int numberOfTextureFrees = 0;
+      private final FloatBuffer vertexData = MemoryUtil.memAllocFloat(3 * 8);
+      private final ShortBuffer indexData = MemoryUtil.memAllocShort(3);
+      private final ByteBuffer textureData = MemoryUtil.memAlloc(TEXTURE_SIZE * TEXTURE_SIZE * 4);
+      private final ByteBuffer renderModel = MemoryUtil.memCalloc(RenderModel.SIZEOF);
+      private final ByteBuffer textureMap = MemoryUtil.memCalloc(RenderModelTextureMap.SIZEOF);
+
+      private MockRenderModels(int callsBeforeReady)
+      {
+         this.callsBeforeReady = callsBeforeReady;
+
+         for (int i = 0; i < vertexData.capacity(); i++)
+            vertexData.put(i, 0.5f * i);
+         indexData.put(0, (short) 0).put(1, (short) 1).put(2, (short) 2);
+         for (int i = 0; i < textureData.capacity(); i++)
+            textureData.put(i, (byte) i);
+
+         long renderModelAddress = MemoryUtil.memAddress(renderModel);
+         MemoryUtil.memPutAddress(renderModelAddress + RenderModel.RVERTEXDATA, MemoryUtil.memAddress(vertexData));
+         MemoryUtil.memPutInt(renderModelAddress + RenderModel.UNVERTEXCOUNT, 3);
+         MemoryUtil.memPutAddress(renderModelAddress + RenderModel.INDEXDATA, MemoryUtil.memAddress(indexData));
+         MemoryUtil.memPutInt(renderModelAddress + RenderModel.UNTRIANGLECOUNT, 1);
+         MemoryUtil.memPutInt(renderModelAddress + RenderModel.DIFFUSETEXTUREID, TEXTURE_ID);
+
+         long textureMapAddress = MemoryUtil.memAddress(textureMap);
+         MemoryUtil.memPutShort(textureMapAddress + RenderModelTextureMap.UNWIDTH, (short) TEXTURE_SIZE);
+         MemoryUtil.memPutShort(textureMapAddress + RenderModelTextureMap.UNHEIGHT, (short) TEXTURE_SIZE);
+         MemoryUtil.memPutAddress(textureMapAddress + RenderModelTextureMap.RUBTEXTUREMAPDATA, MemoryUtil.memAddress(textureData));
+      }
+
+      @Override
+      public int loadRenderModelAsync(String renderModelName, PointerBuffer renderModelPointer)
+      {
+         ++numberOfModelLoadCalls;
+         if (callsBeforeReady > 0)
+         {
+            --callsBeforeReady;
+            return VR.EVRRenderModelError_VRRenderModelError_Loading;
+         }
+         if (errorWhenReady == VR.EVRRenderModelError_VRRenderModelError_None)
+            renderModelPointer.put(0, MemoryUtil.memAddress(renderModel));
+         return errorWhenReady;
+      }
+
+      @Override
+      public int loadTextureAsync(int textureID, PointerBuffer textureMapPointer)
+      {
+         ++numberOfTextureLoadCalls;
+         assertEquals(TEXTURE_ID, textureID);
+         textureMapPointer.put(0, MemoryUtil.memAddress(textureMap));
+         return VR.EVRRenderModelError_VRRenderModelError_None;
+      }
+
+      @Override
+      public void freeRenderModel(RenderModel renderModel)
+      {
+         ++numberOfModelFrees;
+      }
+
+      @Override
+      public void freeTexture(RenderModelTextureMap textureMap)
+      {
+         ++numberOfTextureFrees;
+      }
+
+      private void free()
+      {
+         MemoryUtil.memFree(vertexData);
+         MemoryUtil.memFree(indexData);
+         MemoryUtil.memFree(textureData);
+         MemoryUtil.memFree(renderModel);
+         MemoryUtil.memFree(textureMap);
+      }
+   }
+
+   @AfterEach
+   public void resetLoader()
+   {
+      RDXVRModelLoader.dispose();
+      RDXVRModelLoader.setRenderModels(RDXVRRenderModels.OPENVR);
+   }
+
+   @Test
+   public void testEachPollAsksOnceWithoutBlocking()
+   {
+      MockRenderModels renderModels = new MockRenderModels(5);
+      renderModels.errorWhenReady = VR.EVRRenderModelError_VRRenderModelError_NotSupported;
+      RDXVRModelLoader.setRenderModels(renderModels);
+
+      for (int i = 1; i <= 5; i++)
+      {
+         assertNull(RDXVRModelLoader.pollRenderModel("loading_model"));
+         assertEquals(i, renderModels.numberOfModelLoadCalls);
+         assertFalse(RDXVRModelLoader.hasFailed("loading_model"));
+      }
+
+      renderModels.free();
+   }
+
+   @Test
+   public void testFailedModelIsNotRequestedAgain()
+   {
+      MockRenderModels renderModels = new MockRenderModels(0);
+      renderModels.errorWhenReady = VR.EVRRenderModelError_VRRenderModelError_NotSupported;
+      RDXVRModelLoader.setRenderModels(renderModels);
+
+      assertNull(RDXVRModelLoader.pollRenderModel("unsupported_model"));
+      assertTrue(RDXVRModelLoader.hasFailed("unsupported_model"));
+      assertNull(RDXVRModelLoader.pollRenderModel("unsupported_model"));
+      assertEquals(1, renderModels.numberOfModelLoadCalls);
+      assertEquals(0, renderModels.numberOfTextureLoadCalls);
+
+      renderModels.free();
+   }
+
+   @Tag("gui")
+   @Test
+   public void testLoadedModelsAreCachedAndShareTextures()
+   {
+      LibGDXTestTools.runInHiddenWindow(getClass(), () ->
+      {
+         MockRenderModels renderModels = new MockRenderModels(2);
+         RDXVRModelLoader.setRenderModels(renderModels);
+
+         assertNull(RDXVRModelLoader.pollRenderModel("controller_left"));
+         assertNull(RDXVRModelLoader.pollRenderModel("controller_left"));
+         Model model = RDXVRModelLoader.pollRenderModel("controller_left");
+         assertNotNull(model);
+         assertEquals(3, renderModels.numberOfModelLoadCalls);
+         assertEquals(1, renderModels.numberOfModelFrees);
+         assertEquals(1, renderModels.numberOfTextureFrees);
+
+         Mesh mesh = model.meshes.first();
+         assertEquals(3, mesh.getNumVertices());
+         assertEquals(3, mesh.getNumIndices());
+         float[] vertices = new float[3 * 8];
+         mesh.getVertices(vertices);
+         for (int i = 0; i < vertices.length; i++)
+            assertEquals(renderModels.vertexData.get(i), vertices[i], "Vertex data at " + i);
+
+         // Reconnecting reuses the cached model without asking OpenVR
+         assertSame(model, RDXVRModelLoader.pollRenderModel("controller_left"));
+         assertEquals(3, renderModels.numberOfModelLoadCalls);
+
+         // Another model with the same texture doesn't load the texture again
+         Model otherModel = RDXVRModelLoader.pollRenderModel("controller_right");
+         assertNotNull(otherModel);
+         assertNotSame(model, otherModel);
+         assertEquals(1, renderModels.numberOfTextureLoadCalls);
+
+         RDXVRModelLoader.dispose();
+         renderModels.free();
+      });
+   }
+}
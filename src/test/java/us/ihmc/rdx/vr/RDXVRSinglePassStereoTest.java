@@ -0,0 +1,168 @@
+package us.ihmc.rdx.vr;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g3d.ModelInstance;
+import com.badlogic.gdx.graphics.glutils.GLFrameBuffer;
+import com.badlogic.gdx.utils.ScreenUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.openvr.Texture;
+import org.lwjgl.openvr.VR;
+import org.lwjgl.openvr.VRTextureBounds;
+import us.ihmc.rdx.sceneManager.RDX3DScene;
+import us.ihmc.rdx.tools.LibGDXTestTools;
+import us.ihmc.rdx.tools.RDXModelBuilder;
+import us.ihmc.robotics.robotSide.RobotSide;
+import us.ihmc.robotics.robotSide.SideDependentList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Renders the same frame per eye and with single pass stereo, offscreen against the mock
+ * backend, which stands in for the compositor and records what gets submitted.
+ */
+@Tag("gui")
+public class RDXVRSinglePassStereoTest
+{
+   private static final int EYE_WIDTH = 160;
+   private static final int EYE_HEIGHT = 120;
+
+   private static class Submission
+   {
+      private long textureHandle;
+      private float uMin;
+      private float uMax;
+      private float vMin;
+      private float vMax;
+   }
+
+   private static class SubmitRecordingBackend extends RDXVRMockBackend
+   {
+      private final SideDependentList<Submission> submissions = new SideDependentList<>(new Submission(), new Submission());
+
+      private SubmitRecordingBackend()
+      {
+         super(90.0, RDXVRPoseTrace.SCRIPTED, EYE_WIDTH, EYE_HEIGHT);
+      }
+
+      @Override
+      public void submit(int eye, Texture texture, VRTextureBounds bounds)
+      {
+         Submission submission = submissions.get(eye == VR.EVREye_Eye_Left ? RobotSide.LEFT : RobotSide.RIGHT);
+         submission.textureHandle = texture.handle();
+         submission.uMin = bounds.uMin();
+         submission.uMax = bounds.uMax();
+         submission.vMin = bounds.vMin();
+         submission.vMax = bounds.vMax();
+         super.submit(eye, texture, bounds);
+      }
+   }
+
+   @Test
+   public void testSinglePassStereoMatchesPerEyeRendering()
+   {
+      LibGDXTestTools.runInHiddenWindow(getClass(), () ->
+      {
+         SubmitRecordingBackend backend = new SubmitRecordingBackend();
+         RDXVRContext context = new RDXVRContext(backend);
+         context.initSystem();
+         context.setupEyes();
+         context.setMultisampleSamples(1); // So both paths rasterize exactly the same
+         context.setLateLatchEnabled(false); // So both paths use the same headset pose
+
+         RDX3DScene scene = new RDX3DScene();
+         scene.create();
+         scene.addDefaultLighting();
+         // In front of the mock headset, which stands 1.6 m tall looking along world X
+         ModelInstance box = RDXModelBuilder.createBox(1.0f, 4.0f, 4.0f, Color.RED);
+         box.transform.setTranslation(3.0f, 0.0f, 1.6f);
+         scene.addModelInstance(box);
+
+         context.waitGetPoses();
+         context.pollEvents();
+
+         context.setSinglePassStereoEnabled(false);
+         context.renderEyes(scene);
+         SideDependentList<byte[]> perEyePixels = new SideDependentList<>();
+         for (RobotSide side : RobotSide.values)
+         {
+            RDXVREye eye = context.getEyes().get(side);
+            perEyePixels.set(side, readPixels(eye.getFrameBuffer(), 0, EYE_WIDTH));
+            Submission submission = backend.submissions.get(side);
+            assertEquals(eye.getOpenVRTexture().handle(), submission.textureHandle);
+            assertBounds(submission, 0.0f, 1.0f);
+         }
+
+         context.setSinglePassStereoEnabled(true);
+         context.renderEyes(scene);
+         GLFrameBuffer<com.badlogic.gdx.graphics.Texture> stereoFrameBuffer = context.getStereoFrameBuffer();
+         assertNotNull(stereoFrameBuffer);
+         assertEquals(2 * EYE_WIDTH, stereoFrameBuffer.getWidth());
+         assertEquals(EYE_HEIGHT, stereoFrameBuffer.getHeight());
+
+         Submission left = backend.submissions.get(RobotSide.LEFT);
+         Submission right = backend.submissions.get(RobotSide.RIGHT);
+         assertEquals(left.textureHandle, right.textureHandle, "Both eyes submit the shared texture");
+         assertBounds(left, 0.0f, 0.5f);
+         assertBounds(right, 0.5f, 1.0f);
+
+         for (RobotSide side : RobotSide.values)
+         {
+            byte[] halfPixels = readPixels(stereoFrameBuffer, side == RobotSide.LEFT ? 0 : EYE_WIDTH, EYE_WIDTH);
+            byte[] eyePixels = perEyePixels.get(side);
+            assertTrue(countColoredPixels(eyePixels) > 0, "The box isn't in view of the " + side.getLowerCaseName() + " eye");
+            int numberOfDifferentPixels = countDifferentPixels(eyePixels, halfPixels);
+            assertTrue(numberOfDifferentPixels < eyePixels.length / 4 / 200,
+                       numberOfDifferentPixels + " pixels of the " + side.getLowerCaseName() + " half differ from the per eye rendering");
+         }
+
+         scene.dispose();
+         context.dispose();
+      });
+   }
+
+   private static void assertBounds(Submission submission, float uMin, float uMax)
+   {
+      assertEquals(uMin, submission.uMin, 1e-6f);
+      assertEquals(uMax, submission.uMax, 1e-6f);
+      assertEquals(0.0f, submission.vMin, 1e-6f);
+      assertEquals(1.0f, submission.vMax, 1e-6f);
+   }
+
+   private static byte[] readPixels(GLFrameBuffer<?> frameBuffer, int x, int width)
+   {
+      frameBuffer.bind();
+      byte[] pixels = ScreenUtils.getFrameBufferPixels(x, 0, width, EYE_HEIGHT, false);
+      GLFrameBuffer.unbind();
+      return pixels;
+   }
+
+   /** The background is gray, and the box is red. */
+   private static int countColoredPixels(byte[] rgbaPixels)
+   {
+      int count = 0;
+      for (int i = 0; i < rgbaPixels.length; i += 4)
+      {
+         if (rgbaPixels[i] != rgbaPixels[i + 1])
+            ++count;
+      }
+      return count;
+   }
+
+   private static int countDifferentPixels(byte[] rgbaPixelsA, byte[] rgbaPixelsB)
+   {
+      int count = 0;
+      for (int i = 0; i < rgbaPixelsA.length; i += 4)
+      {
+         for (int channel = 0; channel < 3; channel++)
+         {
+            if (Math.abs((rgbaPixelsA[i + channel] & 0xFF) - (rgbaPixelsB[i + channel] & 0xFF)) > 2)
+            {
+               ++count;
+               break;
+            }
+         }
+      }
+      return count;
+   }
+}
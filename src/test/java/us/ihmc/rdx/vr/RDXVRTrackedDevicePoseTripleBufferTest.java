@@ -0,0 +1,111 @@
+package us.ihmc.rdx.vr;
+
+import org.junit.jupiter.api.Test;
+import org.lwjgl.openvr.VR;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RDXVRTrackedDevicePoseTripleBufferTest
+{
+   private static final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+   /**
+    * Runs the frame loop of {@link RDXVRContext#waitGetPoses} and the render thread's poll
+    * against the mock backend, after a warm up so the JIT is done with it.
+    */
+   @Test
+   public void testNoAllocationsPerFrameWithMockBackend()
+   {
+      RDXVRMockBackend backend = new RDXVRMockBackend(1000.0, RDXVRPoseTrace.SCRIPTED, 100, 100);
+      RDXVRTrackedDevicePoseTripleBuffer tripleBuffer = new RDXVRTrackedDevicePoseTripleBuffer();
+
+      runFrames(backend, tripleBuffer, 500);
+
+      long allocatedBytesBefore = threadMXBean.getCurrentThreadAllocatedBytes();
+      runFrames(backend, tripleBuffer, 500);
+      long allocatedBytes = threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBytesBefore;
+
+      assertEquals(0, allocatedBytes, "Bytes allocated over 500 frames");
+   }
+
+   private static void runFrames(RDXVRMockBackend backend, RDXVRTrackedDevicePoseTripleBuffer tripleBuffer, int numberOfFrames)
+   {
+      for (int i = 0; i < numberOfFrames; i++)
+      {
+         backend.waitGetPoses(tripleBuffer.getWriteSet());
+         tripleBuffer.publish();
+
+         RDXVRTrackedDevicePose[] poses = tripleBuffer.pollLatest();
+         if (poses == null || poses[RDXVRMockBackend.HEADSET_DEVICE_INDEX].timestamp <= 0)
+            throw new AssertionError("Frame " + i + " didn't get the headset pose");
+      }
+   }
+
+   @Test
+   public void testPollOnlyReturnsNewSets()
+   {
+      RDXVRTrackedDevicePoseTripleBuffer tripleBuffer = new RDXVRTrackedDevicePoseTripleBuffer();
+      assertNull(tripleBuffer.pollLatest());
+
+      tripleBuffer.getWriteSet()[0].timestamp = 1;
+      tripleBuffer.publish();
+      tripleBuffer.getWriteSet()[0].timestamp = 2;
+      tripleBuffer.publish();
+
+      RDXVRTrackedDevicePose[] poses = tripleBuffer.pollLatest();
+      assertNotNull(poses);
+      assertEquals(2, poses[0].timestamp);
+      assertEquals(2, tripleBuffer.getLastReadSequenceNumber());
+      assertNull(tripleBuffer.pollLatest());
+   }
+
+   /**
+    * The writer stamps every pose of a set with its sequence number, so a set that's
+    * read while it's being written would have mixed timestamps.
+    */
+   @Test
+   public void testConcurrentSetsAreCompleteAndInOrder() throws InterruptedException
+   {
+      RDXVRTrackedDevicePoseTripleBuffer tripleBuffer = new RDXVRTrackedDevicePoseTripleBuffer();
+      int numberOfSets = 200000;
+      AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+
+      Thread writer = new Thread(() ->
+      {
+         try
+         {
+            for (long sequenceNumber = 1; sequenceNumber <= numberOfSets; sequenceNumber++)
+            {
+               for (RDXVRTrackedDevicePose pose : tripleBuffer.getWriteSet())
+                  pose.timestamp = sequenceNumber;
+               tripleBuffer.publish();
+            }
+         }
+         catch (Throwable throwable)
+         {
+            writerFailure.set(throwable);
+         }
+      }, "PoseWriter");
+      writer.start();
+
+      long lastSequenceNumber = 0;
+      while (lastSequenceNumber < numberOfSets && writerFailure.get() == null)
+      {
+         RDXVRTrackedDevicePose[] poses = tripleBuffer.pollLatest();
+         if (poses == null)
+            continue;
+
+         long sequenceNumber = tripleBuffer.getLastReadSequenceNumber();
+         assertTrue(sequenceNumber > lastSequenceNumber, "Sequence went from " + lastSequenceNumber + " to " + sequenceNumber);
+         for (int i = 0; i < VR.k_unMaxTrackedDeviceCount; i++)
+            assertEquals(sequenceNumber, poses[i].timestamp, "Torn set at device " + i);
+         lastSequenceNumber = sequenceNumber;
+      }
+
+      writer.join();
+      assertNull(writerFailure.get());
+   }
+}